@@ -1,20 +1,43 @@
 package uk.gov.companieshouse.filevalidationservice.configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import uk.gov.companieshouse.api.InternalApiClient;
 import uk.gov.companieshouse.api.http.ApiKeyHttpClient;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class ApiClientConfig {
 
     @Value( "${chs.internal.api.key}" )
     private String internalApiKey;
 
+    @Value( "${file.transfer.api.connect-timeout:PT10S}" )
+    private Duration fileTransferConnectTimeout;
+
     @Bean
     public InternalApiClient getInternalApiClient(){
         return new InternalApiClient( new ApiKeyHttpClient( internalApiKey ) );
     }
 
+    @Bean
+    public HttpClient fileTransferHttpClient(){
+        return HttpClient.newBuilder()
+                .version( HttpClient.Version.HTTP_1_1 )
+                .connectTimeout( fileTransferConnectTimeout )
+                .build();
+    }
+
+    /**
+     * Shared mapper for reading api responses, as spring boot only configures a Jackson 3 mapper.
+     */
+    @Bean
+    public ObjectMapper objectMapper(){
+        return new ObjectMapper();
+    }
+
 }
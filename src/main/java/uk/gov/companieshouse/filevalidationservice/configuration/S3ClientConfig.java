@@ -1,14 +1,65 @@
 package uk.gov.companieshouse.filevalidationservice.configuration;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
+import java.time.Duration;
+
+/**
+ * The S3 clients, with their HTTP connection pools sized and timed out by the {@code s3.http} properties rather than
+ * the SDK defaults. The non-blocking client is only created when {@code s3.client} is {@code async}.
+ */
 @Configuration
 public class S3ClientConfig {
 
+    @Value( "${amlData.fileValidation.s3.http.max-connections}" )
+    private int maxConnections;
+
+    @Value( "${amlData.fileValidation.s3.http.max-concurrency}" )
+    private int maxConcurrency;
+
+    @Value( "${amlData.fileValidation.s3.http.connection-timeout}" )
+    private Duration connectionTimeout;
+
+    @Value( "${amlData.fileValidation.s3.http.connection-acquisition-timeout}" )
+    private Duration connectionAcquisitionTimeout;
+
+    @Value( "${amlData.fileValidation.s3.http.socket-timeout}" )
+    private Duration socketTimeout;
+
     @Bean
     S3Client getS3Client() {
-        return S3Client.create();
+        return S3Client.builder()
+                .httpClientBuilder( ApacheHttpClient.builder()
+                        .maxConnections( maxConnections )
+                        .connectionTimeout( connectionTimeout )
+                        .connectionAcquisitionTimeout( connectionAcquisitionTimeout )
+                        .socketTimeout( socketTimeout ) )
+                .build();
+    }
+
+    /**
+     * The client {@code S3UploadClient} uploads files with when {@code s3.client} is {@code async}. At most
+     * {@code max-concurrency} requests are sent at once, on Netty's event loop threads, and others wait for a
+     * connection. It is set apart from {@code max-connections}, as requests that no longer each hold a thread can be
+     * let through in greater numbers than the blocking client's pool.
+     */
+    @Bean
+    @ConditionalOnProperty( name = "amlData.fileValidation.s3.client", havingValue = "async" )
+    S3AsyncClient getS3AsyncClient() {
+        return S3AsyncClient.builder()
+                .httpClientBuilder( NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency( maxConcurrency )
+                        .connectionTimeout( connectionTimeout )
+                        .connectionAcquisitionTimeout( connectionAcquisitionTimeout )
+                        .readTimeout( socketTimeout )
+                        .writeTimeout( socketTimeout ) )
+                .build();
     }
 }
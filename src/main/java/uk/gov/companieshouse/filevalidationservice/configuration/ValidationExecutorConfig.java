@@ -0,0 +1,127 @@
+package uk.gov.companieshouse.filevalidationservice.configuration;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import uk.gov.companieshouse.filevalidationservice.utils.BoundedExecutor;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class ValidationExecutorConfig {
+
+    @Value( "${amlData.fileValidation.pipeline.download.pool-size}" )
+    private int downloadPoolSize;
+
+    @Value( "${amlData.fileValidation.pipeline.download.queue-capacity}" )
+    private int downloadQueueCapacity;
+
+    @Value( "${amlData.fileValidation.pipeline.validate.pool-size}" )
+    private int validatePoolSize;
+
+    @Value( "${amlData.fileValidation.pipeline.validate.queue-capacity}" )
+    private int validateQueueCapacity;
+
+    @Value( "${amlData.fileValidation.pipeline.upload.pool-size}" )
+    private int uploadPoolSize;
+
+    @Value( "${amlData.fileValidation.pipeline.upload.queue-capacity}" )
+    private int uploadQueueCapacity;
+
+    @Value( "${amlData.fileValidation.s3.multipart.pool-size}" )
+    private int partUploadPoolSize;
+
+    @Value( "${amlData.fileValidation.parser.parallelism}" )
+    private int parserParallelism;
+
+    /**
+     * Threads that claim records and download their files.
+     */
+    @Bean( name = "downloadTaskExecutor" )
+    public ThreadPoolTaskExecutor downloadTaskExecutor() {
+        return stageExecutor( "validation-download-", downloadPoolSize, downloadQueueCapacity );
+    }
+
+    /**
+     * Threads that validate downloaded files.
+     */
+    @Bean( name = "validateTaskExecutor" )
+    public ThreadPoolTaskExecutor validateTaskExecutor() {
+        return stageExecutor( "validation-validate-", validatePoolSize, validateQueueCapacity );
+    }
+
+    /**
+     * Threads that upload validated files to S3.
+     */
+    @Bean( name = "uploadTaskExecutor" )
+    public ThreadPoolTaskExecutor uploadTaskExecutor() {
+        return stageExecutor( "validation-upload-", uploadPoolSize, uploadQueueCapacity );
+    }
+
+    /**
+     * Threads that upload the parts of large files to S3, shared by every upload. Each upload limits how many of its
+     * own parts are waiting or in flight, so the queue is not bounded here.
+     */
+    @Bean( name = "partUploadTaskExecutor" )
+    public ThreadPoolTaskExecutor partUploadTaskExecutor() {
+        return stageExecutor( "validation-upload-part-", partUploadPoolSize, Integer.MAX_VALUE );
+    }
+
+    /**
+     * The thread the scheduler reads the backlog on, so that waiting for room in the pipeline does not hold up the
+     * other scheduled tasks. It has no queue, so a run that starts while the previous one is still going is rejected.
+     */
+    @Bean( name = "sweepTaskExecutor" )
+    public ThreadPoolTaskExecutor sweepTaskExecutor() {
+        return stageExecutor( "validation-sweep-", 1, 0 );
+    }
+
+    /**
+     * Entry to the pipeline. Its queue only holds records waiting to be claimed, so it can be longer than the
+     * queues of the later stages. The scheduler waits for room here, while newly uploaded files are only handed over
+     * when there is room so an upload request is never held up.
+     */
+    @Bean( name = "downloadStage" )
+    public BoundedExecutor downloadStage( @Qualifier( "downloadTaskExecutor" ) final ThreadPoolTaskExecutor executor ) {
+        return new BoundedExecutor( executor, downloadPoolSize + downloadQueueCapacity );
+    }
+
+    /**
+     * Every record queued here holds a downloaded file in memory, so this bound caps how far downloads can run
+     * ahead of validation.
+     */
+    @Bean( name = "validateStage" )
+    public BoundedExecutor validateStage( @Qualifier( "validateTaskExecutor" ) final ThreadPoolTaskExecutor executor ) {
+        return new BoundedExecutor( executor, validatePoolSize + validateQueueCapacity );
+    }
+
+    /**
+     * Every record queued here holds a validated file in memory, so this bound caps how far validation can run
+     * ahead of the uploads.
+     */
+    @Bean( name = "uploadStage" )
+    public BoundedExecutor uploadStage( @Qualifier( "uploadTaskExecutor" ) final ThreadPoolTaskExecutor executor ) {
+        return new BoundedExecutor( executor, uploadPoolSize + uploadQueueCapacity );
+    }
+
+    /**
+     * Threads that validate the chunks of large files, shared by all files being validated. Zero uses one thread per
+     * available processor.
+     */
+    @Bean( name = "csvParserPool", destroyMethod = "shutdown" )
+    public ForkJoinPool csvParserPool() {
+        return new ForkJoinPool( parserParallelism > 0 ? parserParallelism : Runtime.getRuntime().availableProcessors() );
+    }
+
+    private static ThreadPoolTaskExecutor stageExecutor( final String threadNamePrefix, final int poolSize, final int queueCapacity ) {
+        final var executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize( poolSize );
+        executor.setMaxPoolSize( poolSize );
+        executor.setQueueCapacity( queueCapacity );
+        executor.setThreadNamePrefix( threadNamePrefix );
+        executor.setWaitForTasksToCompleteOnShutdown( true );
+        return executor;
+    }
+}
@@ -0,0 +1,27 @@
+package uk.gov.companieshouse.filevalidationservice.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationSchema;
+
+import java.io.IOException;
+
+@Configuration
+public class ValidationSchemaConfig {
+
+    @Value( "${amlData.fileValidation.schema-location}" )
+    private Resource schemaLocation;
+
+    /**
+     * The columns files are validated against, compiled once at startup so that a broken schema stops the service
+     * from starting rather than failing every file.
+     */
+    @Bean
+    public ValidationSchema validationSchema() throws IOException {
+        try ( var input = schemaLocation.getInputStream() ) {
+            return ValidationSchema.load( input );
+        }
+    }
+}
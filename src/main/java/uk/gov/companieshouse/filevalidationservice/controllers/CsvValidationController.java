@@ -11,27 +11,44 @@ import uk.gov.companieshouse.api.fileValidation.api.FileValidationInterface;
 import uk.gov.companieshouse.api.fileValidation.model.FileUploadResponse;
 import org.springframework.web.multipart.MultipartFile;
 import uk.gov.companieshouse.filevalidationservice.exception.BadRequestRuntimeException;
+import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
 import uk.gov.companieshouse.filevalidationservice.exception.FileUploadException;
 import uk.gov.companieshouse.filevalidationservice.exception.InternalServerErrorRuntimeException;
 import uk.gov.companieshouse.filevalidationservice.models.FileMetaData;
+import uk.gov.companieshouse.filevalidationservice.parser.Compression;
+import uk.gov.companieshouse.filevalidationservice.parser.CsvDecompressor;
 import uk.gov.companieshouse.filevalidationservice.service.FileTransferService;
 import uk.gov.companieshouse.filevalidationservice.utils.Constants;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 
 @RestController
 public class CsvValidationController implements FileValidationInterface {
 
+    /**
+     * The most of a file's content, decompressed, read to detect its type.
+     */
+    private static final int DETECT_LENGTH = 64 * 1024;
+
     private final FileTransferService fileTransferService;
 
     private final Tika tika;
 
-    public CsvValidationController( final FileTransferService fileTransferService, Tika tika) {
+    private final CsvDecompressor csvDecompressor;
+
+    public CsvValidationController( final FileTransferService fileTransferService, Tika tika, CsvDecompressor csvDecompressor) {
         this.fileTransferService = fileTransferService;
         this.tika = tika;
+        this.csvDecompressor = csvDecompressor;
     }
 
+    /**
+     * Accepts a csv file, either as it is or compressed as a {@code .csv.gz} or a zip holding a single csv. A
+     * compressed file is stored compressed; only its start is decompressed here, to check that it holds a csv, and it
+     * is decompressed in full as it is validated, which is when a file decompressing beyond the limits is turned away.
+     */
     @Override
     public ResponseEntity<FileUploadResponse> uploadFile(MultipartFile file, @Valid String metadata){
         try {
@@ -41,14 +58,36 @@ public class CsvValidationController implements FileValidationInterface {
             if(StringUtils.isEmpty(fileMetaData.getFileName()) || StringUtils.isEmpty(fileMetaData.getFromLocation()) || StringUtils.isEmpty(fileMetaData.getToLocation())){
                 throw new BadRequestRuntimeException("Please provide a valid metadata: " + fileMetaData);
             }
-            String fileType = tika.detect(file.getInputStream(), file.getOriginalFilename());
+            var compression = compressionOf(file);
+            String fileType = detectFileType(file, compression, fileMetaData);
             if (!fileType.equals("text/csv")){
                 throw new BadRequestRuntimeException(String.format("Please upload a valid CSV file. fileName: %s, amlBodyName: %s", fileMetaData.getFileName(), fileMetaData.getFromLocation()));
             }
-            String id = fileTransferService.upload(file, fileMetaData);
+            String id = fileTransferService.upload(file, fileMetaData, compression.mimeType());
             return ResponseEntity.created(URI.create(Constants.UPLOAD_URI_PATTERN)).body(new FileUploadResponse().id(id));
         } catch (FileUploadException | IOException e) {
             throw new InternalServerErrorRuntimeException(e.getMessage());
         }
     }
-}
+
+    private static Compression compressionOf(MultipartFile file) throws IOException {
+        try (var content = file.getInputStream()) {
+            var signature = content.readNBytes(Compression.SIGNATURE_LENGTH);
+            return Compression.of(signature, signature.length);
+        }
+    }
+
+    /**
+     * Detects the type of the file's content, decompressed if it is compressed, from its first {@link #DETECT_LENGTH}
+     * bytes, so the request is not held while a large file is decompressed. The content of a zip is named after the
+     * file it holds rather than the zip.
+     */
+    private String detectFileType(MultipartFile file, Compression compression, FileMetaData fileMetaData) throws IOException {
+        try (var content = csvDecompressor.decompress(file.getInputStream(), file.getSize(), compression)) {
+            var head = content.readNBytes(DETECT_LENGTH);
+            return tika.detect(new ByteArrayInputStream(head), csvDecompressor.nameOf(content, file.getOriginalFilename(), compression));
+        } catch (CSVDataValidationException e) {
+            throw new BadRequestRuntimeException(String.format("Please upload a valid CSV file. fileName: %s, amlBodyName: %s, %s", fileMetaData.getFileName(), fileMetaData.getFromLocation(), e.getMessage()));
+        }
+    }
+}
\ No newline at end of file
@@ -10,7 +10,9 @@ public enum FileStatus {
     UPLOAD_ERROR("upload-error"),
     VALIDATION_ERROR("validation-error"),
 
-    ERROR("error");
+    ERROR("error"),
+
+    DEAD_LETTER("dead-letter");
 
     public final String label;
 
@@ -1,11 +1,13 @@
 package uk.gov.companieshouse.filevalidationservice.models;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "file_validation")
+@CompoundIndex(name = "status_created_at", def = "{ 'status' : 1, 'created_at' : 1, '_id' : 1 }")
 public class FileValidation {
 
     @Id
@@ -21,6 +23,11 @@ public class FileValidation {
     private String errorMessage;
     private String updatedBy;
     private LocalDateTime updatedAt;
+    private String claimedBy;
+    private LocalDateTime claimExpiresAt;
+    private int attempts;
+    private LocalDateTime nextAttemptAt;
+    private String checksum;
 
     public String getId() {
         return id;
@@ -109,4 +116,44 @@ public class FileValidation {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
+
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    public LocalDateTime getClaimExpiresAt() {
+        return claimExpiresAt;
+    }
+
+    public void setClaimExpiresAt(LocalDateTime claimExpiresAt) {
+        this.claimExpiresAt = claimExpiresAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
 }
@@ -0,0 +1,18 @@
+package uk.gov.companieshouse.filevalidationservice.models;
+
+/**
+ * Published once an uploaded file has been stored and its {@link FileValidation} record inserted, so the record
+ * can be processed straight away rather than on the next scheduled run.
+ */
+public class FileValidationSubmittedEvent {
+
+    private final String fileValidationId;
+
+    public FileValidationSubmittedEvent(String fileValidationId) {
+        this.fileValidationId = fileValidationId;
+    }
+
+    public String getFileValidationId() {
+        return fileValidationId;
+    }
+}
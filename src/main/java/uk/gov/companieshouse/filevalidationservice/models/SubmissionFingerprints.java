@@ -0,0 +1,93 @@
+package uk.gov.companieshouse.filevalidationservice.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * The fingerprints of the records in part of a completed file, packed 8 bytes each. A file with more records than
+ * fit in one document is stored as several parts.
+ */
+@Document(collection = "submission_fingerprints")
+@CompoundIndex(name = "from_location_key", def = "{ 'from_location' : 1, 'key' : 1 }")
+public class SubmissionFingerprints {
+
+    @Id
+    private String id;
+
+    private String fromLocation;
+    private String key;
+    @Indexed
+    private String fileValidationId;
+    private int part;
+    private int count;
+    private byte[] fingerprints;
+    private LocalDateTime createdAt;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFromLocation() {
+        return fromLocation;
+    }
+
+    public void setFromLocation(String fromLocation) {
+        this.fromLocation = fromLocation;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getFileValidationId() {
+        return fileValidationId;
+    }
+
+    public void setFileValidationId(String fileValidationId) {
+        this.fileValidationId = fileValidationId;
+    }
+
+    public int getPart() {
+        return part;
+    }
+
+    public void setPart(int part) {
+        this.part = part;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public byte[] getFingerprints() {
+        return fingerprints;
+    }
+
+    public void setFingerprints(byte[] fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,63 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import java.util.Locale;
+
+/**
+ * How an uploaded csv file is compressed, told apart by its first bytes rather than its name. Compressed files are
+ * stored as they were uploaded and decompressed as they are validated.
+ */
+public enum Compression {
+    NONE("text/csv", ""),
+    GZIP("application/gzip", ".gz"),
+    ZIP("application/zip", ".zip");
+
+    /**
+     * The number of leading bytes {@link #of(byte[], int)} needs to tell the compressions apart.
+     */
+    public static final int SIGNATURE_LENGTH = 4;
+
+    private final String mimeType;
+    private final String extension;
+
+    Compression(String mimeType, String extension) {
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    /**
+     * The compression of a file starting with {@code bytes[0, length)}.
+     */
+    public static Compression of(byte[] bytes, int length) {
+        if (length >= 2 && bytes[0] == (byte) 0x1F && bytes[1] == (byte) 0x8B) {
+            return GZIP;
+        }
+        if (length >= SIGNATURE_LENGTH && bytes[0] == 'P' && bytes[1] == 'K' && bytes[2] == 3 && bytes[3] == 4) {
+            return ZIP;
+        }
+        return NONE;
+    }
+
+    /**
+     * The compression of a file held in memory.
+     */
+    public static Compression of(byte[] bytes) {
+        return of(bytes, bytes.length);
+    }
+
+    /**
+     * The mime type the file is stored with.
+     */
+    public String mimeType() {
+        return mimeType;
+    }
+
+    /**
+     * The name of the csv inside a file of this name, which is the name without the compression's extension.
+     */
+    public String uncompressedName(String fileName) {
+        if (fileName == null || extension.isEmpty() || !fileName.toLowerCase(Locale.ENGLISH).endsWith(extension)) {
+            return fileName;
+        }
+        return fileName.substring(0, fileName.length() - extension.length());
+    }
+}
@@ -0,0 +1,260 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import java.util.Arrays;
+
+/**
+ * Finds where records start within one chunk of a csv file without knowing what state the parser is in at the start
+ * of the chunk, for example whether the chunk starts inside a quoted field. The chunk is run through a small state
+ * machine that follows {@link CsvTokenizer} byte for byte, once for every state the parser could be in at the start
+ * of the chunk. In practice the runs either join up or fail within a few bytes, so this costs little more than a
+ * single run. Once the state at the start of the first chunk is known, the summaries can be chained to find the
+ * true state at the start of every chunk.
+ */
+final class CsvChunkScanner {
+
+    static final int RECORD_START = 0;
+    static final int FIELD_START = 1;
+    static final int UNQUOTED = 2;
+    static final int QUOTED = 3;
+    static final int QUOTE_SEEN = 4;
+    static final int AFTER_CLOSE = 5;
+    static final int WHITESPACE_1_MORE = 6;
+    static final int WHITESPACE_2_MORE = 7;
+    static final int ERROR = 8;
+    static final int STATES = 9;
+
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private CsvChunkScanner() {
+    }
+
+    /**
+     * What the chunk looks like for each state the parser could be in at its start.
+     */
+    static final class Summary {
+
+        private final int[] endStates = new int[STATES];
+        private final int[] recordStarts = new int[STATES];
+        private final int[] firstRecordStarts = new int[STATES];
+
+        /**
+         * The state after the last byte of the chunk.
+         */
+        int endState(int startState) {
+            return endStates[startState];
+        }
+
+        /**
+         * The number of records whose first byte lies in the chunk.
+         */
+        int recordStarts(int startState) {
+            return recordStarts[startState];
+        }
+
+        /**
+         * The index of the first byte of the first record that starts in the chunk, or {@code -1} if none does.
+         */
+        int firstRecordStart(int startState) {
+            return firstRecordStarts[startState];
+        }
+    }
+
+    /**
+     * Scans {@code bytes[from, to)}. Bytes after {@code to} are only looked at to decode a character that straddles
+     * the end of the chunk.
+     */
+    static Summary scan(byte[] bytes, int from, int to) {
+        var lanes = new Lanes();
+        var i = from;
+        for (; i < to && lanes.activeCount > 1; i++) {
+            var b = bytes[i];
+            for (int k = 0; k < lanes.activeCount; k++) {
+                var lane = lanes.active[k];
+                var state = lanes.states[lane];
+                if (state == RECORD_START && b != CR && b != LF) {
+                    lanes.recordStart(lane, i);
+                }
+                lanes.states[lane] = next(state, b, bytes, i);
+            }
+            lanes.merge();
+        }
+        if (i < to && lanes.activeCount == 1) {
+            var lane = lanes.active[0];
+            var state = lanes.states[lane];
+            for (; i < to; i++) {
+                var b = bytes[i];
+                if (state == RECORD_START && b != CR && b != LF) {
+                    lanes.recordStart(lane, i);
+                }
+                state = next(state, b, bytes, i);
+            }
+            lanes.states[lane] = state;
+        }
+        return lanes.summary();
+    }
+
+    /**
+     * One run of the state machine per state the chunk could start in. Runs that reach the same state are merged,
+     * since from there on they see the same records, and runs that fail join the failed run, which sees no more
+     * records. Only the remaining runs are stepped through the chunk.
+     */
+    private static final class Lanes {
+
+        private final int[] laneOf = new int[STATES];
+        private final int[] states = new int[STATES];
+        private final int[] recordStarts = new int[STATES];
+        private final int[] countAdjustments = new int[STATES];
+        private final int[] firstRecordStarts = new int[STATES];
+        private final int[] active = new int[STATES];
+        private int activeCount;
+        private int waiting = STATES - 1;
+
+        private Lanes() {
+            Arrays.fill(firstRecordStarts, -1);
+            for (int state = 0; state < STATES; state++) {
+                laneOf[state] = state;
+                states[state] = state;
+                if (state != ERROR) {
+                    active[activeCount++] = state;
+                }
+            }
+        }
+
+        private void recordStart(int lane, int index) {
+            recordStarts[lane]++;
+            if (waiting == 0) {
+                return;
+            }
+            for (int startState = 0; startState < STATES; startState++) {
+                if (laneOf[startState] == lane && firstRecordStarts[startState] < 0) {
+                    firstRecordStarts[startState] = index;
+                    waiting--;
+                }
+            }
+        }
+
+        private void merge() {
+            for (int k = 0; k < activeCount; k++) {
+                var lane = active[k];
+                if (states[lane] == ERROR) {
+                    join(lane, ERROR);
+                    active[k--] = active[--activeCount];
+                    continue;
+                }
+                for (int j = 0; j < k; j++) {
+                    if (states[active[j]] == states[lane]) {
+                        join(lane, active[j]);
+                        active[k--] = active[--activeCount];
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Moves the start states following {@code lane} onto {@code into}. A start state whose first record has not
+         * been seen yet simply takes the next one seen by {@code into}.
+         */
+        private void join(int lane, int into) {
+            for (int startState = 0; startState < STATES; startState++) {
+                if (laneOf[startState] == lane) {
+                    laneOf[startState] = into;
+                    countAdjustments[startState] += recordStarts[lane] - recordStarts[into];
+                    if (into == ERROR && firstRecordStarts[startState] < 0) {
+                        waiting--;
+                    }
+                }
+            }
+        }
+
+        private Summary summary() {
+            var summary = new Summary();
+            for (int startState = 0; startState < STATES; startState++) {
+                var lane = laneOf[startState];
+                summary.endStates[startState] = states[lane];
+                summary.recordStarts[startState] = recordStarts[lane] + countAdjustments[startState];
+                summary.firstRecordStarts[startState] = firstRecordStarts[startState];
+            }
+            return summary;
+        }
+    }
+
+    /**
+     * The state after reading byte {@code b} at {@code index} in {@code state}, following {@link CsvTokenizer}.
+     */
+    static int next(int state, byte b, byte[] bytes, int index) {
+        switch (state) {
+            case RECORD_START:
+                if (b == CR || b == LF) {
+                    return RECORD_START;
+                }
+                return fieldStart(b);
+            case FIELD_START:
+                if (b == CR || b == LF) {
+                    return RECORD_START;
+                }
+                return fieldStart(b);
+            case UNQUOTED:
+                if (b == COMMA) {
+                    return FIELD_START;
+                }
+                return b == CR || b == LF ? RECORD_START : UNQUOTED;
+            case QUOTED:
+                return b == QUOTE ? QUOTE_SEEN : QUOTED;
+            case QUOTE_SEEN:
+                return b == QUOTE ? QUOTED : afterClose(b, bytes, index);
+            case AFTER_CLOSE:
+                return afterClose(b, bytes, index);
+            case WHITESPACE_2_MORE:
+                return WHITESPACE_1_MORE;
+            case WHITESPACE_1_MORE:
+                return AFTER_CLOSE;
+            default:
+                return ERROR;
+        }
+    }
+
+    private static int fieldStart(byte b) {
+        if (b == QUOTE) {
+            return QUOTED;
+        }
+        return b == COMMA ? FIELD_START : UNQUOTED;
+    }
+
+    private static int afterClose(byte b, byte[] bytes, int index) {
+        if (b == COMMA) {
+            return FIELD_START;
+        }
+        if (b == CR || b == LF) {
+            return RECORD_START;
+        }
+        var c = b & 0xFF;
+        if (c < 0x80) {
+            return Character.isWhitespace(c) ? AFTER_CLOSE : ERROR;
+        }
+        int remaining;
+        int codePoint;
+        if ((c & 0xE0) == 0xC0) {
+            remaining = 1;
+            codePoint = c & 0x1F;
+        } else if ((c & 0xF0) == 0xE0) {
+            remaining = 2;
+            codePoint = c & 0x0F;
+        } else {
+            return ERROR;
+        }
+        for (int i = 1; i <= remaining; i++) {
+            if (index + i >= bytes.length || (bytes[index + i] & 0xC0) != 0x80) {
+                return ERROR;
+            }
+            codePoint = (codePoint << 6) | (bytes[index + i] & 0x3F);
+        }
+        if (!Character.isWhitespace(codePoint)) {
+            return ERROR;
+        }
+        return remaining == 2 ? WHITESPACE_2_MORE : WHITESPACE_1_MORE;
+    }
+}
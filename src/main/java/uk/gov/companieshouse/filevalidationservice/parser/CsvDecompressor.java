@@ -0,0 +1,137 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
+
+/**
+ * Decompresses gzip and single file zip uploads as they are read, so a compressed file is never held in memory
+ * decompressed.
+ * <p>
+ * A small file can decompress to an enormous one, so reading stops once a file has decompressed to more than
+ * {@code max-size} bytes, or to more than {@code max-ratio} times its compressed size. Exceeding either, a zip that
+ * does not hold exactly one file and compressed data that is corrupt or cut short are all reported as a
+ * {@link CSVDataValidationException} from whichever read finds them.
+ */
+@Component
+public class CsvDecompressor {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long maxSize;
+    private final long maxRatio;
+
+    public CsvDecompressor(@Value("${amlData.fileValidation.compressed.max-size}") DataSize maxSize,
+                           @Value("${amlData.fileValidation.compressed.max-ratio}") int maxRatio) {
+        this.maxSize = maxSize.toBytes();
+        this.maxRatio = maxRatio;
+    }
+
+    /**
+     * The decompressed content of {@code compressed}. Closing it closes {@code compressed}.
+     *
+     * @param compressedSize the number of bytes in {@code compressed}, or a negative value if unknown, in which case
+     *                       only {@code max-size} is checked
+     * @return the content as it is, if it is not compressed
+     */
+    public InputStream decompress(InputStream compressed, long compressedSize, Compression compression) throws IOException {
+        var limit = compressedSize < 0 || compressedSize > maxSize / maxRatio ? maxSize : compressedSize * maxRatio;
+        try {
+            return switch (compression) {
+                case NONE -> compressed;
+                case GZIP -> new LimitedInputStream(new GZIPInputStream(compressed, BUFFER_SIZE), limit, null, null);
+                case ZIP -> {
+                    var zip = new ZipInputStream(compressed);
+                    var entry = zip.getNextEntry();
+                    if (entry == null || entry.isDirectory()) {
+                        zip.close();
+                        throw new CSVDataValidationException("The zip file does not contain a file");
+                    }
+                    yield new LimitedInputStream(zip, limit, zip, entry.getName());
+                }
+            };
+        } catch (ZipException | EOFException e) {
+            throw notValid(compression, e);
+        }
+    }
+
+    /**
+     * The name of the csv that {@code content}, as {@link #decompress} returned it, holds: the name of the file in a
+     * zip, or otherwise {@code fileName} without the extension of its compression.
+     */
+    public String nameOf(InputStream content, String fileName, Compression compression) {
+        return content instanceof LimitedInputStream limited && limited.entryName != null
+                ? limited.entryName
+                : compression.uncompressedName(fileName);
+    }
+
+    private static CSVDataValidationException notValid(Compression compression, IOException e) {
+        return new CSVDataValidationException(String.format("The file is not valid %s data: %s",
+                compression.name().toLowerCase(Locale.ENGLISH), e.getMessage() == null ? "unexpected end of file" : e.getMessage()));
+    }
+
+    /**
+     * Counts the bytes read from a decompressing stream, failing once there are more than the limit, and for a zip
+     * checks at the end of its first file that there is no other.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private final ZipInputStream zip;
+        private final String entryName;
+        private long count;
+        private boolean ended;
+
+        private LimitedInputStream(InputStream decompressing, long limit, ZipInputStream zip, String entryName) {
+            super(decompressing);
+            this.limit = limit;
+            this.zip = zip;
+            this.entryName = entryName;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read;
+            try {
+                read = super.read(b, off, len);
+                if (read < 0 && !ended) {
+                    ended = true;
+                    if (zip != null && zip.getNextEntry() != null) {
+                        throw new CSVDataValidationException("The zip file contains more than one file");
+                    }
+                }
+            } catch (ZipException | EOFException e) {
+                throw notValid(zip == null ? Compression.GZIP : Compression.ZIP, e);
+            }
+            if (read > 0) {
+                count += read;
+                if (count > limit) {
+                    throw new CSVDataValidationException(String.format("The file is larger than the %s bytes it may decompress to", limit));
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var length = (int) Math.min(Math.max(n, 0), BUFFER_SIZE);
+            return Math.max(read(new byte[length], 0, length), 0);
+        }
+    }
+}
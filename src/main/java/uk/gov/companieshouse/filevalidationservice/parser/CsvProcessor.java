@@ -2,38 +2,34 @@ package uk.gov.companieshouse.filevalidationservice.parser;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
-import org.apache.commons.io.input.BOMInputStream;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
-import uk.gov.companieshouse.filevalidationservice.validation.CsvRecordValidator;
+import uk.gov.companieshouse.filevalidationservice.validation.CompanyRegister;
+import uk.gov.companieshouse.filevalidationservice.validation.ResubmissionCheck;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationErrors;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationRule;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationSchema;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
 
 import static uk.gov.companieshouse.filevalidationservice.FileValidationApplication.APPLICATION_NAMESPACE;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_UNIQUE_ID;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.NUMBER_OF_COLUMNS;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_COMPANY_NAME;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_COMPANY_NUMBER;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_TRADING_NAME;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_FIRST_NAME;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_LAST_NAME;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_DATE_OF_BIRTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_PROPERTY_NAME_OR_NO;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_ADDRESSLINE1;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_ADDRESSLINE2;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_CITY_OR_TOWN;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_POSTCODE;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.INDEX_OF_COUNTRY;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.VALID_HEADERS;
 
 
 @Component
@@ -41,39 +37,62 @@ public class CsvProcessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger( APPLICATION_NAMESPACE );
 
+    private final ForkJoinPool parserPool;
+    private final long parallelThreshold;
+    private final int chunkSize;
+    private final int maxErrors;
+    private final ValidationSchema defaultSchema;
+
+    public CsvProcessor(@Qualifier("csvParserPool") ForkJoinPool parserPool,
+                        @Value("${amlData.fileValidation.parser.parallel-threshold}") DataSize parallelThreshold,
+                        @Value("${amlData.fileValidation.parser.chunk-size}") DataSize chunkSize,
+                        @Value("${amlData.fileValidation.error-report.max-errors}") int maxErrors,
+                        ValidationSchema defaultSchema) {
+        this.parserPool = parserPool;
+        this.parallelThreshold = parallelThreshold.toBytes();
+        this.chunkSize = Math.toIntExact(chunkSize.toBytes());
+        this.maxErrors = maxErrors;
+        this.defaultSchema = defaultSchema;
+    }
+
+    /**
+     * Validates a file held in memory. Files of at least {@code parallel-threshold} bytes are split into chunks that
+     * are validated in parallel, reporting the same error on the same line as validating them in one go would.
+     */
     public void parseRecords(byte[] bytesToParse) {
-        int currentRow = 1;
-        try (var reader = new InputStreamReader(BOMInputStream.builder().setInputStream(new ByteArrayInputStream(bytesToParse)).get(), StandardCharsets.UTF_8)) {
+        if (bytesToParse.length >= parallelThreshold && bytesToParse.length > chunkSize) {
+            parseRecordsInParallel(bytesToParse);
+        } else {
+            parseRecords(new ByteArrayInputStream(bytesToParse));
+        }
+    }
 
-            CSVParser parser = CSVFormat.DEFAULT.parse(reader);
-            Iterator<CSVRecord> it = parser.iterator();
+    /**
+     * Validates the file as it is read from the channel. The channel is closed once validation finishes.
+     */
+    public void parseRecords(ReadableByteChannel channelToParse) {
+        parseRecords(Channels.newInputStream(channelToParse));
+    }
 
-            isDataAfterHeaders(it);
-            currentRow++;
-            while (it.hasNext()) {
-                var csvRecord = it.next();
+    /**
+     * Validates the file as it is read from the stream, one record at a time, so the file is never held in memory.
+     * The stream is closed once validation finishes.
+     */
+    public void parseRecords(InputStream streamToParse) {
+        int currentRow = 1;
+        try (streamToParse) {
+            var tokenizer = new CsvTokenizer(streamToParse);
 
-                if (!NUMBER_OF_COLUMNS.equals(csvRecord.size())) {
-                    throw new CSVDataValidationException(String.format("Incorrect number of columns. Received: %s Expected: %s", csvRecord.size(), NUMBER_OF_COLUMNS ));
-                }
-                CsvRecordValidator.validateUniqueId(csvRecord.get(INDEX_OF_UNIQUE_ID));
-                CsvRecordValidator.validateRegisteredCompanyName(csvRecord.get(INDEX_OF_COMPANY_NAME));
-                CsvRecordValidator.validateCompanyNumber(csvRecord.get(INDEX_OF_COMPANY_NUMBER));
-                CsvRecordValidator.validateTradingName(csvRecord.get(INDEX_OF_TRADING_NAME));
-                CsvRecordValidator.validateFirstName(csvRecord.get(INDEX_OF_FIRST_NAME));
-                CsvRecordValidator.validateLastName(csvRecord.get(INDEX_OF_LAST_NAME));
-                CsvRecordValidator.validateDateOfBirth(csvRecord.get(INDEX_OF_DATE_OF_BIRTH));
-                CsvRecordValidator.validatePropertyNameOrNo(csvRecord.get(INDEX_OF_PROPERTY_NAME_OR_NO));
-                CsvRecordValidator.validateAddressLine1(csvRecord.get(INDEX_OF_ADDRESSLINE1));
-                CsvRecordValidator.validateAddressLine2(csvRecord.get(INDEX_OF_ADDRESSLINE2));
-                CsvRecordValidator.validateCityOrTown(csvRecord.get(INDEX_OF_CITY_OR_TOWN));
-                CsvRecordValidator.validatePostcode(csvRecord.get(INDEX_OF_POSTCODE));
-                CsvRecordValidator.validateCountry(csvRecord.get(INDEX_OF_COUNTRY));
-                currentRow++;
+            readHeaders(tokenizer, defaultSchema);
+            currentRow++;
+            if (!tokenizer.nextRecord()) {
+                throw new CSVDataValidationException("No records in file after headers");
             }
+            do {
+                validateRecord(tokenizer, defaultSchema);
+                currentRow++;
+            } while (tokenizer.nextRecord());
 
-        } catch (IllegalStateException ex) {
-            throw new CSVDataValidationException(String.format("Error parsing, could be corrupt CSV, on line %s,  %s", currentRow , ex.getMessage()));
         } catch (CSVDataValidationException ex) {
             throw new CSVDataValidationException(String.format("Data validation exception: %s on line %s", ex.getMessage(), currentRow));
         } catch (IOException e) {
@@ -81,31 +100,466 @@ public class CsvProcessor {
         }
     }
 
+    /**
+     * Validates the whole file held in memory against the default schema and collects its errors.
+     */
+    public ValidationErrors collectErrors(byte[] bytesToParse) {
+        return collectErrors(bytesToParse, defaultSchema);
+    }
+
+    /**
+     * Validates the whole file held in memory and collects its errors instead of stopping at the first one. Only the
+     * first {@code max-errors} are kept. Files of at least {@code parallel-threshold} bytes are validated in
+     * parallel chunks, collecting the same errors as validating them in one go would.
+     */
+    public ValidationErrors collectErrors(byte[] bytesToParse, ValidationSchema schema) {
+        return collectErrors(bytesToParse, schema, null);
+    }
+
+    /**
+     * Validates the whole file held in memory as {@link #collectErrors(byte[], ValidationSchema)} does, also checking
+     * each record with the right number of columns against the records submitted in earlier files.
+     *
+     * @param resubmission the check against earlier files, which is left holding the fingerprints of this file's
+     *                     records, or {@code null} for no check
+     */
+    public ValidationErrors collectErrors(byte[] bytesToParse, ValidationSchema schema, ResubmissionCheck resubmission) {
+        return collectErrors(bytesToParse, schema, resubmission, null);
+    }
+
+    /**
+     * Validates the whole file held in memory as {@link #collectErrors(byte[], ValidationSchema, ResubmissionCheck)}
+     * does, also checking the company number in the schema's registered column of each record against the register.
+     *
+     * @param register the snapshot of the company register, or {@code null} for no check
+     */
+    public ValidationErrors collectErrors(byte[] bytesToParse, ValidationSchema schema, ResubmissionCheck resubmission, CompanyRegister register) {
+        if (bytesToParse.length >= parallelThreshold && bytesToParse.length > chunkSize) {
+            var segments = findSegments(bytesToParse);
+            if (segments != null) {
+                return collectErrorsInParallel(bytesToParse, segments, schema, resubmission, register);
+            }
+        }
+        var uniqueValues = schema.uniqueColumn() == ValidationErrors.NO_COLUMN ? null : UniqueValues.inFile(bytesToParse, schema.uniqueColumn());
+        return collectErrors(new ByteArrayInputStream(bytesToParse), schema, uniqueValues, resubmission, register);
+    }
+
+    /**
+     * Validates the whole file against the default schema as it is read from the stream and collects its errors.
+     */
+    public ValidationErrors collectErrors(InputStream streamToParse) {
+        return collectErrors(streamToParse, defaultSchema);
+    }
+
+    /**
+     * Validates the whole file as it is read from the stream and collects its errors instead of stopping at the
+     * first one. The stream is closed once validation finishes.
+     */
+    public ValidationErrors collectErrors(InputStream streamToParse, ValidationSchema schema) {
+        return collectErrors(streamToParse, schema, null, null);
+    }
+
+    /**
+     * Validates the whole file as it is read from the stream as {@link #collectErrors(InputStream, ValidationSchema)}
+     * does, also checking each record against the records submitted in earlier files and the company number in the
+     * schema's registered column against the register. Used for compressed files, which are decompressed as they are
+     * read.
+     *
+     * @param resubmission the check against earlier files, which is left holding the fingerprints of this file's
+     *                     records, or {@code null} for no check
+     * @param register the snapshot of the company register, or {@code null} for no check
+     */
+    public ValidationErrors collectErrors(InputStream streamToParse, ValidationSchema schema, ResubmissionCheck resubmission, CompanyRegister register) {
+        var uniqueValues = schema.uniqueColumn() == ValidationErrors.NO_COLUMN ? null : UniqueValues.copyingValues(schema.uniqueColumn());
+        return collectErrors(streamToParse, schema, uniqueValues, resubmission, register);
+    }
 
-    private void isValidFieldHeaders(CSVRecord headers) {
-        List<String>  actualHeaders = headers.stream()
+    /**
+     * Where each row with an error is in the file: the line it starts on, which differs from the row once a quoted
+     * field has spanned lines, and, if {@code withRanges}, the value of an HTTP Range header that fetches just that
+     * row, such as {@code bytes=1024-1187}. Ranges are only asked for when the stream is the file as it is stored,
+     * not the csv decompressed from it. The file is read up to the last row with an error. The range of a row that is
+     * not valid csv runs to the end of the file, since where it ends cannot be told. Rows past the end of the file,
+     * such as the missing first record of an empty file, are not found. The stream is closed once the rows are found.
+     *
+     * @return the locations by row
+     */
+    public Map<Integer, ValidationErrors.RowLocation> rowLocations(InputStream streamToParse, ValidationErrors errors, boolean withRanges) {
+        var rows = new TreeSet<Integer>();
+        for (int i = 0; i < errors.size(); i++) {
+            rows.add(errors.row(i));
+        }
+        Map<Integer, ValidationErrors.RowLocation> locations = new HashMap<>();
+        if (rows.isEmpty()) {
+            return locations;
+        }
+        int currentRow = 1;
+        try (var lines = new LineCountingInputStream(streamToParse)) {
+            var tokenizer = new CsvTokenizer(lines);
+            try {
+                while (currentRow <= rows.last() && tokenizer.nextRecord()) {
+                    if (rows.contains(currentRow)) {
+                        var range = withRanges ? String.format("bytes=%s-%s", tokenizer.recordOffset(), tokenizer.recordOffset() + tokenizer.recordLength() - 1) : null;
+                        locations.put(currentRow, new ValidationErrors.RowLocation(lines.lineAt(tokenizer.recordOffset()), range));
+                    }
+                    currentRow++;
+                }
+            } catch (CSVDataValidationException ex) {
+                var range = withRanges ? String.format("bytes=%s-", tokenizer.recordOffset()) : null;
+                locations.put(currentRow, new ValidationErrors.RowLocation(lines.lineAt(tokenizer.recordOffset()), range));
+            }
+        } catch (IOException e) {
+            throw new CSVDataValidationException(String.format("Data validation reading the file: %s", e.getMessage()));
+        }
+        return locations;
+    }
+
+    private ValidationErrors collectErrors(InputStream streamToParse, ValidationSchema schema, UniqueValues uniqueValues,
+                                           ResubmissionCheck resubmission, CompanyRegister register) {
+        var errors = new ValidationErrors(maxErrors, schema);
+        RecordCheck uniqueCheck = uniqueValues == null ? null : (tokenizer, row) -> uniqueValues.check(tokenizer, 0, row, errors);
+        var recordCheck = RecordCheck.both(RecordCheck.both(resubmissionCheck(schema, resubmission, errors), registerCheck(schema, register, errors)), uniqueCheck);
+        try (streamToParse) {
+            var records = collectSegmentErrors(new CsvTokenizer(streamToParse), 1, schema, errors, recordCheck);
+            if (records == 0 && !errors.isStopped()) {
+                errors.stop(1, ValidationRule.NO_RECORDS, null);
+            } else if (records == 1 && !errors.isStopped()) {
+                errors.stop(2, ValidationRule.NO_RECORDS_AFTER_HEADERS, null);
+            }
+        } catch (IOException e) {
+            throw new CSVDataValidationException(String.format("Data validation reading the file: %s", e.getMessage()));
+        }
+        return errors;
+    }
+
+    private void parseRecordsInParallel(byte[] bytes) {
+        var segments = findSegments(bytes);
+        if (segments == null) {
+            parseRecords(new ByteArrayInputStream(bytes));
+            return;
+        }
+        List<ForkJoinTask<String>> results = new ArrayList<>(segments.size());
+        for (var segment : segments) {
+            results.add(parserPool.submit(() -> validateSegment(bytes, segment)));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            var error = results.get(i).join();
+            if (error != null) {
+                results.subList(i + 1, results.size()).forEach(later -> later.cancel(false));
+                throw new CSVDataValidationException(error);
+            }
+        }
+    }
+
+    /**
+     * Validates the segments in parallel. Whether a unique value repeats depends on every record before it, so each
+     * segment only records its unique values, which are then checked in row order as the segments' errors are
+     * combined. A repeat is reported after the other errors on its row, as it is when validating in one go. Each
+     * segment checks its records against earlier files and the company register on its own.
+     */
+    private ValidationErrors collectErrorsInParallel(byte[] bytes, List<Segment> segments, ValidationSchema schema,
+                                                     ResubmissionCheck resubmission, CompanyRegister register) {
+        var column = schema.uniqueColumn();
+        List<ForkJoinTask<SegmentResult>> results = new ArrayList<>(segments.size());
+        for (var segment : segments) {
+            results.add(parserPool.submit(() -> {
+                var segmentErrors = new ValidationErrors(maxErrors, schema);
+                var keys = column == ValidationErrors.NO_COLUMN ? null : new UniqueValues.Keys(column);
+                var segmentResubmission = resubmission == null ? null : resubmission.forPart();
+                RecordCheck uniqueCheck = keys == null ? null : (tokenizer, row) -> keys.record(tokenizer, segment.from(), row);
+                var recordCheck = RecordCheck.both(RecordCheck.both(resubmissionCheck(schema, segmentResubmission, segmentErrors),
+                        registerCheck(schema, register, segmentErrors)), uniqueCheck);
+                collectSegmentErrors(segment.tokenizer(bytes), segment.firstRow(), schema, segmentErrors, recordCheck);
+                return new SegmentResult(segmentErrors, keys, segmentResubmission);
+            }));
+        }
+        var uniqueValues = column == ValidationErrors.NO_COLUMN ? null : UniqueValues.inFile(bytes, column);
+        var errors = new ValidationErrors(maxErrors, schema);
+        for (int i = 0; i < results.size(); i++) {
+            var result = results.get(i).join();
+            if (resubmission != null) {
+                resubmission.addAll(result.resubmission());
+            }
+            if (uniqueValues == null) {
+                errors.addAll(result.errors());
+            } else {
+                var duplicates = new ValidationErrors(maxErrors, schema);
+                result.keys().addTo(uniqueValues, duplicates);
+                errors.addAll(result.errors().mergedWith(duplicates));
+            }
+            if (errors.isStopped()) {
+                results.subList(i + 1, results.size()).forEach(later -> later.cancel(false));
+                break;
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * The errors found in a segment, the unique values it recorded if the schema has a unique column, and its part of
+     * the check against earlier files if there is one.
+     */
+    private record SegmentResult(ValidationErrors errors, UniqueValues.Keys keys, ResubmissionCheck resubmission) {
+    }
+
+    /**
+     * A check on each record with the right number of columns that looks beyond the record's own fields.
+     */
+    @FunctionalInterface
+    private interface RecordCheck {
+        void check(CsvTokenizer tokenizer, int row);
+
+        /**
+         * Both checks, either of which may be {@code null} for none.
+         */
+        static RecordCheck both(RecordCheck first, RecordCheck second) {
+            if (first == null || second == null) {
+                return first == null ? second : first;
+            }
+            return (tokenizer, row) -> {
+                first.check(tokenizer, row);
+                second.check(tokenizer, row);
+            };
+        }
+    }
+
+    /**
+     * Reports each record whose unique value, or whole record, was submitted in an earlier file. Records with an
+     * empty unique value are not checked.
+     */
+    private static RecordCheck resubmissionCheck(ValidationSchema schema, ResubmissionCheck resubmission, ValidationErrors errors) {
+        if (resubmission == null) {
+            return null;
+        }
+        var column = resubmission.key() == ResubmissionCheck.Key.UNIQUE_ID ? schema.uniqueColumn() : ValidationErrors.NO_COLUMN;
+        if (column == ValidationErrors.NO_COLUMN) {
+            return (tokenizer, row) -> {
+                if (resubmission.check(Fingerprints.ofRecord(tokenizer))) {
+                    errors.add(row, ValidationErrors.NO_COLUMN, ValidationRule.RESUBMITTED);
+                }
+            };
+        }
+        return (tokenizer, row) -> {
+            var start = tokenizer.fieldStart(column);
+            var end = tokenizer.fieldEnd(column);
+            if (start != end && resubmission.check(Fingerprints.of(tokenizer.buffer(), start, end))) {
+                errors.add(row, column, ValidationRule.RESUBMITTED);
+            }
+        };
+    }
+
+    /**
+     * Reports each record whose value in the schema's registered column is not on the company register. Empty values
+     * and values that already break the column's own check are not looked up.
+     */
+    private static RecordCheck registerCheck(ValidationSchema schema, CompanyRegister register, ValidationErrors errors) {
+        var column = schema.registeredColumn();
+        if (register == null || column == ValidationErrors.NO_COLUMN) {
+            return null;
+        }
+        return (tokenizer, row) -> {
+            var buffer = tokenizer.buffer();
+            var start = tokenizer.fieldStart(column);
+            var end = tokenizer.fieldEnd(column);
+            if (start != end && schema.checkField(column, buffer, start, end) == ValidationSchema.VALID && !register.contains(buffer, start, end)) {
+                errors.add(row, column, ValidationRule.NOT_REGISTERED);
+            }
+        };
+    }
+
+    /**
+     * The records starting at {@code bytes[from]} and ending just before {@code bytes[to]}, the first of which is on
+     * line {@code firstRow}.
+     */
+    private record Segment(int from, int to, int firstRow) {
+
+        CsvTokenizer tokenizer(byte[] bytes) {
+            return new CsvTokenizer(new ByteArrayInputStream(bytes, from, to - from), false);
+        }
+    }
+
+    /**
+     * Splits the file into chunks of {@code chunk-size} bytes and finds, for each chunk, where its first record
+     * starts and how many records start in it. Quoted fields may contain line breaks, so that depends on the state
+     * the parser is in where the chunk starts; each chunk is scanned for every possible state in parallel and the
+     * true states are then chained through from the start of the file. The records starting in each chunk can then
+     * be validated in parallel, each with the exact line number of its first record.
+     *
+     * @return the records starting in each chunk that has any, or {@code null} if there are not at least a header
+     * and one record, which is left to sequential validation to report
+     */
+    private List<Segment> findSegments(byte[] bytes) {
+        var bodyStart = startsWithByteOrderMark(bytes) ? 3 : 0;
+        var chunks = (bytes.length - bodyStart + chunkSize - 1) / chunkSize;
+
+        List<ForkJoinTask<CsvChunkScanner.Summary>> scans = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            var from = bodyStart + chunk * chunkSize;
+            var to = Math.min(from + chunkSize, bytes.length);
+            scans.add(parserPool.submit(() -> CsvChunkScanner.scan(bytes, from, to)));
+        }
+
+        var segmentStarts = new ArrayList<Integer>(chunks);
+        var segmentFirstRows = new ArrayList<Integer>(chunks);
+        var state = CsvChunkScanner.RECORD_START;
+        var records = 0;
+        for (var scan : scans) {
+            var summary = scan.join();
+            if (summary.recordStarts(state) > 0) {
+                segmentStarts.add(summary.firstRecordStart(state));
+                segmentFirstRows.add(records + 1);
+                records += summary.recordStarts(state);
+            }
+            state = summary.endState(state);
+        }
+        if (records < 2) {
+            return null;
+        }
+
+        List<Segment> segments = new ArrayList<>(segmentStarts.size());
+        for (int segment = 0; segment < segmentStarts.size(); segment++) {
+            var to = segment + 1 < segmentStarts.size() ? segmentStarts.get(segment + 1) : bytes.length;
+            segments.add(new Segment(segmentStarts.get(segment), to, segmentFirstRows.get(segment)));
+        }
+        return segments;
+    }
+
+    /**
+     * Validates the records in the segment.
+     *
+     * @return the error for the first invalid record, or {@code null} if they are all valid
+     */
+    private String validateSegment(byte[] bytes, Segment segment) {
+        int currentRow = segment.firstRow();
+        var tokenizer = segment.tokenizer(bytes);
+        try {
+            while (tokenizer.nextRecord()) {
+                if (currentRow == 1) {
+                    isValidFieldHeaders(tokenizer, defaultSchema);
+                } else {
+                    validateRecord(tokenizer, defaultSchema);
+                }
+                currentRow++;
+            }
+            return null;
+        } catch (CSVDataValidationException ex) {
+            return String.format("Data validation exception: %s on line %s", ex.getMessage(), currentRow);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Collects the errors in the records read by the tokenizer, the first of which is on line {@code firstRow}.
+     * Validation stops at wrong headers or at a record that is not valid csv, since nothing after it can be read
+     * reliably.
+     *
+     * @param recordCheck run on each record with the right number of columns after its fields are checked, or
+     *                    {@code null} for none
+     * @return the number of records read
+     */
+    private int collectSegmentErrors(CsvTokenizer tokenizer, int firstRow, ValidationSchema schema, ValidationErrors errors,
+                                     RecordCheck recordCheck) throws IOException {
+        int currentRow = firstRow;
+        try {
+            while (tokenizer.nextRecord()) {
+                if (currentRow == 1) {
+                    var missingHeaders = missingHeaders(tokenizer, schema);
+                    if (!missingHeaders.isEmpty()) {
+                        errors.stop(currentRow, ValidationRule.MISSING_HEADERS, missingHeadersMessage(missingHeaders));
+                        return 1;
+                    }
+                } else {
+                    collectRecordErrors(tokenizer, currentRow, schema, errors, recordCheck);
+                }
+                currentRow++;
+            }
+        } catch (CSVDataValidationException ex) {
+            errors.stop(currentRow, ValidationRule.MALFORMED_RECORD, ex.getMessage());
+        }
+        return currentRow - firstRow;
+    }
+
+    private void collectRecordErrors(CsvTokenizer tokenizer, int row, ValidationSchema schema, ValidationErrors errors, RecordCheck recordCheck) {
+        var columns = schema.columnCount();
+        if (columns != tokenizer.fieldCount()) {
+            errors.add(row, ValidationErrors.NO_COLUMN, ValidationRule.COLUMN_COUNT);
+            return;
+        }
+        var buffer = tokenizer.buffer();
+        var ukAddress = isUkAddress(tokenizer, schema);
+        for (int column = 0; column < columns; column++) {
+            var result = schema.checkField(column, buffer, tokenizer.fieldStart(column), tokenizer.fieldEnd(column), ukAddress);
+            if (result != ValidationSchema.VALID) {
+                errors.add(row, column, ValidationRule.of(result));
+            }
+        }
+        if (recordCheck != null) {
+            recordCheck.check(tokenizer, row);
+        }
+    }
+
+    private void validateRecord(CsvTokenizer tokenizer, ValidationSchema schema) {
+        var columns = schema.columnCount();
+        if (columns != tokenizer.fieldCount()) {
+            throw new CSVDataValidationException(String.format("Incorrect number of columns. Received: %s Expected: %s", tokenizer.fieldCount(), columns ));
+        }
+        var buffer = tokenizer.buffer();
+        var ukAddress = isUkAddress(tokenizer, schema);
+        for (int column = 0; column < columns; column++) {
+            var result = schema.checkField(column, buffer, tokenizer.fieldStart(column), tokenizer.fieldEnd(column), ukAddress);
+            if (result != ValidationSchema.VALID) {
+                throw new CSVDataValidationException(schema.message(ValidationRule.of(result), column));
+            }
+        }
+    }
+
+    /**
+     * Whether the record's postcodes are UK postcodes, which they are unless its country says otherwise.
+     */
+    private static boolean isUkAddress(CsvTokenizer tokenizer, ValidationSchema schema) {
+        var column = schema.countryColumn();
+        return column == ValidationErrors.NO_COLUMN
+                || schema.isUkAddress(tokenizer.buffer(), tokenizer.fieldStart(column), tokenizer.fieldEnd(column));
+    }
+
+    private static boolean startsWithByteOrderMark(byte[] bytes) {
+        return bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF;
+    }
+
+    private void isValidFieldHeaders(CsvTokenizer tokenizer, ValidationSchema schema) {
+        List<String> mismatchedHeaders = missingHeaders(tokenizer, schema);
+        if (!mismatchedHeaders.isEmpty()) {
+            throw new CSVDataValidationException(missingHeadersMessage(mismatchedHeaders));
+        }
+    }
+
+    private List<String> missingHeaders(CsvTokenizer tokenizer, ValidationSchema schema) {
+        List<String>  actualHeaders = IntStream.range(0, tokenizer.fieldCount())
+                .mapToObj(tokenizer::field)
                 .map(header -> {
                     String withoutQuotes = header.replace("\"", "");
                     String trimmed = withoutQuotes.strip();
                     return trimmed.toLowerCase(Locale.ENGLISH);
                 })
                 .toList();
-        List<String> mismatchedHeaders = VALID_HEADERS.stream()
-                .filter(element -> !actualHeaders.contains(element)).toList();
+        List<String> mismatchedHeaders = schema.headers().stream()
+                .filter(element -> !actualHeaders.contains(element.toLowerCase(Locale.ENGLISH))).toList();
         if (!mismatchedHeaders.isEmpty()) {
             LOGGER.error(String.format("Incorrect headers provided: %s", actualHeaders));
-            throw new CSVDataValidationException(String.format("Headers did not match expected headers, following headers are missing: %s", mismatchedHeaders));
         }
+        return mismatchedHeaders;
+    }
+
+    private static String missingHeadersMessage(List<String> mismatchedHeaders) {
+        return String.format("Headers did not match expected headers, following headers are missing: %s", mismatchedHeaders);
     }
 
 
-    private void isDataAfterHeaders (Iterator<CSVRecord> iterator) {
-        if (!iterator.hasNext()) {
+    private void readHeaders(CsvTokenizer tokenizer, ValidationSchema schema) throws IOException {
+        if (!tokenizer.nextRecord()) {
             throw new CSVDataValidationException("No records in file, not even headers");
         }
-        isValidFieldHeaders(iterator.next());
-        if (!iterator.hasNext()) {
-            throw new CSVDataValidationException("No records in file after headers");
-        }
+        isValidFieldHeaders(tokenizer, schema);
     }
 }
@@ -0,0 +1,376 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
+
+import uk.gov.companieshouse.filevalidationservice.validation.CsvRecordValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a UTF-8 csv stream into records the same way {@code CSVFormat.DEFAULT} does: comma separated, fields
+ * optionally enclosed in double quotes with {@code ""} standing for a quote, quoted fields may span lines, records
+ * end at CR, LF or CRLF, blank lines are skipped and whitespace between a closing quote and the next delimiter is
+ * ignored. A leading UTF-8 byte order mark is dropped.
+ * <p>
+ * The current record is kept in a reusable byte buffer and each field is exposed as a range of that buffer, with
+ * quoted fields unescaped in place, so reading a record allocates nothing. The ranges are only valid until the next
+ * call to {@link #nextRecord()}.
+ * <p>
+ * When the Vector API is available the buffer is given a {@link StructuralIndex} as it is filled, and fields are
+ * crossed by jumping to the next delimiter or quote in the index instead of reading them a byte at a time.
+ */
+public class CsvTokenizer {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * No valid record comes anywhere near this size, so a longer record is reported as corrupt rather than growing
+     * the buffer without limit, as an unterminated quote would otherwise do.
+     */
+    static final int MAX_RECORD_BYTES = 1024 * 1024;
+
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final int EOF = -1;
+
+    private final InputStream input;
+    private final boolean skipByteOrderMark;
+    private final StructuralIndex index;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private boolean started;
+    private long discarded;
+
+    private int recordStart;
+    private int fieldCount;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+
+    public CsvTokenizer(InputStream input) {
+        this(input, DEFAULT_BUFFER_SIZE, true);
+    }
+
+    /**
+     * For input that starts part way through a file, where a byte order mark would be part of the first field.
+     */
+    CsvTokenizer(InputStream input, boolean skipByteOrderMark) {
+        this(input, DEFAULT_BUFFER_SIZE, skipByteOrderMark);
+    }
+
+    CsvTokenizer(InputStream input, int bufferSize) {
+        this(input, bufferSize, true);
+    }
+
+    CsvTokenizer(InputStream input, int bufferSize, boolean skipByteOrderMark) {
+        this(input, bufferSize, skipByteOrderMark, StructuralIndex.preferred());
+    }
+
+    /**
+     * @param index the index to find delimiters and quotes with, or {@code null} to read a byte at a time
+     */
+    CsvTokenizer(InputStream input, int bufferSize, boolean skipByteOrderMark, StructuralIndex index) {
+        this.input = input;
+        this.buffer = new byte[bufferSize];
+        this.skipByteOrderMark = skipByteOrderMark;
+        this.index = index;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return {@code false} once there are no more records
+     * @throws CSVDataValidationException if the record is not valid csv
+     */
+    public boolean nextRecord() throws IOException {
+        if (!started) {
+            started = true;
+            if (skipByteOrderMark) {
+                skipByteOrderMark();
+            }
+        }
+        fieldCount = 0;
+        int c;
+        do {
+            recordStart = position;
+            c = read();
+        } while (c == CR || c == LF);
+        if (c == EOF) {
+            return false;
+        }
+        while (true) {
+            int start = position - 1 - recordStart;
+            if (c == QUOTE) {
+                c = readQuotedField(start + 1);
+            } else {
+                if (c != COMMA && c != CR && c != LF && c != EOF) {
+                    c = index == null ? readToDelimiter() : skipToDelimiter();
+                }
+                addField(start, c == EOF ? position - recordStart : position - 1 - recordStart);
+            }
+            if (c == COMMA) {
+                c = read();
+                if (c == CR || c == LF || c == EOF) {
+                    addField(position - recordStart, position - recordStart);
+                    break;
+                }
+            } else {
+                break;
+            }
+        }
+        if (c == CR && peek() == LF) {
+            position++;
+        }
+        return true;
+    }
+
+    /**
+     * Where the current record starts, as a number of bytes from the start of the input.
+     */
+    public long recordOffset() {
+        return discarded + recordStart;
+    }
+
+    /**
+     * The number of bytes the current record takes up in the input, including the line break that ends it.
+     */
+    public int recordLength() {
+        return position - recordStart;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * The buffer holding the current record. Field {@code index} occupies
+     * {@code [fieldStart(index), fieldEnd(index))}.
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int fieldStart(int index) {
+        return recordStart + fieldStarts[index];
+    }
+
+    public int fieldEnd(int index) {
+        return recordStart + fieldEnds[index];
+    }
+
+    /**
+     * The length of the field in UTF-16 code units, which is what {@link String#length()} would return for it.
+     */
+    public int fieldLength(int index) {
+        return CsvRecordValidator.utf16Length(buffer, fieldStart(index), fieldEnd(index));
+    }
+
+    /**
+     * Decodes the field to a string. Only for the few fields that need one, such as the headers.
+     */
+    public String field(int index) {
+        return new String(buffer, fieldStart(index), fieldEnd(index) - fieldStart(index), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a quoted field whose content starts at {@code contentStart}, unescaping it in place, and returns the
+     * character that ends it: a comma, CR, LF or end of input.
+     */
+    private int readQuotedField(int contentStart) throws IOException {
+        var write = index == null ? readQuotedContent(contentStart) : skipQuotedContent(contentStart);
+        addField(contentStart, write);
+        while (true) {
+            var c = read();
+            if (c == COMMA || c == CR || c == LF || c == EOF) {
+                return c;
+            }
+            if (!isWhitespace(c)) {
+                throw new CSVDataValidationException("Invalid character between quoted field and delimiter");
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of an unquoted field a byte at a time and returns the character that ends it.
+     */
+    private int readToDelimiter() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != COMMA && c != CR && c != LF && c != EOF);
+        return c;
+    }
+
+    /**
+     * Jumps over the rest of an unquoted field to the next delimiter in the index and returns it, or end of input.
+     */
+    private int skipToDelimiter() throws IOException {
+        while (true) {
+            position = index.nextDelimiter(position);
+            if (position < limit) {
+                return buffer[position++] & 0xFF;
+            }
+            if (!fill()) {
+                return EOF;
+            }
+        }
+    }
+
+    /**
+     * Reads the content of a quoted field up to its closing quote a byte at a time, unescaping it in place.
+     *
+     * @return where the unescaped content ends, relative to the start of the record
+     */
+    private int readQuotedContent(int contentStart) throws IOException {
+        var write = contentStart;
+        while (true) {
+            var c = read();
+            if (c == EOF) {
+                throw new CSVDataValidationException("End of file reached before quoted field finished");
+            }
+            if (c == QUOTE) {
+                if (peek() != QUOTE) {
+                    break;
+                }
+                position++;
+            }
+            buffer[recordStart + write++] = (byte) c;
+        }
+        return write;
+    }
+
+    /**
+     * Jumps from quote to quote in the index through the content of a quoted field up to its closing quote,
+     * unescaping it in place. Content is only moved once an escaped quote has been seen.
+     *
+     * @return where the unescaped content ends, relative to the start of the record
+     */
+    private int skipQuotedContent(int contentStart) throws IOException {
+        var write = contentStart;
+        while (true) {
+            var quote = index.nextQuote(position);
+            var length = quote - position;
+            if (recordStart + write != position) {
+                System.arraycopy(buffer, position, buffer, recordStart + write, length);
+            }
+            write += length;
+            position = quote;
+            if (position == limit) {
+                if (!fill()) {
+                    throw new CSVDataValidationException("End of file reached before quoted field finished");
+                }
+                continue;
+            }
+            position++;
+            if (peek() != QUOTE) {
+                return write;
+            }
+            position++;
+            buffer[recordStart + write++] = QUOTE;
+        }
+    }
+
+    /**
+     * Whether the character starting with byte {@code c} is whitespace according to
+     * {@link Character#isWhitespace(int)}, decoding it first if it is not ASCII.
+     */
+    private boolean isWhitespace(int c) throws IOException {
+        if (c < 0x80) {
+            return Character.isWhitespace(c);
+        }
+        int remaining;
+        int codePoint;
+        if ((c & 0xE0) == 0xC0) {
+            remaining = 1;
+            codePoint = c & 0x1F;
+        } else if ((c & 0xF0) == 0xE0) {
+            remaining = 2;
+            codePoint = c & 0x0F;
+        } else {
+            return false;
+        }
+        for (; remaining > 0; remaining--) {
+            var next = peek();
+            if (next == EOF || (next & 0xC0) != 0x80) {
+                return false;
+            }
+            position++;
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        return Character.isWhitespace(codePoint);
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private void skipByteOrderMark() throws IOException {
+        while (limit < 3 && fill()) {
+            // keep reading until the first three bytes are in
+        }
+        if (limit >= 3 && (buffer[0] & 0xFF) == 0xEF && (buffer[1] & 0xFF) == 0xBB && (buffer[2] & 0xFF) == 0xBF) {
+            position = 3;
+        }
+    }
+
+    /**
+     * Reads more input after what is already buffered. The current record is first moved to the front of the buffer,
+     * and the buffer grows when the record fills it, so the record always stays in one piece.
+     *
+     * @return {@code false} at the end of the input
+     */
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        if (recordStart > 0) {
+            System.arraycopy(buffer, recordStart, buffer, 0, limit - recordStart);
+            discarded += recordStart;
+            position -= recordStart;
+            limit -= recordStart;
+            recordStart = 0;
+        }
+        if (limit == buffer.length) {
+            if (buffer.length >= MAX_RECORD_BYTES) {
+                throw new CSVDataValidationException(String.format("Record is longer than %s bytes", MAX_RECORD_BYTES));
+            }
+            buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, MAX_RECORD_BYTES));
+        }
+        var read = input.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        limit += read;
+        if (index != null) {
+            index.index(buffer, position, limit);
+        }
+        return true;
+    }
+}
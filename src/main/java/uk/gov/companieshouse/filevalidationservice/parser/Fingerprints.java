@@ -0,0 +1,57 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * 64-bit fingerprints of values and records, used to recognise the same value or record again without keeping it.
+ * Two different values share a fingerprint with a chance of about one in 2<sup>64</sup>.
+ */
+final class Fingerprints {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private Fingerprints() {
+    }
+
+    /**
+     * The fingerprint of {@code bytes[start, end)}, mixing in eight bytes at a time.
+     */
+    static long of(byte[] bytes, int start, int end) {
+        return of(SEED, bytes, start, end);
+    }
+
+    /**
+     * The fingerprint of every field of the tokenizer's current record, in order. A field's length is part of its
+     * fingerprint, so moving a character from one field to the next changes the fingerprint.
+     */
+    static long ofRecord(CsvTokenizer tokenizer) {
+        var hash = tokenizer.fieldCount() * SEED;
+        var buffer = tokenizer.buffer();
+        for (int field = 0; field < tokenizer.fieldCount(); field++) {
+            hash = of(hash, buffer, tokenizer.fieldStart(field), tokenizer.fieldEnd(field));
+        }
+        return hash;
+    }
+
+    private static long of(long seed, byte[] bytes, int start, int end) {
+        var hash = seed ^ (end - start) * SEED;
+        var i = start;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            hash = mix(hash ^ (long) LONGS.get(bytes, i));
+        }
+        var tail = 0L;
+        for (int shift = 0; i < end; i++, shift += Byte.SIZE) {
+            tail |= (bytes[i] & 0xFFL) << shift;
+        }
+        return mix(hash ^ tail);
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
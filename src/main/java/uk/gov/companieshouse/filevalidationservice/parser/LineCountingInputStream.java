@@ -0,0 +1,86 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Counts the line breaks in the bytes read through it, so the line a record starts on can be told from the record's
+ * offset even though the tokenizer reads ahead of the record. CR, LF and CRLF each end a line, as they end a record.
+ * <p>
+ * Only the breaks at or after the last offset asked about are kept, which are the ones in the bytes read ahead, so
+ * a file of any length is counted in memory the size of the tokenizer's buffer.
+ */
+final class LineCountingInputStream extends FilterInputStream {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private long[] breaks = new long[64];
+    private int head;
+    private int tail;
+    private long passed;
+    private long offset;
+    private boolean afterCr;
+
+    LineCountingInputStream(InputStream input) {
+        super(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+        var b = in.read();
+        if (b != -1) {
+            count((byte) b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+        var read = in.read(bytes, off, len);
+        for (int i = 0; i < read; i++) {
+            count(bytes[off + i]);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would go uncounted, so they are read instead.
+        if (n <= 0) {
+            return 0;
+        }
+        return Math.max(read(new byte[(int) Math.min(n, 8192)]), 0);
+    }
+
+    /**
+     * The line, counting from 1, that the byte at {@code at} is on. The byte must have been read, and {@code at} must
+     * not be before an offset already asked about.
+     */
+    long lineAt(long at) {
+        while (head < tail && breaks[head] < at) {
+            head++;
+            passed++;
+        }
+        return passed + 1;
+    }
+
+    private void count(byte b) {
+        if ((b == CR || b == LF) && !(b == LF && afterCr)) {
+            if (tail == breaks.length) {
+                if (head > 0) {
+                    System.arraycopy(breaks, head, breaks, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                } else {
+                    breaks = Arrays.copyOf(breaks, breaks.length * 2);
+                }
+            }
+            breaks[tail++] = offset;
+        }
+        afterCr = b == CR;
+        offset++;
+    }
+}
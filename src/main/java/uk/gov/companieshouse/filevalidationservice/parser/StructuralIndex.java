@@ -0,0 +1,142 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import java.util.Arrays;
+
+/**
+ * Where the delimiters ({@code ,}, CR and LF) and the quotes are in a {@link CsvTokenizer}'s buffer, as one bit per
+ * byte, so the tokenizer can jump from the start of a field straight to the byte that ends it rather than looking at
+ * every byte in between.
+ * <p>
+ * The bits are set by a {@link Kernel}. {@link #preferred()} uses {@link VectorKernel}, which classifies a whole
+ * vector of bytes at a time with the incubating Vector API, when it was built, with the {@code vector-api} profile,
+ * and the JVM is started with {@code --add-modules jdk.incubator.vector} on hardware with vector registers. Otherwise
+ * there is no index and the tokenizer looks at one byte at a time as before. {@link #scalar()} builds the same index a
+ * byte at a time, and is what the vector kernel is tested against.
+ */
+final class StructuralIndex {
+
+    /**
+     * Sets the bits for the bytes in {@code bytes[from, to)}, where {@code from} is a multiple of 64. Bit {@code i % 64}
+     * of word {@code i / 64} is for byte {@code i}. Every word from {@code from / 64} is written whole, with no bits
+     * set for bytes at or after {@code to}.
+     */
+    interface Kernel {
+        void index(byte[] bytes, int from, int to, long[] delimiters, long[] quotes);
+    }
+
+    static final Kernel SCALAR = StructuralIndex::indexScalar;
+
+    private static final Kernel VECTOR = loadVectorKernel();
+
+    private final Kernel kernel;
+    private long[] delimiters = new long[0];
+    private long[] quotes = new long[0];
+    private int indexedTo;
+
+    StructuralIndex(Kernel kernel) {
+        this.kernel = kernel;
+    }
+
+    /**
+     * An index built with the Vector API, or {@code null} if the Vector API is not available.
+     */
+    static StructuralIndex preferred() {
+        return VECTOR == null ? null : new StructuralIndex(VECTOR);
+    }
+
+    /**
+     * An index built a byte at a time, giving exactly the same bits as the vector kernel.
+     */
+    static StructuralIndex scalar() {
+        return new StructuralIndex(SCALAR);
+    }
+
+    /**
+     * The Vector API kernel, or {@code null} if it is not available.
+     */
+    static Kernel vectorKernel() {
+        return VECTOR;
+    }
+
+    /**
+     * Indexes {@code bytes[from, to)}. Only positions from {@code from} on can be looked up until it is indexed
+     * again.
+     */
+    void index(byte[] bytes, int from, int to) {
+        var words = (bytes.length + Long.SIZE - 1) / Long.SIZE;
+        if (delimiters.length < words) {
+            delimiters = Arrays.copyOf(delimiters, words);
+            quotes = Arrays.copyOf(quotes, words);
+        }
+        kernel.index(bytes, from & -Long.SIZE, to, delimiters, quotes);
+        indexedTo = to;
+    }
+
+    /**
+     * The position of the first delimiter at or after {@code from}, or the end of the index if there is none.
+     */
+    int nextDelimiter(int from) {
+        return next(delimiters, from);
+    }
+
+    /**
+     * The position of the first quote at or after {@code from}, or the end of the index if there is none.
+     */
+    int nextQuote(int from) {
+        return next(quotes, from);
+    }
+
+    private int next(long[] bits, int from) {
+        if (from >= indexedTo) {
+            return indexedTo;
+        }
+        var word = from >>> 6;
+        var lastWord = (indexedTo - 1) >>> 6;
+        var remaining = bits[word] & (-1L << from);
+        while (remaining == 0) {
+            if (word == lastWord) {
+                return indexedTo;
+            }
+            remaining = bits[++word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(remaining);
+    }
+
+    private static void indexScalar(byte[] bytes, int from, int to, long[] delimiters, long[] quotes) {
+        for (int word = from >>> 6; word << 6 < to; word++) {
+            var delimiterBits = 0L;
+            var quoteBits = 0L;
+            var end = Math.min((word << 6) + Long.SIZE, to);
+            for (int i = word << 6; i < end; i++) {
+                var b = bytes[i];
+                if (b == ',' || b == '\r' || b == '\n') {
+                    delimiterBits |= 1L << i;
+                } else if (b == '"') {
+                    quoteBits |= 1L << i;
+                }
+            }
+            delimiters[word] = delimiterBits;
+            quotes[word] = quoteBits;
+        }
+    }
+
+    /**
+     * Loads {@link VectorKernel} by name, and only if the module it needs is there. Naming the class in code would have
+     * it loaded with this one, which fails without the module, and it is not in a build made without the
+     * {@code vector-api} profile.
+     */
+    private static Kernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            var kernel = Class.forName(StructuralIndex.class.getPackageName() + ".VectorKernel").asSubclass(Kernel.class);
+            if (!(boolean) kernel.getDeclaredMethod("isSupported").invoke(null)) {
+                return null;
+            }
+            return kernel.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
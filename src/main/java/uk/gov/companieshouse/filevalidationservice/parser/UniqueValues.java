@@ -0,0 +1,258 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationErrors;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The values seen so far in the unique column of a file, to find values that appear more than once. Values are
+ * compared byte for byte as they are after unquoting, and empty values are not checked.
+ * <p>
+ * Rather than a set of strings, each value is held as a 64-bit {@link Fingerprints fingerprint} in an open addressing
+ * table of primitive arrays, alongside the row it first appeared on and a reference to where the value itself can be
+ * found. Fingerprints only ever decide that two values differ; when two match, the values are compared to confirm the
+ * repeat. For a file held in memory the reference is the offset of the record in the file, which is read again only on
+ * a match. For a file that is only streamed, the value is copied into a shared byte array, as nothing else would hold
+ * it.
+ * <p>
+ * A slot takes 16 bytes and the table doubles when three quarters full, so it takes between 21 and 43 bytes per
+ * distinct value, and 64 while it doubles. Streamed files take the length of each value plus 4 bytes on top.
+ */
+final class UniqueValues {
+
+    /**
+     * Returned by {@link #add} when the value has not been seen before.
+     */
+    static final int FIRST_OCCURRENCE = 0;
+
+    private static final VarHandle LENGTHS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int RECORD_BUFFER_SIZE = 512;
+    private static final int MAX_COPIES_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final byte[] file;
+    private final int column;
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    private int[] rows = new int[INITIAL_CAPACITY];
+    private int[] references = new int[INITIAL_CAPACITY];
+    private int size;
+    private byte[] copies;
+    private int copiesLength;
+
+    private UniqueValues(byte[] file, int column) {
+        this.file = file;
+        this.column = column;
+    }
+
+    /**
+     * For the unique column of a file held in memory, which is read again to compare values whose fingerprints match.
+     */
+    static UniqueValues inFile(byte[] file, int column) {
+        return new UniqueValues(file, column);
+    }
+
+    /**
+     * For the unique column of a file that is only streamed, keeping a copy of each value.
+     */
+    static UniqueValues copyingValues(int column) {
+        var values = new UniqueValues(null, column);
+        values.copies = new byte[INITIAL_CAPACITY * 16];
+        return values;
+    }
+
+    /**
+     * Checks the unique column of the tokenizer's current record, on {@code row}, reporting it if it repeats an
+     * earlier value.
+     *
+     * @param offset where the tokenizer's input starts in the file
+     */
+    void check(CsvTokenizer tokenizer, int offset, int row, ValidationErrors errors) {
+        var start = tokenizer.fieldStart(column);
+        var end = tokenizer.fieldEnd(column);
+        if (start == end) {
+            return;
+        }
+        var fingerprint = Fingerprints.of(tokenizer.buffer(), start, end);
+        int firstRow;
+        if (file != null) {
+            firstRow = add(fingerprint, row, Math.toIntExact(offset + tokenizer.recordOffset()));
+        } else {
+            firstRow = add(fingerprint, row, tokenizer.buffer(), start, end);
+        }
+        if (firstRow != FIRST_OCCURRENCE) {
+            errors.addDuplicate(row, column, firstRow);
+        }
+    }
+
+    /**
+     * Adds the value of the record at {@code recordOffset} in the file.
+     *
+     * @return the row the value first appeared on, or {@link #FIRST_OCCURRENCE}
+     */
+    int add(long fingerprint, int row, int recordOffset) {
+        var mask = fingerprints.length - 1;
+        for (int slot = (int) fingerprint & mask; rows[slot] != 0; slot = (slot + 1) & mask) {
+            if (fingerprints[slot] == fingerprint && sameValueInFile(references[slot], recordOffset)) {
+                return rows[slot];
+            }
+        }
+        insert(fingerprint, row, recordOffset);
+        return FIRST_OCCURRENCE;
+    }
+
+    /**
+     * Adds the value {@code bytes[start, end)}, keeping a copy of it.
+     *
+     * @return the row the value first appeared on, or {@link #FIRST_OCCURRENCE}
+     */
+    int add(long fingerprint, int row, byte[] bytes, int start, int end) {
+        var mask = fingerprints.length - 1;
+        for (int slot = (int) fingerprint & mask; rows[slot] != 0; slot = (slot + 1) & mask) {
+            if (fingerprints[slot] == fingerprint && sameValueAsCopy(references[slot], bytes, start, end)) {
+                return rows[slot];
+            }
+        }
+        insert(fingerprint, row, copy(bytes, start, end));
+        return FIRST_OCCURRENCE;
+    }
+
+    private void insert(long fingerprint, int row, int reference) {
+        if (size + 1 > fingerprints.length / 4 * 3) {
+            grow();
+        }
+        var mask = fingerprints.length - 1;
+        var slot = (int) fingerprint & mask;
+        while (rows[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        fingerprints[slot] = fingerprint;
+        rows[slot] = row;
+        references[slot] = reference;
+        size++;
+    }
+
+    private void grow() {
+        if (fingerprints.length == MAX_CAPACITY) {
+            throw new IllegalStateException(String.format("More than %s unique values in one file", MAX_CAPACITY / 4 * 3));
+        }
+        var oldFingerprints = fingerprints;
+        var oldRows = rows;
+        var oldReferences = references;
+        fingerprints = new long[oldFingerprints.length * 2];
+        rows = new int[oldRows.length * 2];
+        references = new int[oldReferences.length * 2];
+        var mask = fingerprints.length - 1;
+        for (int old = 0; old < oldRows.length; old++) {
+            if (oldRows[old] != 0) {
+                var slot = (int) oldFingerprints[old] & mask;
+                while (rows[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                fingerprints[slot] = oldFingerprints[old];
+                rows[slot] = oldRows[old];
+                references[slot] = oldReferences[old];
+            }
+        }
+    }
+
+    private boolean sameValueInFile(int firstRecordOffset, int recordOffset) {
+        var first = recordAt(firstRecordOffset);
+        var repeat = recordAt(recordOffset);
+        return Arrays.equals(first.buffer(), first.fieldStart(column), first.fieldEnd(column),
+                repeat.buffer(), repeat.fieldStart(column), repeat.fieldEnd(column));
+    }
+
+    private CsvTokenizer recordAt(int recordOffset) {
+        var tokenizer = new CsvTokenizer(new ByteArrayInputStream(file, recordOffset, file.length - recordOffset), RECORD_BUFFER_SIZE, false);
+        try {
+            tokenizer.nextRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tokenizer;
+    }
+
+    private boolean sameValueAsCopy(int copy, byte[] bytes, int start, int end) {
+        var length = (int) LENGTHS.get(copies, copy);
+        return Arrays.equals(copies, copy + Integer.BYTES, copy + Integer.BYTES + length, bytes, start, end);
+    }
+
+    /**
+     * Appends the value to the copies, preceded by its length.
+     *
+     * @return where the copy starts
+     */
+    private int copy(byte[] bytes, int start, int end) {
+        var length = end - start;
+        var needed = (long) copiesLength + Integer.BYTES + length;
+        if (needed > MAX_COPIES_LENGTH) {
+            throw new IllegalStateException("Unique values are too large to hold in memory");
+        }
+        if (needed > copies.length) {
+            copies = Arrays.copyOf(copies, (int) Math.min(Math.max((long) copies.length * 2, needed), MAX_COPIES_LENGTH));
+        }
+        var copy = copiesLength;
+        LENGTHS.set(copies, copy, length);
+        System.arraycopy(bytes, start, copies, copy + Integer.BYTES, length);
+        copiesLength = (int) needed;
+        return copy;
+    }
+
+    /**
+     * The unique values of part of a file held in memory, recorded while the part is validated in parallel with the
+     * other parts and added to the values of the whole file afterwards, in row order. Takes 16 bytes per row.
+     */
+    static final class Keys {
+
+        private final int column;
+        private long[] fingerprints = new long[INITIAL_CAPACITY];
+        private int[] rows = new int[INITIAL_CAPACITY];
+        private int[] recordOffsets = new int[INITIAL_CAPACITY];
+        private int size;
+
+        Keys(int column) {
+            this.column = column;
+        }
+
+        /**
+         * Records the unique column of the tokenizer's current record, on {@code row}.
+         *
+         * @param offset where the tokenizer's input starts in the file
+         */
+        void record(CsvTokenizer tokenizer, int offset, int row) {
+            var start = tokenizer.fieldStart(column);
+            var end = tokenizer.fieldEnd(column);
+            if (start == end) {
+                return;
+            }
+            if (size == rows.length) {
+                fingerprints = Arrays.copyOf(fingerprints, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+                recordOffsets = Arrays.copyOf(recordOffsets, size * 2);
+            }
+            fingerprints[size] = Fingerprints.of(tokenizer.buffer(), start, end);
+            rows[size] = row;
+            recordOffsets[size] = Math.toIntExact(offset + tokenizer.recordOffset());
+            size++;
+        }
+
+        /**
+         * Adds the recorded values to those of the file, reporting each that repeats an earlier one.
+         */
+        void addTo(UniqueValues values, ValidationErrors duplicates) {
+            for (int i = 0; i < size; i++) {
+                var firstRow = values.add(fingerprints[i], rows[i], recordOffsets[i]);
+                if (firstRow != FIRST_OCCURRENCE) {
+                    duplicates.addDuplicate(rows[i], column, firstRow);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Builds a {@link StructuralIndex} with the incubating Vector API, comparing a whole vector of bytes, 32 with AVX2 or
+ * 64 with AVX-512, against each structural character at once and keeping the results as bit masks.
+ * <p>
+ * Only built with the {@code vector-api} profile, and only loaded when the {@code jdk.incubator.vector} module is
+ * present; see {@link StructuralIndex#preferred()}.
+ */
+final class VectorKernel implements StructuralIndex.Kernel {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * Whether the hardware has vector registers of at least 128 bits. Without them the Vector API falls back to
+     * plain Java, which is slower than the scalar kernel.
+     */
+    static boolean isSupported() {
+        return SPECIES.vectorBitSize() >= 128 && LANES <= Long.SIZE;
+    }
+
+    @Override
+    public void index(byte[] bytes, int from, int to, long[] delimiters, long[] quotes) {
+        var word = from >>> 6;
+        var i = from;
+        for (; i + Long.SIZE <= to; i += Long.SIZE, word++) {
+            var delimiterBits = 0L;
+            var quoteBits = 0L;
+            for (int lane = 0; lane < Long.SIZE; lane += LANES) {
+                var vector = ByteVector.fromArray(SPECIES, bytes, i + lane);
+                var delimiter = vector.compare(VectorOperators.EQ, (byte) ',')
+                        .or(vector.compare(VectorOperators.EQ, (byte) '\n'))
+                        .or(vector.compare(VectorOperators.EQ, (byte) '\r'));
+                delimiterBits |= delimiter.toLong() << lane;
+                quoteBits |= vector.compare(VectorOperators.EQ, (byte) '"').toLong() << lane;
+            }
+            delimiters[word] = delimiterBits;
+            quotes[word] = quoteBits;
+        }
+        if (i < to) {
+            StructuralIndex.SCALAR.index(bytes, i, to, delimiters, quotes);
+        }
+    }
+}
@@ -7,24 +7,28 @@ import org.springframework.stereotype.Repository;
 import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Repository
-public interface FileValidationRepository extends MongoRepository<FileValidation, String> {
+public interface FileValidationRepository extends MongoRepository<FileValidation, String>, FileValidationRepositoryCustom {
 
-    @Query(value = "{ 'status' : { '$in' : ?0 } }")
-    List<FileValidation> findByStatuses(String... status);
+    @Query(value = "{ '_id' : ?0, 'claimed_by' : ?1 }")
+    @Update("{ '$set' : { 'status' : ?2, updated_at : ?3, updated_by : ?4 }, '$unset' : { 'claimed_by' : '', 'claim_expires_at' : '', 'next_attempt_at' : '' }}")
+    long updateStatusById(String id, String claimedBy, String newStatus, LocalDateTime updatedAt, String updatedBy);
 
-    @Query(value = "{ '_id' : ?0 }")
-    @Update("{ '$set' : { 'status' : ?1, updated_at : ?2, updated_by : ?3 }}")
-    void updateStatusById(String id, String newStatus, LocalDateTime updatedAt, String updatedBy);
+    @Query(value = "{ '_id' : ?0, 'claimed_by' : ?1 }")
+    @Update("{ '$set' : { 'status' : ?2, 'error_message' : ?3, updated_at : ?4, updated_by : ?5 }, '$unset' : { 'claimed_by' : '', 'claim_expires_at' : '', 'next_attempt_at' : '' }}")
+    long updateStatusAndErrorMessageById(String id, String claimedBy, String newStatus, String errorMessage, LocalDateTime updatedAt, String updatedBy);
 
-    @Query(value = "{ '_id' : ?0 }")
-    @Update("{ '$set' : { 'status' : ?1, 'error_message' : ?2, updated_at : ?3, updated_by : ?4 }}")
-    void updateStatusAndErrorMessageById(String id, String newStatus, String errorMessage, LocalDateTime updatedAt, String updatedBy);
+    @Query(value = "{ '_id' : ?0, 'claimed_by' : ?1 }")
+    @Update("{ '$set' : { 'status' : ?2, 'error_message' : ?3, 'next_attempt_at' : ?4, updated_at : ?5, updated_by : ?6 }, '$unset' : { 'claimed_by' : '', 'claim_expires_at' : '' }}")
+    long updateStatusForRetryById(String id, String claimedBy, String newStatus, String errorMessage, LocalDateTime nextAttemptAt, LocalDateTime updatedAt, String updatedBy);
 
-    @Query(value = "{ '_id' : ?0 }")
-    @Update("{ '$set' : { 'status' : ?1, 'updated_at' : ?2, 'updated_by' : ?3 }, '$unset' : { 'error_message' : '' }}")
-    void updateStatusAndRemoveErrorMessageById(String id, String newStatus, LocalDateTime updatedAt, String updatedBy);
+    @Query(value = "{ '_id' : ?0, 'claimed_by' : ?1 }")
+    @Update("{ '$set' : { 'checksum' : ?2 }}")
+    long updateChecksumById(String id, String claimedBy, String checksum);
+
+    @Query(value = "{ '_id' : ?0, 'claimed_by' : ?1, 'status' : 'in-progress' }")
+    @Update("{ '$set' : { 'claim_expires_at' : ?2 }}")
+    long extendClaimById(String id, String claimedBy, LocalDateTime claimExpiresAt);
 
 }
@@ -0,0 +1,31 @@
+package uk.gov.companieshouse.filevalidationservice.repositories;
+
+import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface FileValidationRepositoryCustom {
+
+    /**
+     * Reads one page of the backlog of records that can be claimed at {@code now}, oldest first. Only the id and
+     * creation time of each record are fetched; the full record is returned when it is claimed.
+     *
+     * @param after the last record of the previous page, or {@code null} for the first page
+     * @param pageSize the maximum number of records to return
+     */
+    List<FileValidation> findClaimablePage(List<String> claimableStatuses, LocalDateTime now, FileValidation after, int pageSize);
+
+    /**
+     * Atomically claims a record for processing. The claim succeeds when the record is in one of
+     * {@code claimableStatuses} and its next attempt is not scheduled after {@code now}, or is in progress under a
+     * claim that expired before {@code now}; the record is then moved to in progress, leased to {@code owner} until
+     * {@code now + lease} and its attempt count is incremented.
+     *
+     * @return the claimed record, or empty when the record was claimed by someone else or is no longer claimable
+     */
+    Optional<FileValidation> claim(String id, String owner, List<String> claimableStatuses, LocalDateTime now, Duration lease);
+
+}
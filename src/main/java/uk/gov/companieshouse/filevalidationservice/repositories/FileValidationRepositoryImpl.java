@@ -0,0 +1,68 @@
+package uk.gov.companieshouse.filevalidationservice.repositories;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import uk.gov.companieshouse.filevalidationservice.models.FileStatus;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public class FileValidationRepositoryImpl implements FileValidationRepositoryCustom {
+
+    private static final String SYSTEM = "System";
+    private static final String ID = "_id";
+    private static final String STATUS = "status";
+    private static final String CREATED_AT = "created_at";
+    private static final String CLAIM_EXPIRES_AT = "claim_expires_at";
+    private static final String NEXT_ATTEMPT_AT = "next_attempt_at";
+
+    private final MongoTemplate mongoTemplate;
+
+    public FileValidationRepositoryImpl(final MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<FileValidation> findClaimablePage(List<String> claimableStatuses, LocalDateTime now, FileValidation after, int pageSize) {
+        var criteria = after == null ? claimable(claimableStatuses, now)
+                : new Criteria().andOperator(claimable(claimableStatuses, now), new Criteria().orOperator(
+                        Criteria.where(CREATED_AT).gt(after.getCreatedAt()),
+                        Criteria.where(CREATED_AT).is(after.getCreatedAt()).and(ID).gt(after.getId())));
+        var query = Query.query(criteria)
+                .with(Sort.by(Sort.Order.asc(CREATED_AT), Sort.Order.asc(ID)))
+                .limit(pageSize);
+        query.fields().include(ID, CREATED_AT);
+        return mongoTemplate.find(query, FileValidation.class);
+    }
+
+    @Override
+    public Optional<FileValidation> claim(String id, String owner, List<String> claimableStatuses, LocalDateTime now, Duration lease) {
+        var query = Query.query(new Criteria().andOperator(Criteria.where(ID).is(id), claimable(claimableStatuses, now)));
+        var update = new Update()
+                .set(STATUS, FileStatus.IN_PROGRESS.getLabel())
+                .set("claimed_by", owner)
+                .set(CLAIM_EXPIRES_AT, now.plus(lease))
+                .set("updated_at", now)
+                .set("updated_by", SYSTEM)
+                .inc("attempts", 1)
+                .unset("error_message");
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), FileValidation.class));
+    }
+
+    private static Criteria claimable(List<String> claimableStatuses, LocalDateTime now) {
+        return new Criteria().orOperator(
+                new Criteria().andOperator(
+                        Criteria.where(STATUS).in(claimableStatuses),
+                        new Criteria().orOperator(
+                                Criteria.where(NEXT_ATTEMPT_AT).exists(false),
+                                Criteria.where(NEXT_ATTEMPT_AT).lte(now))),
+                Criteria.where(STATUS).is(FileStatus.IN_PROGRESS.getLabel()).and(CLAIM_EXPIRES_AT).lt(now));
+    }
+}
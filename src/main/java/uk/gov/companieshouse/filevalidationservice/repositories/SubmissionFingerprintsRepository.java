@@ -0,0 +1,16 @@
+package uk.gov.companieshouse.filevalidationservice.repositories;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import uk.gov.companieshouse.filevalidationservice.models.SubmissionFingerprints;
+
+import java.util.List;
+
+@Repository
+public interface SubmissionFingerprintsRepository extends MongoRepository<SubmissionFingerprints, String> {
+
+    List<SubmissionFingerprints> findByFromLocationAndKey(String fromLocation, String key);
+
+    void deleteByFileValidationId(String fileValidationId);
+
+}
@@ -1,5 +1,6 @@
 package uk.gov.companieshouse.filevalidationservice.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -9,26 +10,89 @@ import uk.gov.companieshouse.api.model.ApiResponse;
 import uk.gov.companieshouse.api.model.filetransfer.FileApi;
 import uk.gov.companieshouse.api.model.filetransfer.FileDetailsApi;
 import uk.gov.companieshouse.api.model.filetransfer.IdApi;
+import uk.gov.companieshouse.filevalidationservice.exception.FileUploadException;
 import uk.gov.companieshouse.filevalidationservice.utils.ApiClientUtil;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 @Component
 public class FileTransferEndpoint {
 
+    private static final String UPLOAD_URI = "/file-transfer/upload";
+
+    private static final String CSV_EXTENSION = ".csv";
+
     @Value( "${file.transfer.api.url}" )
     private String fileTransferApiUrl;
 
+    @Value( "${chs.internal.api.key}" )
+    private String internalApiKey;
+
     private final ApiClientUtil apiClientUtil;
 
+    private final HttpClient fileTransferHttpClient;
+
+    private final ObjectMapper objectMapper;
+
     @Autowired
-    public FileTransferEndpoint( final ApiClientUtil apiClientUtil ) {
+    public FileTransferEndpoint( final ApiClientUtil apiClientUtil, final HttpClient fileTransferHttpClient, final ObjectMapper objectMapper ) {
         this.apiClientUtil = apiClientUtil;
+        this.fileTransferHttpClient = fileTransferHttpClient;
+        this.objectMapper = objectMapper;
     }
 
-    public ApiResponse<IdApi> upload( final FileApi fileApi ) throws ApiErrorResponseException, URIValidationException {
-        return apiClientUtil.getInternalApiClient(fileTransferApiUrl)
-                .privateFileTransferResourceHandler()
-                .upload( fileApi )
-                .execute();
+    /**
+     * Streams {@code content} to the file transfer api as a multipart upload. The multipart envelope is written
+     * around the caller's stream, so only the http client's transfer buffer is held in memory regardless of the
+     * size of the file. The file is sent with the {@code .csv} extension, as it was through the sdk.
+     *
+     * @param content the file content, read once and not closed
+     * @param contentLength the number of bytes in {@code content}, or a negative value if unknown
+     * @param fileName the name the file is stored under
+     * @param mimeType the mime type of the content
+     * @return the id of the stored file
+     */
+    public ApiResponse<IdApi> upload( final InputStream content, final long contentLength, final String fileName, final String mimeType ) throws IOException, InterruptedException {
+        final var boundary = "file-validation-" + UUID.randomUUID();
+        final var preamble = ( "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"extension\"\r\n\r\n"
+                + CSV_EXTENSION + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + escapeFileName( fileName ) + "\"\r\n"
+                + "Content-Type: " + mimeType + "\r\n\r\n" ).getBytes( StandardCharsets.UTF_8 );
+        final var epilogue = ( "\r\n--" + boundary + "--\r\n" ).getBytes( StandardCharsets.UTF_8 );
+
+        final var body = new SequenceInputStream( Collections.enumeration( List.of(
+                new ByteArrayInputStream( preamble ), content, new ByteArrayInputStream( epilogue ) ) ) );
+        final var streamPublisher = HttpRequest.BodyPublishers.ofInputStream( () -> body );
+        final var publisher = contentLength < 0 ? streamPublisher
+                : HttpRequest.BodyPublishers.fromPublisher( streamPublisher, preamble.length + contentLength + epilogue.length );
+
+        final var request = HttpRequest.newBuilder( URI.create( fileTransferApiUrl + UPLOAD_URI ) )
+                .header( "Authorization", "Basic " + Base64.getEncoder().encodeToString( ( internalApiKey + ":" ).getBytes( StandardCharsets.UTF_8 ) ) )
+                .header( "Content-Type", "multipart/form-data; boundary=" + boundary )
+                .POST( publisher )
+                .build();
+
+        final var response = fileTransferHttpClient.send( request, HttpResponse.BodyHandlers.ofString() );
+        if ( response.statusCode() < 200 || response.statusCode() > 299 ) {
+            throw new FileUploadException( String.format( "Unexpected response status from file transfer api when uploading file. status: %s", response.statusCode() ) );
+        }
+        final var id = objectMapper.readTree( response.body() ).path( "id" ).asText( null );
+        return new ApiResponse<>( response.statusCode(), Map.of(), new IdApi( id ) );
     }
 
     public ApiResponse<FileDetailsApi> details( final String fileId ) throws ApiErrorResponseException, URIValidationException {
@@ -52,4 +116,8 @@ public class FileTransferEndpoint {
                 .execute();
     }
 
+    private static String escapeFileName( final String fileName ) {
+        return fileName == null ? "" : fileName.replace( "\"", "%22" ).replace( "\r", "" ).replace( "\n", "" );
+    }
+
  }
@@ -1,45 +1,690 @@
 package uk.gov.companieshouse.filevalidationservice.rest;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import uk.gov.companieshouse.filevalidationservice.exception.S3UploadException;
+import uk.gov.companieshouse.filevalidationservice.parser.Compression;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static uk.gov.companieshouse.filevalidationservice.FileValidationApplication.APPLICATION_NAMESPACE;
+
+/**
+ * Uploads files to S3. Files of at least {@code multipart.threshold} bytes are sent as multipart uploads, with each
+ * part uploaded on the part upload executor and at most {@code multipart.concurrency} parts of a file in flight. The
+ * file is already held in memory, so each part is sent from the file's own bytes rather than a copy of them. A part
+ * that fails is retried on its own after a delay that doubles each time, on top of the retries the S3 client makes
+ * itself. If a part still fails the multipart upload is aborted, so S3 does not keep the parts that were uploaded.
+ * <p>
+ * When {@code s3.client} is {@code async} files held in memory are uploaded with the non-blocking client instead. Its
+ * requests are sent and answered on the HTTP client's event loop, and each step of an upload is started when the one
+ * before it is answered, so no thread waits while a file is uploaded: the {@code Async} methods return once the
+ * upload has started, parts in flight do not each hold a thread, and retries wait on a timer rather than a sleeping
+ * thread. With the blocking client the {@code Async} methods upload the file before they return.
+ * <p>
+ * Every request that writes to S3 carries the SHA-256 checksum of what it sends, which S3 checks before storing it.
+ * A file is stored with its own checksum, and is not uploaded again if S3 already holds it with the same one. Checks
+ * for a file that is already there are always made with the blocking client.
+ * <p>
+ * A file is stored with the content type and encoding of what it holds, told from its first bytes, so a csv that was
+ * uploaded gzipped is served as a gzip encoded csv and one that was zipped as a zip.
+ * <p>
+ * A file can also be uploaded while it is validated, with {@link #uploadFileOnceValid}. Its parts are sent as it is
+ * validated, and the upload is only completed once the file is found valid, or aborted if it is not.
+ */
 @Component
 public class S3UploadClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger( APPLICATION_NAMESPACE );
+
+    /**
+     * The smallest part S3 accepts, other than the last part of an upload.
+     */
+    static final long MIN_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+
+    /**
+     * The user metadata the checksum of a file is kept in.
+     */
+    static final String CHECKSUM_METADATA = "sha256";
 
     private final S3Client s3;
+    private final S3AsyncClient asyncS3;
 
     private final String bucketName;
 
+    private final Executor partExecutor;
+    private final long multipartThreshold;
+    private final int partSize;
+    private final int partConcurrency;
+    private final int partMaxAttempts;
+    private final Duration partRetryDelay;
 
-    public S3UploadClient(S3Client that, @Value("${s3.bucket.name}") String bucketName){
+    public S3UploadClient(S3Client that, Optional<S3AsyncClient> asyncS3, @Value("${s3.bucket.name}") String bucketName,
+                          @Qualifier("partUploadTaskExecutor") Executor partExecutor,
+                          @Value("${amlData.fileValidation.s3.multipart.threshold}") DataSize multipartThreshold,
+                          @Value("${amlData.fileValidation.s3.multipart.part-size}") DataSize partSize,
+                          @Value("${amlData.fileValidation.s3.multipart.concurrency}") int partConcurrency,
+                          @Value("${amlData.fileValidation.s3.multipart.max-attempts}") int partMaxAttempts,
+                          @Value("${amlData.fileValidation.s3.multipart.retry-delay}") Duration partRetryDelay){
+        if (partSize.toBytes() < MIN_PART_SIZE) {
+            throw new IllegalArgumentException(String.format("The multipart part size must be at least %s bytes", MIN_PART_SIZE));
+        }
         this.s3 = that;
+        this.asyncS3 = asyncS3.orElse(null);
         this.bucketName = bucketName;
+        this.partExecutor = partExecutor;
+        this.multipartThreshold = multipartThreshold.toBytes();
+        this.partSize = Math.toIntExact(partSize.toBytes());
+        this.partConcurrency = partConcurrency;
+        this.partMaxAttempts = partMaxAttempts;
+        this.partRetryDelay = partRetryDelay;
     }
 
     public void uploadFile(byte[] document, String documentId, String amlBodyName) {
+        uploadFile(document, documentId, amlBodyName, checksumOf(document));
+    }
+
+    /**
+     * Uploads a file unless S3 already holds it with the same checksum, as it does when a record whose upload failed
+     * after S3 stored the file is retried, or a record is processed twice.
+     *
+     * @param checksum the {@link #checksumOf checksum} of {@code document}
+     */
+    public void uploadFile(byte[] document, String documentId, String amlBodyName, String checksum) {
+        await(uploadFileAsync(document, documentId, amlBodyName, checksum));
+    }
+
+    /**
+     * Uploads a file as {@link #uploadFile(byte[], String, String, String)} does, without waiting for the upload to
+     * finish.
+     *
+     * @return completes once S3 holds the file, or fails with an {@link S3UploadException} if the upload failed
+     */
+    public CompletableFuture<Void> uploadFileAsync(byte[] document, String documentId, String amlBodyName, String checksum) {
+        return uploadUnlessPresent(amlBodyName + "/" + documentId, document, checksum);
+    }
+
+    /**
+     * Uploads a file while it is being validated, so that the two take about as long as the slower of them rather
+     * than both. A file sent in parts is only completed, which is when it appears at its key, once {@code valid}
+     * completes with {@code true}. Until then its parts are held by S3 under the upload, where nothing reading the
+     * bucket can see them. If {@code valid} completes with anything else, or fails, the upload is aborted: straight
+     * away if parts are still to be sent, and otherwise once the parts in flight have finished. A file small enough
+     * to go in one request is sent once it is found valid. The upload is skipped if S3 already holds the file with
+     * the same checksum.
+     *
+     * @param checksum the {@link #checksumOf checksum} of {@code document}
+     * @param valid    completes with whether the file is valid
+     * @return whether the file was found valid, and so is now held by S3
+     */
+    public boolean uploadFileOnceValid(byte[] document, String documentId, String amlBodyName, String checksum, CompletableFuture<Boolean> valid) {
+        return await(uploadFileOnceValidAsync(document, documentId, amlBodyName, checksum, valid));
+    }
+
+    /**
+     * Uploads a file as {@link #uploadFileOnceValid} does, without waiting for the upload or for {@code valid}.
+     *
+     * @return completes with whether the file was found valid, and so is now held by S3, or fails with an
+     * {@link S3UploadException} if the upload failed
+     */
+    public CompletableFuture<Boolean> uploadFileOnceValidAsync(byte[] document, String documentId, String amlBodyName, String checksum, CompletableFuture<Boolean> valid) {
+        var key = amlBodyName + "/" + documentId;
+        if (isUploaded(key, checksum)) {
+            LOGGER.info(String.format("Skipping upload of %s, S3 already holds it with checksum %s", key, checksum));
+            return validity(valid);
+        }
+        var headers = ContentHeaders.of(Compression.of(document));
+        if (asyncS3 == null) {
+            return now(() -> {
+                if (document.length < multipartThreshold) {
+                    if (!isValid(valid)) {
+                        return false;
+                    }
+                    put(key, document, checksum, headers);
+                    return true;
+                }
+                return uploadInParts(key, document, checksum, headers, valid);
+            });
+        }
+        if (document.length < multipartThreshold) {
+            return validity(valid).thenCompose(isValid -> isValid
+                    ? putAsync(key, document, checksum, headers).thenApply(ignored -> true)
+                    : CompletableFuture.completedFuture(false));
+        }
+        return uploadInPartsAsync(key, document, checksum, headers, valid);
+    }
+
+    public void uploadFileOnError(byte[] document, String documentId, String amlBodyName, String checksum) {
+        await(uploadFileOnErrorAsync(document, documentId, amlBodyName, checksum));
+    }
+
+    public CompletableFuture<Void> uploadFileOnErrorAsync(byte[] document, String documentId, String amlBodyName, String checksum) {
+        return uploadUnlessPresent(String.format("%s/validator-error/%s", amlBodyName, documentId), document, checksum);
+    }
+
+    /**
+     * Uploads the report of the errors found in a file next to the copy uploaded by {@link #uploadFileOnError}.
+     */
+    public void uploadErrorReport(byte[] report, String documentId, String amlBodyName) {
+        await(uploadErrorReportAsync(report, documentId, amlBodyName));
+    }
+
+    public CompletableFuture<Void> uploadErrorReportAsync(byte[] report, String documentId, String amlBodyName) {
+        var key = String.format("%s/validator-error/%s.errors.json", amlBodyName, documentId);
+        var checksum = checksumOf(report);
+        if (asyncS3 == null) {
+            return now(() -> {
+                put(key, report, checksum, ContentHeaders.JSON);
+                return null;
+            });
+        }
+        return putAsync(key, report, checksum, ContentHeaders.JSON);
+    }
+
+    /**
+     * The Base64 encoded SHA-256 digest of a file, in the form S3 takes and returns checksums in. It is stored with
+     * each object S3 is sent, so a later upload of the same file can be skipped.
+     */
+    public static String checksumOf(byte[] content) {
+        return checksumOf(content, 0, content.length);
+    }
+
+    private static String checksumOf(byte[] content, int offset, int length) {
+        var digest = sha256();
+        digest.update(content, offset, length);
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
         try {
-            s3.putObject(PutObjectRequest.builder()
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private CompletableFuture<Void> uploadUnlessPresent(String key, byte[] document, String checksum) {
+        if (isUploaded(key, checksum)) {
+            LOGGER.info(String.format("Skipping upload of %s, S3 already holds it with checksum %s", key, checksum));
+            return CompletableFuture.completedFuture(null);
+        }
+        var headers = ContentHeaders.of(Compression.of(document));
+        if (asyncS3 == null) {
+            return now(() -> {
+                if (document.length < multipartThreshold) {
+                    put(key, document, checksum, headers);
+                } else {
+                    uploadInParts(key, document, checksum, headers, null);
+                }
+                return null;
+            });
+        }
+        if (document.length < multipartThreshold) {
+            return putAsync(key, document, checksum, headers);
+        }
+        return uploadInPartsAsync(key, document, checksum, headers, null).thenAccept(uploaded -> { });
+    }
+
+    /**
+     * Runs an upload with the blocking client, giving its outcome as a future that has already completed.
+     */
+    private static <T> CompletableFuture<T> now(Supplier<T> upload) {
+        try {
+            return CompletableFuture.completedFuture(upload.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Waits for an upload to finish, failing as it failed.
+     */
+    private static <T> T await(CompletableFuture<T> upload) {
+        try {
+            return upload.join();
+        } catch (CompletionException | CancellationException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : uploadFailure(e);
+        }
+    }
+
+    /**
+     * The failure of a request to S3, as the {@link S3UploadException} an upload fails with.
+     */
+    private static S3UploadException uploadFailure(Throwable failure) {
+        var cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        return cause instanceof S3UploadException e ? e : new S3UploadException(cause.getMessage());
+    }
+
+    /**
+     * Passes on the answer to a request to S3, or fails as an upload if the request failed.
+     */
+    private static <T> T answerOf(T response, Throwable failure) {
+        if (failure != null) {
+            throw uploadFailure(failure);
+        }
+        return response;
+    }
+
+    /**
+     * Waits for the outcome of validating a file. A validation that failed to finish did not find the file valid.
+     */
+    private static boolean isValid(CompletableFuture<Boolean> valid) {
+        return validity(valid).join();
+    }
+
+    /**
+     * Whether a file was found valid, once it has been validated. A validation that failed to finish did not find the
+     * file valid.
+     */
+    private static CompletableFuture<Boolean> validity(CompletableFuture<Boolean> valid) {
+        return valid.handle((isValid, failure) -> Boolean.TRUE.equals(isValid));
+    }
+
+    /**
+     * Whether S3 holds an object at {@code key} with the checksum. An object whose checksum cannot be read is taken
+     * not to be there, so it is uploaded again.
+     */
+    private boolean isUploaded(String key, String checksum) {
+        try {
+            var head = s3.headObject(HeadObjectRequest.builder()
                     .bucket(bucketName)
-                    .key(amlBodyName + "/" + documentId)
-                    .build(), RequestBody.fromBytes(document));
+                    .key(key)
+                    .build());
+            return checksum.equals(head.metadata().get(CHECKSUM_METADATA));
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (Exception e) {
+            LOGGER.info(String.format("Could not check whether S3 already holds %s, uploading it: %s", key, e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Uploads a file in one request, sending its checksum for S3 to check the file against and to keep with it.
+     */
+    private void put(String key, byte[] document, String checksum, ContentHeaders headers) {
+        try {
+            s3.putObject(putRequest(key, checksum, headers), RequestBody.fromContentProvider(() -> new ByteArrayInputStream(document), document.length, "application/octet-stream"));
         } catch (Exception e) {
             throw new S3UploadException(e.getMessage());
         }
     }
 
-    public void uploadFileOnError(byte[] document, String documentId, String amlBodyName) {
+    /**
+     * Uploads a file in one request with the non-blocking client, as {@link #put} does.
+     */
+    private CompletableFuture<Void> putAsync(String key, byte[] document, String checksum, ContentHeaders headers) {
+        return asyncS3.putObject(putRequest(key, checksum, headers), AsyncRequestBody.fromBytesUnsafe(document))
+                .handle(S3UploadClient::answerOf)
+                .thenAccept(response -> { });
+    }
+
+    private PutObjectRequest putRequest(String key, String checksum, ContentHeaders headers) {
+        return PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(headers.type())
+                .contentEncoding(headers.encoding())
+                .metadata(Map.of(CHECKSUM_METADATA, checksum))
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .checksumSHA256(checksum)
+                .build();
+    }
+
+    /**
+     * Uploads the file's parts on the part upload executor, waiting to start the next part while
+     * {@code multipart.concurrency} parts are in flight. The upload is completed once every part is uploaded, or
+     * aborted once every part still in flight has finished if any part failed. Each part is sent with its own checksum
+     * for S3 to check, and the file's checksum is kept with the object. An upload that waits on {@code valid} is
+     * aborted as soon as it completes with anything but {@code true}, and is not completed until it does.
+     *
+     * @param valid completes with whether the file is valid, or {@code null} if the file is uploaded regardless
+     * @return {@code true} once the upload is complete, or {@code false} if it was aborted because the file is not valid
+     */
+    private boolean uploadInParts(String key, byte[] document, String checksum, ContentHeaders headers, CompletableFuture<Boolean> valid) {
+        String uploadId;
         try {
-            s3.putObject(PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(String.format("%s/validator-error/%s", amlBodyName, documentId))
-                    .build(), RequestBody.fromBytes(document));
+            uploadId = s3.createMultipartUpload(createRequest(key, checksum, headers)).uploadId();
         } catch (Exception e) {
             throw new S3UploadException(e.getMessage());
         }
+        var inFlight = new Semaphore(partConcurrency);
+        var aborted = new AtomicBoolean();
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        try {
+            for (int index = 0; index < partCount(document); index++) {
+                if (valid != null && valid.isDone() && !isValid(valid)) {
+                    abort(key, uploadId, parts, aborted);
+                    return false;
+                }
+                inFlight.acquire();
+                var failed = parts.stream().filter(CompletableFuture::isCompletedExceptionally).findFirst();
+                if (failed.isPresent()) {
+                    inFlight.release();
+                    failed.get().join();
+                }
+                var part = partOf(document, index);
+                parts.add(CompletableFuture.supplyAsync(() -> uploadPart(key, uploadId, document, part, aborted), partExecutor)
+                        .whenComplete((completed, failure) -> inFlight.release()));
+            }
+            var completedParts = parts.stream().map(CompletableFuture::join).toList();
+            if (valid != null && !isValid(valid)) {
+                abort(key, uploadId, parts, aborted);
+                return false;
+            }
+            s3.completeMultipartUpload(completeRequest(key, uploadId, completedParts));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(key, uploadId, parts, aborted);
+            throw new S3UploadException(String.format("Interrupted while uploading %s", key));
+        } catch (CompletionException e) {
+            abort(key, uploadId, parts, aborted);
+            throw new S3UploadException(e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            abort(key, uploadId, parts, aborted);
+            throw new S3UploadException(e.getMessage());
+        }
+    }
+
+    /**
+     * Uploads a file held in memory in parts with the non-blocking client, as {@link #uploadInParts} does, without a
+     * thread waiting on any part. {@code multipart.concurrency} parts are sent at first, and each part that finishes
+     * starts the next one still to be sent, until a part fails or the file is found not to be valid. Once every part
+     * in flight has finished the upload is completed, or aborted if a part failed or the file is not valid.
+     *
+     * @param valid completes with whether the file is valid, or {@code null} if the file is uploaded regardless
+     * @return completes with {@code true} once the upload is complete, or {@code false} once it has been aborted
+     * because the file is not valid
+     */
+    private CompletableFuture<Boolean> uploadInPartsAsync(String key, byte[] document, String checksum, ContentHeaders headers, CompletableFuture<Boolean> valid) {
+        return asyncS3.createMultipartUpload(createRequest(key, checksum, headers))
+                .handle(S3UploadClient::answerOf)
+                .thenCompose(created -> {
+                    var uploadId = created.uploadId();
+                    var parts = new CompletedPart[partCount(document)];
+                    var next = new AtomicInteger();
+                    var aborted = new AtomicBoolean();
+                    if (valid != null) {
+                        validity(valid).thenAccept(isValid -> {
+                            if (!isValid) {
+                                aborted.set(true);
+                            }
+                        });
+                    }
+                    var senders = new CompletableFuture<?>[Math.min(partConcurrency, parts.length)];
+                    for (int i = 0; i < senders.length; i++) {
+                        senders[i] = sendParts(key, uploadId, document, parts, next, aborted);
+                    }
+                    return CompletableFuture.allOf(senders)
+                            .handle((ignored, failure) -> failure)
+                            .thenCompose(failure -> finishParts(key, uploadId, parts, failure, valid));
+                });
+    }
+
+    /**
+     * Sends the parts still to be sent one after another, until there are none left or the upload is aborted. A part
+     * that fails aborts the upload, so no more of its parts are started.
+     */
+    private CompletableFuture<Void> sendParts(String key, String uploadId, byte[] document, CompletedPart[] parts, AtomicInteger next, AtomicBoolean aborted) {
+        var index = next.getAndIncrement();
+        if (index >= parts.length || aborted.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return uploadPartAsync(key, uploadId, document, partOf(document, index), aborted, 1, partRetryDelay)
+                .whenComplete((completed, failure) -> {
+                    if (failure != null) {
+                        aborted.set(true);
+                    }
+                })
+                .thenCompose(completed -> {
+                    parts[index] = completed;
+                    return sendParts(key, uploadId, document, parts, next, aborted);
+                });
+    }
+
+    /**
+     * Completes or aborts an upload whose parts have all finished, once the file has been validated if it is being.
+     *
+     * @param failure what the first part to fail failed with, or {@code null} if every part was uploaded
+     */
+    private CompletableFuture<Boolean> finishParts(String key, String uploadId, CompletedPart[] parts, Throwable failure, CompletableFuture<Boolean> valid) {
+        if (valid != null && !validity(valid).getNow(true)) {
+            return abortAsync(key, uploadId).thenApply(ignored -> false);
+        }
+        if (failure != null) {
+            return abortAsync(key, uploadId).thenCompose(ignored -> CompletableFuture.<Boolean>failedFuture(uploadFailure(failure)));
+        }
+        return (valid == null ? CompletableFuture.completedFuture(true) : validity(valid)).thenCompose(isValid -> {
+            if (!isValid) {
+                return abortAsync(key, uploadId).thenApply(ignored -> false);
+            }
+            return asyncS3.completeMultipartUpload(completeRequest(key, uploadId, Arrays.asList(parts)))
+                    .handle((response, completeFailure) -> completeFailure == null
+                            ? CompletableFuture.completedFuture(true)
+                            : abortAsync(key, uploadId).thenCompose(ignored -> CompletableFuture.<Boolean>failedFuture(uploadFailure(completeFailure))))
+                    .thenCompose(Function.identity());
+        });
+    }
+
+    private CreateMultipartUploadRequest createRequest(String key, String checksum, ContentHeaders headers) {
+        return CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(headers.type())
+                .contentEncoding(headers.encoding())
+                .metadata(Map.of(CHECKSUM_METADATA, checksum))
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .build();
+    }
+
+    private CompleteMultipartUploadRequest completeRequest(String key, String uploadId, List<CompletedPart> parts) {
+        return CompleteMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                .build();
+    }
+
+    private int partCount(byte[] document) {
+        return Math.max(1, (int) ((document.length + (long) partSize - 1) / partSize));
+    }
+
+    /**
+     * The part of a file at {@code index}, counting from 0, with its checksum.
+     */
+    private Part partOf(byte[] document, int index) {
+        var offset = Math.toIntExact((long) index * partSize);
+        var length = Math.min(partSize, document.length - offset);
+        return new Part(index + 1, offset, length, checksumOf(document, offset, length));
+    }
+
+    /**
+     * Uploads a part, retrying it until it has been tried {@code multipart.max-attempts} times. Errors S3 reports
+     * about the request itself are not retried, and neither is a part of an upload that is being aborted.
+     */
+    private CompletedPart uploadPart(String key, String uploadId, byte[] document, Part part, AtomicBoolean aborted) {
+        var delay = partRetryDelay;
+        for (int attempt = 1; ; attempt++) {
+            if (aborted.get()) {
+                throw new S3UploadException(String.format("Upload of %s aborted", key));
+            }
+            try {
+                var response = s3.uploadPart(partRequest(key, uploadId, part),
+                        RequestBody.fromContentProvider(() -> new ByteArrayInputStream(document, part.offset(), part.length()), part.length(), "application/octet-stream"));
+                return part.completed(response.eTag());
+            } catch (SdkException e) {
+                if (attempt >= partMaxAttempts || !isRetryable(e)) {
+                    throw e;
+                }
+                LOGGER.info(String.format("Retrying part %s of %s after attempt %s failed: %s", part.number(), key, attempt, e.getMessage()));
+                sleep(delay);
+                delay = delay.multipliedBy(2);
+            }
+        }
+    }
+
+    /**
+     * Uploads a part with the non-blocking client, retrying it as {@link #uploadPart} does. The next attempt is
+     * started by a timer once the delay has passed, so no thread waits for it.
+     */
+    private CompletableFuture<CompletedPart> uploadPartAsync(String key, String uploadId, byte[] document, Part part,
+                                                             AtomicBoolean aborted, int attempt, Duration delay) {
+        if (aborted.get()) {
+            return CompletableFuture.failedFuture(new S3UploadException(String.format("Upload of %s aborted", key)));
+        }
+        return asyncS3.uploadPart(partRequest(key, uploadId, part),
+                        AsyncRequestBody.fromRemainingByteBufferUnsafe(ByteBuffer.wrap(document, part.offset(), part.length())))
+                .handle((response, failure) -> {
+                    if (failure == null) {
+                        return CompletableFuture.completedFuture(part.completed(response.eTag()));
+                    }
+                    var cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    if (attempt >= partMaxAttempts || !(cause instanceof SdkException e) || !isRetryable(e)) {
+                        return CompletableFuture.<CompletedPart>failedFuture(cause);
+                    }
+                    LOGGER.info(String.format("Retrying part %s of %s after attempt %s failed: %s", part.number(), key, attempt, cause.getMessage()));
+                    return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> uploadPartAsync(key, uploadId, document, part, aborted, attempt + 1, delay.multipliedBy(2)));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private UploadPartRequest partRequest(String key, String uploadId, Part part) {
+        return UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(part.number())
+                .contentLength((long) part.length())
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .checksumSHA256(part.checksum())
+                .build();
+    }
+
+    private static boolean isRetryable(SdkException e) {
+        if (e instanceof S3Exception s3Exception) {
+            return s3Exception.statusCode() >= 500 || s3Exception.statusCode() == 429;
+        }
+        return true;
+    }
+
+    private static void sleep(Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3UploadException("Interrupted while waiting to retry a part");
+        }
+    }
+
+    /**
+     * Aborts the upload once the parts in flight have finished, since a part that finishes uploading after the abort
+     * would be kept. Parts that have not started are not uploaded.
+     */
+    private void abort(String key, String uploadId, List<CompletableFuture<CompletedPart>> parts, AtomicBoolean aborted) {
+        aborted.set(true);
+        CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).exceptionally(failure -> null).join();
+        try {
+            s3.abortMultipartUpload(abortRequest(key, uploadId));
+        } catch (Exception e) {
+            LOGGER.error(abortFailure(key, e));
+        }
+    }
+
+    /**
+     * Aborts an upload with the non-blocking client. The parts of the upload must have finished.
+     */
+    private CompletableFuture<Void> abortAsync(String key, String uploadId) {
+        return asyncS3.abortMultipartUpload(abortRequest(key, uploadId)).handle((response, failure) -> {
+            if (failure != null) {
+                LOGGER.error(abortFailure(key, failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure));
+            }
+            return null;
+        });
+    }
+
+    private AbortMultipartUploadRequest abortRequest(String key, String uploadId) {
+        return AbortMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .build();
+    }
+
+    private static String abortFailure(String key, Throwable failure) {
+        return String.format("Failed to abort multipart upload of %s, its parts are kept until the bucket's lifecycle rules remove them: %s", key, failure.getMessage());
+    }
+
+    /**
+     * A part of a file held in memory, sent from the file's own bytes.
+     *
+     * @param number the part's number, counting from 1
+     */
+    private record Part(int number, int offset, int length, String checksum) {
+
+        private CompletedPart completed(String eTag) {
+            return CompletedPart.builder().partNumber(number).eTag(eTag).checksumSHA256(checksum).build();
+        }
+    }
+
+    /**
+     * The content type and encoding a file is stored with. A gzipped csv is stored as a csv with the gzip encoding, so
+     * it is served as the csv it holds, while a zip is stored as the archive it is.
+     *
+     * @param encoding the content encoding, or {@code null} if the file is stored as it is
+     */
+    private record ContentHeaders(String type, String encoding) {
+
+        private static final ContentHeaders JSON = new ContentHeaders("application/json", null);
+
+        private static ContentHeaders of(Compression compression) {
+            return switch (compression) {
+                case NONE -> new ContentHeaders(Compression.NONE.mimeType(), null);
+                case GZIP -> new ContentHeaders(Compression.NONE.mimeType(), "gzip");
+                case ZIP -> new ContentHeaders(Compression.ZIP.mimeType(), null);
+            };
+        }
     }
 }
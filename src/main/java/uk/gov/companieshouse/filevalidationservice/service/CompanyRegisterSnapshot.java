@@ -0,0 +1,97 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.filevalidationservice.validation.CompanyRegister;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static uk.gov.companieshouse.filevalidationservice.FileValidationApplication.APPLICATION_NAMESPACE;
+
+/**
+ * The local snapshot of the company register that company numbers are checked against, if one is configured.
+ * <p>
+ * A new snapshot is published by writing it under a temporary name and renaming it over the old one. The change is
+ * picked up by {@link #reload()}, which maps the new file and swaps it in whole, so a validation keeps the snapshot it
+ * started with. A snapshot that is not valid is not swapped in; until a valid one replaces it the previous snapshot
+ * stays in use.
+ */
+@Component
+public class CompanyRegisterSnapshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger( APPLICATION_NAMESPACE );
+
+    private final Path location;
+    private volatile Loaded loaded;
+
+    /**
+     * Loads the snapshot, failing startup if it is not valid.
+     *
+     * @param location the snapshot file, or blank to not check company numbers against the register
+     */
+    public CompanyRegisterSnapshot(@Value("${amlData.fileValidation.company-register.location}") String location) throws IOException {
+        this.location = location.isBlank() ? null : Path.of(location);
+        if (this.location != null) {
+            loaded = load(version());
+            LOGGER.info(String.format("Loaded company register snapshot of %s companies", loaded.register().size()));
+        }
+    }
+
+    /**
+     * The register to check company numbers against.
+     *
+     * @return the register, or {@code null} if no snapshot is configured
+     */
+    public CompanyRegister current() {
+        var current = loaded;
+        return current == null ? null : current.register();
+    }
+
+    /**
+     * Reloads the snapshot if the file has been replaced or changed since it was last loaded.
+     */
+    @Scheduled(fixedDelayString = "${amlData.fileValidation.company-register.reload-interval}",
+            initialDelayString = "${amlData.fileValidation.company-register.reload-interval}")
+    public void reload() {
+        if (location == null) {
+            return;
+        }
+        try {
+            var version = version();
+            if (version.equals(loaded.version())) {
+                return;
+            }
+            loaded = load(version);
+            LOGGER.info(String.format("Reloaded company register snapshot of %s companies", loaded.register().size()));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error(String.format("Company register snapshot not reloaded, keeping the current snapshot: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * The identity, last modified time and size of the snapshot file, which change when it is replaced.
+     */
+    private String version() throws IOException {
+        var attributes = Files.readAttributes(location, BasicFileAttributes.class);
+        return String.format("%s/%s/%s", attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+    }
+
+    private Loaded load(String version) throws IOException {
+        try {
+            return new Loaded(CompanyRegister.open(location), version);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Company register snapshot %s is not valid: %s", location, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * The mapped snapshot together with the version of the file it was mapped from.
+     */
+    private record Loaded(CompanyRegister register, String version) {
+    }
+}
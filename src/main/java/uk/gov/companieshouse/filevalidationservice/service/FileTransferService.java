@@ -1,5 +1,6 @@
 package uk.gov.companieshouse.filevalidationservice.service;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
 import uk.gov.companieshouse.api.handler.exception.URIValidationException;
@@ -15,6 +16,7 @@ import uk.gov.companieshouse.filevalidationservice.exception.DownloadAvStatusExc
 import uk.gov.companieshouse.filevalidationservice.models.FileMetaData;
 import uk.gov.companieshouse.filevalidationservice.models.FileStatus;
 import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidationSubmittedEvent;
 import uk.gov.companieshouse.filevalidationservice.repositories.FileValidationRepository;
 import uk.gov.companieshouse.filevalidationservice.rest.FileTransferEndpoint;
 import uk.gov.companieshouse.logging.Logger;
@@ -35,12 +37,16 @@ public class FileTransferService {
 
     private final FileValidationRepository fileValidationRepository;
 
+    private final ApplicationEventPublisher eventPublisher;
+
     private static final Logger LOGGER = LoggerFactory.getLogger( APPLICATION_NAMESPACE );
 
     public FileTransferService(final FileTransferEndpoint fileTransferEndpoint,
-                                FileValidationRepository fileValidationRepository) {
+                                FileValidationRepository fileValidationRepository,
+                                ApplicationEventPublisher eventPublisher) {
         this.fileTransferEndpoint = fileTransferEndpoint;
         this.fileValidationRepository = fileValidationRepository;
+        this.eventPublisher = eventPublisher;
 
     }
 
@@ -84,17 +90,29 @@ public class FileTransferService {
             throw new FileDownloadException(e.getMessage());
         }
     }
-    public String upload(MultipartFile file, FileMetaData fileMetaData) throws FileUploadException {
-        try {
-            var fileApi = new FileApi(fileMetaData.getFileName(),file.getBytes(),"text/csv",(int)file.getSize(),".csv");
-            var uploadResponse =  fileTransferEndpoint.upload(fileApi);
+    /**
+     * Uploads the file and records it for validation. Once the record is stored it is announced with a
+     * {@link FileValidationSubmittedEvent} so it can be processed straight away.
+     *
+     * @param mimeType the mime type the file is stored with, which for a compressed csv is that of its compression
+     */
+    public String upload(MultipartFile file, FileMetaData fileMetaData, String mimeType) throws FileUploadException {
+        String insertedId;
+        try (var content = file.getInputStream()) {
+            var uploadResponse =  fileTransferEndpoint.upload(content, file.getSize(), fileMetaData.getFileName(), mimeType);
             var fileValidation = setFileToValidate(uploadResponse.getData().getId(), fileMetaData);
             var insertedRecord = fileValidationRepository.insert(fileValidation);
-            return insertedRecord.getId();
+            insertedId = insertedRecord.getId();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted uploading the file : " + e.getMessage());
+            throw new FileUploadException(e.getMessage());
         } catch (Exception e) {
             LOGGER.error("Error uploading the file : " + e.getMessage());
             throw new FileUploadException(e.getMessage());
         }
+        eventPublisher.publishEvent(new FileValidationSubmittedEvent(insertedId));
+        return insertedId;
     }
 
     private FileValidation setFileToValidate(String fileId,FileMetaData fileMetaData) {
@@ -0,0 +1,136 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
+import uk.gov.companieshouse.filevalidationservice.models.SubmissionFingerprints;
+import uk.gov.companieshouse.filevalidationservice.repositories.SubmissionFingerprintsRepository;
+import uk.gov.companieshouse.filevalidationservice.validation.FingerprintIndex;
+import uk.gov.companieshouse.filevalidationservice.validation.ResubmissionCheck;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static uk.gov.companieshouse.filevalidationservice.FileValidationApplication.APPLICATION_NAMESPACE;
+
+/**
+ * The fingerprints of every record each supervisory body has submitted in completed files, so that records sent again
+ * in a later file can be reported. The check is off unless {@code resubmission.key} is {@code unique-id} or
+ * {@code record}.
+ * <p>
+ * The fingerprints are kept in Mongo, one document per million records of a file, and each body's are loaded into a
+ * {@link FingerprintIndex} the first time a file from it is validated. Fingerprints of files completed here are added
+ * to the index straight away; the index is loaded again once it is older than {@code resubmission.refresh-interval}
+ * to pick up files completed by other instances.
+ */
+@Component
+public class ResubmissionIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger( APPLICATION_NAMESPACE );
+
+    /**
+     * 8MB of fingerprints, comfortably inside Mongo's 16MB document limit.
+     */
+    static final int FINGERPRINTS_PER_DOCUMENT = 1 << 20;
+
+    private final SubmissionFingerprintsRepository submissionFingerprintsRepository;
+    private final ResubmissionCheck.Key key;
+    private final Duration refreshInterval;
+    private final ConcurrentHashMap<String, LoadedIndex> indexes = new ConcurrentHashMap<>();
+
+    public ResubmissionIndex(SubmissionFingerprintsRepository submissionFingerprintsRepository,
+                             @Value("${amlData.fileValidation.resubmission.key}") String key,
+                             @Value("${amlData.fileValidation.resubmission.refresh-interval}") Duration refreshInterval) {
+        this.submissionFingerprintsRepository = submissionFingerprintsRepository;
+        this.key = switch (key.strip().toLowerCase(Locale.ENGLISH)) {
+            case "", "off" -> null;
+            case "unique-id" -> ResubmissionCheck.Key.UNIQUE_ID;
+            case "record" -> ResubmissionCheck.Key.RECORD;
+            default -> throw new IllegalArgumentException(String.format("Resubmission key must be off, unique-id or record, not '%s'", key));
+        };
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * A check of a file from the given body against the files it completed before.
+     *
+     * @return the check, or {@code null} if the check is off
+     */
+    public ResubmissionCheck checkFor(String fromLocation) {
+        if (key == null) {
+            return null;
+        }
+        return new ResubmissionCheck(key, indexFor(Objects.requireNonNullElse(fromLocation, "")));
+    }
+
+    /**
+     * Keeps the fingerprints of a completed file, replacing any kept for it before.
+     */
+    public void record(FileValidation completed, ResubmissionCheck check) {
+        var fromLocation = Objects.requireNonNullElse(completed.getFromLocation(), "");
+        var fingerprints = check.fingerprints();
+        submissionFingerprintsRepository.deleteByFileValidationId(completed.getId());
+        submissionFingerprintsRepository.saveAll(documents(completed.getId(), fromLocation, fingerprints));
+        indexes.computeIfPresent(fromLocation, (body, loaded) -> new LoadedIndex(loaded.index().with(fingerprints), loaded.loadedAt()));
+    }
+
+    private FingerprintIndex indexFor(String fromLocation) {
+        var loaded = indexes.get(fromLocation);
+        if (loaded == null || isStale(loaded)) {
+            loaded = indexes.compute(fromLocation, (body, current) -> current != null && !isStale(current) ? current : load(body));
+        }
+        return loaded.index();
+    }
+
+    private boolean isStale(LoadedIndex loaded) {
+        return loaded.loadedAt().plus(refreshInterval).isBefore(Instant.now());
+    }
+
+    private LoadedIndex load(String fromLocation) {
+        var loadedAt = Instant.now();
+        var documents = submissionFingerprintsRepository.findByFromLocationAndKey(fromLocation, key.name());
+        var fingerprints = new long[documents.stream().mapToInt(SubmissionFingerprints::getCount).sum()];
+        var loaded = 0;
+        for (var document : documents) {
+            ByteBuffer.wrap(document.getFingerprints()).asLongBuffer().get(fingerprints, loaded, document.getCount());
+            loaded += document.getCount();
+        }
+        var index = FingerprintIndex.of(fingerprints);
+        LOGGER.info(String.format("Loaded %s fingerprints of earlier submissions from %s", index.size(), fromLocation));
+        return new LoadedIndex(index, loadedAt);
+    }
+
+    private List<SubmissionFingerprints> documents(String fileValidationId, String fromLocation, long[] fingerprints) {
+        List<SubmissionFingerprints> documents = new ArrayList<>();
+        var now = LocalDateTime.now();
+        for (int from = 0; from < fingerprints.length; from += FINGERPRINTS_PER_DOCUMENT) {
+            var count = Math.min(FINGERPRINTS_PER_DOCUMENT, fingerprints.length - from);
+            var packed = ByteBuffer.allocate(count * Long.BYTES);
+            packed.asLongBuffer().put(fingerprints, from, count);
+            var document = new SubmissionFingerprints();
+            document.setFromLocation(fromLocation);
+            document.setKey(key.name());
+            document.setFileValidationId(fileValidationId);
+            document.setPart(from / FINGERPRINTS_PER_DOCUMENT);
+            document.setCount(count);
+            document.setFingerprints(packed.array());
+            document.setCreatedAt(now);
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    /**
+     * A body's index and when it was loaded from Mongo.
+     */
+    private record LoadedIndex(FingerprintIndex index, Instant loadedAt) {
+    }
+}
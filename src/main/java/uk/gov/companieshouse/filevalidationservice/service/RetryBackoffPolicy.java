@@ -0,0 +1,72 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.filevalidationservice.models.FileStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Decides when a record that failed with a retryable status may be attempted again. Each retryable status has its
+ * own limit on attempts and its own delay, which starts at an initial value and is multiplied after every failed
+ * attempt up to a maximum.
+ */
+@Component
+public class RetryBackoffPolicy {
+
+    private final Map<FileStatus, Backoff> backoffs;
+
+    public RetryBackoffPolicy(@Value("${amlData.fileValidation.retry.multiplier}") double multiplier,
+                              @Value("${amlData.fileValidation.retry.download-error.max-attempts}") int downloadErrorMaxAttempts,
+                              @Value("${amlData.fileValidation.retry.download-error.initial-delay}") Duration downloadErrorInitialDelay,
+                              @Value("${amlData.fileValidation.retry.download-error.max-delay}") Duration downloadErrorMaxDelay,
+                              @Value("${amlData.fileValidation.retry.upload-error.max-attempts}") int uploadErrorMaxAttempts,
+                              @Value("${amlData.fileValidation.retry.upload-error.initial-delay}") Duration uploadErrorInitialDelay,
+                              @Value("${amlData.fileValidation.retry.upload-error.max-delay}") Duration uploadErrorMaxDelay,
+                              @Value("${amlData.fileValidation.retry.error.max-attempts}") int errorMaxAttempts,
+                              @Value("${amlData.fileValidation.retry.error.initial-delay}") Duration errorInitialDelay,
+                              @Value("${amlData.fileValidation.retry.error.max-delay}") Duration errorMaxDelay) {
+        this.backoffs = Map.of(
+                FileStatus.DOWNLOAD_ERROR, new Backoff(downloadErrorMaxAttempts, downloadErrorInitialDelay, multiplier, downloadErrorMaxDelay),
+                FileStatus.UPLOAD_ERROR, new Backoff(uploadErrorMaxAttempts, uploadErrorInitialDelay, multiplier, uploadErrorMaxDelay),
+                FileStatus.ERROR, new Backoff(errorMaxAttempts, errorInitialDelay, multiplier, errorMaxDelay));
+    }
+
+    /**
+     * Works out when a record may next be attempted after failing with {@code status}.
+     *
+     * @param attempts the number of attempts made so far, including the one that just failed
+     * @return the time the record becomes eligible again, or empty when it has run out of attempts or the status
+     *         is not retried
+     */
+    public Optional<LocalDateTime> nextAttemptAt(FileStatus status, int attempts, LocalDateTime now) {
+        var backoff = backoffs.get(status);
+        if (backoff == null || attempts >= backoff.maxAttempts) {
+            return Optional.empty();
+        }
+        return Optional.of(now.plus(backoff.delayAfter(attempts)));
+    }
+
+    private static final class Backoff {
+
+        private final int maxAttempts;
+        private final Duration initialDelay;
+        private final double multiplier;
+        private final Duration maxDelay;
+
+        private Backoff(int maxAttempts, Duration initialDelay, double multiplier, Duration maxDelay) {
+            this.maxAttempts = maxAttempts;
+            this.initialDelay = initialDelay;
+            this.multiplier = multiplier;
+            this.maxDelay = maxDelay;
+        }
+
+        private Duration delayAfter(int attempts) {
+            var millis = initialDelay.toMillis() * Math.pow(multiplier, Math.max(0, attempts - 1));
+            return millis >= maxDelay.toMillis() ? maxDelay : Duration.ofMillis((long) millis);
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
+import uk.gov.companieshouse.filevalidationservice.exception.DownloadAvStatusException;
+import uk.gov.companieshouse.filevalidationservice.exception.FileDownloadException;
+import uk.gov.companieshouse.filevalidationservice.exception.S3UploadException;
+import uk.gov.companieshouse.filevalidationservice.models.FileStatus;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
+import uk.gov.companieshouse.filevalidationservice.parser.Compression;
+import uk.gov.companieshouse.filevalidationservice.parser.CsvDecompressor;
+import uk.gov.companieshouse.filevalidationservice.parser.CsvProcessor;
+import uk.gov.companieshouse.filevalidationservice.repositories.FileValidationRepository;
+import uk.gov.companieshouse.filevalidationservice.rest.S3UploadClient;
+import uk.gov.companieshouse.filevalidationservice.utils.BoundedExecutor;
+import uk.gov.companieshouse.filevalidationservice.validation.ResubmissionCheck;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationErrors;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static uk.gov.companieshouse.filevalidationservice.FileValidationApplication.APPLICATION_NAMESPACE;
+
+/**
+ * Processes file validation records in three stages, download, validate and upload, each running on its own
+ * bounded executor. A record moves to the next stage as soon as its current stage is done, so the download of one
+ * file overlaps the validation of another and the upload of a third. Handing a record to a stage that is full waits
+ * for room, so a fast stage cannot pile up downloaded files in memory ahead of a slow one.
+ * <p>
+ * When {@code s3.upload-while-validating} is on, a file is handed to the upload stage before it is validated rather
+ * than after, and is uploaded from the same downloaded copy while it is validated. The upload is only completed once
+ * the file is found valid, so a file takes about as long as the slower of validating and uploading it instead of
+ * both.
+ * <p>
+ * Each record is claimed for {@code claim.lease} when it enters the pipeline. The claim is extended every
+ * {@code claim.renew-interval} while the record is in the pipeline, and again as it enters each stage. A record whose
+ * claim has been lost, for instance to another instance after a long pause, is abandoned at its next stage, and what
+ * it would have recorded is dropped.
+ */
+@Component
+public class ValidationPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger( APPLICATION_NAMESPACE );
+
+    private static final String SYSTEM = "System";
+
+    static final List<String> CLAIMABLE_STATUSES = List.of(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel());
+
+    private final FileTransferService fileTransferService;
+    private final FileValidationRepository fileValidationRepository;
+    private final S3UploadClient s3UploadClient;
+    private final CsvProcessor csvProcessor;
+    private final CsvDecompressor csvDecompressor;
+    private final ValidationProfiles validationProfiles;
+    private final ResubmissionIndex resubmissionIndex;
+    private final CompanyRegisterSnapshot companyRegisterSnapshot;
+    private final RetryBackoffPolicy retryBackoffPolicy;
+    private final BoundedExecutor downloadStage;
+    private final BoundedExecutor validateStage;
+    private final BoundedExecutor uploadStage;
+    private final String claimOwner;
+    private final Duration claimLease;
+    private final boolean copyInvalidFiles;
+    private final boolean uploadWhileValidating;
+    /**
+     * The ids of the records in the pipeline, mapped to whether they have been claimed yet.
+     */
+    private final Map<String, Boolean> claims = new ConcurrentHashMap<>();
+
+    public ValidationPipeline(FileTransferService fileTransferService,
+                              FileValidationRepository fileValidationRepository,
+                              S3UploadClient s3UploadClient,
+                              CsvProcessor csvProcessor,
+                              CsvDecompressor csvDecompressor,
+                              ValidationProfiles validationProfiles,
+                              ResubmissionIndex resubmissionIndex,
+                              CompanyRegisterSnapshot companyRegisterSnapshot,
+                              RetryBackoffPolicy retryBackoffPolicy,
+                              @Qualifier("downloadStage") BoundedExecutor downloadStage,
+                              @Qualifier("validateStage") BoundedExecutor validateStage,
+                              @Qualifier("uploadStage") BoundedExecutor uploadStage,
+                              @Value("${amlData.fileValidation.claim.owner}") String claimOwner,
+                              @Value("${amlData.fileValidation.claim.lease}") Duration claimLease,
+                              @Value("${amlData.fileValidation.error-report.copy-file}") boolean copyInvalidFiles,
+                              @Value("${amlData.fileValidation.s3.upload-while-validating}") boolean uploadWhileValidating) {
+        this.fileTransferService = fileTransferService;
+        this.fileValidationRepository = fileValidationRepository;
+        this.s3UploadClient = s3UploadClient;
+        this.csvProcessor = csvProcessor;
+        this.csvDecompressor = csvDecompressor;
+        this.validationProfiles = validationProfiles;
+        this.resubmissionIndex = resubmissionIndex;
+        this.companyRegisterSnapshot = companyRegisterSnapshot;
+        this.retryBackoffPolicy = retryBackoffPolicy;
+        this.downloadStage = downloadStage;
+        this.validateStage = validateStage;
+        this.uploadStage = uploadStage;
+        this.claimOwner = claimOwner;
+        this.claimLease = claimLease;
+        this.copyInvalidFiles = copyInvalidFiles;
+        this.uploadWhileValidating = uploadWhileValidating;
+    }
+
+    /**
+     * Submits a record to the pipeline, waiting until the download stage has room for it.
+     *
+     * @return completes once the record has left the pipeline, whatever its outcome
+     */
+    public CompletableFuture<Void> submit(FileValidation candidate) throws InterruptedException {
+        var done = new CompletableFuture<Void>();
+        downloadStage.submit(() -> download(candidate, done));
+        return done;
+    }
+
+    /**
+     * Submits a record to the pipeline only if the download stage has room for it now.
+     *
+     * @return {@code true} if the record was submitted
+     */
+    public boolean trySubmit(FileValidation candidate) {
+        return downloadStage.trySubmit(() -> download(candidate, new CompletableFuture<>()));
+    }
+
+    /**
+     * Extends the claims on the records in the pipeline, so that a record waiting for a stage or taking long to
+     * process is not taken over. A claim that has been lost is abandoned when its record enters its next stage.
+     */
+    @Scheduled(fixedDelayString = "${amlData.fileValidation.claim.renew-interval}",
+            initialDelayString = "${amlData.fileValidation.claim.renew-interval}")
+    public void renewClaims() {
+        var claimExpiresAt = LocalDateTime.now().plus(claimLease);
+        claims.forEach((id, claimed) -> {
+            try {
+                if (claimed && fileValidationRepository.extendClaimById(id, claimOwner, claimExpiresAt) == 0) {
+                    LOGGER.error(String.format("Lost the claim on record with id: %s, it will be abandoned", id));
+                }
+            } catch (Exception e) {
+                LOGGER.error(String.format("Failed to extend the claim on record with id %s, %s", id, e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Claims the record and downloads its file. Records already claimed by another instance, or already in the
+     * pipeline of this one, are skipped.
+     *
+     * @param left completes once the record has left the pipeline and its claim is no longer extended
+     */
+    private void download(FileValidation candidate, CompletableFuture<Void> left) {
+        if (claims.putIfAbsent(candidate.getId(), false) != null) {
+            LOGGER.debug(String.format("Record with id: %s is already being processed", candidate.getId()));
+            left.complete(null);
+            return;
+        }
+        var done = new CompletableFuture<Void>();
+        done.whenComplete((result, failure) -> {
+            claims.remove(candidate.getId());
+            left.complete(null);
+        });
+        var handedOff = false;
+        try {
+            Optional<FileValidation> claimed = fileValidationRepository.claim(candidate.getId(), claimOwner, CLAIMABLE_STATUSES, LocalDateTime.now(), claimLease);
+            if (claimed.isEmpty()) {
+                LOGGER.debug(String.format("Record with id: %s has already been claimed", candidate.getId()));
+                return;
+            }
+            claims.put(candidate.getId(), true);
+            var recordToProcess = claimed.get();
+            try {
+                LOGGER.info(String.format("Processing record with id: %s, fileName: %s, amlBodyName: %s", recordToProcess.getId(), recordToProcess.getFileName(), recordToProcess.getFromLocation()));
+                var body = fileTransferService.get(recordToProcess.getFileId()).get().getBody();
+                if (!recordChecksum(recordToProcess, body)) {
+                    return;
+                }
+                handedOff = handOff(validateStage, () -> validate(recordToProcess, body, done), recordToProcess);
+            } catch (FileDownloadException e) {
+                var errorMessage = String.format("Failed to download file: %s with message %s", recordToProcess.getId(), e.getMessage());
+                LOGGER.error(errorMessage);
+                recordRetryableFailure(recordToProcess, FileStatus.DOWNLOAD_ERROR, errorMessage);
+            } catch (DownloadAvStatusException e) {
+                var errorMessage = String.format("Failed to download file: %s with message %s", recordToProcess.getId(), e.getMessage());
+                LOGGER.error(errorMessage);
+                recorded(fileValidationRepository.updateStatusAndErrorMessageById(recordToProcess.getId(), claimOwner, FileStatus.DOWNLOAD_AV_ERROR.getLabel(), errorMessage, LocalDateTime.now(), SYSTEM), recordToProcess, FileStatus.DOWNLOAD_AV_ERROR);
+            } catch (Exception e) {
+                recordUnknownFailure(recordToProcess, e);
+            }
+        } catch (Exception e) {
+            LOGGER.error(String.format("Failed to process record with id %s, %s", candidate.getId(), e.getMessage()));
+        } finally {
+            if (!handedOff) {
+                done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Keeps the checksum of the downloaded file with the record. The upload is skipped if S3 already holds a file
+     * with the same checksum.
+     *
+     * @return {@code false} if the claim on the record has been lost
+     */
+    private boolean recordChecksum(FileValidation recordToProcess, byte[] body) {
+        var checksum = S3UploadClient.checksumOf(body);
+        recordToProcess.setChecksum(checksum);
+        if (fileValidationRepository.updateChecksumById(recordToProcess.getId(), claimOwner, checksum) == 0) {
+            LOGGER.error(String.format("Lost the claim on record with id: %s, abandoning it", recordToProcess.getId()));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Validates the downloaded file against the profile of the body it came from, against the records the body
+     * submitted in earlier files if that check is on, and against the company register if a snapshot is configured,
+     * collecting all of its errors in one pass. A compressed file is decompressed as it is validated, and is uploaded
+     * still compressed. A file that fails
+     * validation is reported at the error location instead, see {@link #errorReport}. When uploading while validating
+     * the file is handed to the upload stage first, and what validation found is passed on to it once it is known.
+     */
+    private void validate(FileValidation recordToProcess, byte[] body, CompletableFuture<Void> done) {
+        var handedOff = false;
+        var validated = new CompletableFuture<Validation>();
+        try {
+            if (!renewClaim(recordToProcess)) {
+                return;
+            }
+            if (uploadWhileValidating) {
+                handedOff = handOff(uploadStage, () -> uploadWhileValidating(recordToProcess, body, validated, done), done, recordToProcess);
+                if (!handedOff) {
+                    return;
+                }
+            }
+            var validation = validationOf(recordToProcess, body);
+            if (uploadWhileValidating) {
+                validated.complete(validation);
+            } else if (validation != null) {
+                handedOff = handOff(uploadStage, () -> finish(recordToProcess, body, validation, done), done, recordToProcess);
+            }
+        } catch (Exception e) {
+            LOGGER.error(String.format("Failed to process record with id %s, %s", recordToProcess.getId(), e.getMessage()));
+        } finally {
+            validated.complete(null);
+            if (!handedOff) {
+                done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Validates the file, recording a file that fails validation as doing so.
+     *
+     * @return what validation found, or {@code null} if it failed for another reason, which has been recorded, or the
+     * claim on the record has been lost
+     */
+    private Validation validationOf(FileValidation recordToProcess, byte[] body) {
+        try {
+            var schema = validationProfiles.schemaFor(recordToProcess.getFromLocation());
+            var resubmission = resubmissionIndex.checkFor(recordToProcess.getFromLocation());
+            var compression = Compression.of(body);
+            var errors = compression == Compression.NONE
+                    ? csvProcessor.collectErrors(body, schema, resubmission, companyRegisterSnapshot.current())
+                    : csvProcessor.collectErrors(csvDecompressor.decompress(new ByteArrayInputStream(body), body.length, compression), schema, resubmission, companyRegisterSnapshot.current());
+            if (errors.isEmpty()) {
+                return new Validation(false, resubmission, null);
+            }
+            if (!recordValidationFailure(recordToProcess, errors.summary())) {
+                return null;
+            }
+            return new Validation(true, resubmission, errorReport(recordToProcess, body, compression, errors));
+        } catch (CSVDataValidationException e) {
+            if (!recordValidationFailure(recordToProcess, e.getMessage())) {
+                return null;
+            }
+            return new Validation(true, null, copyInvalidFiles ? null : ValidationErrors.toJsonReport(recordToProcess.getFileName(), recordToProcess.getFileId(), e.getMessage()));
+        } catch (Exception e) {
+            recordUnknownFailure(recordToProcess, e);
+            return null;
+        }
+    }
+
+    /**
+     * Uploads a file that passed validation to its destination, or reports one that failed at the error location.
+     * Recording the failure released the claim on a failed file's record, so only a file that passed has its claim
+     * renewed.
+     */
+    private void finish(FileValidation recordToProcess, byte[] body, Validation validation, CompletableFuture<Void> done) {
+        try {
+            if (validation.failed()) {
+                uploadOnError(recordToProcess, copyInvalidFiles ? body : null, validation.errorReport())
+                        .whenComplete((ignored, failure) -> done.complete(null));
+            } else if (!renewClaim(recordToProcess)) {
+                done.complete(null);
+            } else {
+                upload(recordToProcess, body, validation.resubmission(), done);
+            }
+        } catch (Exception e) {
+            LOGGER.error(String.format("Failed to process record with id %s, %s", recordToProcess.getId(), e.getMessage()));
+            done.complete(null);
+        }
+    }
+
+    /**
+     * The report of the errors in a file that failed validation. When invalid files are copied to the error location
+     * the report sits next to the copy. Otherwise only the report is stored, and it points to the rows with errors in
+     * the file the file transfer service holds, by line and by byte range. A compressed file is stored compressed, so
+     * offsets into the csv it holds would not fetch its rows, and its rows are only given by line. A report whose rows
+     * cannot be found is sent without them.
+     */
+    private byte[] errorReport(FileValidation recordToProcess, byte[] body, Compression compression, ValidationErrors errors) {
+        if (copyInvalidFiles) {
+            return errors.toJsonReport(recordToProcess.getFileName());
+        }
+        Map<Integer, ValidationErrors.RowLocation> rowLocations;
+        try {
+            var csv = compression == Compression.NONE
+                    ? new ByteArrayInputStream(body)
+                    : csvDecompressor.decompress(new ByteArrayInputStream(body), body.length, compression);
+            rowLocations = csvProcessor.rowLocations(csv, errors, compression == Compression.NONE);
+        } catch (IOException | CSVDataValidationException e) {
+            LOGGER.error(String.format("Failed to find the rows with errors for record with id %s, %s", recordToProcess.getId(), e.getMessage()));
+            rowLocations = Map.of();
+        }
+        return errors.toJsonReport(recordToProcess.getFileName(), recordToProcess.getFileId(), rowLocations);
+    }
+
+    /**
+     * Uploads a valid file to its destination and marks the record completed, then keeps the fingerprints of its records
+     * so later files can be checked against them. The stage's thread is free once the upload has started, and the
+     * record is marked when the upload finishes.
+     */
+    private void upload(FileValidation recordToProcess, byte[] body, ResubmissionCheck resubmission, CompletableFuture<Void> done) {
+        started(() -> s3UploadClient.uploadFileAsync(body, recordToProcess.getFileName(), recordToProcess.getToLocation(), recordToProcess.getChecksum()))
+                .whenComplete((ignored, uploadFailure) -> {
+                    try {
+                        try {
+                            if (uploadFailure == null) {
+                                recordCompletion(recordToProcess, resubmission);
+                            } else {
+                                recordUploadFailure(recordToProcess, uploadFailure);
+                            }
+                        } catch (Exception e) {
+                            recordUnknownFailure(recordToProcess, e);
+                        }
+                    } catch (Exception e) {
+                        LOGGER.error(String.format("Failed to process record with id %s, %s", recordToProcess.getId(), e.getMessage()));
+                    } finally {
+                        done.complete(null);
+                    }
+                });
+    }
+
+    /**
+     * Uploads a file while the validate stage validates it, so that S3 holds it only once it has been found valid,
+     * then finishes the record as {@link #finish} does once both have finished. A file that fails validation is
+     * reported at the error location whether or not its upload failed first.
+     */
+    private void uploadWhileValidating(FileValidation recordToProcess, byte[] body, CompletableFuture<Validation> validated, CompletableFuture<Void> done) {
+        try {
+            if (!renewClaim(recordToProcess)) {
+                done.complete(null);
+                return;
+            }
+        } catch (Exception e) {
+            LOGGER.error(String.format("Failed to process record with id %s, %s", recordToProcess.getId(), e.getMessage()));
+            done.complete(null);
+            return;
+        }
+        started(() -> s3UploadClient.uploadFileOnceValidAsync(body, recordToProcess.getFileName(), recordToProcess.getToLocation(), recordToProcess.getChecksum(),
+                        validated.thenApply(validation -> validation != null && !validation.failed())))
+                .handle((valid, uploadFailure) -> uploadFailure)
+                .thenAcceptBoth(validated, (uploadFailure, validation) -> {
+                    var reporting = false;
+                    try {
+                        try {
+                            if (validation == null) {
+                                return;
+                            }
+                            if (validation.failed()) {
+                                uploadOnError(recordToProcess, copyInvalidFiles ? body : null, validation.errorReport())
+                                        .whenComplete((ignored, failure) -> done.complete(null));
+                                reporting = true;
+                            } else if (uploadFailure != null) {
+                                recordUploadFailure(recordToProcess, uploadFailure);
+                            } else {
+                                recordCompletion(recordToProcess, validation.resubmission());
+                            }
+                        } catch (Exception e) {
+                            recordUnknownFailure(recordToProcess, e);
+                        }
+                    } catch (Exception e) {
+                        LOGGER.error(String.format("Failed to process record with id %s, %s", recordToProcess.getId(), e.getMessage()));
+                    } finally {
+                        if (!reporting) {
+                            done.complete(null);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Starts an upload, turning a failure to start it into a failed upload.
+     */
+    private static <T> CompletableFuture<T> started(Supplier<CompletableFuture<T>> upload) {
+        try {
+            return upload.get();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Records a failed upload as one to retry, or as an unknown failure if something other than the upload failed.
+     */
+    private void recordUploadFailure(FileValidation recordToProcess, Throwable failure) {
+        var cause = causeOf(failure);
+        if (cause instanceof S3UploadException) {
+            var errorMessage = String.format("Failed to upload to S3 for file: %s with message %s", recordToProcess.getId(), cause.getMessage());
+            LOGGER.error(errorMessage);
+            recordRetryableFailure(recordToProcess, FileStatus.UPLOAD_ERROR, errorMessage);
+        } else {
+            recordUnknownFailure(recordToProcess, cause);
+        }
+    }
+
+    /**
+     * What an upload failed with, rather than the exception the future it was chained onto wrapped it in.
+     */
+    private static Throwable causeOf(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    /**
+     * Marks the record completed, then keeps its fingerprints. If the claim on the record has been lost the instance
+     * that holds it now completes it instead, and keeps its fingerprints.
+     */
+    private void recordCompletion(FileValidation recordToProcess, ResubmissionCheck resubmission) {
+        if (!recorded(fileValidationRepository.updateStatusById(recordToProcess.getId(), claimOwner, FileStatus.COMPLETED.getLabel(), LocalDateTime.now(), SYSTEM), recordToProcess, FileStatus.COMPLETED)) {
+            return;
+        }
+        LOGGER.info(String.format("Processing finished for record with id: %s, fileName: %s, amlBodyName: %s", recordToProcess.getId(), recordToProcess.getFileName(), recordToProcess.getFromLocation()));
+        if (resubmission != null) {
+            recordSubmission(recordToProcess, resubmission);
+        }
+    }
+
+    /**
+     * The file has already been delivered, so failing to keep its fingerprints is logged rather than failing the record.
+     * Its records will not be reported if they are sent again.
+     */
+    private void recordSubmission(FileValidation recordToProcess, ResubmissionCheck resubmission) {
+        try {
+            resubmissionIndex.record(recordToProcess, resubmission);
+        } catch (Exception e) {
+            LOGGER.error(String.format("Failed to keep the fingerprints of record with id %s, %s", recordToProcess.getId(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Uploads a file that failed validation if it is copied, and the report of its errors if there is one, to the
+     * error location. The record has already been marked as failing validation.
+     *
+     * @param body the file, or {@code null} if it is not copied
+     * @return completes once both uploads have finished, whether or not they succeeded
+     */
+    private CompletableFuture<Void> uploadOnError(FileValidation recordToProcess, byte[] body, byte[] errorReport) {
+        var copied = body == null
+                ? CompletableFuture.<Void>completedFuture(null)
+                : started(() -> s3UploadClient.uploadFileOnErrorAsync(body, recordToProcess.getFileName(), recordToProcess.getToLocation(), recordToProcess.getChecksum()))
+                        .exceptionally(failure -> {
+                            LOGGER.error(String.format("Failed to upload invalid file for record with id %s, %s", recordToProcess.getId(), causeOf(failure).getMessage()));
+                            return null;
+                        });
+        return copied
+                .thenCompose(ignored -> errorReport == null
+                        ? CompletableFuture.<Void>completedFuture(null)
+                        : started(() -> s3UploadClient.uploadErrorReportAsync(errorReport, recordToProcess.getFileName(), recordToProcess.getToLocation())))
+                .exceptionally(failure -> {
+                    LOGGER.error(String.format("Failed to upload error report for record with id %s, %s", recordToProcess.getId(), causeOf(failure).getMessage()));
+                    return null;
+                });
+    }
+
+    /**
+     * @return {@code false} if the claim on the record has been lost, in which case its errors are not reported
+     */
+    private boolean recordValidationFailure(FileValidation failedRecord, String message) {
+        var errorMessage = String.format("Failed to validate file: %s with message %s", failedRecord.getId(), message);
+        LOGGER.error(errorMessage);
+        return recorded(fileValidationRepository.updateStatusAndErrorMessageById(failedRecord.getId(), claimOwner, FileStatus.VALIDATION_ERROR.getLabel(), errorMessage, LocalDateTime.now(), SYSTEM), failedRecord, FileStatus.VALIDATION_ERROR);
+    }
+
+    /**
+     * Extends the claim on a record as it enters a stage, as it may have waited some time for the stage.
+     *
+     * @return {@code false} if the claim has been lost, in which case the record is abandoned
+     */
+    private boolean renewClaim(FileValidation recordToProcess) {
+        if (fileValidationRepository.extendClaimById(recordToProcess.getId(), claimOwner, LocalDateTime.now().plus(claimLease)) == 0) {
+            LOGGER.error(String.format("Lost the claim on record with id: %s, abandoning it", recordToProcess.getId()));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks that an update made under the claim on a record matched it.
+     *
+     * @param updated the number of records the update modified
+     * @return {@code false} if the claim has been lost, so the update was not made
+     */
+    private boolean recorded(long updated, FileValidation recordToProcess, FileStatus status) {
+        if (updated == 0) {
+            LOGGER.error(String.format("Lost the claim on record with id: %s, its %s status was not recorded", recordToProcess.getId(), status.getLabel()));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Hands a record on to the next stage, waiting until that stage has room. A record that cannot be handed on
+     * keeps its claim, which stops being extended once the record leaves the pipeline, and is picked up again once
+     * the claim expires.
+     *
+     * @return {@code true} if the record was handed on
+     */
+    private boolean handOff(BoundedExecutor stage, Runnable task, FileValidation recordToProcess) {
+        return handOff(stage, task, null, recordToProcess);
+    }
+
+    /**
+     * Hands a record on to a stage whose task only starts its work, holding the record's room in the stage until
+     * {@code done} completes rather than until the task returns, so the stage still bounds the records in it.
+     *
+     * @param done completes once the record has left the pipeline, or {@code null} to hold room until the task returns
+     */
+    private boolean handOff(BoundedExecutor stage, Runnable task, CompletableFuture<Void> done, FileValidation recordToProcess) {
+        try {
+            if (done == null) {
+                stage.submit(task);
+            } else {
+                stage.submit(task, done);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error(String.format("Interrupted while handing on record with id: %s, it will be retried once its claim expires", recordToProcess.getId()));
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("Failed to hand on record with id: %s, it will be retried once its claim expires, %s", recordToProcess.getId(), e.getMessage()));
+        }
+        return false;
+    }
+
+    private void recordUnknownFailure(FileValidation failedRecord, Throwable e) {
+        LOGGER.error(String.format("An unknown error occurred while running scheduler %s, with record id %s", e.getMessage(), failedRecord.getId()));
+        recordRetryableFailure(failedRecord, FileStatus.ERROR, e.getMessage());
+    }
+
+    /**
+     * Leaves the record in the failed status until the backoff policy allows another attempt, or moves it to dead
+     * letter once it has run out of attempts.
+     */
+    private void recordRetryableFailure(FileValidation failedRecord, FileStatus status, String errorMessage) {
+        var now = LocalDateTime.now();
+        var nextAttemptAt = retryBackoffPolicy.nextAttemptAt(status, failedRecord.getAttempts(), now);
+        if (nextAttemptAt.isPresent()) {
+            recorded(fileValidationRepository.updateStatusForRetryById(failedRecord.getId(), claimOwner, status.getLabel(), errorMessage, nextAttemptAt.get(), now, SYSTEM), failedRecord, status);
+        } else {
+            LOGGER.error(String.format("Giving up on record with id: %s after %d attempts, last status: %s", failedRecord.getId(), failedRecord.getAttempts(), status.getLabel()));
+            recorded(fileValidationRepository.updateStatusAndErrorMessageById(failedRecord.getId(), claimOwner, FileStatus.DEAD_LETTER.getLabel(), errorMessage, now, SYSTEM), failedRecord, FileStatus.DEAD_LETTER);
+        }
+    }
+
+    /**
+     * What validating a file found. A file that failed validation has {@code failed} set, and carries the report of
+     * its errors if there is one.
+     */
+    private record Validation(boolean failed, ResubmissionCheck resubmission, byte[] errorReport) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationSchema;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static uk.gov.companieshouse.filevalidationservice.FileValidationApplication.APPLICATION_NAMESPACE;
+
+/**
+ * The validation schema for each AML supervisory body. A body's profile is the schema in {@code <fromLocation>.json}
+ * in the profiles directory; bodies without one are validated against the default schema.
+ * <p>
+ * The profiles are compiled into an immutable snapshot that is swapped in whole whenever the directory changes, so
+ * there is no restart and looking up a body's schema costs one map read per file. A validation keeps the schema it
+ * started with, so a swap never changes the rules under a file part way through. A change is only swapped in once
+ * every profile in the directory compiles; until then the previous profiles stay in use.
+ */
+@Component
+public class ValidationProfiles {
+    private static final Logger LOGGER = LoggerFactory.getLogger( APPLICATION_NAMESPACE );
+
+    private static final String PROFILE_SUFFIX = ".json";
+
+    private final ValidationSchema defaultSchema;
+    private final Path location;
+    private volatile Profiles profiles = new Profiles(Map.of(), Map.of());
+
+    /**
+     * Loads the profiles, failing startup if any of them is not a valid schema.
+     *
+     * @param location the profiles directory, or blank to validate every body against the default schema
+     */
+    public ValidationProfiles(ValidationSchema defaultSchema,
+                              @Value("${amlData.fileValidation.profiles.location}") String location) throws IOException {
+        this.defaultSchema = defaultSchema;
+        this.location = location.isBlank() ? null : Path.of(location);
+        if (this.location != null) {
+            profiles = load(versions());
+            LOGGER.info(String.format("Loaded validation profiles for %s", profiles.schemas().keySet()));
+        }
+    }
+
+    /**
+     * The schema for files from the given supervisory body.
+     */
+    public ValidationSchema schemaFor(String fromLocation) {
+        var schema = fromLocation == null ? null : profiles.schemas().get(fromLocation);
+        return schema != null ? schema : defaultSchema;
+    }
+
+    /**
+     * Reloads the profiles if any has been added, changed or removed since they were last loaded.
+     */
+    @Scheduled(fixedDelayString = "${amlData.fileValidation.profiles.reload-interval}",
+            initialDelayString = "${amlData.fileValidation.profiles.reload-interval}")
+    public void reload() {
+        if (location == null) {
+            return;
+        }
+        try {
+            var versions = versions();
+            if (versions.equals(profiles.versions())) {
+                return;
+            }
+            profiles = load(versions);
+            LOGGER.info(String.format("Reloaded validation profiles for %s", profiles.schemas().keySet()));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error(String.format("Validation profiles not reloaded, keeping the current profiles: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * The last modified time and size of each profile, keyed by the supervisory body it applies to.
+     */
+    private Map<String, String> versions() throws IOException {
+        Map<String, String> versions = new HashMap<>();
+        try (var files = Files.list(location)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var name = file.getFileName().toString();
+                if (name.endsWith(PROFILE_SUFFIX) && Files.isRegularFile(file)) {
+                    versions.put(name.substring(0, name.length() - PROFILE_SUFFIX.length()),
+                            String.format("%s/%s", Files.getLastModifiedTime(file), Files.size(file)));
+                }
+            }
+        }
+        return versions;
+    }
+
+    private Profiles load(Map<String, String> versions) throws IOException {
+        Map<String, ValidationSchema> schemas = new HashMap<>();
+        for (var fromLocation : versions.keySet()) {
+            try (var input = Files.newInputStream(location.resolve(fromLocation + PROFILE_SUFFIX))) {
+                schemas.put(fromLocation, ValidationSchema.load(input));
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Profile for %s is not valid: %s", fromLocation, e.getMessage()), e);
+            }
+        }
+        return new Profiles(Map.copyOf(schemas), Map.copyOf(versions));
+    }
+
+    /**
+     * The compiled profiles together with the versions they were compiled from.
+     */
+    private record Profiles(Map<String, ValidationSchema> schemas, Map<String, String> versions) {
+    }
+}
@@ -1,98 +1,116 @@
 package uk.gov.companieshouse.filevalidationservice.service;
 
-import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import uk.gov.companieshouse.api.model.filetransfer.FileApi;
-import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
-import uk.gov.companieshouse.filevalidationservice.exception.DownloadAvStatusException;
-import uk.gov.companieshouse.filevalidationservice.exception.FileDownloadException;
-import uk.gov.companieshouse.filevalidationservice.exception.S3UploadException;
-import uk.gov.companieshouse.filevalidationservice.models.FileStatus;
 import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
-import uk.gov.companieshouse.filevalidationservice.parser.CsvProcessor;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidationSubmittedEvent;
 import uk.gov.companieshouse.filevalidationservice.repositories.FileValidationRepository;
-import uk.gov.companieshouse.filevalidationservice.rest.S3UploadClient;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
 
 import static uk.gov.companieshouse.filevalidationservice.FileValidationApplication.APPLICATION_NAMESPACE;
+import static uk.gov.companieshouse.filevalidationservice.service.ValidationPipeline.CLAIMABLE_STATUSES;
 
 @Component
 public class ValidationScheduler {
     private static final Logger LOGGER = LoggerFactory.getLogger( APPLICATION_NAMESPACE );
 
-    private static final String SYSTEM = "System";
-
     FileValidationRepository fileValidationRepository;
-    private final FileTransferService fileTransferService;
-    private final S3UploadClient s3UploadClient;
-    private final CsvProcessor csvProcessor;
+    private final ValidationPipeline validationPipeline;
+    private final Executor sweepExecutor;
+    private final int pageSize;
 
-    public ValidationScheduler(FileTransferService fileTransferService,
-                               FileValidationRepository fileValidationRepository,
-                               S3UploadClient s3UploadClient,
-                               CsvProcessor csvProcessor) {
-        this.fileTransferService = fileTransferService;
+    public ValidationScheduler(FileValidationRepository fileValidationRepository,
+                               ValidationPipeline validationPipeline,
+                               @Qualifier("sweepTaskExecutor") Executor sweepExecutor,
+                               @Value("${amlData.fileValidation.scheduler.page-size}") int pageSize) {
         this.fileValidationRepository = fileValidationRepository;
-        this.s3UploadClient = s3UploadClient;
-        this.csvProcessor = csvProcessor;
+        this.validationPipeline = validationPipeline;
+        this.sweepExecutor = sweepExecutor;
+        this.pageSize = pageSize;
     }
 
-    @SchedulerLock(
-            name = "ValidationScheduler_processFiles",
-            lockAtLeastFor = "${amlData.fileValidation.scheduler.lock-at-least-for}", // Hold lock for at least XX minutes
-            lockAtMostFor = "${amlData.fileValidation.scheduler.lock-at-most-for}"  // Hold lock for maximum XX minutes
-    )
+    /**
+     * Runs on every instance as a safety net for records that were not picked up when they were uploaded, such as
+     * those uploaded while the pipeline was busy, those left behind by an instance that stopped, and failures due for
+     * a retry under the {@link RetryBackoffPolicy}. The backlog is read a page at a time, oldest first, and each
+     * record is claimed individually before it is processed, so instances share the backlog between them and memory
+     * use does not depend on how many records are waiting.
+     * <p>
+     * The backlog is read on its own thread, which waits for room in the pipeline and for the records it submitted
+     * to leave it, so the scheduler's threads stay free for the other scheduled tasks. A run is skipped while the
+     * previous one is still going.
+     */
     @Scheduled(cron = "${amlData.fileValidation.cron}")
     public void processFiles() {
+        try {
+            sweepExecutor.execute(this::sweep);
+        } catch (RejectedExecutionException e) {
+            LOGGER.info("Scheduler skipped at : "+ LocalDateTime.now() + ", the previous run is still in progress");
+        }
+    }
+
+    private void sweep() {
         LOGGER.info("Scheduler started at : "+ LocalDateTime.now());
+        var inFlight = new Phaser(1);
         try {
-            List<FileValidation> recordsToProcess = fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel());
-            LOGGER.info("Total number of files to process : "+ recordsToProcess.size());
-            recordsToProcess.forEach(recordToProcess -> {
-                Optional<FileApi> downloadedFile = Optional.empty();
-                try {
-                    LOGGER.info(String.format("Processing record with id: %s, fileName: %s, amlBodyName: %s", recordToProcess.getId(), recordToProcess.getFileName(), recordToProcess.getFromLocation()));
-                    fileValidationRepository.updateStatusAndRemoveErrorMessageById(recordToProcess.getId(), FileStatus.IN_PROGRESS.getLabel(), LocalDateTime.now(), SYSTEM);
-                    downloadedFile = fileTransferService.get(recordToProcess.getFileId());
-                    csvProcessor.parseRecords(downloadedFile.get().getBody());
-                    s3UploadClient.uploadFile(downloadedFile.get().getBody(),
-                            recordToProcess.getFileName(),
-                            recordToProcess.getToLocation());
-                    fileValidationRepository.updateStatusById(recordToProcess.getId(), FileStatus.COMPLETED.getLabel(), LocalDateTime.now(), SYSTEM);
-                    LOGGER.info(String.format("Processing finished for record with id: %s, fileName: %s, amlBodyName: %s", recordToProcess.getId(), recordToProcess.getFileName(), recordToProcess.getFromLocation()));
-                } catch (FileDownloadException e) {
-                    var errorMessage = String.format("Failed to download file: %s with message %s", recordToProcess.getId(), e.getMessage());
-                    LOGGER.error(errorMessage);
-                    fileValidationRepository.updateStatusAndErrorMessageById(recordToProcess.getId(), FileStatus.DOWNLOAD_ERROR.getLabel(), errorMessage, LocalDateTime.now(), SYSTEM);
-                }  catch (DownloadAvStatusException e) {
-                    var errorMessage = String.format("Failed to download file: %s with message %s", recordToProcess.getId(), e.getMessage());
-                    LOGGER.error(errorMessage);
-                    fileValidationRepository.updateStatusAndErrorMessageById(recordToProcess.getId(), FileStatus.DOWNLOAD_AV_ERROR.getLabel(), errorMessage, LocalDateTime.now(), SYSTEM);
-                } catch (S3UploadException e) {
-                    var errorMessage = String.format("Failed to upload to S3 for file: %s with message %s", recordToProcess.getId(), e.getMessage());
-                    LOGGER.error(errorMessage);
-                    fileValidationRepository.updateStatusAndErrorMessageById(recordToProcess.getId(), FileStatus.UPLOAD_ERROR.getLabel(), errorMessage, LocalDateTime.now(), SYSTEM);
-                } catch (CSVDataValidationException e){
-                    var errorMessage = String.format("Failed to validate file: %s with message %s", recordToProcess.getId(), e.getMessage());
-                    LOGGER.error(errorMessage);
-                    fileValidationRepository.updateStatusAndErrorMessageById(recordToProcess.getId(), FileStatus.VALIDATION_ERROR.getLabel(), errorMessage, LocalDateTime.now(), SYSTEM);
-                    s3UploadClient.uploadFileOnError(downloadedFile.get().getBody(), recordToProcess.getFileName(),
-                            recordToProcess.getToLocation());
-                } catch (Exception e) {
-                    LOGGER.error(String.format("An unknown error occurred while running scheduler %s, with record id %s", e.getMessage(), recordToProcess.getId()));
-                    fileValidationRepository.updateStatusAndErrorMessageById(recordToProcess.getId(), FileStatus.ERROR.getLabel(), e.getMessage(), LocalDateTime.now(), SYSTEM);
+            var now = LocalDateTime.now();
+            var submitted = 0;
+            FileValidation lastSeen = null;
+            List<FileValidation> page;
+            do {
+                page = fileValidationRepository.findClaimablePage(CLAIMABLE_STATUSES, now, lastSeen, pageSize);
+                for (FileValidation candidate : page) {
+                    submit(candidate, inFlight);
                 }
-            });
+                submitted += page.size();
+                lastSeen = page.isEmpty() ? lastSeen : page.get(page.size() - 1);
+            } while (page.size() == pageSize);
+            LOGGER.info("Total number of files to process : "+ submitted);
+            inFlight.arriveAndAwaitAdvance();
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            LOGGER.error("Scheduler interrupted while waiting for room in the pipeline");
         }catch (Exception e){
             LOGGER.error(String.format("Error getting records to process %s", e.getMessage()));
         }finally{
             LOGGER.info("Scheduler finished at : "+ LocalDateTime.now());
         }
     }
+
+    /**
+     * Hands a newly uploaded record to the pipeline straight away. This never waits for room, so the upload
+     * request is not held up; when the pipeline is busy the record is left for the next scheduled run.
+     */
+    @EventListener
+    public void onFileValidationSubmitted(FileValidationSubmittedEvent event) {
+        var candidate = new FileValidation();
+        candidate.setId(event.getFileValidationId());
+        try {
+            if (!validationPipeline.trySubmit(candidate)) {
+                LOGGER.info(String.format("Pipeline is busy, record with id: %s will be processed by the scheduler", candidate.getId()));
+            }
+        } catch (Exception e) {
+            LOGGER.error(String.format("Failed to submit record with id %s, %s", candidate.getId(), e.getMessage()));
+        }
+    }
+
+    private void submit(FileValidation candidate, Phaser inFlight) throws InterruptedException {
+        inFlight.register();
+        try {
+            validationPipeline.submit(candidate).whenComplete((result, failure) -> inFlight.arriveAndDeregister());
+        } catch (InterruptedException | RuntimeException e) {
+            inFlight.arriveAndDeregister();
+            throw e;
+        }
+    }
 }
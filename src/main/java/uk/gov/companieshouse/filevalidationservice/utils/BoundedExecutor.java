@@ -0,0 +1,72 @@
+package uk.gov.companieshouse.filevalidationservice.utils;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of tasks an {@link Executor} holds, running or queued, to a fixed bound. Callers can either
+ * wait for room with {@link #submit(Runnable)} or give up straight away with {@link #trySubmit(Runnable)}. A task
+ * that only starts work which finishes later, on another thread, can hold its room until that work has finished with
+ * {@link #submit(Runnable, CompletionStage)}.
+ */
+public class BoundedExecutor {
+
+    private final Executor executor;
+
+    private final Semaphore permits;
+
+    public BoundedExecutor(final Executor executor, final int bound) {
+        this.executor = executor;
+        this.permits = new Semaphore(bound);
+    }
+
+    /**
+     * Submits the task, waiting until the executor has room for it.
+     */
+    public void submit(final Runnable task) throws InterruptedException {
+        permits.acquire();
+        execute(task, null);
+    }
+
+    /**
+     * Submits the task, waiting until the executor has room for it, and holds its room after it returns until
+     * {@code finished} completes. The task must complete {@code finished}, or have something else do so.
+     */
+    public void submit(final Runnable task, final CompletionStage<?> finished) throws InterruptedException {
+        permits.acquire();
+        execute(task, finished);
+    }
+
+    /**
+     * Submits the task only if the executor has room for it now.
+     *
+     * @return {@code true} if the task was submitted
+     */
+    public boolean trySubmit(final Runnable task) {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        execute(task, null);
+        return true;
+    }
+
+    private void execute(final Runnable task, final CompletionStage<?> finished) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    if (finished == null) {
+                        permits.release();
+                    } else {
+                        finished.whenComplete((result, failure) -> permits.release());
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A snapshot of the number of every company on the register, for checking that a company number in a file belongs
+ * to a real company.
+ * <p>
+ * The snapshot is a file of 8 byte company numbers as Companies House issues them, such as {@code 00012345} or
+ * {@code SC012345}, sorted and with nothing between them. The file is memory-mapped rather than read onto the heap,
+ * so a register of millions of companies costs page cache rather than heap and is shared by every file being
+ * validated. A blocked Bloom filter of about 10 bits per company, also held off the heap, turns away most numbers
+ * that are not registered after reading a single 64 byte block; the rest are looked up by a binary search of the
+ * file. Lookups allocate nothing.
+ */
+public final class CompanyRegister {
+
+    /**
+     * The length of every company number in the snapshot.
+     */
+    public static final int NUMBER_LENGTH = 8;
+
+    private static final long NOT_A_NUMBER = -1L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long ZEROS = 0x3030303030303030L;
+    private static final int BITS_PER_NUMBER = 10;
+    private static final int BLOCK_BYTES = 64;
+    private static final int BLOCK_BITS = BLOCK_BYTES * Byte.SIZE;
+    private static final int BITS_SET = 7;
+    private static final int BIT_INDEX_BITS = 9;
+    private static final int MAX_BLOCKS = 1 << 24;
+
+    private final MappedByteBuffer numbers;
+    private final int size;
+    private final ByteBuffer filter;
+    private final int blockMask;
+
+    private CompanyRegister(MappedByteBuffer numbers) {
+        this.numbers = numbers;
+        this.size = numbers.capacity() / NUMBER_LENGTH;
+        var wanted = ((long) size * BITS_PER_NUMBER + BLOCK_BITS - 1) / BLOCK_BITS;
+        var blocks = (int) Math.min(wanted <= 1 ? 1 : Long.highestOneBit(wanted - 1) << 1, MAX_BLOCKS);
+        this.filter = ByteBuffer.allocateDirect(blocks * BLOCK_BYTES);
+        this.blockMask = blocks - 1;
+        var previous = 0L;
+        for (int i = 0; i < size; i++) {
+            var number = numbers.getLong(i * NUMBER_LENGTH);
+            if ((number & HIGH_BITS) != 0) {
+                throw new IllegalArgumentException(String.format("Company number %s of the register snapshot is not ASCII", i + 1));
+            }
+            if (i > 0 && number <= previous) {
+                throw new IllegalArgumentException(String.format("Company number %s of the register snapshot is out of order or repeated", i + 1));
+            }
+            addToFilter(number);
+            previous = number;
+        }
+    }
+
+    /**
+     * Maps the snapshot file and builds its filter, reading the whole file once to check it is sorted.
+     *
+     * @throws IllegalArgumentException if the file is not a sorted list of 8 byte company numbers
+     */
+    public static CompanyRegister open(Path snapshot) throws IOException {
+        try (var channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            var length = channel.size();
+            if (length % NUMBER_LENGTH != 0) {
+                throw new IllegalArgumentException(String.format("Register snapshot is %s bytes long, which is not a whole number of company numbers", length));
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format("Register snapshot is %s bytes long, at most %s are supported", length, Integer.MAX_VALUE));
+            }
+            return new CompanyRegister(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+        }
+    }
+
+    /**
+     * The number of companies on the register.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether the company number in the UTF-8 field {@code bytes[start, end)} is on the register. Letters are compared
+     * regardless of case, and numbers of only digits are zero padded, so {@code sc012345} and {@code 12345} are found
+     * as {@code SC012345} and {@code 00012345}.
+     */
+    public boolean contains(byte[] bytes, int start, int end) {
+        var number = number(bytes, start, end);
+        return number != NOT_A_NUMBER && mightContain(number) && binarySearch(number);
+    }
+
+    /**
+     * The field as an 8 byte company number read big endian, which sorts the same as the bytes, or
+     * {@link #NOT_A_NUMBER} if it cannot be one.
+     */
+    private static long number(byte[] bytes, int start, int end) {
+        var length = end - start;
+        if (length == 0 || length > NUMBER_LENGTH) {
+            return NOT_A_NUMBER;
+        }
+        var number = 0L;
+        var digitsOnly = true;
+        for (int i = start; i < end; i++) {
+            var b = bytes[i];
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+            }
+            if (b >= 'A' && b <= 'Z') {
+                digitsOnly = false;
+            } else if (b < '0' || b > '9') {
+                return NOT_A_NUMBER;
+            }
+            number = number << Byte.SIZE | b;
+        }
+        if (length < NUMBER_LENGTH) {
+            if (!digitsOnly) {
+                return NOT_A_NUMBER;
+            }
+            number |= ZEROS << length * Byte.SIZE;
+        }
+        return number;
+    }
+
+    private boolean binarySearch(long number) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            var found = numbers.getLong(middle * NUMBER_LENGTH);
+            if (found < number) {
+                low = middle + 1;
+            } else if (found > number) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addToFilter(long number) {
+        var hash = mix(number);
+        var block = ((int) (hash >>> 32) & blockMask) * BLOCK_BYTES;
+        var bits = hash * 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < BITS_SET; i++, bits >>>= BIT_INDEX_BITS) {
+            var bit = (int) bits & (BLOCK_BITS - 1);
+            var word = block + (bit >>> 6) * Long.BYTES;
+            filter.putLong(word, filter.getLong(word) | 1L << bit);
+        }
+    }
+
+    private boolean mightContain(long number) {
+        var hash = mix(number);
+        var block = ((int) (hash >>> 32) & blockMask) * BLOCK_BYTES;
+        var bits = hash * 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < BITS_SET; i++, bits >>>= BIT_INDEX_BITS) {
+            var bit = (int) bits & (BLOCK_BITS - 1);
+            if ((filter.getLong(block + (bit >>> 6) * Long.BYTES) & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads the bits of a company number, whose bytes are all ASCII letters and digits, across the whole hash.
+     */
+    private static long mix(long number) {
+        number ^= number >>> 33;
+        number *= 0xFF51AFD7ED558CCDL;
+        number ^= number >>> 33;
+        number *= 0xC4CEB9FE1A85EC53L;
+        return number ^ number >>> 33;
+    }
+}
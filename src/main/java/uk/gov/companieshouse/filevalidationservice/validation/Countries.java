@@ -0,0 +1,354 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The closed set of countries a country field can name, by ISO 3166-1 alpha-2 or alpha-3 code or by name, read once
+ * from {@code countries.txt}.
+ * <p>
+ * Names are matched ignoring ASCII case, spaces before and after and runs of spaces inside, so {@code gb},
+ * {@code united  kingdom} and {@code UNITED KINGDOM} all match. The names are held in a perfect hash table
+ * built by hash and displace: each name hashes to a bucket, and each bucket has a displacement that sends all of its
+ * names to empty slots. Looking up a field hashes it once, reads one displacement and compares the field with the one
+ * name in its slot, allocating nothing.
+ * <p>
+ * Each name also records whether its country's addresses have UK format postcodes: the United Kingdom, the Crown
+ * dependencies and the overseas territories with a postcode of their own, such as {@code STHL 1ZZ}.
+ */
+final class Countries {
+
+    /**
+     * The country names packaged with the service.
+     */
+    static final String LOCATION = "countries.txt";
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final int NAMES_PER_BUCKET = 4;
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+    private static final byte SPACE = ' ';
+    private static final byte NOT_A_NAME = (byte) 0xFF;
+    private static final int NO_SLOT = -1;
+    /**
+     * The alpha-2 codes, first on their lines in {@code countries.txt}, of the countries with UK format postcodes.
+     */
+    private static final Set<String> UK_POSTCODE_COUNTRIES = Set.of("GB", "GG", "JE", "IM", "SH", "FK", "IO");
+
+    private static final Countries COUNTRIES = load();
+
+    private final int[] displacements;
+    private final int bucketShift;
+    private final int slotMask;
+    private final byte[] names;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final boolean[] ukPostcodes;
+    private final int size;
+
+    private Countries(List<byte[]> keys, List<Boolean> keysWithUkPostcodes) {
+        size = keys.size();
+        var buckets = Integer.highestOneBit(Math.max(1, size / NAMES_PER_BUCKET)) << 1;
+        bucketShift = Integer.SIZE - Integer.numberOfTrailingZeros(buckets);
+        displacements = new int[buckets];
+        var slots = Integer.highestOneBit(Math.max(1, size)) << 2;
+        slotMask = slots - 1;
+        offsets = new int[slots];
+        lengths = new int[slots];
+        Arrays.fill(lengths, -1);
+        ukPostcodes = new boolean[slots];
+        names = new byte[keys.stream().mapToInt(key -> key.length).sum()];
+
+        var hashes = keys.stream().mapToLong(key -> hash(key, 0, key.length)).toArray();
+        List<List<Integer>> byBucket = new ArrayList<>();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            byBucket.add(new ArrayList<>());
+        }
+        for (int key = 0; key < size; key++) {
+            byBucket.get(bucket(hashes[key])).add(key);
+        }
+        // Place the fullest buckets first, while there are still plenty of empty slots to choose from.
+        var order = new ArrayList<Integer>();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            order.add(bucket);
+        }
+        order.sort((a, b) -> byBucket.get(b).size() - byBucket.get(a).size());
+        var arena = 0;
+        var taken = new boolean[slots];
+        for (var bucket : order) {
+            var members = byBucket.get(bucket);
+            if (members.isEmpty()) {
+                break;
+            }
+            var displacement = place(members, hashes, taken);
+            displacements[bucket] = displacement;
+            for (var key : members) {
+                var slot = slot(hashes[key], displacement);
+                System.arraycopy(keys.get(key), 0, names, arena, keys.get(key).length);
+                offsets[slot] = arena;
+                lengths[slot] = keys.get(key).length;
+                ukPostcodes[slot] = keysWithUkPostcodes.get(key);
+                arena += keys.get(key).length;
+            }
+        }
+    }
+
+    /**
+     * Whether the UTF-8 field {@code bytes[start, end)} is a country code or name. An empty country is valid.
+     */
+    static boolean isCountry(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] == SPACE) {
+            start++;
+        }
+        while (end > start && bytes[end - 1] == SPACE) {
+            end--;
+        }
+        return start == end || COUNTRIES.slotOf(bytes, start, end) != NO_SLOT;
+    }
+
+    /**
+     * Whether the value is a country code or name. An empty country is valid.
+     */
+    static boolean isCountry(CharSequence value) {
+        var start = 0;
+        var end = value.length();
+        while (start < end && value.charAt(start) == SPACE) {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) == SPACE) {
+            end--;
+        }
+        return start == end || COUNTRIES.slotOf(value, start, end) != NO_SLOT;
+    }
+
+    /**
+     * Whether the UTF-8 field {@code bytes[start, end)} names a country with UK format postcodes, or is empty, as a
+     * UK address may leave its country out.
+     */
+    static boolean usesUkPostcodes(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] == SPACE) {
+            start++;
+        }
+        while (end > start && bytes[end - 1] == SPACE) {
+            end--;
+        }
+        return start == end || COUNTRIES.hasUkPostcodes(COUNTRIES.slotOf(bytes, start, end));
+    }
+
+    /**
+     * Whether the value names a country with UK format postcodes, or is empty.
+     */
+    static boolean usesUkPostcodes(CharSequence value) {
+        var start = 0;
+        var end = value.length();
+        while (start < end && value.charAt(start) == SPACE) {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) == SPACE) {
+            end--;
+        }
+        return start == end || COUNTRIES.hasUkPostcodes(COUNTRIES.slotOf(value, start, end));
+    }
+
+    /**
+     * The number of codes and names, counting each spelling of a country's name on its own.
+     */
+    static int size() {
+        return COUNTRIES.size;
+    }
+
+    private boolean hasUkPostcodes(int slot) {
+        return slot != NO_SLOT && ukPostcodes[slot];
+    }
+
+    /**
+     * The slot holding the field's name, or {@link #NO_SLOT} if it is not a name.
+     */
+    private int slotOf(byte[] bytes, int start, int end) {
+        var hash = hash(bytes, start, end);
+        var slot = slot(hash, displacements[bucket(hash)]);
+        var length = lengths[slot];
+        if (length < 0) {
+            return NO_SLOT;
+        }
+        var offset = offsets[slot];
+        var matched = 0;
+        var previous = (byte) 0;
+        for (int i = start; i < end; i++) {
+            var b = bytes[i];
+            if (b == SPACE && previous == SPACE) {
+                continue;
+            }
+            previous = b;
+            if (matched == length || names[offset + matched++] != upperCase(b)) {
+                return NO_SLOT;
+            }
+        }
+        return matched == length ? slot : NO_SLOT;
+    }
+
+    private int slotOf(CharSequence value, int start, int end) {
+        var hash = hash(value, start, end);
+        var slot = slot(hash, displacements[bucket(hash)]);
+        var length = lengths[slot];
+        if (length < 0) {
+            return NO_SLOT;
+        }
+        var offset = offsets[slot];
+        var matched = 0;
+        var previous = (char) 0;
+        for (int i = start; i < end; i++) {
+            var c = value.charAt(i);
+            if (c == SPACE && previous == SPACE) {
+                continue;
+            }
+            previous = c;
+            if (c < 0x80) {
+                if (matched == length || names[offset + matched++] != upperCase((byte) c)) {
+                    return NO_SLOT;
+                }
+            } else {
+                // The names are ASCII but for accented letters, which are all two bytes in UTF-8.
+                if (c >= 0x800 || matched + 2 > length
+                        || names[offset + matched++] != (byte) (0xC0 | c >> 6)
+                        || names[offset + matched++] != (byte) (0x80 | c & 0x3F)) {
+                    return NO_SLOT;
+                }
+            }
+        }
+        return matched == length ? slot : NO_SLOT;
+    }
+
+    /**
+     * Finds a displacement that sends every name in a bucket to a different empty slot, and takes those slots.
+     */
+    private int place(List<Integer> members, long[] hashes, boolean[] taken) {
+        var placed = new int[members.size()];
+        search:
+        for (int displacement = 0; displacement < MAX_DISPLACEMENT; displacement++) {
+            for (int i = 0; i < members.size(); i++) {
+                var slot = slot(hashes[members.get(i)], displacement);
+                for (int j = 0; j < i; j++) {
+                    if (placed[j] == slot) {
+                        continue search;
+                    }
+                }
+                if (taken[slot]) {
+                    continue search;
+                }
+                placed[i] = slot;
+            }
+            for (int i = 0; i < members.size(); i++) {
+                taken[placed[i]] = true;
+            }
+            return displacement;
+        }
+        throw new IllegalStateException("Countries cannot be placed in a perfect hash table");
+    }
+
+    private int bucket(long hash) {
+        return (int) ((hash >>> 32) * GOLDEN >>> 32) >>> bucketShift;
+    }
+
+    private int slot(long hash, int displacement) {
+        return (int) mix(hash + displacement * GOLDEN) & slotMask;
+    }
+
+    /**
+     * FNV-1a of the field upper cased with runs of spaces read as one space, the same bytes a name is stored as.
+     */
+    private static long hash(byte[] bytes, int start, int end) {
+        var hash = FNV_OFFSET;
+        var previous = (byte) 0;
+        for (int i = start; i < end; i++) {
+            var b = bytes[i];
+            if (b == SPACE && previous == SPACE) {
+                continue;
+            }
+            previous = b;
+            hash = (hash ^ (upperCase(b) & 0xFF)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long hash(CharSequence value, int start, int end) {
+        var hash = FNV_OFFSET;
+        var previous = (char) 0;
+        for (int i = start; i < end; i++) {
+            var c = value.charAt(i);
+            if (c == SPACE && previous == SPACE) {
+                continue;
+            }
+            previous = c;
+            if (c < 0x80) {
+                hash = (hash ^ (upperCase((byte) c) & 0xFF)) * FNV_PRIME;
+            } else if (c < 0x800) {
+                hash = (hash ^ (0xC0 | c >> 6)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | c & 0x3F)) * FNV_PRIME;
+            } else {
+                hash = (hash ^ (NOT_A_NAME & 0xFF)) * FNV_PRIME;
+            }
+        }
+        return mix(hash);
+    }
+
+    private static byte upperCase(byte b) {
+        return b >= 'a' && b <= 'z' ? (byte) (b - ('a' - 'A')) : b;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ hash >>> 33;
+    }
+
+    /**
+     * Reads every code and name in the packaged list, in the form they are stored and compared in.
+     */
+    private static Countries load() {
+        try (var input = Countries.class.getClassLoader().getResourceAsStream(LOCATION)) {
+            if (input == null) {
+                throw new IllegalStateException(String.format("%s is missing from the classpath", LOCATION));
+            }
+            List<byte[]> keys = new ArrayList<>();
+            List<Boolean> keysWithUkPostcodes = new ArrayList<>();
+            var seen = new HashSet<String>();
+            var reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                var names = line.split("\\|");
+                var ukPostcodes = UK_POSTCODE_COUNTRIES.contains(names[0].strip());
+                for (var name : names) {
+                    var key = name.strip().replaceAll(" +", " ").getBytes(StandardCharsets.UTF_8);
+                    for (int i = 0; i < key.length; i++) {
+                        key[i] = upperCase(key[i]);
+                    }
+                    if (key.length == 0) {
+                        continue;
+                    }
+                    if (!seen.add(new String(key, StandardCharsets.UTF_8))) {
+                        throw new IllegalStateException(String.format("Country '%s' is listed more than once in %s", name.strip(), LOCATION));
+                    }
+                    keys.add(key);
+                    keysWithUkPostcodes.add(ukPostcodes);
+                }
+            }
+            return new Countries(keys, keysWithUkPostcodes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
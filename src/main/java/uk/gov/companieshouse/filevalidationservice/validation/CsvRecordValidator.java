@@ -1,111 +1,163 @@
 package uk.gov.companieshouse.filevalidationservice.validation;
 
-import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
-
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_UNIQUE_ID_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_COMPANY_NAME_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_COMPANY_NUMBER_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_TRADING_NAME_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_FIRST_NAME_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_LAST_NAME_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_PROP_NAME_OR_NO_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_ADDRESSLINE1_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_ADDRESSLINE2_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_CITY_OR_TOWN_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_POSTCODE_LENGTH;
-import static uk.gov.companieshouse.filevalidationservice.utils.Constants.MAX_COUNTRY_LENGTH;
-
-
+/**
+ * The checks applied to a single csv field, run on the raw bytes of the field or on any {@link CharSequence} so that
+ * checking a record allocates nothing and throws nothing. {@link ValidationSchema} decides which check applies to
+ * which column and what a failure is reported as.
+ * <p>
+ * Lengths are counted in UTF-16 code units, which is what {@link String#length()} would return for the field.
+ */
 public class CsvRecordValidator {
 
+    private static final int DATE_OF_BIRTH_LENGTH = 8;
+
     private CsvRecordValidator() {
         throw new UnsupportedOperationException("This is a constants class and cannot be instantiated");
     }
 
-    public static void validateUniqueId(String uniqueId) {
-        if (uniqueId.length() > MAX_UNIQUE_ID_LENGTH) {
-            throw new CSVDataValidationException("Unique ID is not valid");
-        }
+    /**
+     * Whether the UTF-8 field {@code bytes[start, end)} is at most {@code maxLength} UTF-16 code units long.
+     */
+    public static boolean isWithinLength(int maxLength, byte[] bytes, int start, int end) {
+        // A field never has more UTF-16 code units than UTF-8 bytes, so most fields need not be counted at all.
+        return end - start <= maxLength || utf16Length(bytes, start, end) <= maxLength;
     }
 
-    public static void validateRegisteredCompanyName(String registeredCompanyName) {
-        if (registeredCompanyName.length() > MAX_COMPANY_NAME_LENGTH) {
-            throw new CSVDataValidationException("Registered Company name is over 160 characters long");
+    /**
+     * Whether the UTF-8 field {@code bytes[start, end)} is a date in ddMMyyyy format. An empty date of birth is
+     * valid.
+     */
+    public static boolean isValidDateOfBirth(byte[] bytes, int start, int end) {
+        if (start == end) {
+            return true;
+        }
+        if (end - start != DATE_OF_BIRTH_LENGTH) {
+            return false;
         }
+        var date = 0;
+        for (int i = start; i < end; i++) {
+            var digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            date = date * 10 + digit;
+        }
+        return isValidDate(date);
     }
 
-    public static void validateCompanyNumber(String companyNumber) {
-        if (companyNumber.length() > MAX_COMPANY_NUMBER_LENGTH) {
-            throw new CSVDataValidationException("Company number is over 10 characters long");
+    /**
+     * Whether the date of birth is a date in ddMMyyyy format. An empty date of birth is valid.
+     */
+    public static boolean isValidDateOfBirth(CharSequence dateOfBirth) {
+        var length = dateOfBirth.length();
+        if (length == 0) {
+            return true;
+        }
+        if (length != DATE_OF_BIRTH_LENGTH) {
+            return false;
         }
+        var date = 0;
+        for (int i = 0; i < length; i++) {
+            var digit = dateOfBirth.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            date = date * 10 + digit;
+        }
+        return isValidDate(date);
     }
 
-    public static void validateTradingName(String tradingName) {
-        if (tradingName.length() > MAX_TRADING_NAME_LENGTH) {
-            throw new CSVDataValidationException("Trading name is over 160 characters long");
-        }
+    /**
+     * Whether the UTF-8 field {@code bytes[start, end)} is a UK postcode, ignoring case and spaces around and between
+     * the outward and inward codes. An empty postcode is valid.
+     */
+    public static boolean isValidUkPostcode(byte[] bytes, int start, int end) {
+        return start == end || UkPostcodes.isPostcode(bytes, start, end);
     }
 
-    public static void validateFirstName(String firstName) {
-        if (firstName.length() > MAX_FIRST_NAME_LENGTH) {
-            throw new CSVDataValidationException("First name is over 50 characters long");
-        }
+    /**
+     * Whether the postcode is a UK postcode, ignoring case and spaces around and between the outward and inward
+     * codes. An empty postcode is valid.
+     */
+    public static boolean isValidUkPostcode(CharSequence postcode) {
+        return postcode.length() == 0 || UkPostcodes.isPostcode(postcode);
     }
 
-    public static void validateLastName(String lastName) {
-        if (lastName.length() > MAX_LAST_NAME_LENGTH) {
-            throw new CSVDataValidationException("Last name is over 160 characters long");
-        }
+    /**
+     * Whether the UTF-8 field {@code bytes[start, end)} is an ISO 3166-1 country code or a country name, ignoring
+     * ASCII case and extra spaces. An empty country is valid.
+     */
+    public static boolean isKnownCountry(byte[] bytes, int start, int end) {
+        return Countries.isCountry(bytes, start, end);
     }
 
-    public static void validateDateOfBirth(String dateOfBirth) {
-        if(!dateOfBirth.isEmpty()) {
-            try {
-                var formatter = DateTimeFormatter.ofPattern("ddMMyyyy");
-                LocalDate.parse(dateOfBirth, formatter);
-            } catch (DateTimeParseException e) {
-                throw new CSVDataValidationException("Date of birth format is incorrect");
-            }
-        }
+    /**
+     * Whether the country is an ISO 3166-1 country code or a country name, ignoring ASCII case and extra spaces. An
+     * empty country is valid.
+     */
+    public static boolean isKnownCountry(CharSequence country) {
+        return Countries.isCountry(country);
     }
 
-    public static void validatePropertyNameOrNo(String propertyNameOrNo) {
-        if (propertyNameOrNo.length() > MAX_PROP_NAME_OR_NO_LENGTH) {
-            throw new CSVDataValidationException("Property Name or Number is over 200 characters long");
-        }
+    /**
+     * Whether the UTF-8 field {@code bytes[start, end)} names a country whose addresses have UK postcodes: the United
+     * Kingdom, a Crown dependency or an overseas territory with a UK format postcode. An empty country does, as a UK
+     * address may leave it out.
+     */
+    public static boolean usesUkPostcodes(byte[] bytes, int start, int end) {
+        return Countries.usesUkPostcodes(bytes, start, end);
     }
 
-    public static void validateAddressLine1(String addressLine1) {
-        if (addressLine1.length() > MAX_ADDRESSLINE1_LENGTH) {
-            throw new CSVDataValidationException("AddressLine1 is over 50 characters long");
-        }
+    /**
+     * Whether the country is one whose addresses have UK postcodes, or is empty.
+     */
+    public static boolean usesUkPostcodes(CharSequence country) {
+        return Countries.usesUkPostcodes(country);
     }
 
-    public static void validateAddressLine2(String addressLine2) {
-        if (addressLine2.length() > MAX_ADDRESSLINE2_LENGTH) {
-            throw new CSVDataValidationException("AddressLine2 is over 50 characters long");
+    /**
+     * The length of the UTF-8 field {@code bytes[start, end)} in UTF-16 code units: one for each byte that starts a
+     * character, and one more for each character outside the Basic Multilingual Plane.
+     */
+    public static int utf16Length(byte[] bytes, int start, int end) {
+        var length = 0;
+        for (int i = start; i < end; i++) {
+            var b = bytes[i];
+            if ((b & 0xC0) != 0x80) {
+                length++;
+            }
+            if ((b & 0xF8) == 0xF0) {
+                length++;
+            }
         }
+        return length;
     }
 
-    public static void validateCityOrTown(String cityOrTown) {
-        if (cityOrTown.length() > MAX_CITY_OR_TOWN_LENGTH) {
-            throw new CSVDataValidationException("City or Town is over 50 characters long");
-        }
+    /**
+     * Whether the eight digits ddMMyyyy, read as one number, make a real date in year 1 or later.
+     */
+    private static boolean isValidDate(int date) {
+        var day = date / 1_000_000;
+        var month = date / 10_000 % 100;
+        var year = date % 10_000;
+        return year >= 1 && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(month, year);
     }
 
-    public static void validatePostcode(String postCode) {
-        if (postCode.length() > MAX_POSTCODE_LENGTH) {
-            throw new CSVDataValidationException("Postcode is over 20 characters long");
+    private static int daysInMonth(int month, int year) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
         }
     }
 
-    public static void validateCountry(String country) {
-        if (country.length() > MAX_COUNTRY_LENGTH) {
-            throw new CSVDataValidationException("Country is over 50 characters long");
-        }
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
     }
 }
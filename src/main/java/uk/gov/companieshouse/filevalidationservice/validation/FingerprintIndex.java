@@ -0,0 +1,96 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of 64-bit fingerprints, such as those of every record a supervisory body has submitted before.
+ * <p>
+ * The fingerprints are held sorted in one primitive array, 8 bytes each, behind a blocked Bloom filter of 10 to 20 bits
+ * each. Most lookups are for fingerprints that are not in the set, and the filter turns those away after reading a
+ * single 64 byte block, so only about one in a hundred goes on to the binary search, which reads one cache line per
+ * step.
+ */
+public final class FingerprintIndex {
+
+    public static final FingerprintIndex EMPTY = new FingerprintIndex(new long[0]);
+
+    private static final int BITS_PER_FINGERPRINT = 10;
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BLOCK_BITS = WORDS_PER_BLOCK * Long.SIZE;
+    private static final int BITS_SET = 7;
+    private static final int BIT_INDEX_BITS = 9;
+    private static final int MAX_BLOCKS = 1 << 24;
+
+    private final long[] fingerprints;
+    private final long[] filter;
+    private final int blockMask;
+
+    private FingerprintIndex(long[] sortedDistinct) {
+        this.fingerprints = sortedDistinct;
+        var wanted = ((long) sortedDistinct.length * BITS_PER_FINGERPRINT + BLOCK_BITS - 1) / BLOCK_BITS;
+        var blocks = (int) Math.min(wanted <= 1 ? 1 : Long.highestOneBit(wanted - 1) << 1, MAX_BLOCKS);
+        this.filter = new long[blocks * WORDS_PER_BLOCK];
+        this.blockMask = blocks - 1;
+        for (var fingerprint : sortedDistinct) {
+            addToFilter(fingerprint);
+        }
+    }
+
+    /**
+     * An index of the given fingerprints, which may be in any order and may repeat.
+     */
+    public static FingerprintIndex of(long[] fingerprints) {
+        return EMPTY.with(fingerprints);
+    }
+
+    /**
+     * This index together with the given fingerprints, leaving this index as it is.
+     */
+    public FingerprintIndex with(long[] more) {
+        if (more.length == 0) {
+            return this;
+        }
+        var merged = Arrays.copyOf(fingerprints, fingerprints.length + more.length);
+        System.arraycopy(more, 0, merged, fingerprints.length, more.length);
+        Arrays.sort(merged);
+        var distinct = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (i == 0 || merged[i] != merged[distinct - 1]) {
+                merged[distinct++] = merged[i];
+            }
+        }
+        return new FingerprintIndex(distinct == merged.length ? merged : Arrays.copyOf(merged, distinct));
+    }
+
+    public boolean contains(long fingerprint) {
+        return mightContain(fingerprint) && Arrays.binarySearch(fingerprints, fingerprint) >= 0;
+    }
+
+    /**
+     * The number of distinct fingerprints.
+     */
+    public int size() {
+        return fingerprints.length;
+    }
+
+    private void addToFilter(long fingerprint) {
+        var block = ((int) (fingerprint >>> 32) & blockMask) * WORDS_PER_BLOCK;
+        var bits = fingerprint * 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < BITS_SET; i++, bits >>>= BIT_INDEX_BITS) {
+            var bit = (int) bits & (BLOCK_BITS - 1);
+            filter[block + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(long fingerprint) {
+        var block = ((int) (fingerprint >>> 32) & blockMask) * WORDS_PER_BLOCK;
+        var bits = fingerprint * 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < BITS_SET; i++, bits >>>= BIT_INDEX_BITS) {
+            var bit = (int) bits & (BLOCK_BITS - 1);
+            if ((filter[block + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import java.util.Arrays;
+
+/**
+ * Checks the records of one file against those a supervisory body submitted in earlier files, and collects the
+ * fingerprints of the file's own records so they can be checked against in turn once the file is completed.
+ * <p>
+ * Not thread safe. Parts of a file validated in parallel each use their own {@link #forPart() part}, which are added
+ * back in file order.
+ */
+public final class ResubmissionCheck {
+
+    /**
+     * What identifies a record as one submitted before.
+     */
+    public enum Key {
+        /**
+         * The value in the schema's unique column, or the whole record if the schema has none.
+         */
+        UNIQUE_ID,
+        /**
+         * Every field of the record.
+         */
+        RECORD
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Key key;
+    private final FingerprintIndex previous;
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    private int size;
+
+    public ResubmissionCheck(Key key, FingerprintIndex previous) {
+        this.key = key;
+        this.previous = previous;
+    }
+
+    public Key key() {
+        return key;
+    }
+
+    /**
+     * Checks a record's fingerprint against the earlier files and keeps it for this file.
+     *
+     * @return whether a record with the same fingerprint was submitted in an earlier file
+     */
+    public boolean check(long fingerprint) {
+        if (size == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, size * 2);
+        }
+        fingerprints[size++] = fingerprint;
+        return previous.contains(fingerprint);
+    }
+
+    /**
+     * An empty check against the same earlier files, for a part of the file validated on its own.
+     */
+    public ResubmissionCheck forPart() {
+        return new ResubmissionCheck(key, previous);
+    }
+
+    /**
+     * Keeps the fingerprints of a part of the file, after those already kept.
+     */
+    public void addAll(ResubmissionCheck part) {
+        if (size + part.size > fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, Math.max(size + part.size, size * 2));
+        }
+        System.arraycopy(part.fingerprints, 0, fingerprints, size, part.size);
+        size += part.size;
+    }
+
+    /**
+     * The fingerprints of the records checked so far, in file order.
+     */
+    public long[] fingerprints() {
+        return Arrays.copyOf(fingerprints, size);
+    }
+}
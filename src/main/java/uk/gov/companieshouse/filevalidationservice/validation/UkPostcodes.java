@@ -0,0 +1,239 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recognises UK postcodes with a deterministic automaton compiled once from the postcode formats, so checking a
+ * postcode is one table lookup per character with no regular expression and no allocation.
+ * <p>
+ * A postcode is an outward code in one of the forms {@code A9}, {@code A99}, {@code AA9}, {@code AA99}, {@code A9A}
+ * or {@code AA9A}, then an inward code {@code 9AA}, with the letters each position allows; {@code GIR 0AA} is also a
+ * postcode, as are the postcodes of the British overseas territories that have one in the UK format, such as
+ * {@code STHL 1ZZ}. Letters can be either case, and spaces are allowed before, after and between the two parts, so
+ * {@code sw1a1aa} and {@code SW1A  1AA} are both postcodes.
+ */
+final class UkPostcodes {
+
+    private static final String DIGITS = "0123456789";
+    private static final String FIRST = "ABCDEFGHIJKLMNOPRSTUWYZ";
+    private static final String SECOND = "ABCDEFGHKLMNOPQRSTUVWXY";
+    private static final String THIRD = "ABCDEFGHJKPSTUW";
+    private static final String FOURTH = "ABEHMNPRVWXY";
+    private static final String INWARD = "ABDEFGHJLNPQRSTUWXYZ";
+    private static final String SPACE = " ";
+
+    private static final String[][] OUTWARD_CODES = {
+            { FIRST, DIGITS },
+            { FIRST, DIGITS, DIGITS },
+            { FIRST, SECOND, DIGITS },
+            { FIRST, SECOND, DIGITS, DIGITS },
+            { FIRST, DIGITS, THIRD },
+            { FIRST, SECOND, DIGITS, FOURTH } };
+    private static final String[] INWARD_CODE = { DIGITS, INWARD, INWARD };
+    private static final String[][] GIRO_OUTWARD_CODES = { literal("GIR") };
+    private static final String[] GIRO_INWARD_CODE = literal("0AA");
+    /**
+     * Ascension Island, British Indian Ocean Territory, Falkland Islands, Saint Helena and Tristan da Cunha.
+     */
+    private static final String[][] TERRITORY_OUTWARD_CODES = { literal("ASCN"), literal("BIQQ"), literal("FIQQ"), literal("STHL"), literal("TDCU") };
+    private static final String[] TERRITORY_INWARD_CODE = literal("1ZZ");
+
+    private static final int DEAD = 0;
+    private static final int START = 1;
+    private static final Automaton AUTOMATON = compile();
+
+    private UkPostcodes() {
+    }
+
+    /**
+     * Whether the UTF-8 field {@code bytes[start, end)} is a UK postcode.
+     */
+    static boolean isPostcode(byte[] bytes, int start, int end) {
+        var automaton = AUTOMATON;
+        var state = START;
+        for (int i = start; i < end && state != DEAD; i++) {
+            state = automaton.transitions[state * automaton.classes + automaton.classOf[bytes[i] & 0xFF]];
+        }
+        return automaton.accepting[state];
+    }
+
+    /**
+     * Whether the value is a UK postcode.
+     */
+    static boolean isPostcode(CharSequence value) {
+        var automaton = AUTOMATON;
+        var state = START;
+        for (int i = 0; i < value.length() && state != DEAD; i++) {
+            var c = value.charAt(i);
+            state = automaton.transitions[state * automaton.classes + (c < automaton.classOf.length ? automaton.classOf[c] : 0)];
+        }
+        return automaton.accepting[state];
+    }
+
+    /**
+     * The automaton's transitions, indexed by state and then by the class of the next character, and the states that
+     * end a postcode. State 0 is the dead state, which nothing leads out of.
+     */
+    private record Automaton(byte[] classOf, int classes, int[] transitions, boolean[] accepting) {
+    }
+
+    /**
+     * Builds a nondeterministic automaton from the formats and makes it deterministic by the subset construction.
+     * Characters that no format tells apart share a class, so the table has a column per class, not per character.
+     */
+    private static Automaton compile() {
+        var nfa = new Nfa();
+        var start = nfa.state();
+        nfa.on(start, SPACE, start);
+        var end = nfa.state();
+        nfa.on(end, SPACE, end);
+        nfa.accepting(end);
+        postcodes(nfa, start, OUTWARD_CODES, INWARD_CODE, end);
+        postcodes(nfa, start, GIRO_OUTWARD_CODES, GIRO_INWARD_CODE, end);
+        postcodes(nfa, start, TERRITORY_OUTWARD_CODES, TERRITORY_INWARD_CODE, end);
+        return nfa.determinise(start);
+    }
+
+    /**
+     * Adds the postcodes made of any of the outward codes and the inward code, with or without spaces between them.
+     * The outward codes share the states that read the inward code, which keeps the automaton within its 64 states.
+     */
+    private static void postcodes(Nfa nfa, int start, String[][] outwardCodes, String[] inwardCode, int end) {
+        var middle = nfa.state();
+        nfa.on(middle, SPACE, middle);
+        var inward = nfa.state();
+        nfa.on(middle, inwardCode[0], inward);
+        nfa.chain(inward, Arrays.copyOfRange(inwardCode, 1, inwardCode.length), end);
+        for (var outwardCode : outwardCodes) {
+            var outward = nfa.chain(start, outwardCode);
+            nfa.on(outward, SPACE, middle);
+            nfa.on(outward, inwardCode[0], inward);
+        }
+    }
+
+    /**
+     * A format that only matches {@code code}.
+     */
+    private static String[] literal(String code) {
+        return code.chars().mapToObj(Character::toString).toArray(String[]::new);
+    }
+
+    /**
+     * A nondeterministic automaton of at most 64 states, each transition on a set of upper case characters.
+     */
+    private static final class Nfa {
+
+        private final List<String> sets = new ArrayList<>();
+        private final List<int[]> transitions = new ArrayList<>();
+        private int size;
+        private long accepting;
+
+        int state() {
+            if (size == Long.SIZE) {
+                throw new IllegalStateException("Too many postcode automaton states");
+            }
+            return size++;
+        }
+
+        void on(int from, String set, int to) {
+            var index = sets.indexOf(set);
+            if (index < 0) {
+                sets.add(set);
+                index = sets.size() - 1;
+            }
+            transitions.add(new int[] { from, index, to });
+        }
+
+        void accepting(int state) {
+            accepting |= 1L << state;
+        }
+
+        /**
+         * A chain of new states from {@code from} on each set in turn, returning the last.
+         */
+        int chain(int from, String[] chain) {
+            var state = from;
+            for (var set : chain) {
+                var next = state();
+                on(state, set, next);
+                state = next;
+            }
+            return state;
+        }
+
+        /**
+         * A chain from {@code from} on each set in turn that ends at {@code to}.
+         */
+        void chain(int from, String[] chain, int to) {
+            var state = from;
+            for (int i = 0; i < chain.length - 1; i++) {
+                var next = state();
+                on(state, chain[i], next);
+                state = next;
+            }
+            on(state, chain[chain.length - 1], to);
+        }
+
+        /**
+         * The subset construction, where each state of the result is the set of states this automaton could be in.
+         */
+        Automaton determinise(int start) {
+            var classOf = new byte[256];
+            Map<Long, Integer> classes = new HashMap<>();
+            List<Long> memberships = new ArrayList<>();
+            for (int c = 0; c < classOf.length; c++) {
+                var upper = Character.toUpperCase((char) c);
+                var membership = 0L;
+                for (int set = 0; set < sets.size(); set++) {
+                    if (c < 128 && sets.get(set).indexOf(upper) >= 0) {
+                        membership |= 1L << set;
+                    }
+                }
+                final var key = membership;
+                classOf[c] = (byte) (int) classes.computeIfAbsent(key, k -> {
+                    memberships.add(k);
+                    return memberships.size() - 1;
+                });
+            }
+            if (classOf[0] != 0 || memberships.size() > Byte.MAX_VALUE) {
+                throw new IllegalStateException("Postcode automaton character classes are not as expected");
+            }
+            Map<Long, Integer> dfaStates = new HashMap<>();
+            List<Long> pending = new ArrayList<>();
+            dfaStates.put(0L, DEAD);
+            pending.add(0L);
+            dfaStates.put(1L << start, START);
+            pending.add(1L << start);
+            var table = new ArrayList<int[]>();
+            for (int next = 0; next < pending.size(); next++) {
+                var current = pending.get(next);
+                var row = new int[memberships.size()];
+                for (int characterClass = 0; characterClass < row.length; characterClass++) {
+                    var target = 0L;
+                    for (var transition : transitions) {
+                        if ((current & 1L << transition[0]) != 0 && (memberships.get(characterClass) & 1L << transition[1]) != 0) {
+                            target |= 1L << transition[2];
+                        }
+                    }
+                    final var key = target;
+                    row[characterClass] = dfaStates.computeIfAbsent(key, k -> {
+                        pending.add(k);
+                        return pending.size() - 1;
+                    });
+                }
+                table.add(row);
+            }
+            var flat = new int[table.size() * memberships.size()];
+            var acceptingStates = new boolean[table.size()];
+            for (int state = 0; state < table.size(); state++) {
+                System.arraycopy(table.get(state), 0, flat, state * memberships.size(), memberships.size());
+                acceptingStates[state] = (pending.get(state) & accepting) != 0;
+            }
+            return new Automaton(classOf, memberships.size(), flat, acceptingStates);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The errors found in a file, each a row, a column and the rule it broke. Only the first {@code maxErrors} are kept,
+ * in parallel arrays that grow with the errors found up to that cap, so a file full of errors takes no more memory
+ * than one with just over {@code maxErrors}. Errors past the cap are only counted.
+ * <p>
+ * An error that leaves the rest of the file unreadable, such as a record that is not valid csv, stops validation
+ * and is always the last error kept.
+ * <p>
+ * Messages and column names are taken from the {@link ValidationSchema} the file was validated against. A duplicate
+ * value also keeps the row the value first appeared on.
+ */
+public class ValidationErrors {
+
+    /**
+     * The column of an error that applies to the whole row.
+     */
+    public static final int NO_COLUMN = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxErrors;
+    private final ValidationSchema schema;
+    private int[] rows = new int[0];
+    private byte[] columns = new byte[0];
+    private byte[] rules = new byte[0];
+    private int[] firstRows = new int[0];
+    private int size;
+    private long total;
+    private boolean stopped;
+    private String stopDetail;
+
+    public ValidationErrors(int maxErrors, ValidationSchema schema) {
+        if (maxErrors < 1) {
+            throw new IllegalArgumentException("At least one error must be kept");
+        }
+        this.maxErrors = maxErrors;
+        this.schema = schema;
+    }
+
+    public void add(int row, int column, ValidationRule rule) {
+        add(row, column, rule, 0);
+    }
+
+    /**
+     * Records a value in {@code column} on {@code row} that already appeared on {@code firstRow}.
+     */
+    public void addDuplicate(int row, int column, int firstRow) {
+        add(row, column, ValidationRule.DUPLICATE_VALUE, firstRow);
+    }
+
+    private void add(int row, int column, ValidationRule rule, int firstRow) {
+        total++;
+        if (size == maxErrors) {
+            return;
+        }
+        if (size == rows.length) {
+            var capacity = Math.min(Math.max(INITIAL_CAPACITY, size * 2), maxErrors);
+            rows = Arrays.copyOf(rows, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            rules = Arrays.copyOf(rules, capacity);
+            firstRows = Arrays.copyOf(firstRows, capacity);
+        }
+        rows[size] = row;
+        columns[size] = (byte) column;
+        rules[size] = (byte) rule.ordinal();
+        firstRows[size] = firstRow;
+        size++;
+    }
+
+    /**
+     * Records an error that stops validation, keeping it even if the cap has been reached.
+     *
+     * @param detail what exactly was wrong, reported alongside the rule's message
+     */
+    public void stop(int row, ValidationRule rule, String detail) {
+        if (size == maxErrors && size > 0) {
+            size--;
+        }
+        add(row, NO_COLUMN, rule);
+        stopped = true;
+        stopDetail = detail;
+    }
+
+    /**
+     * Appends the errors found in the next part of the same file, as if they had been found after these.
+     */
+    public void addAll(ValidationErrors later) {
+        if (stopped) {
+            return;
+        }
+        for (int i = 0; i < later.size; i++) {
+            if (later.stopped && i == later.size - 1) {
+                stop(later.rows[i], later.rule(i), later.stopDetail);
+            } else {
+                add(later.rows[i], later.columns[i], later.rule(i), later.firstRows[i]);
+            }
+        }
+        total += later.total - later.size;
+    }
+
+    /**
+     * These errors together with errors found in another pass over the same part of the file, in row order. Errors
+     * on the same row are kept in the order of the pass they came from, these first.
+     *
+     * @param other errors from a pass that did not stop validation
+     */
+    public ValidationErrors mergedWith(ValidationErrors other) {
+        var merged = new ValidationErrors(maxErrors, schema);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && rows[i] <= other.rows[j])) {
+                if (stopped && i == size - 1) {
+                    merged.stop(rows[i], rule(i), stopDetail);
+                } else {
+                    merged.add(rows[i], columns[i], rule(i), firstRows[i]);
+                }
+                i++;
+            } else {
+                merged.add(other.rows[j], other.columns[j], other.rule(j), other.firstRows[j]);
+                j++;
+            }
+        }
+        merged.total = total + other.total;
+        return merged;
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /**
+     * Whether validation stopped before the end of the file.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * The number of errors kept.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of errors found, including those past the cap.
+     */
+    public long total() {
+        return total;
+    }
+
+    public int row(int index) {
+        return rows[index];
+    }
+
+    public int column(int index) {
+        return columns[index];
+    }
+
+    public ValidationRule rule(int index) {
+        return ValidationRule.of(rules[index]);
+    }
+
+    /**
+     * The row a duplicate value first appeared on, or {@code 0} for any other error.
+     */
+    public int firstRow(int index) {
+        return firstRows[index];
+    }
+
+    public String message(int index) {
+        if (stopped && index == size - 1 && stopDetail != null) {
+            return stopDetail;
+        }
+        var message = schema.message(rule(index), columns[index]);
+        return firstRows[index] == 0 ? message : String.format("%s, first on line %s", message, firstRows[index]);
+    }
+
+    /**
+     * A one line description of the first error, in the same form as the exception thrown when validation stops at
+     * the first error, and of how many more there are.
+     */
+    public String summary() {
+        if (size == 0) {
+            return "No errors";
+        }
+        var first = String.format("Data validation exception: %s on line %s", message(0), rows[0]);
+        return total == 1 ? first : String.format("%s, and %s more errors", first, total - 1);
+    }
+
+    /**
+     * Writes the errors as a json report on the given file.
+     */
+    public byte[] toJsonReport(String fileName) {
+        return toJsonReport(fileName, null, Map.of());
+    }
+
+    /**
+     * Writes the errors as a json report that points into the file instead of being stored next to a copy of it. The
+     * report also names the file's id in the file transfer service, and each error whose row was found carries the
+     * {@code line} the row starts on and, when it has one, the row's {@code range} in the file, as the value of an
+     * HTTP Range header.
+     *
+     * @param rowLocations where the rows with errors are, by row
+     */
+    public byte[] toJsonReport(String fileName, String fileId, Map<Integer, RowLocation> rowLocations) {
+        var output = new ByteArrayOutputStream();
+        try (JsonGenerator json = new ObjectMapper().getFactory().createGenerator(output)) {
+            json.writeStartObject();
+            json.writeStringField("fileName", fileName);
+            if (fileId != null) {
+                json.writeStringField("fileId", fileId);
+            }
+            json.writeNumberField("totalErrors", total);
+            json.writeNumberField("reportedErrors", size);
+            json.writeBooleanField("truncated", total > size);
+            json.writeBooleanField("stopped", stopped);
+            json.writeArrayFieldStart("errors");
+            for (int i = 0; i < size; i++) {
+                json.writeStartObject();
+                json.writeNumberField("row", rows[i]);
+                if (columns[i] == NO_COLUMN) {
+                    json.writeNullField("column");
+                } else {
+                    json.writeStringField("column", schema.header(columns[i]));
+                }
+                json.writeStringField("rule", rule(i).name());
+                if (firstRows[i] != 0) {
+                    json.writeNumberField("firstRow", firstRows[i]);
+                }
+                json.writeStringField("message", message(i));
+                var location = rowLocations.get(rows[i]);
+                if (location != null) {
+                    json.writeNumberField("line", location.line());
+                    if (location.range() != null) {
+                        json.writeStringField("range", location.range());
+                    }
+                }
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Writes a json report, in the same form as {@link #toJsonReport(String, String, Map)}, on a file that could not
+     * be read far enough to find errors in its rows, such as compressed data that is corrupt.
+     */
+    public static byte[] toJsonReport(String fileName, String fileId, String message) {
+        var output = new ByteArrayOutputStream();
+        try (JsonGenerator json = new ObjectMapper().getFactory().createGenerator(output)) {
+            json.writeStartObject();
+            json.writeStringField("fileName", fileName);
+            json.writeStringField("fileId", fileId);
+            json.writeNumberField("totalErrors", 1);
+            json.writeNumberField("reportedErrors", 1);
+            json.writeBooleanField("truncated", false);
+            json.writeBooleanField("stopped", true);
+            json.writeArrayFieldStart("errors");
+            json.writeStartObject();
+            json.writeNullField("row");
+            json.writeNullField("column");
+            json.writeNullField("rule");
+            json.writeStringField("message", message);
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Where a row is in a file: the line it starts on, counting from 1, and the bytes it takes up as the value of an
+     * HTTP Range header, or {@code null} when the offsets are not offsets into the file as it is stored.
+     */
+    public record RowLocation(long line, String range) {
+    }
+}
@@ -0,0 +1,49 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+/**
+ * The checks a csv file can fail, with the message reported for each.
+ */
+public enum ValidationRule {
+
+    MALFORMED_RECORD("Record is not valid csv"),
+    NO_RECORDS("No records in file, not even headers"),
+    MISSING_HEADERS("Headers did not match expected headers"),
+    NO_RECORDS_AFTER_HEADERS("No records in file after headers"),
+    COLUMN_COUNT("Incorrect number of columns"),
+    UNIQUE_ID_LENGTH("Unique ID is not valid"),
+    COMPANY_NAME_LENGTH("Registered Company name is over 160 characters long"),
+    COMPANY_NUMBER_LENGTH("Company number is over 10 characters long"),
+    TRADING_NAME_LENGTH("Trading name is over 160 characters long"),
+    FIRST_NAME_LENGTH("First name is over 50 characters long"),
+    LAST_NAME_LENGTH("Last name is over 160 characters long"),
+    DATE_OF_BIRTH_FORMAT("Date of birth format is incorrect"),
+    PROPERTY_NAME_OR_NO_LENGTH("Property Name or Number is over 200 characters long"),
+    ADDRESS_LINE_1_LENGTH("AddressLine1 is over 50 characters long"),
+    ADDRESS_LINE_2_LENGTH("AddressLine2 is over 50 characters long"),
+    CITY_OR_TOWN_LENGTH("City or Town is over 50 characters long"),
+    POSTCODE_LENGTH("Postcode is over 20 characters long"),
+    COUNTRY_LENGTH("Country is over 50 characters long"),
+    POSTCODE_FORMAT("Postcode is not a valid UK postcode"),
+    COUNTRY_FORMAT("Country is not a recognised country name or code"),
+    FIELD_LENGTH("Field is too long"),
+    FIELD_FORMAT("Field format is incorrect"),
+    DUPLICATE_VALUE("Value appears more than once"),
+    RESUBMITTED("Record was submitted in an earlier file"),
+    NOT_REGISTERED("Company number is not on the register");
+
+    private static final ValidationRule[] VALUES = values();
+
+    private final String message;
+
+    ValidationRule(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public static ValidationRule of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,371 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The columns a csv file must have and the check applied to each, compiled from a json definition such as
+ * {@code validation-schema.json}:
+ * <pre>
+ * { "columns": [
+ *     { "header": "company number", "maxLength": 10, "rule": "COMPANY_NUMBER_LENGTH" },
+ *     { "header": "date of birth", "format": "ddMMyyyy", "rule": "DATE_OF_BIRTH_FORMAT" },
+ *     { "header": "postcode", "maxLength": 20, "rule": "POSTCODE_LENGTH", "format": "ukPostcode", "formatRule": "POSTCODE_FORMAT" } ] }
+ * </pre>
+ * A column can have a {@code maxLength} in UTF-16 code units and a {@code format}, which is {@code ddMMyyyy}, a
+ * {@code ukPostcode} or a {@code country} code or name; a {@code ddMMyyyy} date has its own length, so it cannot have
+ * a {@code maxLength} too. A field too long for its column is not checked against the format. Errors are reported under
+ * {@code rule} with {@code message}, or else the rule's message, except that format errors of a column with both checks
+ * are reported under {@code formatRule} with {@code formatMessage}. A column with no rule for a check reports
+ * {@link ValidationRule#FIELD_LENGTH} or {@link ValidationRule#FIELD_FORMAT} with a message naming its header.
+ * <p>
+ * A {@code ukPostcode} is only checked on a UK address: when the schema has a {@code country} column, a record whose
+ * country is outside the UK and the territories that use UK postcodes keeps whatever postcode its country uses. The
+ * first {@code country} column is the one that decides.
+ * <p>
+ * At most one column can be {@code "unique": true}, in which case a value that appears in it more than once is
+ * reported under {@link ValidationRule#DUPLICATE_VALUE}, and a value submitted in an earlier file under
+ * {@link ValidationRule#RESUBMITTED} when that check is on. At most one column can be {@code "registered": true}, in
+ * which case a value that is not on the {@link CompanyRegister} is reported under {@link ValidationRule#NOT_REGISTERED}
+ * when a register snapshot is configured.
+ * <p>
+ * The definition is compiled once into flat arrays indexed by column, so checking a field is a switch on the kind of
+ * check and a call to one of the kernels in {@link CsvRecordValidator}, with no lookups and no allocation.
+ */
+public final class ValidationSchema {
+
+    /**
+     * The result of a check that passed.
+     */
+    public static final int VALID = -1;
+
+    /**
+     * The schema packaged with the service.
+     */
+    public static final String DEFAULT_LOCATION = "validation-schema.json";
+
+    private static final String DATE_OF_BIRTH_FORMAT = "ddMMyyyy";
+    private static final String UK_POSTCODE_FORMAT = "ukPostcode";
+    private static final String COUNTRY_FORMAT = "country";
+    private static final int NO_MAX_LENGTH = -1;
+    private static final byte NO_FORMAT = 0;
+    private static final byte DATE_OF_BIRTH = 1;
+    private static final byte UK_POSTCODE = 2;
+    private static final byte COUNTRY = 3;
+
+    private final List<String> headers;
+    private final int[] maxLengths;
+    private final int[] rules;
+    private final String[] messages;
+    private final byte[] formats;
+    private final int[] formatRules;
+    private final String[] formatMessages;
+    private final String columnCountMessage;
+    private int uniqueColumn = ValidationErrors.NO_COLUMN;
+    private String duplicateMessage;
+    private String resubmittedMessage;
+    private int registeredColumn = ValidationErrors.NO_COLUMN;
+    private String notRegisteredMessage;
+    private int countryColumn = ValidationErrors.NO_COLUMN;
+
+    private ValidationSchema(Definition definition) {
+        if (definition.columns() == null || definition.columns().isEmpty()) {
+            throw new IllegalArgumentException("Validation schema has no columns");
+        }
+        var columns = definition.columns();
+        if (columns.size() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Validation schema has %s columns, at most %s are supported", columns.size(), Byte.MAX_VALUE));
+        }
+        headers = columns.stream().map(Column::header).toList();
+        maxLengths = new int[columns.size()];
+        rules = new int[columns.size()];
+        messages = new String[columns.size()];
+        formats = new byte[columns.size()];
+        formatRules = new int[columns.size()];
+        formatMessages = new String[columns.size()];
+        var seen = new HashSet<String>();
+        for (int index = 0; index < columns.size(); index++) {
+            compile(index, columns.get(index), seen);
+        }
+        columnCountMessage = String.format("%s, expected %s", ValidationRule.COLUMN_COUNT.getMessage(), columns.size());
+    }
+
+    /**
+     * Reads and compiles a schema definition.
+     *
+     * @throws IllegalArgumentException if the definition is not a valid schema
+     */
+    public static ValidationSchema load(InputStream definition) throws IOException {
+        return new ValidationSchema(new ObjectMapper().readValue(definition, Definition.class));
+    }
+
+    /**
+     * The schema packaged with the service, for use where no other schema is configured.
+     */
+    public static ValidationSchema defaultSchema() {
+        return DefaultSchemaHolder.SCHEMA;
+    }
+
+    public int columnCount() {
+        return headers.size();
+    }
+
+    public List<String> headers() {
+        return headers;
+    }
+
+    public String header(int column) {
+        return headers.get(column);
+    }
+
+    /**
+     * The index of the column with the given header, or {@code -1} if there is none.
+     */
+    public int columnIndex(String header) {
+        return headers.indexOf(header);
+    }
+
+    /**
+     * The column whose values must not repeat, or {@link ValidationErrors#NO_COLUMN} if there is none.
+     */
+    public int uniqueColumn() {
+        return uniqueColumn;
+    }
+
+    /**
+     * The column whose values must be on the company register, or {@link ValidationErrors#NO_COLUMN} if there is
+     * none.
+     */
+    public int registeredColumn() {
+        return registeredColumn;
+    }
+
+    /**
+     * The column whose country decides whether a record's postcodes are UK postcodes, or
+     * {@link ValidationErrors#NO_COLUMN} if there is none, in which case every address is taken to be in the UK.
+     */
+    public int countryColumn() {
+        return countryColumn;
+    }
+
+    /**
+     * Whether a record whose field in {@link #countryColumn()} is the UTF-8 {@code bytes[start, end)} has a UK
+     * address, so that its postcodes are checked as UK postcodes.
+     */
+    public boolean isUkAddress(byte[] bytes, int start, int end) {
+        return CsvRecordValidator.usesUkPostcodes(bytes, start, end);
+    }
+
+    /**
+     * Whether a record whose field in {@link #countryColumn()} is {@code country} has a UK address.
+     */
+    public boolean isUkAddress(CharSequence country) {
+        return CsvRecordValidator.usesUkPostcodes(country);
+    }
+
+    /**
+     * Checks the UTF-8 field {@code bytes[start, end)} in {@code column} of a record with a UK address.
+     *
+     * @return {@link #VALID}, or the ordinal of the rule the field breaks
+     */
+    public int checkField(int column, byte[] bytes, int start, int end) {
+        return checkField(column, bytes, start, end, true);
+    }
+
+    /**
+     * Checks the UTF-8 field {@code bytes[start, end)} in {@code column}, checking a postcode only if
+     * {@code ukAddress}.
+     *
+     * @return {@link #VALID}, or the ordinal of the rule the field breaks
+     */
+    public int checkField(int column, byte[] bytes, int start, int end, boolean ukAddress) {
+        var maxLength = maxLengths[column];
+        if (maxLength != NO_MAX_LENGTH && !CsvRecordValidator.isWithinLength(maxLength, bytes, start, end)) {
+            return rules[column];
+        }
+        switch (formats[column]) {
+            case DATE_OF_BIRTH:
+                return CsvRecordValidator.isValidDateOfBirth(bytes, start, end) ? VALID : formatRules[column];
+            case UK_POSTCODE:
+                return !ukAddress || CsvRecordValidator.isValidUkPostcode(bytes, start, end) ? VALID : formatRules[column];
+            case COUNTRY:
+                return CsvRecordValidator.isKnownCountry(bytes, start, end) ? VALID : formatRules[column];
+            default:
+                return VALID;
+        }
+    }
+
+    /**
+     * Checks the field {@code value} in {@code column} of a record with a UK address.
+     *
+     * @return {@link #VALID}, or the ordinal of the rule the field breaks
+     */
+    public int checkField(int column, CharSequence value) {
+        return checkField(column, value, true);
+    }
+
+    /**
+     * Checks the field {@code value} in {@code column}, checking a postcode only if {@code ukAddress}.
+     *
+     * @return {@link #VALID}, or the ordinal of the rule the field breaks
+     */
+    public int checkField(int column, CharSequence value, boolean ukAddress) {
+        var maxLength = maxLengths[column];
+        if (maxLength != NO_MAX_LENGTH && value.length() > maxLength) {
+            return rules[column];
+        }
+        switch (formats[column]) {
+            case DATE_OF_BIRTH:
+                return CsvRecordValidator.isValidDateOfBirth(value) ? VALID : formatRules[column];
+            case UK_POSTCODE:
+                return !ukAddress || CsvRecordValidator.isValidUkPostcode(value) ? VALID : formatRules[column];
+            case COUNTRY:
+                return CsvRecordValidator.isKnownCountry(value) ? VALID : formatRules[column];
+            default:
+                return VALID;
+        }
+    }
+
+    /**
+     * The message for an error under {@code rule} in {@code column}, which is {@link ValidationErrors#NO_COLUMN} for
+     * an error that applies to the whole row or file.
+     */
+    public String message(ValidationRule rule, int column) {
+        if (column != ValidationErrors.NO_COLUMN) {
+            if (column == uniqueColumn && rule == ValidationRule.DUPLICATE_VALUE) {
+                return duplicateMessage;
+            }
+            if (column == uniqueColumn && rule == ValidationRule.RESUBMITTED) {
+                return resubmittedMessage;
+            }
+            if (column == registeredColumn && rule == ValidationRule.NOT_REGISTERED) {
+                return notRegisteredMessage;
+            }
+            if (rules[column] == rule.ordinal()) {
+                return messages[column];
+            }
+            if (formatRules[column] == rule.ordinal()) {
+                return formatMessages[column];
+            }
+        }
+        return rule == ValidationRule.COLUMN_COUNT ? columnCountMessage : rule.getMessage();
+    }
+
+    private void compile(int index, Column column, HashSet<String> seen) {
+        if (column.header() == null || column.header().isBlank()) {
+            throw new IllegalArgumentException(String.format("Column %s of the validation schema has no header", index + 1));
+        }
+        if (!seen.add(column.header())) {
+            throw new IllegalArgumentException(String.format("Header '%s' appears more than once in the validation schema", column.header()));
+        }
+        if (Boolean.TRUE.equals(column.unique())) {
+            if (uniqueColumn != ValidationErrors.NO_COLUMN) {
+                throw new IllegalArgumentException(String.format("Columns '%s' and '%s' are both unique, only one column can be", headers.get(uniqueColumn), column.header()));
+            }
+            uniqueColumn = index;
+            duplicateMessage = String.format("%s appears more than once", column.header());
+            resubmittedMessage = String.format("%s was submitted in an earlier file", column.header());
+        }
+        if (Boolean.TRUE.equals(column.registered())) {
+            if (registeredColumn != ValidationErrors.NO_COLUMN) {
+                throw new IllegalArgumentException(String.format("Columns '%s' and '%s' are both registered, only one column can be", headers.get(registeredColumn), column.header()));
+            }
+            registeredColumn = index;
+            notRegisteredMessage = String.format("%s is not on the register", column.header());
+        }
+        var rule = column.rule();
+        var message = column.message();
+        var formatRule = column.formatRule();
+        var formatMessage = column.formatMessage();
+        if (column.format() == null && (formatRule != null || formatMessage != null)) {
+            throw new IllegalArgumentException(String.format("Column '%s' has a formatRule or formatMessage but no format", column.header()));
+        }
+        maxLengths[index] = NO_MAX_LENGTH;
+        rules[index] = VALID;
+        if (column.maxLength() != null) {
+            if (column.maxLength() < 0) {
+                throw new IllegalArgumentException(String.format("Column '%s' has a negative maxLength", column.header()));
+            }
+            maxLengths[index] = column.maxLength();
+            if (rule == null) {
+                rule = ValidationRule.FIELD_LENGTH;
+                message = message != null ? message : String.format("%s is over %s characters long", column.header(), column.maxLength());
+            }
+            rules[index] = rule.ordinal();
+            messages[index] = message != null ? message : rule.getMessage();
+        } else {
+            // With no length to check, rule and message are the format's.
+            formatRule = formatRule != null ? formatRule : rule;
+            formatMessage = formatMessage != null ? formatMessage : message;
+        }
+        formatRules[index] = VALID;
+        if (column.format() != null) {
+            formats[index] = format(column);
+            if (formats[index] == COUNTRY && countryColumn == ValidationErrors.NO_COLUMN) {
+                countryColumn = index;
+            }
+            if (formatRule == null) {
+                formatRule = ValidationRule.FIELD_FORMAT;
+                formatMessage = formatMessage != null ? formatMessage : defaultFormatMessage(column);
+            }
+            formatRules[index] = formatRule.ordinal();
+            formatMessages[index] = formatMessage != null ? formatMessage : formatRule.getMessage();
+        }
+    }
+
+    private static byte format(Column column) {
+        switch (column.format()) {
+            case DATE_OF_BIRTH_FORMAT:
+                if (column.maxLength() != null) {
+                    throw new IllegalArgumentException(String.format("Column '%s' is a %s date, which cannot have a maxLength", column.header(), DATE_OF_BIRTH_FORMAT));
+                }
+                return DATE_OF_BIRTH;
+            case UK_POSTCODE_FORMAT:
+                return UK_POSTCODE;
+            case COUNTRY_FORMAT:
+                return COUNTRY;
+            default:
+                throw new IllegalArgumentException(String.format("Column '%s' has unsupported format '%s', only %s, %s and %s are supported",
+                        column.header(), column.format(), DATE_OF_BIRTH_FORMAT, UK_POSTCODE_FORMAT, COUNTRY_FORMAT));
+        }
+    }
+
+    private static String defaultFormatMessage(Column column) {
+        switch (column.format()) {
+            case UK_POSTCODE_FORMAT:
+                return String.format("%s is not a valid UK postcode", column.header());
+            case COUNTRY_FORMAT:
+                return String.format("%s is not a recognised country", column.header());
+            default:
+                return String.format("%s format is incorrect", column.header());
+        }
+    }
+
+    record Definition(List<Column> columns) {
+    }
+
+    record Column(String header, Integer maxLength, String format, ValidationRule rule, String message,
+                  ValidationRule formatRule, String formatMessage, Boolean unique, Boolean registered) {
+    }
+
+    private static final class DefaultSchemaHolder {
+
+        private static final ValidationSchema SCHEMA = loadDefault();
+
+        private static ValidationSchema loadDefault() {
+            try (var input = ValidationSchema.class.getClassLoader().getResourceAsStream(DEFAULT_LOCATION)) {
+                if (input == null) {
+                    throw new IllegalStateException(String.format("%s is missing from the classpath", DEFAULT_LOCATION));
+                }
+                return load(input);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -5,6 +5,9 @@ import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
 
 @ExtendWith( MockitoExtension.class )
 @Tag( "unit-test" )
@@ -15,4 +18,19 @@ class ApiClientConfigTest {
         Assertions.assertNotNull( new ApiClientConfig().getInternalApiClient() );
     }
 
+    @Test
+    void fileTransferHttpClientUsesConfiguredConnectTimeout(){
+        final var apiClientConfig = new ApiClientConfig();
+        ReflectionTestUtils.setField( apiClientConfig, "fileTransferConnectTimeout", Duration.ofSeconds( 5 ) );
+
+        final var httpClient = apiClientConfig.fileTransferHttpClient();
+
+        Assertions.assertEquals( Duration.ofSeconds( 5 ), httpClient.connectTimeout().orElseThrow() );
+    }
+
+    @Test
+    void objectMapperReturnsObjectMapper(){
+        Assertions.assertNotNull( new ApiClientConfig().objectMapper() );
+    }
+
 }
@@ -1,17 +1,42 @@
 package uk.gov.companieshouse.filevalidationservice.configuration;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @ExtendWith(MockitoExtension.class)
 class S3ClientConfigTest {
 
+    private S3ClientConfig config;
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty("aws.region", "eu-west-2");
+        config = new S3ClientConfig();
+        ReflectionTestUtils.setField(config, "maxConnections", 20);
+        ReflectionTestUtils.setField(config, "maxConcurrency", 20);
+        ReflectionTestUtils.setField(config, "connectionTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(config, "connectionAcquisitionTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(config, "socketTimeout", Duration.ofSeconds(30));
+    }
+
     @Test
     void getS3ClientReturnsS3Client () {
-        System.setProperty("aws.region", "eu-west-2");
-        assertNotNull( new S3ClientConfig().getS3Client());
+        try (var client = config.getS3Client()) {
+            assertNotNull(client);
+        }
+    }
+
+    @Test
+    void getS3AsyncClientReturnsS3AsyncClient() {
+        try (var client = config.getS3AsyncClient()) {
+            assertNotNull(client);
+        }
     }
 }
@@ -0,0 +1,114 @@
+package uk.gov.companieshouse.filevalidationservice.configuration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith( MockitoExtension.class )
+@Tag( "unit-test" )
+class ValidationExecutorConfigTest {
+
+    private ValidationExecutorConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new ValidationExecutorConfig();
+        ReflectionTestUtils.setField( config, "downloadPoolSize", 3 );
+        ReflectionTestUtils.setField( config, "downloadQueueCapacity", 7 );
+        ReflectionTestUtils.setField( config, "validatePoolSize", 1 );
+        ReflectionTestUtils.setField( config, "validateQueueCapacity", 1 );
+        ReflectionTestUtils.setField( config, "uploadPoolSize", 2 );
+        ReflectionTestUtils.setField( config, "uploadQueueCapacity", 4 );
+        ReflectionTestUtils.setField( config, "partUploadPoolSize", 5 );
+    }
+
+    @Test
+    void parserPoolUsesTheConfiguredParallelism() {
+        ReflectionTestUtils.setField( config, "parserParallelism", 3 );
+        final var pool = config.csvParserPool();
+        try {
+            assertEquals( 3, pool.getParallelism() );
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parserPoolDefaultsToOneThreadPerProcessor() {
+        final var pool = config.csvParserPool();
+        try {
+            assertEquals( Runtime.getRuntime().availableProcessors(), pool.getParallelism() );
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void eachStageExecutorIsBoundedByItsConfiguredPoolSizeAndQueueCapacity() {
+        assertStageExecutor( config.downloadTaskExecutor(), 3, 7 );
+        assertStageExecutor( config.validateTaskExecutor(), 1, 1 );
+        assertStageExecutor( config.uploadTaskExecutor(), 2, 4 );
+        assertStageExecutor( config.partUploadTaskExecutor(), 5, Integer.MAX_VALUE );
+    }
+
+    @Test
+    void stageWaitsOnceItsPoolAndQueueAreFull() throws InterruptedException {
+        final var executor = config.validateTaskExecutor();
+        executor.initialize();
+        final var release = new CountDownLatch( 1 );
+        try {
+            final var stage = config.validateStage( executor );
+            stage.submit( () -> awaitQuietly( release ) );
+            assertTrue( stage.trySubmit( () -> awaitQuietly( release ) ) );
+            assertFalse( stage.trySubmit( () -> awaitQuietly( release ) ) );
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void sweepExecutorRejectsARunWhileThePreviousOneIsGoing() {
+        final var executor = config.sweepTaskExecutor();
+        executor.initialize();
+        final var release = new CountDownLatch( 1 );
+        try {
+            executor.execute( () -> awaitQuietly( release ) );
+            assertThrows( RejectedExecutionException.class, () -> executor.execute( () -> { } ) );
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static void assertStageExecutor( final ThreadPoolTaskExecutor executor, final int poolSize, final int queueCapacity ) {
+        executor.initialize();
+        try {
+            assertEquals( poolSize, executor.getCorePoolSize() );
+            assertEquals( poolSize, executor.getMaxPoolSize() );
+            assertEquals( queueCapacity, executor.getQueueCapacity() );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly( final CountDownLatch latch ) {
+        try {
+            latch.await();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package uk.gov.companieshouse.filevalidationservice.configuration;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith( MockitoExtension.class )
+@Tag( "unit-test" )
+class ValidationSchemaConfigTest {
+
+    @Test
+    void schemaIsLoadedFromTheConfiguredLocation() throws IOException {
+        final var config = new ValidationSchemaConfig();
+        ReflectionTestUtils.setField( config, "schemaLocation", new ClassPathResource( "validation-schema.json" ) );
+
+        final var schema = config.validationSchema();
+
+        assertEquals( 13, schema.columnCount() );
+        assertEquals( "postcode", schema.header( 11 ) );
+    }
+
+    @Test
+    void invalidSchemaFailsStartup() {
+        final var config = new ValidationSchemaConfig();
+        ReflectionTestUtils.setField( config, "schemaLocation",
+                new ByteArrayResource( "{ \"columns\": [] }".getBytes( StandardCharsets.UTF_8 ) ) );
+
+        assertThrows( IllegalArgumentException.class, config::validationSchema );
+    }
+}
@@ -6,21 +6,31 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 import uk.gov.companieshouse.filevalidationservice.exception.BadRequestRuntimeException;
 import uk.gov.companieshouse.filevalidationservice.exception.FileUploadException;
 import uk.gov.companieshouse.filevalidationservice.exception.InternalServerErrorRuntimeException;
 import uk.gov.companieshouse.filevalidationservice.models.FileMetaData;
+import uk.gov.companieshouse.filevalidationservice.parser.CsvDecompressor;
 import uk.gov.companieshouse.filevalidationservice.service.FileTransferService;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith( MockitoExtension.class )
@@ -32,6 +42,9 @@ class CsvValidationControllerTest {
     @Mock
     Tika tika;
 
+    @Spy
+    CsvDecompressor csvDecompressor = new CsvDecompressor(DataSize.ofMegabytes(1), 100);
+
     @InjectMocks
     CsvValidationController csvValidationController;
 
@@ -44,7 +57,7 @@ class CsvValidationControllerTest {
         // When
         String id = "123";
         when(tika.detect(any(InputStream.class), any(String.class))).thenReturn("text/csv");
-        when(fileTransferService.upload(any(),any())).thenReturn(id);
+        when(fileTransferService.upload(any(),any(),any())).thenReturn(id);
         var response = csvValidationController.uploadFile(file, metaData);
 
         // Then
@@ -52,6 +65,90 @@ class CsvValidationControllerTest {
         assertEquals(id, response.getBody().getId());
     }
 
+    @Test
+    void testUploadGzipFileIsStoredCompressed() throws IOException {
+        // Given
+        var bytes = gzip("Hello world".getBytes(StandardCharsets.UTF_8));
+        MultipartFile file = new MockMultipartFile("abc", "Test.csv.gz", "application/gzip", bytes );
+        String metaData = "{\"fileName\":\"Test file\",\"fromLocation\":\"abc\",\"toLocation\":\"S3:abc\"}";
+
+        // When
+        when(fileTransferService.upload(eq(file), any(), eq("application/gzip"))).thenReturn("123");
+        var response = detectingController().uploadFile(file, metaData);
+
+        // Then
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals("123", response.getBody().getId());
+    }
+
+    @Test
+    void testUploadZipFileIsStoredCompressed() throws IOException {
+        // Given
+        var zipped = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(zipped)) {
+            zip.putNextEntry(new ZipEntry("Test.csv"));
+            zip.write("Hello world".getBytes(StandardCharsets.UTF_8));
+        }
+        MultipartFile file = new MockMultipartFile("abc", "Test.zip", "application/zip", zipped.toByteArray() );
+        String metaData = "{\"fileName\":\"Test file\",\"fromLocation\":\"abc\",\"toLocation\":\"S3:abc\"}";
+
+        // When
+        when(fileTransferService.upload(eq(file), any(), eq("application/zip"))).thenReturn("123");
+        var response = detectingController().uploadFile(file, metaData);
+
+        // Then
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+    }
+
+    @Test
+    void testUploadZipFileHoldingAFileThatIsNotACsvReturnsStatus400() throws IOException {
+        // Given
+        var zipped = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(zipped)) {
+            zip.putNextEntry(new ZipEntry("Test.pdf"));
+            zip.write("%PDF-1.7\n".getBytes(StandardCharsets.UTF_8));
+        }
+        MultipartFile file = new MockMultipartFile("abc", "Test.zip", "application/zip", zipped.toByteArray() );
+        String metaData = "{\"fileName\":\"Test file\",\"fromLocation\":\"abc\",\"toLocation\":\"S3:abc\"}";
+        var controller = detectingController();
+
+        // Then
+        assertThrows(BadRequestRuntimeException.class, () -> controller.uploadFile(file, metaData));
+        verifyNoInteractions(fileTransferService);
+    }
+
+    @Test
+    void testUploadGzipFileDecompressingBeyondTheLimitIsOnlyReadToDetectItsType() throws IOException {
+        // Given
+        var bytes = gzip(new byte[2 * 1024 * 1024]);
+        MultipartFile file = new MockMultipartFile("abc", "Test.csv.gz", "application/gzip", bytes );
+        String metaData = "{\"fileName\":\"Test file\",\"fromLocation\":\"amlBodyName\",\"toLocation\":\"S3:abc\"}";
+
+        // When
+        when(fileTransferService.upload(eq(file), any(), eq("application/gzip"))).thenReturn("123");
+        var response = detectingController().uploadFile(file, metaData);
+
+        // Then
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+    }
+
+    @Test
+    void testUploadGzipFileThatIsCorruptReturnsStatus400() throws IOException {
+        // Given
+        var bytes = gzip("Hello world".getBytes(StandardCharsets.UTF_8));
+        bytes[2] = 7;
+        MultipartFile file = new MockMultipartFile("abc", "Test.csv.gz", "application/gzip", bytes );
+        String metaData = "{\"fileName\":\"Test file\",\"fromLocation\":\"amlBodyName\",\"toLocation\":\"S3:abc\"}";
+
+        // Then
+        Exception thrown = assertThrows(
+                BadRequestRuntimeException.class,
+                () -> csvValidationController.uploadFile(file, metaData)
+        );
+        assertTrue(thrown.getMessage().startsWith("Please upload a valid CSV file. fileName: Test file, amlBodyName: amlBodyName, The file is not valid gzip data"));
+        verifyNoInteractions(fileTransferService);
+    }
+
     @Test
     void testUploadFileFails() throws IOException {
         // Given
@@ -60,7 +157,7 @@ class CsvValidationControllerTest {
 
         // When
         when(tika.detect(any(InputStream.class), any(String.class))).thenReturn("text/csv");
-        when(fileTransferService.upload(any(),any())).thenThrow(new InternalServerErrorRuntimeException("ERROR uploading"));
+        when(fileTransferService.upload(any(),any(),any())).thenThrow(new InternalServerErrorRuntimeException("ERROR uploading"));
 
         // Then
         Exception thrown = assertThrows(
@@ -113,7 +210,7 @@ class CsvValidationControllerTest {
 
         // When
         when(tika.detect(any(InputStream.class), any(String.class))).thenReturn("text/csv");
-        when(fileTransferService.upload(any(),any())).thenThrow(new FileUploadException("server error"));
+        when(fileTransferService.upload(any(),any(),any())).thenThrow(new FileUploadException("server error"));
 
         // Then
         Exception thrown = assertThrows(
@@ -122,4 +219,19 @@ class CsvValidationControllerTest {
         );
         assertTrue(thrown.getMessage().contains("server error"));
     }
-}
+
+    /**
+     * A controller that detects the type of what it is sent with Tika itself, rather than the mock.
+     */
+    private CsvValidationController detectingController() {
+        return new CsvValidationController(fileTransferService, new Tika(), csvDecompressor);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        var compressed = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        }
+        return compressed.toByteArray();
+    }
+}
\ No newline at end of file
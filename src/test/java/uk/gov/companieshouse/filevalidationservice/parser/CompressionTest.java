@@ -0,0 +1,45 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Tag("unit-test")
+class CompressionTest {
+
+    @Test
+    void compressionIsToldFromTheFirstBytes() {
+        assertEquals(Compression.GZIP, Compression.of(new byte[] { 0x1F, (byte) 0x8B, 8, 0 }));
+        assertEquals(Compression.ZIP, Compression.of(new byte[] { 'P', 'K', 3, 4, 20 }));
+        assertEquals(Compression.NONE, Compression.of("Unique ID,Registered company name\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Compression.NONE, Compression.of("PK,name\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Compression.NONE, Compression.of(new byte[] { 0x1F }));
+        assertEquals(Compression.NONE, Compression.of(new byte[0]));
+    }
+
+    @Test
+    void onlyTheSignatureIsLookedAt() {
+        assertEquals(Compression.ZIP, Compression.of(new byte[] { 'P', 'K', 3, 4, 20 }, Compression.SIGNATURE_LENGTH));
+        assertEquals(Compression.NONE, Compression.of(new byte[] { 'P', 'K', 3, 4, 20 }, 3));
+    }
+
+    @Test
+    void uncompressedNameDropsTheExtensionOfTheCompression() {
+        assertEquals("returns.csv", Compression.GZIP.uncompressedName("returns.csv.gz"));
+        assertEquals("returns.csv", Compression.GZIP.uncompressedName("returns.csv.GZ"));
+        assertEquals("returns", Compression.ZIP.uncompressedName("returns.zip"));
+        assertEquals("returns.csv", Compression.ZIP.uncompressedName("returns.csv"));
+        assertEquals("returns.csv", Compression.NONE.uncompressedName("returns.csv"));
+        assertEquals(null, Compression.GZIP.uncompressedName(null));
+    }
+
+    @Test
+    void compressedFilesAreStoredWithTheMimeTypeOfTheirCompression() {
+        assertEquals("text/csv", Compression.NONE.mimeType());
+        assertEquals("application/gzip", Compression.GZIP.mimeType());
+        assertEquals("application/zip", Compression.ZIP.mimeType());
+    }
+}
@@ -0,0 +1,89 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Tag("unit-test")
+class CsvChunkScannerTest {
+
+    private static final String[] ALPHABET = { "a", " ", "\t", ",", ",", "\"", "\"", "\r", "\n", "\u00e9", "\u20ac", "\u2003" };
+
+    @Test
+    void chainedChunksFindTheSameRecordsAsOneScanOfTheWholeFile() {
+        final var random = new Random(20250201L);
+        for (int i = 0; i < 5000; i++) {
+            final var input = randomInput(random);
+            final var expected = recordStarts(input);
+            final var chunkSize = 1 + random.nextInt(12);
+
+            var state = CsvChunkScanner.RECORD_START;
+            for (int from = 0; from < input.length; from += chunkSize) {
+                final var to = Math.min(from + chunkSize, input.length);
+                final var summary = CsvChunkScanner.scan(input, from, to);
+                final var chunkFrom = from;
+                final var inChunk = expected.stream().filter(start -> start >= chunkFrom && start < to).toList();
+                final var description = String.format("%s in chunks of %s at %s", escape(input), chunkSize, from);
+
+                assertEquals(inChunk.size(), summary.recordStarts(state), description);
+                assertEquals(inChunk.isEmpty() ? -1 : inChunk.get(0), summary.firstRecordStart(state), description);
+                state = summary.endState(state);
+            }
+        }
+    }
+
+    @Test
+    void recordCountMatchesTheTokenizerForValidInput() throws IOException {
+        final var random = new Random(20250202L);
+        for (int i = 0; i < 5000; i++) {
+            final var input = randomInput(random);
+            final var tokenizer = new CsvTokenizer(new ByteArrayInputStream(input), false);
+            var records = 0;
+            try {
+                while (tokenizer.nextRecord()) {
+                    records++;
+                }
+            } catch (CSVDataValidationException e) {
+                continue;
+            }
+            assertEquals(records, recordStarts(input).size(), escape(input));
+        }
+    }
+
+    private static byte[] randomInput(final Random random) {
+        final var input = new StringBuilder();
+        final var length = random.nextInt(40);
+        for (int j = 0; j < length; j++) {
+            input.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return input.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Where each record starts, found by running the state machine once over the whole input.
+     */
+    private static List<Integer> recordStarts(final byte[] input) {
+        final List<Integer> starts = new ArrayList<>();
+        var state = CsvChunkScanner.RECORD_START;
+        for (int i = 0; i < input.length; i++) {
+            if (state == CsvChunkScanner.RECORD_START && input[i] != '\r' && input[i] != '\n') {
+                starts.add(i);
+            }
+            state = CsvChunkScanner.next(state, input[i], input, i);
+        }
+        return starts;
+    }
+
+    private static String escape(final byte[] input) {
+        return new String(input, StandardCharsets.UTF_8).replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t");
+    }
+}
@@ -0,0 +1,169 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class CsvDecompressorTest {
+
+    private static final byte[] CSV = "Unique ID,Company number\nAML1,00012345\nAML2,SC012345\n".getBytes(StandardCharsets.UTF_8);
+
+    private final CsvDecompressor decompressor = new CsvDecompressor(DataSize.ofMegabytes(1), 20);
+
+    @Test
+    void gzipFileIsDecompressedAsItIsRead() throws IOException {
+        final var compressed = gzip(CSV);
+
+        assertArrayEquals(CSV, decompress(compressed, Compression.GZIP).readAllBytes());
+    }
+
+    @Test
+    void concatenatedGzipMembersAreReadAsOneFile() throws IOException {
+        final var first = gzip(Arrays.copyOfRange(CSV, 0, 10));
+        final var second = gzip(Arrays.copyOfRange(CSV, 10, CSV.length));
+        final var compressed = new ByteArrayOutputStream();
+        compressed.write(first);
+        compressed.write(second);
+
+        assertArrayEquals(CSV, decompress(compressed.toByteArray(), Compression.GZIP).readAllBytes());
+    }
+
+    @Test
+    void zipFileWithOneFileIsDecompressedAsItIsRead() throws IOException {
+        final var compressed = zip("returns.csv", CSV);
+
+        assertArrayEquals(CSV, decompress(compressed, Compression.ZIP).readAllBytes());
+    }
+
+    @Test
+    void contentOfAZipIsNamedAfterTheFileItHolds() throws IOException {
+        final var content = decompress(zip("returns.csv", CSV), Compression.ZIP);
+
+        assertEquals("returns.csv", decompressor.nameOf(content, "submission.zip", Compression.ZIP));
+    }
+
+    @Test
+    void contentOfAGzipIsNamedAfterTheFileWithoutItsExtension() throws IOException {
+        final var content = decompress(gzip(CSV), Compression.GZIP);
+
+        assertEquals("returns.csv", decompressor.nameOf(content, "returns.csv.gz", Compression.GZIP));
+    }
+
+    @Test
+    void fileThatIsNotCompressedIsReadAsItIs() throws IOException {
+        final var content = new ByteArrayInputStream(CSV);
+
+        assertSame(content, decompressor.decompress(content, CSV.length, Compression.NONE));
+    }
+
+    @Test
+    void zipFileWithMoreThanOneFileIsNotValid() throws IOException {
+        final var zipped = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(zipped)) {
+            zip.putNextEntry(new ZipEntry("returns.csv"));
+            zip.write(CSV);
+            zip.putNextEntry(new ZipEntry("more.csv"));
+            zip.write(CSV);
+        }
+        final var content = decompress(zipped.toByteArray(), Compression.ZIP);
+
+        final var thrown = assertThrows(CSVDataValidationException.class, content::readAllBytes);
+        assertEquals("The zip file contains more than one file", thrown.getMessage());
+    }
+
+    @Test
+    void emptyZipFileIsNotValid() throws IOException {
+        final var zipped = new ByteArrayOutputStream();
+        new ZipOutputStream(zipped).close();
+
+        final var thrown = assertThrows(CSVDataValidationException.class, () -> decompress(zipped.toByteArray(), Compression.ZIP));
+        assertEquals("The zip file does not contain a file", thrown.getMessage());
+    }
+
+    @Test
+    void fileDecompressingToMoreThanTheRatioIsNotValid() throws IOException {
+        final var compressed = gzip(new byte[64 * 1024]);
+        final var content = decompress(compressed, Compression.GZIP);
+
+        final var thrown = assertThrows(CSVDataValidationException.class, content::readAllBytes);
+        assertEquals(String.format("The file is larger than the %s bytes it may decompress to", compressed.length * 20L), thrown.getMessage());
+    }
+
+    @Test
+    void fileDecompressingToMoreThanTheMaximumSizeIsNotValid() throws IOException {
+        final var random = new Random(20250325L);
+        final var incompressible = new byte[1024 * 1024 + 1];
+        random.nextBytes(incompressible);
+        final var content = decompress(gzip(incompressible), Compression.GZIP);
+
+        final var thrown = assertThrows(CSVDataValidationException.class, () -> content.transferTo(OutputStream.nullOutputStream()));
+        assertEquals("The file is larger than the 1048576 bytes it may decompress to", thrown.getMessage());
+    }
+
+    @Test
+    void fileOfUnknownSizeIsOnlyCheckedAgainstTheMaximumSize() throws IOException {
+        final var compressed = gzip(new byte[64 * 1024]);
+        final var content = decompressor.decompress(new ByteArrayInputStream(compressed), -1, Compression.GZIP);
+
+        assertEquals(64 * 1024, content.readAllBytes().length);
+    }
+
+    @Test
+    void corruptGzipFileIsNotValid() throws IOException {
+        final var compressed = gzip(CSV);
+        compressed[compressed.length / 2] ^= 0x55;
+        compressed[compressed.length / 2 + 1] ^= 0x55;
+
+        final var thrown = assertThrows(CSVDataValidationException.class, () -> decompress(compressed, Compression.GZIP).readAllBytes());
+        assertTrue(thrown.getMessage().startsWith("The file is not valid gzip data: "));
+    }
+
+    @Test
+    void truncatedGzipFileIsNotValid() throws IOException {
+        final var compressed = Arrays.copyOf(gzip(CSV), 12);
+
+        final var thrown = assertThrows(CSVDataValidationException.class, () -> decompress(compressed, Compression.GZIP).readAllBytes());
+        assertTrue(thrown.getMessage().startsWith("The file is not valid gzip data: "));
+    }
+
+    private InputStream decompress(final byte[] compressed, final Compression compression) throws IOException {
+        return decompressor.decompress(new ByteArrayInputStream(compressed), compressed.length, compression);
+    }
+
+    private static byte[] gzip(final byte[] content) throws IOException {
+        final var compressed = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] zip(final String name, final byte[] content) throws IOException {
+        final var zipped = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(zipped)) {
+            zip.putNextEntry(new ZipEntry(name));
+            zip.write(content);
+        }
+        return zipped.toByteArray();
+    }
+}
@@ -1,7 +1,10 @@
 package uk.gov.companieshouse.filevalidationservice.parser;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
@@ -9,28 +12,59 @@ import static org.mockito.Mockito.*;
 import java.io.*;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
 import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
+import uk.gov.companieshouse.filevalidationservice.validation.CompanyRegister;
+import uk.gov.companieshouse.filevalidationservice.validation.FingerprintIndex;
+import uk.gov.companieshouse.filevalidationservice.validation.ResubmissionCheck;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationErrors;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationRule;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationSchema;
 
 @ExtendWith(MockitoExtension.class)
 class CsvProcessorTest {
 
-    @InjectMocks
+    private static final ValidationSchema SCHEMA = ValidationSchema.defaultSchema();
+    private static final int DATE_OF_BIRTH = SCHEMA.columnIndex("date of birth");
+    private static final int POSTCODE = SCHEMA.columnIndex("postcode");
+    private static final int COMPANY_NUMBER = SCHEMA.columnIndex("company number");
+
     private CsvProcessor csvProcessor;
 
     @Mock
     private CSVFormat csvFormat;
 
+    @BeforeEach
+    void setUp() {
+        csvProcessor = processor(16L * 1024 * 1024, 4L * 1024 * 1024, 1000);
+    }
+
     @ParameterizedTest
     @ValueSource( strings = {
             "src/test/resources/oneGoodRecord.csv",
@@ -104,4 +138,524 @@ class CsvProcessorTest {
 
         assertThrows(CSVDataValidationException.class, () -> csvProcessor.parseRecords(bytes));
     }
+
+    @ParameterizedTest
+    @ValueSource( strings = {
+            "src/test/resources/good_multiple_records.csv",
+            "src/test/resources/correctHeadersWithBOM.csv"
+    })
+    void validRecordsMustParseFromStreamAndChannel(String filePath) throws IOException {
+        try (var stream = new FileInputStream(filePath)) {
+            assertDoesNotThrow(() -> csvProcessor.parseRecords(stream));
+        }
+        try (var channel = FileChannel.open(Path.of(filePath))) {
+            assertDoesNotThrow(() -> csvProcessor.parseRecords(channel));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource( strings = {
+            "src/test/resources/tooFewColumns.csv",
+            "src/test/resources/incorrectDateFormat.csv",
+            "src/test/resources/onlyHeaders.csv"
+    })
+    void streamReportsTheSameErrorsAsBytes(String filePath) throws IOException {
+        byte[] bytes = FileUtils.readFileToByteArray(new File(filePath));
+        var fromBytes = assertThrows(CSVDataValidationException.class, () -> csvProcessor.parseRecords(bytes));
+
+        try (var stream = new FileInputStream(filePath)) {
+            var fromStream = assertThrows(CSVDataValidationException.class, () -> csvProcessor.parseRecords(stream));
+            assertEquals(fromBytes.getMessage(), fromStream.getMessage());
+        }
+    }
+
+    @Test
+    void streamThatFailsToReadMustFailToParse() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Test IOException");
+            }
+        };
+
+        var exception = assertThrows(CSVDataValidationException.class, () -> csvProcessor.parseRecords(failing));
+        assertTrue(exception.getMessage().contains("Test IOException"));
+    }
+
+    @Test
+    void largeStreamIsValidatedWithoutHoldingItInMemory() throws InterruptedException {
+        final long rows = 300L * 1024 * 1024 / SyntheticCsvInputStream.ROW.length;
+        final var oldGenPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .filter(pool -> !pool.getName().contains("Eden") && !pool.getName().contains("Survivor") && !pool.getName().contains("Young"))
+                .toList();
+        System.gc();
+        final long baseline = oldGenUsed(oldGenPools);
+        final var peak = new AtomicLong(baseline);
+        final var sampling = new AtomicBoolean(true);
+        final var sampler = new Thread(() -> {
+            while (sampling.get()) {
+                peak.accumulateAndGet(oldGenUsed(oldGenPools), Math::max);
+                LockSupport.parkNanos(5_000_000L);
+            }
+        });
+        sampler.start();
+        try {
+            assertDoesNotThrow(() -> csvProcessor.parseRecords(new SyntheticCsvInputStream(rows)));
+        } finally {
+            sampling.set(false);
+            sampler.join();
+        }
+
+        assertTrue(peak.get() - baseline < 64L * 1024 * 1024,
+                String.format("old generation grew by %s bytes while validating %s rows", peak.get() - baseline, rows));
+    }
+
+    @ParameterizedTest
+    @ValueSource( strings = {
+            "src/test/resources/good_multiple_records.csv",
+            "src/test/resources/correctHeadersWithBOM.csv",
+            "src/test/resources/good_multiple_records_with_column_names_in_quotes.csv",
+            "src/test/resources/tooFewHeaders.csv",
+            "src/test/resources/onlyHeaders.csv",
+            "src/test/resources/tooFewColumns.csv",
+            "src/test/resources/tooManyColumns.csv",
+            "src/test/resources/incorrectDateFormat.csv",
+            "src/test/resources/postCodeOverCharLimit.csv"
+    })
+    void parallelValidationReportsTheSameResultAsSequential(String filePath) throws IOException {
+        byte[] bytes = FileUtils.readFileToByteArray(new File(filePath));
+
+        for (int chunkSize : new int[] { 1, 3, 16, 64 }) {
+            assertSameResult(bytes, chunkSize);
+        }
+    }
+
+    @Test
+    void parallelValidationReportsTheLineOfTheFirstErrorWhenQuotedFieldsSpanChunks() {
+        var csv = new StringBuilder(new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8));
+        for (int row = 2; row < 200; row++) {
+            csv.append("123456,\"Company\nLtd\",12345678,\"Trading \"\"Ltd\"\"\",John,Smith,01011990,1,\"Street,\r\nArea\",Area,London,SW1A 1AA,United Kingdom\n");
+        }
+        csv.append("123456,Company Ltd,12345678,Trading Ltd,John,Smith,1990-01-01,1,Street,Area,London,SW1A 1AA,United Kingdom\n");
+        csv.append("123456,\"Company\nLtd\",12345678\n");
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        var exception = assertThrows(CSVDataValidationException.class, () -> processor(0, 37, 1000).parseRecords(bytes));
+        assertTrue(exception.getMessage().endsWith("on line 200"), exception.getMessage());
+        assertSameResult(bytes, 37);
+    }
+
+    @Test
+    void malformedFirstRecordIsReportedOnItsOwnLine() {
+        byte[] bytes = (new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8) + "\"a\"x,b\n").getBytes(StandardCharsets.UTF_8);
+
+        var exception = assertThrows(CSVDataValidationException.class, () -> csvProcessor.parseRecords(bytes));
+        assertTrue(exception.getMessage().endsWith("on line 2"), exception.getMessage());
+    }
+
+    @Test
+    void parallelValidationAgreesWithSequentialOnRandomFiles() {
+        final String[] fields = { "a", "", " ", "\"a,b\"", "\"a\nb\"", "\"a\"\"b\"", "\"a\r\n\"", "\"a\" ", "\"a\"x", "a\"b", "\"", "\u00e9", "\"\u2003\"\u2003" };
+        final String[] endings = { "\n", "\r\n", "\r", "\n\n" };
+        final var random = new Random(20250301L);
+        for (int i = 0; i < 500; i++) {
+            var csv = new StringBuilder(random.nextBoolean() ? "\uFEFF" : "");
+            csv.append(new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8));
+            var rows = random.nextInt(30);
+            for (int row = 0; row < rows; row++) {
+                var columns = random.nextInt(50) == 0 ? 12 : 13;
+                for (int column = 0; column < columns; column++) {
+                    if (column > 0) {
+                        csv.append(',');
+                    }
+                    csv.append(random.nextInt(20) == 0 ? fields[random.nextInt(fields.length)] : "a");
+                }
+                csv.append(endings[random.nextInt(endings.length)]);
+            }
+            assertSameResult(csv.toString().getBytes(StandardCharsets.UTF_8), 1 + random.nextInt(100));
+        }
+    }
+
+    @Test
+    void collectErrorsFindsEveryErrorInOnePass() {
+        var header = new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8);
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        byte[] bytes = (header
+                + valid.replace("01011990", "1990-01-01")
+                + valid.replaceFirst("123456", "100003")
+                + valid.replaceFirst("123456", "100004").replace("12345678", "12345678901").replace("SW1A 1AA", "SW1A 1AA SW1A 1AA SW1A 1AA")
+                + "123456,Company Ltd\n"
+                + valid.replaceFirst("123456", "100006")).getBytes(StandardCharsets.UTF_8);
+
+        var errors = csvProcessor.collectErrors(bytes);
+
+        assertEquals(4, errors.size());
+        assertEquals(4, errors.total());
+        assertError(errors, 0, 2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        assertError(errors, 1, 4, COMPANY_NUMBER, ValidationRule.COMPANY_NUMBER_LENGTH);
+        assertError(errors, 2, 4, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        assertError(errors, 3, 5, ValidationErrors.NO_COLUMN, ValidationRule.COLUMN_COUNT);
+        assertFalse(errors.isStopped());
+    }
+
+    @Test
+    void collectErrorsReportsPostcodesAndCountriesInTheWrongFormat() {
+        var header = new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8);
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        byte[] bytes = (header
+                + valid.replace("SW1A 1AA", "sw1a1aa").replace("United Kingdom", "gb")
+                + valid.replaceFirst("123456", "100003").replace("SW1A 1AA", "75008")
+                + valid.replaceFirst("123456", "100004").replace("United Kingdom", "Londonshire")
+                + valid.replaceFirst("123456", "100005").replace("SW1A 1AA", "").replace("United Kingdom", "")).getBytes(StandardCharsets.UTF_8);
+
+        var errors = csvProcessor.collectErrors(bytes);
+
+        assertEquals(2, errors.size());
+        assertError(errors, 0, 3, POSTCODE, ValidationRule.POSTCODE_FORMAT);
+        assertError(errors, 1, 4, SCHEMA.columnIndex("country"), ValidationRule.COUNTRY_FORMAT);
+    }
+
+    @Test
+    void collectErrorsOnlyChecksPostcodesOfUkAddresses() {
+        var header = new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8);
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        byte[] bytes = (header
+                + valid.replace("SW1A 1AA", "75008").replace("United Kingdom", "France")
+                + valid.replaceFirst("123456", "100003").replace("SW1A 1AA", "K1A 0B1").replace("United Kingdom", "CA")
+                + valid.replaceFirst("123456", "100004").replace("SW1A 1AA", "STHL 1ZZ").replace("United Kingdom", "\"Saint Helena, Ascension and Tristan da Cunha\"")
+                + valid.replaceFirst("123456", "100005").replace("SW1A 1AA", "75008").replace("United Kingdom", "Jersey")
+                + valid.replaceFirst("123456", "100006").replace("SW1A 1AA", "75008").replace("United Kingdom", "")).getBytes(StandardCharsets.UTF_8);
+
+        var errors = csvProcessor.collectErrors(bytes);
+
+        assertEquals(2, errors.size());
+        assertError(errors, 0, 5, POSTCODE, ValidationRule.POSTCODE_FORMAT);
+        assertError(errors, 1, 6, POSTCODE, ValidationRule.POSTCODE_FORMAT);
+    }
+
+    @Test
+    void collectErrorsKeepsOnlyTheFirstErrorsButCountsThemAll() {
+        var csv = new StringBuilder(new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8));
+        for (int row = 0; row < 10; row++) {
+            csv.append("123456,Company Ltd\n");
+        }
+
+        var errors = processor(Long.MAX_VALUE, 1024, 3).collectErrors(csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(3, errors.size());
+        assertEquals(10, errors.total());
+        assertEquals(4, errors.row(2));
+    }
+
+    @Test
+    void collectErrorsStopsAtARecordThatIsNotValidCsv() {
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        byte[] bytes = (new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8)
+                + "123456,Company Ltd\n"
+                + "\"a\"x," + valid
+                + "123456,Company Ltd\n").getBytes(StandardCharsets.UTF_8);
+
+        var errors = csvProcessor.collectErrors(bytes);
+
+        assertEquals(2, errors.size());
+        assertTrue(errors.isStopped());
+        assertError(errors, 1, 3, ValidationErrors.NO_COLUMN, ValidationRule.MALFORMED_RECORD);
+        assertEquals("Invalid character between quoted field and delimiter", errors.message(1));
+    }
+
+    @Test
+    void rowLocationsFindEachRowWithAnError() {
+        var header = new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8);
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        var invalid = "123456,Company Ltd\n";
+        byte[] bytes = (header + valid + invalid + valid.replaceFirst("123456", "100004") + invalid).getBytes(StandardCharsets.UTF_8);
+        var errors = csvProcessor.collectErrors(bytes);
+
+        var locations = csvProcessor.rowLocations(new ByteArrayInputStream(bytes), errors, true);
+
+        int third = header.length() + valid.length();
+        int fifth = third + invalid.length() + valid.length();
+        assertEquals(2, locations.size());
+        assertEquals(new ValidationErrors.RowLocation(3, String.format("bytes=%s-%s", third, third + invalid.length() - 1)), locations.get(3));
+        assertEquals(new ValidationErrors.RowLocation(5, String.format("bytes=%s-%s", fifth, bytes.length - 1)), locations.get(5));
+    }
+
+    @Test
+    void rowLocationsGiveTheLineEachRowStartsOnAndRangesOnlyWhenAskedFor() {
+        var header = new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8);
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        var invalid = "123456,Company Ltd\n";
+        byte[] bytes = (header + valid.replace("Street", "\"Flat 1\r\nStreet\"") + "\r\n\n" + invalid + valid.replaceFirst("123456", "100004").replace("Area", "\"\rArea\n\"") + invalid)
+                .getBytes(StandardCharsets.UTF_8);
+        var errors = csvProcessor.collectErrors(bytes);
+
+        var locations = csvProcessor.rowLocations(new ByteArrayInputStream(bytes), errors, false);
+
+        assertEquals(2, locations.size());
+        assertEquals(new ValidationErrors.RowLocation(6, null), locations.get(3));
+        assertEquals(new ValidationErrors.RowLocation(10, null), locations.get(5));
+    }
+
+    @Test
+    void rowRangeOfARecordThatIsNotValidCsvRunsToTheEndOfTheFile() {
+        var header = new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8);
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        byte[] bytes = (header + "123456,Company Ltd\n" + "\"a\"x," + valid).getBytes(StandardCharsets.UTF_8);
+        var errors = csvProcessor.collectErrors(bytes);
+
+        var locations = csvProcessor.rowLocations(new ByteArrayInputStream(bytes), errors, true);
+
+        assertEquals(new ValidationErrors.RowLocation(3, String.format("bytes=%s-", header.length() + "123456,Company Ltd\n".length())), locations.get(3));
+    }
+
+    @Test
+    void rowLocationsAreEmptyForRowsPastTheEndOfTheFile() throws IOException {
+        byte[] bytes = Files.readAllBytes(Path.of("src/test/resources/emptyCsv.csv"));
+        var errors = csvProcessor.collectErrors(bytes);
+
+        var locations = csvProcessor.rowLocations(new ByteArrayInputStream(bytes), errors, true);
+
+        assertEquals(1, errors.size());
+        assertTrue(locations.isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource( strings = {
+            "src/test/resources/emptyCsv.csv",
+            "src/test/resources/onlyHeaders.csv",
+            "src/test/resources/tooFewHeaders.csv"
+    })
+    void collectErrorsReportsTheSameFirstErrorAsParseRecords(String filePath) throws IOException {
+        byte[] bytes = FileUtils.readFileToByteArray(new File(filePath));
+        var exception = assertThrows(CSVDataValidationException.class, () -> csvProcessor.parseRecords(bytes));
+
+        var errors = csvProcessor.collectErrors(bytes);
+
+        assertEquals(1, errors.total());
+        assertTrue(errors.isStopped());
+        assertEquals(exception.getMessage(), errors.summary());
+    }
+
+    @Test
+    void collectErrorsFindsNothingInAValidFile() throws IOException {
+        byte[] bytes = FileUtils.readFileToByteArray(new File("src/test/resources/good_multiple_records.csv"));
+
+        assertTrue(csvProcessor.collectErrors(bytes).isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource( longs = { Long.MAX_VALUE, 0 } )
+    void collectErrorsUsesTheGivenSchema(long parallelThreshold) throws IOException {
+        var schema = ValidationSchema.load(new ByteArrayInputStream(("{ \"columns\": ["
+                + " { \"header\": \"reference\", \"maxLength\": 4 },"
+                + " { \"header\": \"start date\", \"format\": \"ddMMyyyy\" } ] }").getBytes(StandardCharsets.UTF_8)));
+        var csv = new StringBuilder("Reference,Start Date\n");
+        for (int row = 2; row < 200; row++) {
+            csv.append(row == 150 ? "12345,01012024\n" : "1234,01012024\n");
+        }
+        csv.append("1234,31022024\n");
+
+        var errors = processor(parallelThreshold, 64, 10).collectErrors(csv.toString().getBytes(StandardCharsets.UTF_8), schema);
+
+        assertEquals(2, errors.size());
+        assertError(errors, 0, 150, 0, ValidationRule.FIELD_LENGTH);
+        assertEquals("reference is over 4 characters long", errors.message(0));
+        assertError(errors, 1, 200, 1, ValidationRule.FIELD_FORMAT);
+        assertEquals(1, processor(parallelThreshold, 64, 10).collectErrors(csv.toString().getBytes(StandardCharsets.UTF_8)).total());
+    }
+
+    @ParameterizedTest
+    @ValueSource( longs = { Long.MAX_VALUE, 0 } )
+    void collectErrorsReportsEachRepeatedUniqueIdWithTheRowItFirstAppearedOn(long parallelThreshold) {
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        var csv = new StringBuilder(new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8));
+        for (int row = 2; row < 300; row++) {
+            csv.append(valid.replaceFirst("123456", "ID" + row));
+        }
+        csv.append(valid.replaceFirst("123456", "\"ID7\""));
+        csv.append(valid.replaceFirst("123456", "ID7 "));
+        csv.append(valid.replaceFirst("123456", "ID250").replace("01011990", "1990-01-01"));
+        csv.append(valid.replaceFirst("123456", ""));
+        csv.append(valid.replaceFirst("123456", ""));
+        csv.append("ID8,Company Ltd\n");
+        csv.append(valid.replaceFirst("123456", "ID7"));
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        var errors = processor(parallelThreshold, 64, 10).collectErrors(bytes);
+
+        assertEquals(5, errors.total());
+        assertError(errors, 0, 300, 0, ValidationRule.DUPLICATE_VALUE);
+        assertEquals(7, errors.firstRow(0));
+        assertEquals("unique id appears more than once, first on line 7", errors.message(0));
+        assertError(errors, 1, 302, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        assertError(errors, 2, 302, 0, ValidationRule.DUPLICATE_VALUE);
+        assertEquals(250, errors.firstRow(2));
+        assertError(errors, 3, 305, ValidationErrors.NO_COLUMN, ValidationRule.COLUMN_COUNT);
+        assertError(errors, 4, 306, 0, ValidationRule.DUPLICATE_VALUE);
+        assertEquals(7, errors.firstRow(4));
+        assertEquals(new String(errors.toJsonReport("file.csv"), StandardCharsets.UTF_8),
+                new String(csvProcessor.collectErrors(new ByteArrayInputStream(bytes)).toJsonReport("file.csv"), StandardCharsets.UTF_8));
+    }
+
+    @ParameterizedTest
+    @ValueSource( longs = { Long.MAX_VALUE, 0 } )
+    void collectErrorsReportsUniqueIdsSubmittedInAnEarlierFile(long parallelThreshold) {
+        var processor = processor(parallelThreshold, 64, 10);
+        var earlier = new ResubmissionCheck(ResubmissionCheck.Key.UNIQUE_ID, FingerprintIndex.EMPTY);
+        assertTrue(processor.collectErrors(rows(2, 100, ""), SCHEMA, earlier).isEmpty());
+        assertEquals(98, earlier.fingerprints().length);
+
+        var later = new ResubmissionCheck(ResubmissionCheck.Key.UNIQUE_ID, FingerprintIndex.of(earlier.fingerprints()));
+        var errors = processor.collectErrors(rows(100, 300, "ID50,Other Ltd,1,,,,,,,,,,\n\"ID60\",,,,,,,,,,,,\nID7 ,,,,,,,,,,,,\n"), SCHEMA, later);
+
+        assertEquals(2, errors.total());
+        assertError(errors, 0, 202, 0, ValidationRule.RESUBMITTED);
+        assertEquals("unique id was submitted in an earlier file", errors.message(0));
+        assertError(errors, 1, 203, 0, ValidationRule.RESUBMITTED);
+        assertEquals(203, later.fingerprints().length);
+    }
+
+    @ParameterizedTest
+    @ValueSource( longs = { Long.MAX_VALUE, 0 } )
+    void collectErrorsReportsWholeRecordsSubmittedInAnEarlierFile(long parallelThreshold) {
+        var processor = processor(parallelThreshold, 64, 10);
+        var earlier = new ResubmissionCheck(ResubmissionCheck.Key.RECORD, FingerprintIndex.EMPTY);
+        assertTrue(processor.collectErrors(rows(2, 100, ""), SCHEMA, earlier).isEmpty());
+
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        var later = new ResubmissionCheck(ResubmissionCheck.Key.RECORD, FingerprintIndex.of(earlier.fingerprints()));
+        var errors = processor.collectErrors(rows(100, 300, valid.replaceFirst("123456", "ID50")
+                + valid.replaceFirst("123456", "ID60").replace("Smith", "Smyth")
+                + valid.replaceFirst("123456", "\"ID70\"").replace("London", "\"London\"")), SCHEMA, later);
+
+        assertEquals(2, errors.total());
+        assertError(errors, 0, 202, ValidationErrors.NO_COLUMN, ValidationRule.RESUBMITTED);
+        assertEquals("Record was submitted in an earlier file", errors.message(0));
+        assertError(errors, 1, 204, ValidationErrors.NO_COLUMN, ValidationRule.RESUBMITTED);
+    }
+
+    @ParameterizedTest
+    @ValueSource( longs = { Long.MAX_VALUE, 0 } )
+    void collectErrorsReportsCompanyNumbersNotOnTheRegister(long parallelThreshold, @TempDir Path directory) throws IOException {
+        var snapshot = Files.writeString(directory.resolve("register.bin"), "12345678SC000001", StandardCharsets.UTF_8);
+        var register = CompanyRegister.open(snapshot);
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        var bytes = rows(2, 200, valid.replaceFirst("123456", "ID200").replace(",12345678,", ",sc000001,")
+                + valid.replaceFirst("123456", "ID201").replace(",12345678,", ",99999999,")
+                + valid.replaceFirst("123456", "ID202").replace(",12345678,", ",,")
+                + valid.replaceFirst("123456", "ID203").replace(",12345678,", ",12345678901,")
+                + valid.replaceFirst("123456", "ID5").replace(",12345678,", ",99999999,"));
+
+        var errors = processor(parallelThreshold, 64, 10).collectErrors(bytes, SCHEMA, null, register);
+
+        assertEquals(4, errors.total());
+        assertError(errors, 0, 201, COMPANY_NUMBER, ValidationRule.NOT_REGISTERED);
+        assertEquals("company number is not on the register", errors.message(0));
+        assertError(errors, 1, 203, COMPANY_NUMBER, ValidationRule.COMPANY_NUMBER_LENGTH);
+        assertError(errors, 2, 204, COMPANY_NUMBER, ValidationRule.NOT_REGISTERED);
+        assertError(errors, 3, 204, 0, ValidationRule.DUPLICATE_VALUE);
+        assertTrue(processor(parallelThreshold, 64, 10).collectErrors(rows(2, 200, ""), SCHEMA, null, register).isEmpty());
+    }
+
+    @Test
+    void compressedFileCollectsTheSameErrorsAsTheFileItHolds(@TempDir Path directory) throws IOException {
+        var snapshot = Files.writeString(directory.resolve("register.bin"), "12345678SC000001", StandardCharsets.UTF_8);
+        var register = CompanyRegister.open(snapshot);
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        var bytes = rows(2, 200, valid.replaceFirst("123456", "ID201").replace(",12345678,", ",99999999,")
+                + valid.replaceFirst("123456", "ID5"));
+        var compressed = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        }
+        var decompressor = new CsvDecompressor(DataSize.ofMegabytes(1), 100);
+
+        var errors = processor(0, 64, 10).collectErrors(
+                decompressor.decompress(new ByteArrayInputStream(compressed.toByteArray()), compressed.size(), Compression.GZIP), SCHEMA, null, register);
+
+        assertEquals(processor(0, 64, 10).collectErrors(bytes, SCHEMA, null, register).summary(), errors.summary());
+        assertEquals(2, errors.total());
+        assertError(errors, 0, 200, COMPANY_NUMBER, ValidationRule.NOT_REGISTERED);
+        assertError(errors, 1, 201, 0, ValidationRule.DUPLICATE_VALUE);
+    }
+
+    /**
+     * A file of valid rows with unique ids {@code ID<from>} up to but not including {@code ID<to>}, followed by the
+     * given records.
+     */
+    private static byte[] rows(int from, int to, String more) {
+        var valid = new String(SyntheticCsvInputStream.ROW, StandardCharsets.UTF_8);
+        var csv = new StringBuilder(new String(SyntheticCsvInputStream.HEADER, StandardCharsets.UTF_8));
+        for (int id = from; id < to; id++) {
+            csv.append(valid.replaceFirst("123456", "ID" + id));
+        }
+        return csv.append(more).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertError(ValidationErrors errors, int index, int row, int column, ValidationRule rule) {
+        assertEquals(row, errors.row(index));
+        assertEquals(column, errors.column(index));
+        assertEquals(rule, errors.rule(index));
+    }
+
+    private static void assertSameResult(byte[] bytes, int chunkSize) {
+        var description = String.format("%s with chunk size %s", new String(bytes, StandardCharsets.UTF_8), chunkSize);
+        var sequential = processor(Long.MAX_VALUE, chunkSize, 5);
+        var parallel = processor(0, chunkSize, 5);
+        assertEquals(errorMessage(sequential, bytes), errorMessage(parallel, bytes), description);
+        assertEquals(new String(sequential.collectErrors(bytes).toJsonReport("file.csv"), StandardCharsets.UTF_8),
+                new String(parallel.collectErrors(bytes).toJsonReport("file.csv"), StandardCharsets.UTF_8), description);
+    }
+
+    private static String errorMessage(CsvProcessor processor, byte[] bytes) {
+        try {
+            processor.parseRecords(bytes);
+            return null;
+        } catch (CSVDataValidationException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static CsvProcessor processor(long parallelThreshold, long chunkSize, int maxErrors) {
+        return new CsvProcessor(ForkJoinPool.commonPool(), DataSize.ofBytes(parallelThreshold), DataSize.ofBytes(chunkSize), maxErrors, SCHEMA);
+    }
+
+    private static long oldGenUsed(final List<MemoryPoolMXBean> pools) {
+        return pools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+    }
+
+    /**
+     * Generates a valid csv with a header and {@code rows} records on demand, so the test itself never holds the file.
+     */
+    private static class SyntheticCsvInputStream extends InputStream {
+
+        private static final byte[] HEADER = "Unique ID,Registered company name,Company number,Trading name,First name,Last name,Date of birth,Property name or number,Address line 1,Address line 2,City or town,Postcode,Country\n".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] ROW = "123456,Company Ltd,12345678,Trading Ltd,John,Smith,01011990,1,Street,Area,London,SW1A 1AA,United Kingdom\n".getBytes(StandardCharsets.UTF_8);
+
+        private final long size;
+        private long position;
+
+        private SyntheticCsvInputStream(final long rows) {
+            this.size = HEADER.length + rows * ROW.length;
+        }
+
+        @Override
+        public int read() {
+            final var single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) {
+            if (position >= size) {
+                return -1;
+            }
+            final int count = (int) Math.min(length, size - position);
+            for (int i = 0; i < count; i++, position++) {
+                buffer[offset + i] = position < HEADER.length ? HEADER[(int) position] : ROW[(int) ((position - HEADER.length) % ROW.length)];
+            }
+            return count;
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares tokenizing a typical 13 column AML file a byte at a time against jumping between fields with a
+ * {@link StructuralIndex} built a byte at a time or with the Vector API. Each benchmark reads every record of a 16MB
+ * file and returns the number of fields.
+ * <p>
+ * Not run as part of the tests. Run {@link #main} from the IDE, or after {@code mvn test-compile} with
+ * {@code mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=<this class>}, with the {@code vector-api} profile
+ * so the vector kernel is built. The forked JVM is started with {@code --add-modules jdk.incubator.vector}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class CsvTokenizerBenchmark {
+
+    private static final int FILE_BYTES = 16 * 1024 * 1024;
+    private static final String HEADER = "Unique ID,Registered company name,Company number,Trading name,First name,Last name,Date of birth,Property name or number,Address line 1,Address line 2,City or town,Postcode,Country\n";
+
+    /**
+     * How fields are found: {@code none} reads every byte, {@code scalar} and {@code vector} build an index.
+     */
+    @Param({"none", "scalar", "vector"})
+    public String index;
+
+    private byte[] bytes;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CsvTokenizerBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        if ("vector".equals(index) && StructuralIndex.vectorKernel() == null) {
+            throw new IllegalStateException("The Vector API is not available, build with -Pvector-api and start the JVM with --add-modules jdk.incubator.vector");
+        }
+        final var random = new Random(20250324L);
+        final var csv = new StringBuilder(FILE_BYTES + 1024).append(HEADER);
+        for (int row = 0; csv.length() < FILE_BYTES; row++) {
+            csv.append("AML").append(row).append(',')
+                    .append(random.nextInt(4) == 0 ? "\"Acme Trading, Services Ltd\"" : "Acme Trading Limited").append(',')
+                    .append(String.format("%08d", random.nextInt(20_000_000))).append(',')
+                    .append(random.nextBoolean() ? "Acme" : "").append(',')
+                    .append("Jane,Smith,")
+                    .append(random.nextBoolean() ? String.format("%02d%02d19%02d", 1 + random.nextInt(28), 1 + random.nextInt(12), random.nextInt(100)) : "").append(',')
+                    .append(1 + random.nextInt(200)).append(',')
+                    .append("High Street,").append(random.nextInt(3) == 0 ? "Little Snoring" : "").append(',')
+                    .append("Norwich,NR21 0AA,United Kingdom\n");
+        }
+        bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long tokenize() throws IOException {
+        final var structuralIndex = switch (index) {
+            case "scalar" -> StructuralIndex.scalar();
+            case "vector" -> StructuralIndex.preferred();
+            default -> null;
+        };
+        final var tokenizer = new CsvTokenizer(new ByteArrayInputStream(bytes), CsvTokenizer.DEFAULT_BUFFER_SIZE, true, structuralIndex);
+        var fields = 0L;
+        while (tokenizer.nextRecord()) {
+            fields += tokenizer.fieldCount();
+        }
+        return fields;
+    }
+}
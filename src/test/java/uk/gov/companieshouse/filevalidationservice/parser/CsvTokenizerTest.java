@@ -0,0 +1,239 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.input.BOMInputStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link CsvTokenizer} against commons-csv with {@code CSVFormat.DEFAULT}, which the tokenizer replaced:
+ * for every input both must either produce the same records or both reject it.
+ */
+@Tag("unit-test")
+class CsvTokenizerTest {
+
+    private static final int[] BUFFER_SIZES = { 1, 7, CsvTokenizer.DEFAULT_BUFFER_SIZE };
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "a",
+            "a,b,c",
+            "a,b,c\n",
+            "a,b,c\r\n",
+            "a,b,c\r",
+            "a,b\rc,d\r\ne,f\ng,h",
+            "\n\n\r\na,b\n\n\r\n\rc,d\n\n",
+            ",",
+            "a,",
+            ",a",
+            "a,,b",
+            "a,\n",
+            "a,\r\nb",
+            " ",
+            " \n ",
+            "\"\"",
+            "\"\",\"\"",
+            "\"a\"",
+            "\"a\",\"b\"",
+            "\"a,b\",c",
+            "\"a\"\"b\"",
+            "\"\"\"\"",
+            "\"a\nb\",c\r\nd",
+            "\"a\r\n\r\nb\"",
+            "\"a\"  ,b",
+            "\"a\"\t\n",
+            "\"a\" \u2003,b",
+            "\"a\"\u00a0,b",
+            "\"a\"x,b",
+            "\"a",
+            "a,\"b",
+            "a\"b,c",
+            "a\"\"b,c",
+            " \"a\",b",
+            "\uFEFFa,b",
+            "\uFEFF\"a\",b",
+            "caf\u00e9,\u20ac,\uD83D\uDE00\n",
+            "\"caf\u00e9\",\"\uD83D\uDE00\"\"\""
+    })
+    void tokenizerAgreesWithCommonsCsv(String input) throws IOException {
+        assertAgrees(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "src/test/resources/good_multiple_records.csv",
+            "src/test/resources/correctHeadersWithBOM.csv",
+            "src/test/resources/good_multiple_records_with_column_names_in_quotes.csv",
+            "src/test/resources/tooFewColumns.csv",
+            "src/test/resources/tooManyColumns.csv",
+            "src/test/resources/emptyCsv.csv",
+            "src/test/resources/onlyHeaders.csv"
+    })
+    void tokenizerAgreesWithCommonsCsvOnTestFiles(String filePath) throws IOException {
+        assertAgrees(Files.readAllBytes(Path.of(filePath)));
+    }
+
+    @Test
+    void tokenizerAgreesWithCommonsCsvOnRandomInput() throws IOException {
+        final String[] alphabet = { "a", "b", " ", "\t", ",", ",", "\"", "\"", "\r", "\n", "\u00e9", "\u20ac", "\uD83D\uDE00", "\u2003" };
+        final var random = new Random(20250101L);
+        for (int i = 0; i < 5000; i++) {
+            final var input = new StringBuilder(random.nextInt(10) == 0 ? "\uFEFF" : "");
+            final var length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                input.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            assertAgrees(input.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void fieldLengthCountsUtf16CodeUnits() throws IOException {
+        final var tokenizer = new CsvTokenizer(stream("a,caf\u00e9,\u20ac\u20ac,\uD83D\uDE00,\"\"\"\"".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(tokenizer.nextRecord());
+        assertEquals(1, tokenizer.fieldLength(0));
+        assertEquals(4, tokenizer.fieldLength(1));
+        assertEquals(2, tokenizer.fieldLength(2));
+        assertEquals(2, tokenizer.fieldLength(3));
+        assertEquals(1, tokenizer.fieldLength(4));
+        assertFalse(tokenizer.nextRecord());
+    }
+
+    @Test
+    void recordLengthIncludesTheLineBreakButNotBlankLines() throws IOException {
+        final var tokenizer = new CsvTokenizer(stream("a,b\r\nc\n\"d\ne\"\r\n\nf".getBytes(StandardCharsets.UTF_8)));
+
+        final List<String> records = new ArrayList<>();
+        while (tokenizer.nextRecord()) {
+            records.add(tokenizer.recordOffset() + ":" + tokenizer.recordLength());
+        }
+
+        assertEquals(List.of("0:5", "5:2", "7:7", "15:1"), records);
+    }
+
+    @Test
+    void recordLongerThanTheLimitIsRejected() throws IOException {
+        final var unterminatedQuote = new InputStream() {
+            private boolean started;
+
+            @Override
+            public int read() {
+                if (!started) {
+                    started = true;
+                    return '"';
+                }
+                return 'a';
+            }
+        };
+        final var tokenizer = new CsvTokenizer(unterminatedQuote, 1024);
+
+        assertThrows(CSVDataValidationException.class, tokenizer::nextRecord);
+    }
+
+    @Test
+    void structuralIndexGivesTheSameRecordsAsReadingEveryByte() throws IOException {
+        final String[] fields = { "a", "", "London", "SW1A 1AA", "\"a,b\"", "\"a\nb\"", "\"a\"\"b\"", "\"\"", "\"a\" ", "\"a\"x", "a\"b", "caf\u00e9", "x".repeat(100) };
+        final String[] endings = { "\n", "\r\n", "\r", "\n\n" };
+        final var random = new Random(20250321L);
+        for (int i = 0; i < 2000; i++) {
+            final var input = new StringBuilder();
+            final var records = random.nextInt(20);
+            for (int record = 0; record < records; record++) {
+                final var columns = 1 + random.nextInt(13);
+                for (int column = 0; column < columns; column++) {
+                    input.append(column > 0 ? "," : "").append(fields[random.nextInt(fields.length)]);
+                }
+                input.append(endings[random.nextInt(endings.length)]);
+            }
+            final var bytes = input.toString().getBytes(StandardCharsets.UTF_8);
+            for (int bufferSize : new int[] { 1, 7, 64, 100, CsvTokenizer.DEFAULT_BUFFER_SIZE }) {
+                final var expected = parseWithTokenizer(bytes, bufferSize, null);
+                final var description = String.format("input %s with buffer size %s", escape(bytes), bufferSize);
+                assertEquals(expected, parseWithTokenizer(bytes, bufferSize, StructuralIndex.scalar()), description);
+                if (StructuralIndex.vectorKernel() != null) {
+                    assertEquals(expected, parseWithTokenizer(bytes, bufferSize, StructuralIndex.preferred()), description);
+                }
+            }
+        }
+    }
+
+    private static void assertAgrees(byte[] input) throws IOException {
+        final var expected = parseWithCommonsCsv(input);
+        for (int bufferSize : BUFFER_SIZES) {
+            final var description = String.format("input %s with buffer size %s", escape(input), bufferSize);
+            assertEquals(expected, parseWithTokenizer(input, bufferSize, null), description);
+            assertEquals(expected, parseWithTokenizer(input, bufferSize, StructuralIndex.scalar()), description);
+            if (StructuralIndex.vectorKernel() != null) {
+                assertEquals(expected, parseWithTokenizer(input, bufferSize, StructuralIndex.preferred()), description);
+            }
+        }
+    }
+
+    /**
+     * The records commons-csv reads from the input, or {@code null} if it rejects it.
+     */
+    private static List<List<String>> parseWithCommonsCsv(byte[] input) throws IOException {
+        try (var reader = new InputStreamReader(BOMInputStream.builder().setInputStream(stream(input)).get(), StandardCharsets.UTF_8)) {
+            final List<List<String>> records = new ArrayList<>();
+            for (CSVRecord csvRecord : CSVFormat.DEFAULT.parse(reader)) {
+                records.add(csvRecord.toList());
+            }
+            return records;
+        } catch (UncheckedIOException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The records the tokenizer reads from the input with the given index, or {@code null} if it rejects it.
+     */
+    private static List<List<String>> parseWithTokenizer(byte[] input, int bufferSize, StructuralIndex index) throws IOException {
+        final var tokenizer = new CsvTokenizer(stream(input), bufferSize, true, index);
+        final List<List<String>> records = new ArrayList<>();
+        try {
+            while (tokenizer.nextRecord()) {
+                final List<String> fields = new ArrayList<>();
+                for (int i = 0; i < tokenizer.fieldCount(); i++) {
+                    final var field = tokenizer.field(i);
+                    assertEquals(field.length(), tokenizer.fieldLength(i));
+                    fields.add(field);
+                }
+                records.add(fields);
+            }
+            return records;
+        } catch (CSVDataValidationException e) {
+            return null;
+        }
+    }
+
+    private static InputStream stream(byte[] input) {
+        return new ByteArrayInputStream(input);
+    }
+
+    private static String escape(byte[] input) {
+        return new String(input, StandardCharsets.UTF_8).replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t");
+    }
+}
@@ -0,0 +1,43 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+@Tag("unit-test")
+class FingerprintsTest {
+
+    @Test
+    void fingerprintDependsOnlyOnTheBytesOfTheValue() {
+        final var bytes = bytes("xxID-0123456789xID-0123456789");
+
+        assertEquals(Fingerprints.of(bytes, 2, 15), Fingerprints.of(bytes, 16, 29));
+        assertNotEquals(Fingerprints.of(bytes, 2, 15), Fingerprints.of(bytes, 2, 14));
+        assertNotEquals(Fingerprints.of(bytes, 2, 2), Fingerprints.of(bytes("\0"), 0, 1));
+    }
+
+    @Test
+    void recordFingerprintDependsOnEveryFieldAfterUnquoting() throws IOException {
+        final var tokenizer = new CsvTokenizer(new ByteArrayInputStream(bytes("a,bc,d\n\"a\",\"bc\",d\nab,c,d\na,bc,d,\na,bc,e\n")));
+        final var records = new long[5];
+        for (int record = 0; record < records.length; record++) {
+            tokenizer.nextRecord();
+            records[record] = Fingerprints.ofRecord(tokenizer);
+        }
+
+        assertEquals(records[0], records[1]);
+        assertNotEquals(records[0], records[2]);
+        assertNotEquals(records[0], records[3]);
+        assertNotEquals(records[0], records[4]);
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Tag("unit-test")
+class StructuralIndexTest {
+
+    private static final byte[] STRUCTURAL = { ',', '"', '\r', '\n' };
+
+    @Test
+    void findsTheNextDelimiterAndQuote() {
+        final var bytes = "ab,\"c\"\"d\"\r\nef".getBytes(StandardCharsets.UTF_8);
+        final var index = StructuralIndex.scalar();
+        index.index(bytes, 0, bytes.length);
+
+        assertEquals(2, index.nextDelimiter(0));
+        assertEquals(2, index.nextDelimiter(2));
+        assertEquals(9, index.nextDelimiter(3));
+        assertEquals(10, index.nextDelimiter(10));
+        assertEquals(bytes.length, index.nextDelimiter(11));
+        assertEquals(3, index.nextQuote(0));
+        assertEquals(5, index.nextQuote(4));
+        assertEquals(6, index.nextQuote(6));
+        assertEquals(bytes.length, index.nextQuote(9));
+        assertEquals(bytes.length, index.nextQuote(bytes.length));
+    }
+
+    @Test
+    void nothingIsFoundPastTheEndOfTheIndex() {
+        final var bytes = ("a".repeat(100) + ",\"" + "b".repeat(100)).getBytes(StandardCharsets.UTF_8);
+        final var index = StructuralIndex.scalar();
+
+        index.index(bytes, 0, 100);
+        assertEquals(100, index.nextDelimiter(0));
+        assertEquals(100, index.nextQuote(70));
+
+        index.index(bytes, 100, bytes.length);
+        assertEquals(100, index.nextDelimiter(100));
+        assertEquals(101, index.nextQuote(100));
+        assertEquals(bytes.length, index.nextDelimiter(101));
+    }
+
+    @Test
+    void findsEveryStructuralByteInRandomInput() {
+        final var random = new Random(20250322L);
+        for (int i = 0; i < 500; i++) {
+            final var bytes = randomBytes(random, random.nextInt(300));
+            final var from = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            final var index = StructuralIndex.scalar();
+            index.index(bytes, from, bytes.length);
+
+            var expectedDelimiter = bytes.length;
+            var expectedQuote = bytes.length;
+            for (int position = bytes.length - 1; position >= from; position--) {
+                if (bytes[position] == '"') {
+                    expectedQuote = position;
+                } else if (bytes[position] == ',' || bytes[position] == '\r' || bytes[position] == '\n') {
+                    expectedDelimiter = position;
+                }
+                assertEquals(expectedDelimiter, index.nextDelimiter(position));
+                assertEquals(expectedQuote, index.nextQuote(position));
+            }
+        }
+    }
+
+    @Test
+    void vectorKernelSetsTheSameBitsAsTheScalarKernel() {
+        final var vector = StructuralIndex.vectorKernel();
+        assumeTrue(vector != null, "the Vector API is not available");
+        final var random = new Random(20250323L);
+        for (int i = 0; i < 2000; i++) {
+            final var bytes = randomBytes(random, random.nextInt(1000));
+            final var from = (bytes.length == 0 ? 0 : random.nextInt(bytes.length)) & -Long.SIZE;
+            final var to = from + random.nextInt(bytes.length - from + 1);
+            final var words = (bytes.length + Long.SIZE - 1) / Long.SIZE;
+            final var expectedDelimiters = new long[words];
+            final var expectedQuotes = new long[words];
+            final var delimiters = new long[words];
+            final var quotes = new long[words];
+
+            StructuralIndex.SCALAR.index(bytes, from, to, expectedDelimiters, expectedQuotes);
+            vector.index(bytes, from, to, delimiters, quotes);
+
+            assertArrayEquals(expectedDelimiters, delimiters);
+            assertArrayEquals(expectedQuotes, quotes);
+        }
+    }
+
+    /**
+     * Bytes of any value, a quarter of them structural.
+     */
+    private static byte[] randomBytes(final Random random, final int length) {
+        final var bytes = new byte[length];
+        random.nextBytes(bytes);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(4) == 0) {
+                bytes[i] = STRUCTURAL[random.nextInt(STRUCTURAL.length)];
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,54 @@
+package uk.gov.companieshouse.filevalidationservice.parser;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Tag("unit-test")
+class UniqueValuesTest {
+
+    private static final long SAME_FINGERPRINT = 42L;
+
+    @Test
+    void copiedValuesWithTheSameFingerprintAreComparedExactly() {
+        final var values = UniqueValues.copyingValues(0);
+        final var first = bytes("ID1");
+        final var second = bytes("ID2");
+
+        assertEquals(UniqueValues.FIRST_OCCURRENCE, values.add(SAME_FINGERPRINT, 2, first, 0, first.length));
+        assertEquals(UniqueValues.FIRST_OCCURRENCE, values.add(SAME_FINGERPRINT, 3, second, 0, second.length));
+        assertEquals(2, values.add(SAME_FINGERPRINT, 4, first, 0, first.length));
+        assertEquals(3, values.add(SAME_FINGERPRINT, 5, second, 0, second.length));
+    }
+
+    @Test
+    void valuesInAFileWithTheSameFingerprintAreComparedExactlyAfterUnquoting() {
+        final var file = bytes("unique id,name\nID1,a\n\"ID2\",b\n\"ID\"\"1\",c\n\"ID1\" ,d\n");
+        final var values = UniqueValues.inFile(file, 0);
+
+        assertEquals(UniqueValues.FIRST_OCCURRENCE, values.add(SAME_FINGERPRINT, 2, 15));
+        assertEquals(UniqueValues.FIRST_OCCURRENCE, values.add(SAME_FINGERPRINT, 3, 21));
+        assertEquals(UniqueValues.FIRST_OCCURRENCE, values.add(SAME_FINGERPRINT, 4, 29));
+        assertEquals(2, values.add(SAME_FINGERPRINT, 5, 39));
+    }
+
+    @Test
+    void firstRowsAreKeptAsTheTableGrows() {
+        final var values = UniqueValues.copyingValues(0);
+        for (int row = 2; row < 100_002; row++) {
+            final var value = bytes("ID" + row);
+            assertEquals(UniqueValues.FIRST_OCCURRENCE, values.add(Fingerprints.of(value, 0, value.length), row, value, 0, value.length));
+        }
+        for (int row = 2; row < 100_002; row += 997) {
+            final var value = bytes("ID" + row);
+            assertEquals(row, values.add(Fingerprints.of(value, 0, value.length), 200_000, value, 0, value.length));
+        }
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,112 @@
+package uk.gov.companieshouse.filevalidationservice.repositories;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith( MockitoExtension.class )
+@Tag( "unit-test" )
+class FileValidationRepositoryImplTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of( 2025, 1, 1, 12, 0 );
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private FileValidationRepositoryImpl fileValidationRepository;
+
+    @Test
+    void claimReturnsEmptyWhenRecordIsNotClaimable() {
+        when( mongoTemplate.findAndModify( any( Query.class ), any( Update.class ), any( FindAndModifyOptions.class ), eq( FileValidation.class ) ) ).thenReturn( null );
+
+        assertTrue( fileValidationRepository.claim( "1", "node-1", List.of( "pending" ), NOW, Duration.ofMinutes( 15 ) ).isEmpty() );
+    }
+
+    @Test
+    void claimMatchesEligibleClaimableStatusesOrExpiredClaimsAndLeasesTheRecord() {
+        final var claimed = new FileValidation();
+        final var queryCaptor = ArgumentCaptor.forClass( Query.class );
+        final var updateCaptor = ArgumentCaptor.forClass( Update.class );
+        final var optionsCaptor = ArgumentCaptor.forClass( FindAndModifyOptions.class );
+        when( mongoTemplate.findAndModify( queryCaptor.capture(), updateCaptor.capture(), optionsCaptor.capture(), eq( FileValidation.class ) ) ).thenReturn( claimed );
+
+        final var result = fileValidationRepository.claim( "1", "node-1", List.of( "pending", "error" ), NOW, Duration.ofMinutes( 15 ) );
+
+        assertEquals( claimed, result.orElseThrow() );
+        final var conditions = queryCaptor.getValue().getQueryObject().getList( "$and", Document.class );
+        assertEquals( new Document( "_id", "1" ), conditions.get( 0 ) );
+        assertClaimable( conditions.get( 1 ), List.of( "pending", "error" ) );
+
+        final var set = (Document) updateCaptor.getValue().getUpdateObject().get( "$set" );
+        assertEquals( "in-progress", set.get( "status" ) );
+        assertEquals( "node-1", set.get( "claimed_by" ) );
+        assertEquals( NOW.plusMinutes( 15 ), set.get( "claim_expires_at" ) );
+        assertEquals( 1, ( (Document) updateCaptor.getValue().getUpdateObject().get( "$inc" ) ).get( "attempts" ) );
+        assertTrue( ( (Document) updateCaptor.getValue().getUpdateObject().get( "$unset" ) ).containsKey( "error_message" ) );
+        assertTrue( optionsCaptor.getValue().isReturnNew() );
+        verify( mongoTemplate ).findAndModify( any( Query.class ), any( Update.class ), any( FindAndModifyOptions.class ), eq( FileValidation.class ) );
+    }
+
+    @Test
+    void findClaimablePageReadsOldestFirstWithIdAndCreatedAtOnly() {
+        final var queryCaptor = ArgumentCaptor.forClass( Query.class );
+        when( mongoTemplate.find( queryCaptor.capture(), eq( FileValidation.class ) ) ).thenReturn( List.of() );
+
+        fileValidationRepository.findClaimablePage( List.of( "pending" ), NOW, null, 50 );
+
+        final var query = queryCaptor.getValue();
+        assertClaimable( query.getQueryObject(), List.of( "pending" ) );
+        assertEquals( new Document( "created_at", 1 ).append( "_id", 1 ), query.getSortObject() );
+        assertEquals( new Document( "_id", 1 ).append( "created_at", 1 ), query.getFieldsObject() );
+        assertEquals( 50, query.getLimit() );
+    }
+
+    @Test
+    void findClaimablePageContinuesAfterTheLastRecordOfThePreviousPage() {
+        final var after = new FileValidation();
+        after.setId( "5" );
+        after.setCreatedAt( NOW.minusDays( 1 ) );
+        final var queryCaptor = ArgumentCaptor.forClass( Query.class );
+        when( mongoTemplate.find( queryCaptor.capture(), eq( FileValidation.class ) ) ).thenReturn( List.of() );
+
+        fileValidationRepository.findClaimablePage( List.of( "pending" ), NOW, after, 50 );
+
+        final var conditions = queryCaptor.getValue().getQueryObject().getList( "$and", Document.class );
+        assertClaimable( conditions.get( 0 ), List.of( "pending" ) );
+        final var keyset = conditions.get( 1 ).getList( "$or", Document.class );
+        assertEquals( new Document( "created_at", new Document( "$gt", after.getCreatedAt() ) ), keyset.get( 0 ) );
+        assertEquals( new Document( "created_at", after.getCreatedAt() ).append( "_id", new Document( "$gt", "5" ) ), keyset.get( 1 ) );
+    }
+
+    private static void assertClaimable( final Document claimable, final List<String> statuses ) {
+        final var alternatives = claimable.getList( "$or", Document.class );
+        final var retryable = alternatives.get( 0 ).getList( "$and", Document.class );
+        assertEquals( new Document( "status", new Document( "$in", statuses ) ), retryable.get( 0 ) );
+        final var eligible = retryable.get( 1 ).getList( "$or", Document.class );
+        assertEquals( new Document( "next_attempt_at", new Document( "$exists", false ) ), eligible.get( 0 ) );
+        assertEquals( new Document( "next_attempt_at", new Document( "$lte", NOW ) ), eligible.get( 1 ) );
+        assertEquals( new Document( "status", "in-progress" ).append( "claim_expires_at", new Document( "$lt", NOW ) ), alternatives.get( 1 ) );
+    }
+}
@@ -2,9 +2,19 @@ package uk.gov.companieshouse.filevalidationservice.rest;
 
 import static org.mockito.ArgumentMatchers.any;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpResponseException.Builder;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -13,6 +23,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import uk.gov.companieshouse.api.InternalApiClient;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
 import uk.gov.companieshouse.api.handler.exception.URIValidationException;
@@ -20,11 +31,10 @@ import uk.gov.companieshouse.api.handler.filetransfer.PrivateFileTransferResourc
 import uk.gov.companieshouse.api.handler.filetransfer.request.PrivateModelFileTransferDelete;
 import uk.gov.companieshouse.api.handler.filetransfer.request.PrivateModelFileTransferDownload;
 import uk.gov.companieshouse.api.handler.filetransfer.request.PrivateModelFileTransferGetDetails;
-import uk.gov.companieshouse.api.handler.filetransfer.request.PrivateModelFileTransferUpload;
 import uk.gov.companieshouse.api.model.ApiResponse;
 import uk.gov.companieshouse.api.model.filetransfer.FileApi;
 import uk.gov.companieshouse.api.model.filetransfer.FileDetailsApi;
-import uk.gov.companieshouse.api.model.filetransfer.IdApi;
+import uk.gov.companieshouse.filevalidationservice.exception.FileUploadException;
 import uk.gov.companieshouse.filevalidationservice.utils.ApiClientUtil;
 
 @ExtendWith( MockitoExtension.class )
@@ -40,9 +50,6 @@ class FileTransferEndpointTest {
     @Mock
     private PrivateFileTransferResourceHandler privateFileTransferResourceHandler;
 
-    @Mock
-    private PrivateModelFileTransferUpload privateModelFileTransferUpload;
-
     @Mock
     private PrivateModelFileTransferGetDetails privateModelFileTransferGetDetails;
 
@@ -56,26 +63,62 @@ class FileTransferEndpointTest {
     private FileTransferEndpoint fileTransferEndpoint;
 
     @Test
-    void uploadReturnsUnsupportedMediaTypeWhenFileIsInvalid() throws ApiErrorResponseException, URIValidationException {
-        Mockito.doReturn( internalApiClient ).when( apiClientUtil ).getInternalApiClient( any() );
-        Mockito.doReturn( privateFileTransferResourceHandler ).when( internalApiClient ).privateFileTransferResourceHandler();
-        Mockito.doReturn( privateModelFileTransferUpload ).when( privateFileTransferResourceHandler ).upload( any() );
-        Mockito.doThrow( new ApiErrorResponseException( new Builder( 415, "Internal Server Error", new HttpHeaders() ) ) ).when( privateModelFileTransferUpload ).execute();
-
-        Assertions.assertThrows( ApiErrorResponseException.class, () -> fileTransferEndpoint.upload( new FileApi() ) );
+    void uploadThrowsFileUploadExceptionWhenFileIsInvalid() throws IOException {
+        final var server = startFileTransferServer( 415, "" );
+        try {
+            final var endpoint = endpointFor( server );
+            final var content = new ByteArrayInputStream( "Hello world".getBytes() );
+
+            Assertions.assertThrows( FileUploadException.class, () -> endpoint.upload( content, 11, "file.csv", "text/csv" ) );
+        } finally {
+            server.stop( 0 );
+        }
     }
 
     @Test
-    void uploadReturnsOkWhenUploadSucceeds() throws ApiErrorResponseException, URIValidationException {
-        Mockito.doReturn( internalApiClient ).when( apiClientUtil ).getInternalApiClient( any() );
-        Mockito.doReturn( privateFileTransferResourceHandler ).when( internalApiClient ).privateFileTransferResourceHandler();
-        Mockito.doReturn( privateModelFileTransferUpload ).when( privateFileTransferResourceHandler ).upload( any() );
-        Mockito.doReturn( new ApiResponse<>( 200, Map.of(), new IdApi( "1" ) ) ).when( privateModelFileTransferUpload ).execute();
+    void uploadReturnsOkWhenUploadSucceeds() throws IOException, InterruptedException {
+        final var server = startFileTransferServer( 200, "{\"id\":\"1\"}" );
+        try {
+            final var response = endpointFor( server ).upload( new ByteArrayInputStream( "Hello world".getBytes() ), 11, "file.csv", "text/csv" );
+
+            Assertions.assertEquals( 200, response.getStatusCode() );
+            Assertions.assertEquals( "1", response.getData().getId() );
+        } finally {
+            server.stop( 0 );
+        }
+    }
 
-        final var response = fileTransferEndpoint.upload( new FileApi() );
+    @Test
+    void uploadSendsTheCsvExtensionWithTheFile() throws IOException, InterruptedException {
+        final var requestBody = new ByteArrayOutputStream();
+        final var server = startFileTransferServer( 200, "{\"id\":\"1\"}", requestBody::write );
+        try {
+            endpointFor( server ).upload( new ByteArrayInputStream( "Hello world".getBytes() ), 11, "file.csv", "text/csv" );
+        } finally {
+            server.stop( 0 );
+        }
+
+        final var multipart = requestBody.toString( StandardCharsets.UTF_8 );
+        Assertions.assertTrue( multipart.contains( "Content-Disposition: form-data; name=\"extension\"\r\n\r\n.csv\r\n" ) );
+        Assertions.assertTrue( multipart.contains( "Content-Disposition: form-data; name=\"file\"; filename=\"file.csv\"\r\nContent-Type: text/csv\r\n\r\nHello world\r\n" ) );
+    }
 
-        Assertions.assertEquals( 200, response.getStatusCode() );
-        Assertions.assertEquals( "1", response.getData().getId() );
+    @Test
+    void uploadStreamsLargeFileWithoutReadingFarAheadOfTheServer() throws IOException, InterruptedException {
+        final long fileSize = 64L * 1024 * 1024;
+        final var receivedBytes = new AtomicLong();
+        final var server = startFileTransferServer( 200, "{\"id\":\"1\"}", ( buffer, offset, length ) -> receivedBytes.addAndGet( length ) );
+        final var content = new SyntheticCsvInputStream( fileSize, receivedBytes );
+        try {
+            final var response = endpointFor( server ).upload( content, fileSize, "large.csv", "text/csv" );
+            Assertions.assertEquals( "1", response.getData().getId() );
+        } finally {
+            server.stop( 0 );
+        }
+
+        Assertions.assertTrue( receivedBytes.get() > fileSize, "multipart body should contain the whole file" );
+        Assertions.assertTrue( content.maxReadAhead < 16L * 1024 * 1024,
+                String.format( "read %s bytes ahead of the server while streaming a %s byte file", content.maxReadAhead, fileSize ) );
     }
 
     @Test
@@ -148,5 +191,79 @@ class FileTransferEndpointTest {
         Assertions.assertEquals( 204, response.getStatusCode() );
     }
 
-}
+    private FileTransferEndpoint endpointFor( final HttpServer server ) {
+        final var endpoint = new FileTransferEndpoint( apiClientUtil, HttpClient.newBuilder().version( HttpClient.Version.HTTP_1_1 ).build(), new ObjectMapper() );
+        ReflectionTestUtils.setField( endpoint, "fileTransferApiUrl", "http://localhost:" + server.getAddress().getPort() );
+        ReflectionTestUtils.setField( endpoint, "internalApiKey", "key" );
+        return endpoint;
+    }
+
+    private static HttpServer startFileTransferServer( final int status, final String responseBody ) throws IOException {
+        return startFileTransferServer( status, responseBody, ( buffer, offset, length ) -> { } );
+    }
+
+    private static HttpServer startFileTransferServer( final int status, final String responseBody, final RequestBodySink requestBodySink ) throws IOException {
+        final var server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+        server.createContext( "/file-transfer/upload", exchange -> {
+            try ( var requestBody = exchange.getRequestBody() ) {
+                final var buffer = new byte[ 8192 ];
+                int read;
+                while ( ( read = requestBody.read( buffer ) ) != -1 ) {
+                    requestBodySink.write( buffer, 0, read );
+                }
+            }
+            final var bytes = responseBody.getBytes( StandardCharsets.UTF_8 );
+            exchange.sendResponseHeaders( status, bytes.length == 0 ? -1 : bytes.length );
+            try ( var out = exchange.getResponseBody() ) {
+                out.write( bytes );
+            }
+        } );
+        server.start();
+        return server;
+    }
 
+    @FunctionalInterface
+    private interface RequestBodySink {
+        void write( byte[] buffer, int offset, int length );
+    }
+
+    /**
+     * Generates {@code size} bytes of AML shaped csv on demand, so the test itself never holds the file, and records
+     * how far reading got ahead of what the server had received.
+     */
+    private static class SyntheticCsvInputStream extends InputStream {
+
+        private static final byte[] HEADER = "Unique ID,Registered company name,Company number,Trading name,First name,Last name,Date of birth,Property name or number,Address line 1,Address line 2,City or town,Postcode,Country\n".getBytes( StandardCharsets.UTF_8 );
+        private static final byte[] ROW = "123456,Company Ltd,12345678,Trading Ltd,John,Smith,01011990,1,Street,Area,London,SW1A 1AA,United Kingdom\n".getBytes( StandardCharsets.UTF_8 );
+
+        private final long size;
+        private final AtomicLong receivedBytes;
+        private long position;
+        private long maxReadAhead;
+
+        private SyntheticCsvInputStream( final long size, final AtomicLong receivedBytes ) {
+            this.size = size;
+            this.receivedBytes = receivedBytes;
+        }
+
+        @Override
+        public int read() {
+            final var single = new byte[ 1 ];
+            return read( single, 0, 1 ) == -1 ? -1 : single[ 0 ] & 0xFF;
+        }
+
+        @Override
+        public int read( final byte[] buffer, final int offset, final int length ) {
+            if ( position >= size ) {
+                return -1;
+            }
+            final int count = (int) Math.min( length, size - position );
+            for ( int i = 0; i < count; i++, position++ ) {
+                buffer[ offset + i ] = position < HEADER.length ? HEADER[ (int) position ] : ROW[ (int) ( ( position - HEADER.length ) % ROW.length ) ];
+            }
+            maxReadAhead = Math.max( maxReadAhead, position - receivedBytes.get() );
+            return count;
+        }
+    }
+
+}
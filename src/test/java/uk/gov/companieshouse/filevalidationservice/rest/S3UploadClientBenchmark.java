@@ -0,0 +1,149 @@
+package uk.gov.companieshouse.filevalidationservice.rest;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.unit.DataSize;
+import org.testcontainers.containers.MinIOContainer;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares uploading with the blocking and the non-blocking S3 client. Each benchmark uploads 16 files of 20MB to
+ * MinIO in parts, four files at a time as the upload stage does with its default pool size, and reports the most
+ * threads the JVM had running while it did. The part upload executor has its default eight threads, which only the
+ * blocking client uses.
+ * <p>
+ * Not run as part of the tests, and needs Docker. Run {@link #main} from the IDE, or after {@code mvn test-compile}
+ * with {@code mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=<this class>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class S3UploadClientBenchmark {
+
+    private static final String BUCKET = "file-validation";
+    private static final int FILES = 16;
+    private static final int FILE_BYTES = 20 * 1024 * 1024;
+
+    /**
+     * Which client uploads the files, {@code sync} or {@code async}.
+     */
+    @Param({"sync", "async"})
+    public String client;
+
+    private MinIOContainer minio;
+    private S3Client s3;
+    private S3AsyncClient asyncS3;
+    private ExecutorService uploadStage;
+    private ExecutorService partExecutor;
+    private S3UploadClient uploadClient;
+    private byte[] file;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(S3UploadClientBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        minio = new MinIOContainer("minio/minio:RELEASE.2024-12-18T13-15-44Z");
+        minio.start();
+        var endpoint = URI.create(minio.getS3URL());
+        var credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create(minio.getUserName(), minio.getPassword()));
+        s3 = S3Client.builder()
+                .endpointOverride(endpoint)
+                .region(Region.EU_WEST_2)
+                .credentialsProvider(credentials)
+                .forcePathStyle(true)
+                .httpClientBuilder(ApacheHttpClient.builder().maxConnections(50))
+                .build();
+        s3.createBucket(request -> request.bucket(BUCKET));
+        if ("async".equals(client)) {
+            asyncS3 = S3AsyncClient.builder()
+                    .endpointOverride(endpoint)
+                    .region(Region.EU_WEST_2)
+                    .credentialsProvider(credentials)
+                    .forcePathStyle(true)
+                    .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(50))
+                    .build();
+        }
+        uploadStage = Executors.newFixedThreadPool(4);
+        partExecutor = Executors.newFixedThreadPool(8);
+        uploadClient = new S3UploadClient(s3, Optional.ofNullable(asyncS3), BUCKET, partExecutor,
+                DataSize.ofMegabytes(16), DataSize.ofMegabytes(8), 4, 3, Duration.ofSeconds(1));
+        file = new byte[FILE_BYTES];
+        new Random(20250324L).nextBytes(file);
+    }
+
+    @TearDown
+    public void tearDown() {
+        uploadStage.shutdown();
+        partExecutor.shutdown();
+        if (asyncS3 != null) {
+            asyncS3.close();
+        }
+        s3.close();
+        minio.stop();
+    }
+
+    @Benchmark
+    public int uploadFiles(Threads threads) {
+        var uploads = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < FILES; i++) {
+            var documentId = "file-" + i + ".csv";
+            uploads.add(CompletableFuture.runAsync(() -> uploadClient.uploadFile(file, documentId, "benchmark"), uploadStage));
+        }
+        CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).join();
+        threads.peak = Math.max(threads.peak, ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        return uploads.size();
+    }
+
+    /**
+     * The most live threads seen in an iteration, reported alongside the time taken.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Threads {
+
+        public int peak;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peak = 0;
+            ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        }
+    }
+}
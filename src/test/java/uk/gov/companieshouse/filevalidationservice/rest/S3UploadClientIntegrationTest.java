@@ -0,0 +1,259 @@
+package uk.gov.companieshouse.filevalidationservice.rest;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import uk.gov.companieshouse.filevalidationservice.exception.S3UploadException;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uploads to MinIO, an S3-compatible store, in a container. Skipped when Docker is not available.
+ */
+@Tag("integration-test")
+@Testcontainers(disabledWithoutDocker = true)
+class S3UploadClientIntegrationTest {
+
+    private static final String BUCKET = "file-validation";
+
+    @Container
+    private static final MinIOContainer MINIO = new MinIOContainer("minio/minio:RELEASE.2024-12-18T13-15-44Z");
+
+    private static S3Client s3;
+    private static S3AsyncClient asyncS3;
+    private static ExecutorService partExecutor;
+
+    @BeforeAll
+    static void setUp() {
+        s3 = S3Client.builder()
+                .endpointOverride(URI.create(MINIO.getS3URL()))
+                .region(Region.EU_WEST_2)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(MINIO.getUserName(), MINIO.getPassword())))
+                .forcePathStyle(true)
+                .build();
+        asyncS3 = S3AsyncClient.builder()
+                .endpointOverride(URI.create(MINIO.getS3URL()))
+                .region(Region.EU_WEST_2)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(MINIO.getUserName(), MINIO.getPassword())))
+                .forcePathStyle(true)
+                .build();
+        s3.createBucket(request -> request.bucket(BUCKET));
+        partExecutor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        partExecutor.shutdown();
+        asyncS3.close();
+        s3.close();
+    }
+
+    @Test
+    void largeFileIsUploadedInParts() {
+        var bytes = randomBytes(23 * 1024 * 1024);
+
+        client(s3).uploadFile(bytes, "large.csv", "supervisor");
+
+        assertArrayEquals(bytes, s3.getObjectAsBytes(request -> request.bucket(BUCKET).key("supervisor/large.csv")).asByteArray());
+        // The ETag of an object uploaded in parts ends with the number of parts.
+        var eTag = s3.headObject(request -> request.bucket(BUCKET).key("supervisor/large.csv")).eTag();
+        assertTrue(eTag.endsWith("-5\""), eTag);
+    }
+
+    @Test
+    void smallFileIsUploadedInOneRequest() {
+        var bytes = randomBytes(1024);
+
+        client(s3).uploadFile(bytes, "small.csv", "supervisor");
+
+        assertArrayEquals(bytes, s3.getObjectAsBytes(request -> request.bucket(BUCKET).key("supervisor/small.csv")).asByteArray());
+        assertFalse(s3.headObject(request -> request.bucket(BUCKET).key("supervisor/small.csv")).eTag().contains("-"));
+    }
+
+    @Test
+    void filesAreUploadedWithTheAsyncClient() {
+        var large = randomBytes(19 * 1024 * 1024);
+        var small = randomBytes(2048);
+        var client = new S3UploadClient(s3, Optional.of(asyncS3), BUCKET, partExecutor, DataSize.ofMegabytes(8), DataSize.ofMegabytes(5), 3, 3, Duration.ofMillis(10));
+
+        client.uploadFile(large, "async-large.csv", "supervisor");
+        client.uploadFile(small, "async-small.csv", "supervisor");
+
+        assertArrayEquals(large, s3.getObjectAsBytes(request -> request.bucket(BUCKET).key("supervisor/async-large.csv")).asByteArray());
+        assertTrue(s3.headObject(request -> request.bucket(BUCKET).key("supervisor/async-large.csv")).eTag().endsWith("-4\""));
+        assertArrayEquals(small, s3.getObjectAsBytes(request -> request.bucket(BUCKET).key("supervisor/async-small.csv")).asByteArray());
+    }
+
+    @Test
+    void fileAlreadyHeldWithTheSameChecksumIsNotUploadedAgain() {
+        var bytes = randomBytes(9 * 1024 * 1024);
+        var checksum = S3UploadClient.checksumOf(bytes);
+        client(s3).uploadFile(bytes, "twice.csv", "supervisor", checksum);
+        var uploaded = s3.headObject(request -> request.bucket(BUCKET).key("supervisor/twice.csv"));
+        assertEquals(checksum, uploaded.metadata().get("sha256"));
+
+        // A part failing every time would fail the upload if it were made.
+        client(new FailingPartS3Client(s3, 1, Integer.MAX_VALUE, new AtomicInteger())).uploadFile(bytes, "twice.csv", "supervisor", checksum);
+
+        assertEquals(uploaded.eTag(), s3.headObject(request -> request.bucket(BUCKET).key("supervisor/twice.csv")).eTag());
+    }
+
+    @Test
+    void changedFileIsUploadedAgain() {
+        var first = randomBytes(4096);
+        var second = randomBytes(4097);
+        client(s3).uploadFile(first, "changed.csv", "supervisor");
+
+        client(s3).uploadFile(second, "changed.csv", "supervisor");
+
+        assertArrayEquals(second, s3.getObjectAsBytes(request -> request.bucket(BUCKET).key("supervisor/changed.csv")).asByteArray());
+    }
+
+    @Test
+    void fileUploadedWhileValidatingOnlyAppearsOnceFoundValid() {
+        var valid = randomBytes(13 * 1024 * 1024);
+        var invalid = randomBytes(17 * 1024 * 1024);
+        var found = new CompletableFuture<Boolean>();
+        CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS).execute(() -> found.complete(true));
+
+        assertTrue(client(s3).uploadFileOnceValid(valid, "staged-valid.csv", "supervisor", S3UploadClient.checksumOf(valid), found));
+        assertFalse(client(s3).uploadFileOnceValid(invalid, "staged-invalid.csv", "supervisor", S3UploadClient.checksumOf(invalid), CompletableFuture.completedFuture(false)));
+
+        assertArrayEquals(valid, s3.getObjectAsBytes(request -> request.bucket(BUCKET).key("supervisor/staged-valid.csv")).asByteArray());
+        assertThrows(NoSuchKeyException.class, () -> s3.headObject(request -> request.bucket(BUCKET).key("supervisor/staged-invalid.csv")));
+        assertTrue(s3.listMultipartUploads(request -> request.bucket(BUCKET).prefix("supervisor/staged-")).uploads().isEmpty());
+    }
+
+    @Test
+    void partThatFailsOnceIsRetried() {
+        var bytes = randomBytes(16 * 1024 * 1024);
+        var failures = new AtomicInteger();
+
+        client(new FailingPartS3Client(s3, 2, 1, failures)).uploadFile(bytes, "retried.csv", "supervisor");
+
+        assertEquals(1, failures.get());
+        assertArrayEquals(bytes, s3.getObjectAsBytes(request -> request.bucket(BUCKET).key("supervisor/retried.csv")).asByteArray());
+    }
+
+    @Test
+    void uploadIsAbortedWhenAPartKeepsFailing() {
+        var bytes = randomBytes(16 * 1024 * 1024);
+        var client = client(new FailingPartS3Client(s3, 2, Integer.MAX_VALUE, new AtomicInteger()));
+
+        assertThrows(S3UploadException.class, () -> client.uploadFile(bytes, "aborted.csv", "supervisor"));
+
+        assertThrows(NoSuchKeyException.class, () -> s3.headObject(request -> request.bucket(BUCKET).key("supervisor/aborted.csv")));
+        assertTrue(s3.listMultipartUploads(request -> request.bucket(BUCKET).prefix("supervisor/aborted.csv")).uploads().isEmpty());
+    }
+
+    private static S3UploadClient client(S3Client s3Client) {
+        return new S3UploadClient(s3Client, Optional.empty(), BUCKET, partExecutor, DataSize.ofMegabytes(8), DataSize.ofMegabytes(5), 3, 3, Duration.ofMillis(10));
+    }
+
+    private static byte[] randomBytes(int length) {
+        var bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Passes requests on to the real client, failing the first {@code failuresToMake} attempts to upload one part.
+     */
+    private static final class FailingPartS3Client implements S3Client {
+
+        private final S3Client delegate;
+        private final int failingPart;
+        private final int failuresToMake;
+        private final AtomicInteger failures;
+
+        private FailingPartS3Client(S3Client delegate, int failingPart, int failuresToMake, AtomicInteger failures) {
+            this.delegate = delegate;
+            this.failingPart = failingPart;
+            this.failuresToMake = failuresToMake;
+            this.failures = failures;
+        }
+
+        @Override
+        public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+            return delegate.putObject(request, body);
+        }
+
+        @Override
+        public HeadObjectResponse headObject(HeadObjectRequest request) {
+            return delegate.headObject(request);
+        }
+
+        @Override
+        public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+            return delegate.createMultipartUpload(request);
+        }
+
+        @Override
+        public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+            if (request.partNumber() == failingPart && failures.get() < failuresToMake) {
+                failures.incrementAndGet();
+                throw SdkClientException.create("Connection reset");
+            }
+            return delegate.uploadPart(request, body);
+        }
+
+        @Override
+        public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            return delegate.completeMultipartUpload(request);
+        }
+
+        @Override
+        public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+            return delegate.abortMultipartUpload(request);
+        }
+
+        @Override
+        public String serviceName() {
+            return delegate.serviceName();
+        }
+
+        @Override
+        public void close() {
+            // The real client is shared between tests and closed once they have all run.
+        }
+    }
+}
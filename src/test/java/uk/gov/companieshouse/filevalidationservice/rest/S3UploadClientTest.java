@@ -3,33 +3,75 @@ package uk.gov.companieshouse.filevalidationservice.rest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 import uk.gov.companieshouse.filevalidationservice.exception.S3UploadException;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class S3UploadClientTest {
 
+    private static final String HELLO_CHECKSUM = S3UploadClient.checksumOf("hello".getBytes());
+
     @Mock
     private S3Client mockS3Client;
 
+    @Mock
+    private S3AsyncClient mockS3AsyncClient;
+
     @InjectMocks
     private S3UploadClient s3UploadClient;
 
 
     @BeforeEach
     void setup() {
-        s3UploadClient = new S3UploadClient(mockS3Client, "testBucket");
+        s3UploadClient = new S3UploadClient(mockS3Client, Optional.empty(), "testBucket", Runnable::run, DataSize.ofMegabytes(10), DataSize.ofMegabytes(5), 2, 3, Duration.ZERO);
+        lenient().when(mockS3Client.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().message("Not Found").build());
     }
 
     @Test
@@ -38,6 +80,10 @@ class S3UploadClientTest {
         PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                 .bucket("testBucket")
                 .key("testFolder/testFile")
+                .contentType("text/csv")
+                .metadata(Map.of("sha256", HELLO_CHECKSUM))
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .checksumSHA256(HELLO_CHECKSUM)
                 .build();
 
         // when
@@ -71,10 +117,14 @@ class S3UploadClientTest {
         PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                 .bucket("testBucket")
                 .key("testFolder/validator-error/testFile")
+                .contentType("text/csv")
+                .metadata(Map.of("sha256", HELLO_CHECKSUM))
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .checksumSHA256(HELLO_CHECKSUM)
                 .build();
 
         // when
-        s3UploadClient.uploadFileOnError("hello".getBytes(), "testFile", "testFolder");
+        s3UploadClient.uploadFileOnError("hello".getBytes(), "testFile", "testFolder", HELLO_CHECKSUM);
 
         // then
         verify(mockS3Client).putObject(eq(putObjectRequest), (RequestBody) any());
@@ -95,6 +145,478 @@ class S3UploadClientTest {
         doThrow(RuntimeException.class).when(mockS3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
 
         // then
-        assertThrows(S3UploadException.class,  ()-> s3UploadClient.uploadFileOnError(bytes, "testFile", "testFolder"));
+        assertThrows(S3UploadException.class,  ()-> s3UploadClient.uploadFileOnError(bytes, "testFile", "testFolder", HELLO_CHECKSUM));
+    }
+
+    @Test
+    void testUploadSuccessForErrorReport() {
+        // given
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket("testBucket")
+                .key("testFolder/validator-error/testFile.errors.json")
+                .contentType("application/json")
+                .metadata(Map.of("sha256", S3UploadClient.checksumOf("{}".getBytes())))
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .checksumSHA256(S3UploadClient.checksumOf("{}".getBytes()))
+                .build();
+
+        // when
+        s3UploadClient.uploadErrorReport("{}".getBytes(), "testFile", "testFolder");
+
+        // then
+        verify(mockS3Client).putObject(eq(putObjectRequest), (RequestBody) any());
+    }
+
+    @Test
+    void gzippedFileIsStoredAsAGzipEncodedCsv() {
+        // given
+        byte[] bytes = {0x1F, (byte) 0x8B, 8, 0, 'x'};
+
+        // when
+        s3UploadClient.uploadFile(bytes, "testFile", "testFolder");
+
+        // then
+        verify(mockS3Client).putObject(argThat((PutObjectRequest request) -> request != null && "text/csv".equals(request.contentType()) && "gzip".equals(request.contentEncoding())),
+                any(RequestBody.class));
+    }
+
+    @Test
+    void testUploadFailureForErrorReport() {
+        // given
+        byte[] bytes = "{}".getBytes();
+
+        // when
+        doThrow(RuntimeException.class).when(mockS3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+
+        // then
+        assertThrows(S3UploadException.class,  ()-> s3UploadClient.uploadErrorReport(bytes, "testFile", "testFolder"));
+    }
+
+    @Test
+    void largeFileIsUploadedInPartsAndCompleted() {
+        // given
+        stubMultipartUpload();
+        var bytes = new byte[12 * 1024 * 1024];
+
+        // when
+        s3UploadClient.uploadFile(bytes, "testFile", "testFolder");
+
+        // then
+        var sizes = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(mockS3Client, times(3)).uploadPart(sizes.capture(), any(RequestBody.class));
+        assertEquals(List.of(5L * 1024 * 1024, 5L * 1024 * 1024, 2L * 1024 * 1024), sizes.getAllValues().stream().map(UploadPartRequest::contentLength).toList());
+        var complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(mockS3Client).completeMultipartUpload(complete.capture());
+        assertEquals("testFolder/testFile", complete.getValue().key());
+        assertEquals("upload-1", complete.getValue().uploadId());
+        assertEquals(List.of(1, 2, 3), complete.getValue().multipartUpload().parts().stream().map(CompletedPart::partNumber).toList());
+        assertEquals("\"etag-2\"", complete.getValue().multipartUpload().parts().get(1).eTag());
+        verify(mockS3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void partsAreSentWithTheirChecksumsAndTheFileIsStoredWithItsOwn() {
+        // given
+        stubMultipartUpload();
+        var bytes = new byte[12 * 1024 * 1024];
+        bytes[6 * 1024 * 1024] = 1;
+
+        // when
+        s3UploadClient.uploadFile(bytes, "testFile", "testFolder");
+
+        // then
+        var create = ArgumentCaptor.forClass(CreateMultipartUploadRequest.class);
+        verify(mockS3Client).createMultipartUpload(create.capture());
+        assertEquals(ChecksumAlgorithm.SHA256, create.getValue().checksumAlgorithm());
+        assertEquals(Map.of("sha256", S3UploadClient.checksumOf(bytes)), create.getValue().metadata());
+        var parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(mockS3Client, times(3)).uploadPart(parts.capture(), any(RequestBody.class));
+        var secondPart = Arrays.copyOfRange(bytes, 5 * 1024 * 1024, 10 * 1024 * 1024);
+        assertEquals(S3UploadClient.checksumOf(secondPart), parts.getAllValues().get(1).checksumSHA256());
+        var complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(mockS3Client).completeMultipartUpload(complete.capture());
+        assertEquals(parts.getAllValues().stream().map(UploadPartRequest::checksumSHA256).toList(),
+                complete.getValue().multipartUpload().parts().stream().map(CompletedPart::checksumSHA256).toList());
+    }
+
+    @Test
+    void uploadIsSkippedWhenS3HoldsTheFileWithTheSameChecksum() {
+        // given
+        doReturn(HeadObjectResponse.builder().metadata(Map.of("sha256", HELLO_CHECKSUM)).build())
+                .when(mockS3Client).headObject(HeadObjectRequest.builder().bucket("testBucket").key("testFolder/testFile").build());
+
+        // when
+        s3UploadClient.uploadFile("hello".getBytes(), "testFile", "testFolder", HELLO_CHECKSUM);
+
+        // then
+        verify(mockS3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(mockS3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void fileIsUploadedWhenS3HoldsADifferentFile() {
+        // given
+        doReturn(HeadObjectResponse.builder().metadata(Map.of("sha256", S3UploadClient.checksumOf("world".getBytes()))).build())
+                .when(mockS3Client).headObject(any(HeadObjectRequest.class));
+
+        // when
+        s3UploadClient.uploadFile("hello".getBytes(), "testFile", "testFolder", HELLO_CHECKSUM);
+
+        // then
+        verify(mockS3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void fileIsUploadedWhenS3CannotBeAskedWhetherItHoldsIt() {
+        // given
+        doThrow(S3Exception.builder().statusCode(403).message("Forbidden").build())
+                .when(mockS3Client).headObject(any(HeadObjectRequest.class));
+
+        // when
+        s3UploadClient.uploadFile("hello".getBytes(), "testFile", "testFolder", HELLO_CHECKSUM);
+
+        // then
+        verify(mockS3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void largeZipIsStoredAsAZip() {
+        // given
+        stubMultipartUpload();
+        var bytes = new byte[12 * 1024 * 1024];
+        bytes[0] = 'P';
+        bytes[1] = 'K';
+        bytes[2] = 3;
+        bytes[3] = 4;
+
+        // when
+        s3UploadClient.uploadFile(bytes, "testFile", "testFolder");
+
+        // then
+        var create = ArgumentCaptor.forClass(CreateMultipartUploadRequest.class);
+        verify(mockS3Client).createMultipartUpload(create.capture());
+        assertEquals("application/zip", create.getValue().contentType());
+        assertNull(create.getValue().contentEncoding());
+    }
+
+    @Test
+    void fileUploadedWhileValidatingIsCompletedOnceFoundValid() {
+        // given
+        stubMultipartUpload();
+        var bytes = new byte[12 * 1024 * 1024];
+
+        // when
+        var uploaded = s3UploadClient.uploadFileOnceValid(bytes, "testFile", "testFolder", S3UploadClient.checksumOf(bytes), CompletableFuture.completedFuture(true));
+
+        // then
+        assertTrue(uploaded);
+        verify(mockS3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(mockS3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(mockS3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void fileUploadedWhileValidatingIsAbortedOnceFoundInvalid() {
+        // given
+        stubMultipartUpload();
+        var bytes = new byte[12 * 1024 * 1024];
+        var valid = new CompletableFuture<Boolean>();
+        when(mockS3Client.uploadPart(argThat((UploadPartRequest request) -> request != null && request.partNumber() == 1), any(RequestBody.class)))
+                .thenAnswer(invocation -> {
+                    valid.complete(false);
+                    return UploadPartResponse.builder().eTag("\"etag-1\"").build();
+                });
+
+        // when
+        var uploaded = s3UploadClient.uploadFileOnceValid(bytes, "testFile", "testFolder", S3UploadClient.checksumOf(bytes), valid);
+
+        // then
+        assertFalse(uploaded);
+        verify(mockS3Client, times(1)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(mockS3Client).abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket("testBucket").key("testFolder/testFile").uploadId("upload-1").build());
+        verify(mockS3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void fileUploadedWhileValidatingIsAbortedIfValidationDoesNotFinish() {
+        // given
+        when(mockS3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        var bytes = new byte[12 * 1024 * 1024];
+
+        // when
+        var uploaded = s3UploadClient.uploadFileOnceValid(bytes, "testFile", "testFolder", S3UploadClient.checksumOf(bytes),
+                CompletableFuture.failedFuture(new IllegalStateException("Validation failed")));
+
+        // then
+        assertFalse(uploaded);
+        verify(mockS3Client, never()).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(mockS3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void smallFileUploadedWhileValidatingIsOnlySentOnceFoundValid() {
+        // when
+        var invalid = s3UploadClient.uploadFileOnceValid("hello".getBytes(), "testFile", "testFolder", HELLO_CHECKSUM, CompletableFuture.completedFuture(false));
+
+        // then
+        assertFalse(invalid);
+        verify(mockS3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        assertTrue(s3UploadClient.uploadFileOnceValid("hello".getBytes(), "testFile", "testFolder", HELLO_CHECKSUM, CompletableFuture.completedFuture(true)));
+        verify(mockS3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(mockS3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void fileUploadedWhileValidatingIsSkippedWhenS3HoldsItWithTheSameChecksum() {
+        // given
+        doReturn(HeadObjectResponse.builder().metadata(Map.of("sha256", HELLO_CHECKSUM)).build())
+                .when(mockS3Client).headObject(any(HeadObjectRequest.class));
+
+        // when
+        var uploaded = s3UploadClient.uploadFileOnceValid("hello".getBytes(), "testFile", "testFolder", HELLO_CHECKSUM, CompletableFuture.completedFuture(true));
+
+        // then
+        assertTrue(uploaded);
+        verify(mockS3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void checksumIsTheBase64EncodedSha256OfTheFile() {
+        assertEquals("LPJNul+wow4m6DsqxbninhsWHlwfp0JecwQzYpOLmCQ=", S3UploadClient.checksumOf("hello".getBytes()));
+    }
+
+    @Test
+    void failedPartIsRetriedOnItsOwn() {
+        // given
+        stubMultipartUpload();
+        when(mockS3Client.uploadPart(argThat((UploadPartRequest request) -> request != null && request.partNumber() == 2), any(RequestBody.class)))
+                .thenThrow(SdkClientException.create("Connection reset"))
+                .thenReturn(UploadPartResponse.builder().eTag("\"etag-2\"").build());
+
+        // when
+        s3UploadClient.uploadFile(new byte[12 * 1024 * 1024], "testFile", "testFolder");
+
+        // then
+        verify(mockS3Client, times(4)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(mockS3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(mockS3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void uploadIsAbortedOncePartHasFailedEveryAttempt() {
+        // given
+        stubMultipartUpload();
+        when(mockS3Client.uploadPart(argThat((UploadPartRequest request) -> request != null && request.partNumber() == 2), any(RequestBody.class)))
+                .thenThrow(SdkClientException.create("Connection reset"));
+        byte[] bytes = new byte[12 * 1024 * 1024];
+
+        // then
+        var thrown = assertThrows(S3UploadException.class, () -> s3UploadClient.uploadFile(bytes, "testFile", "testFolder"));
+        assertEquals("Connection reset", thrown.getMessage());
+        verify(mockS3Client, times(3)).uploadPart(argThat((UploadPartRequest request) -> request != null && request.partNumber() == 2), any(RequestBody.class));
+        verify(mockS3Client).abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket("testBucket").key("testFolder/testFile").uploadId("upload-1").build());
+        verify(mockS3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void partRejectedByS3IsNotRetried() {
+        // given
+        stubMultipartUpload();
+        when(mockS3Client.uploadPart(argThat((UploadPartRequest request) -> request != null && request.partNumber() == 1), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(404).message("NoSuchUpload").build());
+        byte[] bytes = new byte[12 * 1024 * 1024];
+
+        // then
+        assertThrows(S3UploadException.class, () -> s3UploadClient.uploadFile(bytes, "testFile", "testFolder"));
+        verify(mockS3Client, times(1)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void partSizeBelowTheS3MinimumIsRejected() {
+        var partSize = DataSize.ofMegabytes(4);
+        assertThrows(IllegalArgumentException.class, () -> new S3UploadClient(mockS3Client, Optional.empty(), "testBucket", Runnable::run, DataSize.ofMegabytes(10), partSize, 2, 3, Duration.ZERO));
+    }
+
+    @Test
+    void smallFileIsUploadedWithTheAsyncClientWhenThereIsOne() {
+        // given
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        // when
+        asyncUploadClient().uploadFile("hello".getBytes(), "testFile", "testFolder");
+
+        // then
+        verify(mockS3AsyncClient).putObject(argThat((PutObjectRequest request) -> request != null && request.key().equals("testFolder/testFile") && HELLO_CHECKSUM.equals(request.checksumSHA256())),
+                argThat((AsyncRequestBody body) -> body != null && body.contentLength().orElse(-1L) == 5L));
+        verify(mockS3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void asyncUploadFailureIsReported() {
+        // given
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(SdkClientException.create("Connection refused")));
+        var client = asyncUploadClient();
+        byte[] bytes = "hello".getBytes();
+
+        // then
+        var thrown = assertThrows(S3UploadException.class, () -> client.uploadFile(bytes, "testFile", "testFolder"));
+        assertEquals("Connection refused", thrown.getMessage());
+    }
+
+    @Test
+    void largeFileIsUploadedInPartsWithTheAsyncClient() {
+        // given
+        stubAsyncMultipartUpload();
+
+        // when
+        asyncUploadClient().uploadFile(new byte[12 * 1024 * 1024], "testFile", "testFolder");
+
+        // then
+        var sizes = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(mockS3AsyncClient, times(3)).uploadPart(sizes.capture(), any(AsyncRequestBody.class));
+        assertEquals(List.of(5L * 1024 * 1024, 5L * 1024 * 1024, 2L * 1024 * 1024), sizes.getAllValues().stream().map(UploadPartRequest::contentLength).toList());
+        var complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(mockS3AsyncClient).completeMultipartUpload(complete.capture());
+        assertEquals("upload-1", complete.getValue().uploadId());
+        assertEquals(List.of("\"etag-1\"", "\"etag-2\"", "\"etag-3\""), complete.getValue().multipartUpload().parts().stream().map(CompletedPart::eTag).toList());
+        verify(mockS3Client, never()).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void asyncPartsAreSentFromTheFileWithTheirChecksums() {
+        // given
+        stubAsyncMultipartUpload();
+        var bytes = new byte[12 * 1024 * 1024];
+        bytes[6 * 1024 * 1024] = 1;
+
+        // when
+        asyncUploadClient().uploadFile(bytes, "testFile", "testFolder");
+
+        // then
+        var parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        var bodies = ArgumentCaptor.forClass(AsyncRequestBody.class);
+        verify(mockS3AsyncClient, times(3)).uploadPart(parts.capture(), bodies.capture());
+        assertEquals(List.of(5L * 1024 * 1024, 5L * 1024 * 1024, 2L * 1024 * 1024), bodies.getAllValues().stream().map(body -> body.contentLength().orElse(-1L)).toList());
+        var secondPart = Arrays.copyOfRange(bytes, 5 * 1024 * 1024, 10 * 1024 * 1024);
+        assertEquals(S3UploadClient.checksumOf(secondPart), parts.getAllValues().get(1).checksumSHA256());
+    }
+
+    @Test
+    void failedAsyncPartIsRetriedOnItsOwn() {
+        // given
+        stubAsyncMultipartUpload();
+        when(mockS3AsyncClient.uploadPart(argThat((UploadPartRequest request) -> request != null && request.partNumber() == 2), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(SdkClientException.create("Connection reset")))
+                .thenReturn(CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("\"etag-2\"").build()));
+
+        // when
+        asyncUploadClient().uploadFile(new byte[12 * 1024 * 1024], "testFile", "testFolder");
+
+        // then
+        verify(mockS3AsyncClient, times(4)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+        verify(mockS3AsyncClient).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(mockS3AsyncClient, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void asyncUploadIsAbortedOncePartHasFailedEveryAttempt() {
+        // given
+        stubAsyncMultipartUpload();
+        when(mockS3AsyncClient.uploadPart(argThat((UploadPartRequest request) -> request != null && request.partNumber() == 2), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(SdkClientException.create("Connection reset")));
+        when(mockS3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        var client = asyncUploadClient();
+        byte[] bytes = new byte[12 * 1024 * 1024];
+
+        // then
+        var thrown = assertThrows(S3UploadException.class, () -> client.uploadFile(bytes, "testFile", "testFolder"));
+        assertEquals("Connection reset", thrown.getMessage());
+        verify(mockS3AsyncClient, times(3)).uploadPart(argThat((UploadPartRequest request) -> request != null && request.partNumber() == 2), any(AsyncRequestBody.class));
+        verify(mockS3AsyncClient).abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket("testBucket").key("testFolder/testFile").uploadId("upload-1").build());
+        verify(mockS3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void asyncUploadReturnsBeforeTheFileIsUploaded() {
+        // given
+        var put = new CompletableFuture<PutObjectResponse>();
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(put);
+
+        // when
+        var uploaded = asyncUploadClient().uploadFileAsync("hello".getBytes(), "testFile", "testFolder", HELLO_CHECKSUM);
+
+        // then
+        assertFalse(uploaded.isDone());
+        put.complete(PutObjectResponse.builder().build());
+        assertTrue(uploaded.isDone());
+        assertFalse(uploaded.isCompletedExceptionally());
+    }
+
+    @Test
+    void asyncUploadWhileValidatingIsCompletedOnlyOnceFoundValid() {
+        // given
+        stubAsyncMultipartUpload();
+        var valid = new CompletableFuture<Boolean>();
+        byte[] bytes = new byte[12 * 1024 * 1024];
+
+        // when
+        var uploaded = asyncUploadClient().uploadFileOnceValidAsync(bytes, "testFile", "testFolder", S3UploadClient.checksumOf(bytes), valid);
+
+        // then
+        assertFalse(uploaded.isDone());
+        verify(mockS3AsyncClient, times(3)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+        verify(mockS3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        valid.complete(true);
+        assertTrue(uploaded.join());
+        verify(mockS3AsyncClient).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void asyncUploadWhileValidatingIsAbortedOnceFoundInvalid() {
+        // given
+        stubAsyncMultipartUpload();
+        when(mockS3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        var valid = new CompletableFuture<Boolean>();
+        byte[] bytes = new byte[12 * 1024 * 1024];
+
+        // when
+        var uploaded = asyncUploadClient().uploadFileOnceValidAsync(bytes, "testFile", "testFolder", S3UploadClient.checksumOf(bytes), valid);
+        valid.complete(false);
+
+        // then
+        assertFalse(uploaded.join());
+        verify(mockS3AsyncClient).abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket("testBucket").key("testFolder/testFile").uploadId("upload-1").build());
+        verify(mockS3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    private S3UploadClient asyncUploadClient() {
+        return new S3UploadClient(mockS3Client, Optional.of(mockS3AsyncClient), "testBucket", Runnable::run, DataSize.ofMegabytes(10), DataSize.ofMegabytes(5), 2, 3, Duration.ZERO);
+    }
+
+    private void stubAsyncMultipartUpload() {
+        when(mockS3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-1").build()));
+        when(mockS3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(UploadPartResponse.builder()
+                        .eTag("\"etag-" + invocation.getArgument(0, UploadPartRequest.class).partNumber() + "\"")
+                        .build()));
+        lenient().when(mockS3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+    }
+
+    private void stubMultipartUpload() {
+        when(mockS3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(mockS3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> UploadPartResponse.builder()
+                        .eTag("\"etag-" + invocation.getArgument(0, UploadPartRequest.class).partNumber() + "\"")
+                        .build());
     }
 }
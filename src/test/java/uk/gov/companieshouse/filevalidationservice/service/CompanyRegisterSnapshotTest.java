@@ -0,0 +1,88 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.companieshouse.filevalidationservice.validation.CompanyRegister;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class CompanyRegisterSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void noRegisterIsCheckedWhenNoSnapshotIsConfigured() throws IOException {
+        final var snapshot = new CompanyRegisterSnapshot("");
+        snapshot.reload();
+
+        assertNull(snapshot.current());
+    }
+
+    @Test
+    void reloadSwapsInAReplacedSnapshot() throws IOException {
+        final var location = publish("00000001", "00000002");
+        final var snapshot = new CompanyRegisterSnapshot(location.toString());
+        final var before = snapshot.current();
+
+        snapshot.reload();
+        assertSame(before, snapshot.current());
+
+        publish("00000001", "00000002", "00000003");
+        snapshot.reload();
+
+        assertEquals(3, snapshot.current().size());
+        assertTrue(contains(snapshot, "3"));
+        assertFalse(contains(before, "3"));
+        assertTrue(contains(before, "2"));
+    }
+
+    @Test
+    void invalidSnapshotOnReloadKeepsTheCurrentSnapshot() throws IOException {
+        final var location = publish("00000001", "00000002");
+        final var snapshot = new CompanyRegisterSnapshot(location.toString());
+        final var before = snapshot.current();
+
+        publish("00000002", "00000001", "00000003");
+        snapshot.reload();
+
+        assertSame(before, snapshot.current());
+    }
+
+    @Test
+    void invalidSnapshotFailsStartup() throws IOException {
+        final var location = publish("0000001").toString();
+
+        assertThrows(IllegalArgumentException.class, () -> new CompanyRegisterSnapshot(location));
+    }
+
+    /**
+     * Writes a snapshot under a temporary name and renames it over the current one, as a new snapshot is published.
+     */
+    private Path publish(final String... numbers) throws IOException {
+        final var temporary = Files.writeString(directory.resolve("register.bin.tmp"), String.join("", numbers), StandardCharsets.UTF_8);
+        return Files.move(temporary, directory.resolve("register.bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean contains(final CompanyRegisterSnapshot snapshot, final String number) {
+        return contains(snapshot.current(), number);
+    }
+
+    private static boolean contains(final CompanyRegister register, final String number) {
+        final var bytes = number.getBytes(StandardCharsets.UTF_8);
+        return register.contains(bytes, 0, bytes.length);
+    }
+}
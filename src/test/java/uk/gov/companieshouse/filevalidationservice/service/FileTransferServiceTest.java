@@ -7,6 +7,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
@@ -18,8 +19,10 @@ import uk.gov.companieshouse.api.model.filetransfer.FileDetailsApi;
 import uk.gov.companieshouse.api.model.filetransfer.IdApi;
 import uk.gov.companieshouse.filevalidationservice.exception.DownloadAvStatusException;
 import uk.gov.companieshouse.filevalidationservice.exception.FileDownloadException;
+import uk.gov.companieshouse.filevalidationservice.exception.FileUploadException;
 import uk.gov.companieshouse.filevalidationservice.models.FileMetaData;
 import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidationSubmittedEvent;
 import uk.gov.companieshouse.filevalidationservice.repositories.FileValidationRepository;
 import uk.gov.companieshouse.filevalidationservice.rest.FileTransferEndpoint;
 
@@ -30,8 +33,11 @@ import static org.junit.Assert.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Optional;
 
 @ExtendWith( MockitoExtension.class )
@@ -46,6 +52,9 @@ class FileTransferServiceTest {
     @Mock
     private FileValidationRepository fileValidationRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private FileTransferService fileTransferService;
 
@@ -151,34 +160,73 @@ class FileTransferServiceTest {
     }
 
     @Test
-    void testUploadFile() throws ApiErrorResponseException, URIValidationException {
+    void testUploadFile() throws IOException, InterruptedException {
         // Given
-        MultipartFile file = new MockMultipartFile("abc", null, "text/csv", "Hello world".getBytes() );
+        MultipartFile file = spy(new MockMultipartFile("abc", null, "text/csv", "Hello world".getBytes() ));
 
         // when
         IdApi idApi = new IdApi("123");
         var fileValidationRecord = new FileValidation();
         fileValidationRecord.setId("084905471517321155");
         fileValidationRecord.setFileId("93c1a3f1-6c8f-4dbd-973d-d7c42b1bb525");
-        when(fileTransferEndpoint.upload(any())).thenReturn(new ApiResponse<>(200, null, idApi));
+        when(fileTransferEndpoint.upload(any(InputStream.class), eq(11L), eq("Test file"), eq("text/csv"))).thenReturn(new ApiResponse<>(200, null, idApi));
         when(fileValidationRepository.insert((FileValidation) any())).thenReturn(fileValidationRecord);
-        var response = fileTransferService.upload(file, new FileMetaData("Test file", "HMRC", "S3:HMRC" ));
+        var response = fileTransferService.upload(file, new FileMetaData("Test file", "HMRC", "S3:HMRC" ), "text/csv");
 
         // then
         assertEquals("084905471517321155", response);
+        verify(file, never()).getBytes();
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof FileValidationSubmittedEvent submitted
+                && "084905471517321155".equals(submitted.getFileValidationId())));
+    }
+
+    @Test
+    void testUploadCompressedFileStoresItWithTheMimeTypeOfItsCompression() throws IOException, InterruptedException {
+        // Given
+        MultipartFile file = new MockMultipartFile("abc", "Test file.csv.gz", "application/gzip", new byte[] { 0x1F, (byte) 0x8B, 8, 0 });
+
+        // when
+        var fileValidationRecord = new FileValidation();
+        fileValidationRecord.setId("084905471517321155");
+        when(fileTransferEndpoint.upload(any(InputStream.class), eq(4L), eq("Test file.csv.gz"), eq("application/gzip"))).thenReturn(new ApiResponse<>(200, null, new IdApi("123")));
+        when(fileValidationRepository.insert((FileValidation) any())).thenReturn(fileValidationRecord);
+        var response = fileTransferService.upload(file, new FileMetaData("Test file.csv.gz", "HMRC", "S3:HMRC" ), "application/gzip");
+
+        // then
+        assertEquals("084905471517321155", response);
+    }
+
+    @Test
+    void testUploadFileThrowsFileUploadException() throws IOException, InterruptedException {
+        // Given
+        MultipartFile file = new MockMultipartFile("abc", null, "text/csv", "Hello world".getBytes() );
+
+        // when
+        when(fileTransferEndpoint.upload(any(), anyLong(), any(), any())).thenThrow(new FileUploadException("Unexpected response status"));
+
+        // then
+        FileMetaData fileMetaData = new FileMetaData();
+        assertThrows(RuntimeException.class, () -> fileTransferService.upload(file, fileMetaData, "text/csv"));
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
-    void testUploadFileThrowsApiErrorResponseException() throws ApiErrorResponseException, URIValidationException {
+    void testUploadFileKeepsTheInterruptWhenInterrupted() throws IOException, InterruptedException {
         // Given
         MultipartFile file = new MockMultipartFile("abc", null, "text/csv", "Hello world".getBytes() );
 
         // when
-        when(fileTransferEndpoint.upload(any())).thenThrow(mock(ApiErrorResponseException.class));
+        when(fileTransferEndpoint.upload(any(), anyLong(), any(), any())).thenThrow(new InterruptedException());
 
         // then
         FileMetaData fileMetaData = new FileMetaData();
-        assertThrows(RuntimeException.class, () -> fileTransferService.upload(file, fileMetaData));
+        try {
+            assertThrows(FileUploadException.class, () -> fileTransferService.upload(file, fileMetaData, "text/csv"));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        verifyNoInteractions(eventPublisher, fileValidationRepository);
     }
 
     @Test
@@ -188,6 +236,6 @@ class FileTransferServiceTest {
         // then
 
         FileMetaData fileMetaData = new FileMetaData();
-        assertThrows(RuntimeException.class, () -> fileTransferService.upload(mockFile, fileMetaData));
+        assertThrows(RuntimeException.class, () -> fileTransferService.upload(mockFile, fileMetaData, "text/csv"));
     }
 }
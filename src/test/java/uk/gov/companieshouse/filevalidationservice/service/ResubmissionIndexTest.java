@@ -0,0 +1,117 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
+import uk.gov.companieshouse.filevalidationservice.models.SubmissionFingerprints;
+import uk.gov.companieshouse.filevalidationservice.repositories.SubmissionFingerprintsRepository;
+import uk.gov.companieshouse.filevalidationservice.validation.ResubmissionCheck;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@Tag("unit-test")
+@ExtendWith(MockitoExtension.class)
+class ResubmissionIndexTest {
+
+    private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(10);
+
+    @Mock
+    private SubmissionFingerprintsRepository submissionFingerprintsRepository;
+
+    @Test
+    void checkIsOffByDefault() {
+        final var index = new ResubmissionIndex(submissionFingerprintsRepository, "off", REFRESH_INTERVAL);
+
+        assertNull(index.checkFor("supervisor-a"));
+        verifyNoInteractions(submissionFingerprintsRepository);
+    }
+
+    @Test
+    void unknownKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ResubmissionIndex(submissionFingerprintsRepository, "name", REFRESH_INTERVAL));
+    }
+
+    @Test
+    void bodyIsCheckedAgainstTheFingerprintsOfItsEarlierFiles() {
+        when(submissionFingerprintsRepository.findByFromLocationAndKey("supervisor-a", "UNIQUE_ID"))
+                .thenReturn(List.of(document(1, 2), document(3)));
+        final var index = new ResubmissionIndex(submissionFingerprintsRepository, "unique-id", REFRESH_INTERVAL);
+
+        final var check = index.checkFor("supervisor-a");
+
+        assertEquals(ResubmissionCheck.Key.UNIQUE_ID, check.key());
+        assertTrue(check.check(1));
+        assertTrue(check.check(3));
+        assertFalse(check.check(4));
+        index.checkFor("supervisor-a");
+        verify(submissionFingerprintsRepository, times(1)).findByFromLocationAndKey("supervisor-a", "UNIQUE_ID");
+    }
+
+    @Test
+    void completedFileIsKeptAndCheckedAgainstStraightAway() {
+        when(submissionFingerprintsRepository.findByFromLocationAndKey("supervisor-a", "RECORD")).thenReturn(List.of());
+        final var index = new ResubmissionIndex(submissionFingerprintsRepository, "record", REFRESH_INTERVAL);
+        final var completed = new FileValidation();
+        completed.setId("file-1");
+        completed.setFromLocation("supervisor-a");
+        final var check = index.checkFor("supervisor-a");
+        final var fingerprints = new long[ResubmissionIndex.FINGERPRINTS_PER_DOCUMENT + 1];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = i * 31L;
+            check.check(fingerprints[i]);
+        }
+
+        index.record(completed, check);
+
+        verify(submissionFingerprintsRepository).deleteByFileValidationId("file-1");
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SubmissionFingerprints>> saved = ArgumentCaptor.forClass(List.class);
+        verify(submissionFingerprintsRepository).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+        final var last = saved.getValue().get(1);
+        assertEquals("supervisor-a", last.getFromLocation());
+        assertEquals("RECORD", last.getKey());
+        assertEquals("file-1", last.getFileValidationId());
+        assertEquals(1, last.getPart());
+        assertEquals(1, last.getCount());
+        assertEquals(fingerprints[fingerprints.length - 1], ByteBuffer.wrap(last.getFingerprints()).getLong());
+        assertTrue(index.checkFor("supervisor-a").check(31L));
+        verify(submissionFingerprintsRepository, times(1)).findByFromLocationAndKey("supervisor-a", "RECORD");
+    }
+
+    @Test
+    void indexIsLoadedAgainOnceStale() {
+        when(submissionFingerprintsRepository.findByFromLocationAndKey("supervisor-a", "RECORD"))
+                .thenReturn(List.of())
+                .thenReturn(List.of(document(7)));
+        final var index = new ResubmissionIndex(submissionFingerprintsRepository, "record", Duration.ofNanos(-1));
+
+        assertFalse(index.checkFor("supervisor-a").check(7));
+        assertTrue(index.checkFor("supervisor-a").check(7));
+    }
+
+    private static SubmissionFingerprints document(final long... fingerprints) {
+        final var packed = ByteBuffer.allocate(fingerprints.length * Long.BYTES);
+        packed.asLongBuffer().put(fingerprints);
+        final var document = new SubmissionFingerprints();
+        document.setCount(fingerprints.length);
+        document.setFingerprints(packed.array());
+        return document;
+    }
+}
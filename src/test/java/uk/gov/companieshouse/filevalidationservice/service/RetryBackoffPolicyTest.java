@@ -0,0 +1,48 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.filevalidationservice.models.FileStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class RetryBackoffPolicyTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private final RetryBackoffPolicy policy = new RetryBackoffPolicy(2,
+            4, Duration.ofMinutes(3), Duration.ofMinutes(10),
+            2, Duration.ofMinutes(5), Duration.ofHours(6),
+            1, Duration.ofMinutes(5), Duration.ofHours(6));
+
+    @Test
+    void delayGrowsByTheMultiplierAfterEachAttempt() {
+        assertEquals(Optional.of(NOW.plusMinutes(3)), policy.nextAttemptAt(FileStatus.DOWNLOAD_ERROR, 1, NOW));
+        assertEquals(Optional.of(NOW.plusMinutes(6)), policy.nextAttemptAt(FileStatus.DOWNLOAD_ERROR, 2, NOW));
+    }
+
+    @Test
+    void delayIsCappedAtTheMaximum() {
+        assertEquals(Optional.of(NOW.plusMinutes(10)), policy.nextAttemptAt(FileStatus.DOWNLOAD_ERROR, 3, NOW));
+    }
+
+    @Test
+    void eachStatusHasItsOwnLimit() {
+        assertTrue(policy.nextAttemptAt(FileStatus.DOWNLOAD_ERROR, 4, NOW).isEmpty());
+        assertEquals(Optional.of(NOW.plusMinutes(5)), policy.nextAttemptAt(FileStatus.UPLOAD_ERROR, 1, NOW));
+        assertTrue(policy.nextAttemptAt(FileStatus.UPLOAD_ERROR, 2, NOW).isEmpty());
+        assertTrue(policy.nextAttemptAt(FileStatus.ERROR, 1, NOW).isEmpty());
+    }
+
+    @Test
+    void statusesThatAreNotRetriedHaveNoNextAttempt() {
+        assertTrue(policy.nextAttemptAt(FileStatus.VALIDATION_ERROR, 0, NOW).isEmpty());
+        assertTrue(policy.nextAttemptAt(FileStatus.DOWNLOAD_AV_ERROR, 0, NOW).isEmpty());
+    }
+}
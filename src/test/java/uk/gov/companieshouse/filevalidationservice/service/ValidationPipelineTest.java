@@ -0,0 +1,877 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.util.unit.DataSize;
+import uk.gov.companieshouse.api.model.filetransfer.FileApi;
+import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
+import uk.gov.companieshouse.filevalidationservice.exception.DownloadAvStatusException;
+import uk.gov.companieshouse.filevalidationservice.exception.FileDownloadException;
+import uk.gov.companieshouse.filevalidationservice.exception.S3UploadException;
+import uk.gov.companieshouse.filevalidationservice.models.FileStatus;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
+import uk.gov.companieshouse.filevalidationservice.parser.CsvDecompressor;
+import uk.gov.companieshouse.filevalidationservice.parser.CsvProcessor;
+import uk.gov.companieshouse.filevalidationservice.repositories.FileValidationRepository;
+import uk.gov.companieshouse.filevalidationservice.rest.S3UploadClient;
+import uk.gov.companieshouse.filevalidationservice.utils.BoundedExecutor;
+import uk.gov.companieshouse.filevalidationservice.validation.CompanyRegister;
+import uk.gov.companieshouse.filevalidationservice.validation.FingerprintIndex;
+import uk.gov.companieshouse.filevalidationservice.validation.ResubmissionCheck;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationErrors;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationRule;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationSchema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static uk.gov.companieshouse.filevalidationservice.rest.S3UploadClient.checksumOf;
+
+@ExtendWith(MockitoExtension.class)
+class ValidationPipelineTest {
+
+    private static final ValidationSchema SCHEMA = ValidationSchema.defaultSchema();
+    private static final int DATE_OF_BIRTH = SCHEMA.columnIndex("date of birth");
+
+    @Mock
+    private FileTransferService fileTransferService;
+    @Mock
+    private FileValidationRepository fileValidationRepository;
+    @Mock
+    private S3UploadClient s3UploadClient;
+    @Mock
+    CsvProcessor csvProcessor;
+    @Mock
+    private ValidationProfiles validationProfiles;
+    @Mock
+    private ResubmissionIndex resubmissionIndex;
+    @Mock
+    private CompanyRegisterSnapshot companyRegisterSnapshot;
+
+    private final CsvDecompressor csvDecompressor = new CsvDecompressor(DataSize.ofMegabytes(1), 100);
+
+    private final RetryBackoffPolicy retryBackoffPolicy = new RetryBackoffPolicy(2,
+            3, Duration.ofMinutes(3), Duration.ofHours(2),
+            3, Duration.ofMinutes(5), Duration.ofHours(6),
+            3, Duration.ofMinutes(5), Duration.ofHours(6));
+
+    private ValidationPipeline pipeline;
+
+    FileApi fileApi;
+    private final static String TEST_FILE_NAME = "test.csv";
+    private final static String FILE_LOCATION = "s3://location";
+    private final static String OWNER = "node-1";
+    private final static Duration LEASE = Duration.ofMinutes(15);
+    private final static List<String> CLAIMABLE_STATUSES = List.of(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel());
+
+    @BeforeEach
+    void setUp() {
+        var data = "Hello World!".getBytes();
+        fileApi = new FileApi(TEST_FILE_NAME, data, "mimeType", 100, "extension");
+        pipeline = createPipeline(new SyncTaskExecutor(), new SyncTaskExecutor(), new SyncTaskExecutor());
+        lenient().when(s3UploadClient.uploadFileAsync(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        lenient().when(s3UploadClient.uploadFileOnErrorAsync(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        lenient().when(s3UploadClient.uploadErrorReportAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void testSuccessfulFileProcessing() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+
+        pipeline.submit(file).join();
+
+        verifySuccessfulProcessing(file, fileApi);
+    }
+
+    @Test
+    void recordIsMarkedOnceItsUploadFinishesWithoutHoldingTheUploadStage() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var upload = new CompletableFuture<Void>();
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+        when(s3UploadClient.uploadFileAsync(fileApi.getBody(), file.getFileName(), file.getToLocation(), checksumOf(fileApi.getBody()))).thenReturn(upload);
+
+        var processed = pipeline.submit(file);
+
+        assertFalse(processed.isDone());
+        verify(fileValidationRepository, never()).updateStatusById(any(), any(), any(), any(), any());
+        upload.complete(null);
+        processed.join();
+        verifySuccessfulProcessing(file, fileApi);
+    }
+
+    @Test
+    void compressedFileIsValidatedAsItIsDecompressedAndUploadedStillCompressed() throws InterruptedException, IOException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv.gz", FILE_LOCATION);
+        var compressed = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("Hello World!".getBytes(StandardCharsets.UTF_8));
+        }
+        var compressedFile = new FileApi("test.csv.gz", compressed.toByteArray(), "application/gzip", compressed.size(), "gz");
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(compressedFile));
+        when(csvProcessor.collectErrors(any(InputStream.class), any(), any(), any())).thenAnswer(invocation -> {
+            assertEquals("Hello World!", new String(invocation.getArgument(0, InputStream.class).readAllBytes(), StandardCharsets.UTF_8));
+            return new ValidationErrors(10, SCHEMA);
+        });
+
+        pipeline.submit(file).join();
+
+        verify(csvProcessor, never()).collectErrors(any(byte[].class), any(), any(), any());
+        verifySuccessfulProcessing(file, compressedFile);
+    }
+
+    @Test
+    void corruptCompressedFileFailsValidation() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv.gz", FILE_LOCATION);
+        var corruptFile = new FileApi("test.csv.gz", new byte[] { 0x1F, (byte) 0x8B, 8 }, "application/gzip", 3, "gz");
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(corruptFile));
+
+        pipeline.submit(file).join();
+
+        verifyNoInteractions(csvProcessor);
+        verifyErrorProcessing(file, corruptFile);
+    }
+
+    @Test
+    void fileIsValidatedAgainstTheProfileOfTheBodyItCameFrom() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        file.setFromLocation("supervisor-a");
+        var profileSchema = mock(ValidationSchema.class);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(validationProfiles.schemaFor("supervisor-a")).thenReturn(profileSchema);
+        when(csvProcessor.collectErrors(fileApi.getBody(), profileSchema, null, null)).thenReturn(new ValidationErrors(10, SCHEMA));
+
+        pipeline.submit(file).join();
+
+        verifySuccessfulProcessing(file, fileApi);
+    }
+
+    @Test
+    void fileIsCheckedAgainstTheCurrentCompanyRegister() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var register = mock(CompanyRegister.class);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(companyRegisterSnapshot.current()).thenReturn(register);
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), eq(register))).thenReturn(new ValidationErrors(10, SCHEMA));
+
+        pipeline.submit(file).join();
+
+        verifySuccessfulProcessing(file, fileApi);
+    }
+
+    @Test
+    void completedFileIsCheckedForResubmissionsAndItsFingerprintsKept() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        file.setFromLocation("supervisor-a");
+        var resubmission = new ResubmissionCheck(ResubmissionCheck.Key.UNIQUE_ID, FingerprintIndex.EMPTY);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(resubmissionIndex.checkFor("supervisor-a")).thenReturn(resubmission);
+        when(csvProcessor.collectErrors(any(byte[].class), any(), eq(resubmission), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+
+        pipeline.submit(file).join();
+
+        verifySuccessfulProcessing(file, fileApi);
+        verify(resubmissionIndex).record(file, resubmission);
+    }
+
+    @Test
+    void failingToKeepFingerprintsLeavesTheFileCompleted() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var resubmission = new ResubmissionCheck(ResubmissionCheck.Key.RECORD, FingerprintIndex.EMPTY);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(resubmissionIndex.checkFor(any())).thenReturn(resubmission);
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+        doThrow(new RuntimeException("mongo down")).when(resubmissionIndex).record(file, resubmission);
+
+        pipeline.submit(file).join();
+
+        verifySuccessfulProcessing(file, fileApi);
+        verify(fileValidationRepository, never()).updateStatusForRetryById(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void fingerprintsOfAFileThatFailsValidationAreNotKept() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(resubmissionIndex.checkFor(any())).thenReturn(new ResubmissionCheck(ResubmissionCheck.Key.RECORD, FingerprintIndex.EMPTY));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(errors);
+
+        pipeline.submit(file).join();
+
+        verifyErrorProcessing(file, fileApi);
+        verify(resubmissionIndex, never()).record(any(), any());
+    }
+
+    @Test
+    void testFirstFileErrorDownloadingSecondFileSuccessfulProcessing() throws InterruptedException {
+        FileValidation file1 = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        FileValidation file2 = createFileValidation("2", "file2", "test2.csv", FILE_LOCATION);
+
+
+        stubClaim(file1);
+        stubClaim(file2);
+        when(fileTransferService.get(file1.getFileId()))
+                .thenThrow(FileDownloadException.class);
+        when(fileTransferService.get(file2.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+
+        pipeline.submit(file1).join();
+        pipeline.submit(file2).join();
+
+        verify(fileValidationRepository).updateStatusForRetryById(eq(file1.getId()), eq(OWNER), eq(FileStatus.DOWNLOAD_ERROR.getLabel()), any(), any(), any(), eq("System"));
+        verifySuccessfulProcessing(file2, fileApi);
+    }
+
+    @Test
+    void testInvalidFileProcessing() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        errors.add(3, ValidationErrors.NO_COLUMN, ValidationRule.COLUMN_COUNT);
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(errors);
+
+        pipeline.submit(file).join();
+
+        verifyErrorProcessing(file, fileApi);
+        var errorReport = ArgumentCaptor.forClass(byte[].class);
+        verify(s3UploadClient).uploadErrorReportAsync(errorReport.capture(), eq(file.getFileName()), eq(file.getToLocation()));
+        assertArrayEquals(errors.toJsonReport(file.getFileName()), errorReport.getValue());
+        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(OWNER), eq(FileStatus.VALIDATION_ERROR.getLabel()),
+                argThat(message -> message.endsWith("Date of birth format is incorrect on line 2, and 1 more errors")), any(), eq("System"));
+    }
+
+    @Test
+    void testUnreadableFileIsUploadedWithoutAReport() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        doThrow(CSVDataValidationException.class).when(csvProcessor).collectErrors(any(byte[].class), any(), any(), any());
+
+        pipeline.submit(file).join();
+
+        verifyErrorProcessing(file, fileApi);
+        verify(s3UploadClient, never()).uploadErrorReportAsync(any(), any(), any());
+    }
+
+    @Test
+    void testErrorReportIsUploadedEvenIfTheInvalidFileIsNot() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, ValidationErrors.NO_COLUMN, ValidationRule.COLUMN_COUNT);
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(errors);
+        when(s3UploadClient.uploadFileOnErrorAsync(fileApi.getBody(), file.getFileName(), file.getToLocation(), checksumOf(fileApi.getBody()))).thenReturn(CompletableFuture.failedFuture(new S3UploadException("Connection reset")));
+
+        pipeline.submit(file).join();
+
+        verify(s3UploadClient).uploadErrorReportAsync(any(), eq(file.getFileName()), eq(file.getToLocation()));
+    }
+
+    @Test
+    void invalidFileIsReportedByRowRangeWithoutBeingCopied() throws InterruptedException {
+        pipeline = createPipeline(new SyncTaskExecutor(), new SyncTaskExecutor(), new SyncTaskExecutor(), false);
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(errors);
+        var locations = Map.of(2, new ValidationErrors.RowLocation(2, "bytes=6-11"));
+        when(csvProcessor.rowLocations(any(InputStream.class), eq(errors), eq(true))).thenReturn(locations);
+
+        pipeline.submit(file).join();
+
+        var errorReport = ArgumentCaptor.forClass(byte[].class);
+        verify(s3UploadClient).uploadErrorReportAsync(errorReport.capture(), eq(file.getFileName()), eq(file.getToLocation()));
+        assertArrayEquals(errors.toJsonReport(file.getFileName(), file.getFileId(), locations), errorReport.getValue());
+        verify(s3UploadClient, never()).uploadFileOnErrorAsync(any(), any(), any(), any());
+        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(OWNER), eq(FileStatus.VALIDATION_ERROR.getLabel()), any(), any(), eq("System"));
+    }
+
+    @Test
+    void invalidFileIsReportedAfterRecordingItsFailureHasReleasedItsClaim() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(errors);
+
+        pipeline.submit(file).join();
+
+        var inOrder = inOrder(fileValidationRepository, s3UploadClient);
+        inOrder.verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(OWNER), eq(FileStatus.VALIDATION_ERROR.getLabel()), any(), any(), eq("System"));
+        inOrder.verify(s3UploadClient).uploadFileOnErrorAsync(fileApi.getBody(), file.getFileName(), file.getToLocation(), checksumOf(fileApi.getBody()));
+        inOrder.verify(s3UploadClient).uploadErrorReportAsync(any(), eq(file.getFileName()), eq(file.getToLocation()));
+        verify(fileValidationRepository, times(1)).extendClaimById(eq(file.getId()), eq(OWNER), any());
+    }
+
+    @Test
+    void invalidCompressedFileIsReportedByLineWithoutRanges() throws InterruptedException, IOException {
+        pipeline = createPipeline(new SyncTaskExecutor(), new SyncTaskExecutor(), new SyncTaskExecutor(), false);
+        FileValidation file = createFileValidation("1", "file1", "test.csv.gz", FILE_LOCATION);
+        var compressed = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("Hello World!".getBytes(StandardCharsets.UTF_8));
+        }
+        var compressedFile = new FileApi("test.csv.gz", compressed.toByteArray(), "application/gzip", compressed.size(), "gz");
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(compressedFile));
+        var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        when(csvProcessor.collectErrors(any(InputStream.class), any(), any(), any())).thenReturn(errors);
+        var locations = Map.of(2, new ValidationErrors.RowLocation(2, null));
+        when(csvProcessor.rowLocations(any(InputStream.class), eq(errors), eq(false))).thenAnswer(invocation -> {
+            assertEquals("Hello World!", new String(invocation.getArgument(0, InputStream.class).readAllBytes(), StandardCharsets.UTF_8));
+            return locations;
+        });
+
+        pipeline.submit(file).join();
+
+        var errorReport = ArgumentCaptor.forClass(byte[].class);
+        verify(s3UploadClient).uploadErrorReportAsync(errorReport.capture(), eq(file.getFileName()), eq(file.getToLocation()));
+        assertArrayEquals(errors.toJsonReport(file.getFileName(), file.getFileId(), locations), errorReport.getValue());
+    }
+
+    @Test
+    void unreadableFileIsReportedWithoutBeingCopied() throws InterruptedException {
+        pipeline = createPipeline(new SyncTaskExecutor(), new SyncTaskExecutor(), new SyncTaskExecutor(), false);
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        doThrow(new CSVDataValidationException("Data validation exception: bad file")).when(csvProcessor).collectErrors(any(byte[].class), any(), any(), any());
+
+        pipeline.submit(file).join();
+
+        var errorReport = ArgumentCaptor.forClass(byte[].class);
+        verify(s3UploadClient).uploadErrorReportAsync(errorReport.capture(), eq(file.getFileName()), eq(file.getToLocation()));
+        assertArrayEquals(ValidationErrors.toJsonReport(file.getFileName(), file.getFileId(), "Data validation exception: bad file"), errorReport.getValue());
+        verify(s3UploadClient, never()).uploadFileOnErrorAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    void testFileTransferServiceError() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(anyString()))
+                .thenThrow(new FileDownloadException("Error downloading"));
+
+        pipeline.submit(file).join();
+
+        verify(fileValidationRepository).claim(eq(file.getId()), eq(OWNER), eq(CLAIMABLE_STATUSES), any(), eq(LEASE));
+        verifyNoMoreInteractions(s3UploadClient);
+        verify(fileValidationRepository).updateStatusForRetryById(eq(file.getId()), eq(OWNER), eq(FileStatus.DOWNLOAD_ERROR.getLabel()), any(), any(), any(), eq("System"));
+    }
+
+    @Test
+    void testFileUploadError() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+        when(s3UploadClient.uploadFileAsync(fileApi.getBody(), file.getFileName(), file.getToLocation(), checksumOf(fileApi.getBody()))).thenReturn(CompletableFuture.failedFuture(new S3UploadException("Connection reset")));
+
+        pipeline.submit(file).join();
+
+        verify(fileValidationRepository).updateStatusForRetryById(eq(file.getId()), eq(OWNER), eq(FileStatus.UPLOAD_ERROR.getLabel()), any(), any(), any(), eq("System"));
+    }
+
+    @Test
+    void testDownloadErrorAvStatus() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenThrow(DownloadAvStatusException.class);
+
+        pipeline.submit(file).join();
+
+        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(OWNER), eq(FileStatus.DOWNLOAD_AV_ERROR.getLabel()), any(), any(), eq("System"));
+    }
+
+    @Test
+    void testUnknownError() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        doThrow(RuntimeException.class).when(fileTransferService).get(file.getFileId());
+
+        pipeline.submit(file).join();
+
+        verifyNoInteractions(csvProcessor);
+        verifyNoMoreInteractions(s3UploadClient);
+    }
+
+    @Test
+    void testUnknownUploadError() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+        when(s3UploadClient.uploadFileAsync(fileApi.getBody(), file.getFileName(), file.getToLocation(), checksumOf(fileApi.getBody()))).thenReturn(CompletableFuture.failedFuture(new RuntimeException("Unexpected")));
+
+        pipeline.submit(file).join();
+
+        verify(fileValidationRepository).updateStatusForRetryById(eq(file.getId()), eq(OWNER), eq(FileStatus.ERROR.getLabel()), any(), any(), any(), eq("System"));
+    }
+
+    @Test
+    void testRecordsAreProcessedConcurrentlyAndFailuresAreIsolated() throws InterruptedException {
+        FileValidation file1 = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        FileValidation file2 = createFileValidation("2", "file2", "test2.csv", FILE_LOCATION);
+        var bothDownloading = new CountDownLatch(2);
+        var downloadPool = Executors.newFixedThreadPool(2);
+        pipeline = createPipeline(downloadPool, new SyncTaskExecutor(), new SyncTaskExecutor());
+
+        stubClaim(file1);
+        stubClaim(file2);
+        when(fileTransferService.get(anyString())).thenAnswer(invocation -> {
+            bothDownloading.countDown();
+            if (!bothDownloading.await(5, TimeUnit.SECONDS)) {
+                throw new FileDownloadException("Downloads did not run concurrently");
+            }
+            return Optional.of(fileApi);
+        });
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+        when(s3UploadClient.uploadFileAsync(fileApi.getBody(), file1.getFileName(), file1.getToLocation(), checksumOf(fileApi.getBody()))).thenReturn(CompletableFuture.failedFuture(new S3UploadException("Connection reset")));
+
+        try {
+            var first = pipeline.submit(file1);
+            var second = pipeline.submit(file2);
+            CompletableFuture.allOf(first, second).join();
+        } finally {
+            downloadPool.shutdown();
+        }
+
+        verify(fileValidationRepository).updateStatusForRetryById(eq(file1.getId()), eq(OWNER), eq(FileStatus.UPLOAD_ERROR.getLabel()), any(), any(), any(), eq("System"));
+        verifySuccessfulProcessing(file2, fileApi);
+    }
+
+    @Test
+    void testRecordClaimedByAnotherInstanceIsSkipped() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        when(fileValidationRepository.claim(eq(file.getId()), eq(OWNER), eq(CLAIMABLE_STATUSES), any(), eq(LEASE)))
+                .thenReturn(Optional.empty());
+
+        pipeline.submit(file).join();
+
+        verifyNoInteractions(fileTransferService, csvProcessor, s3UploadClient);
+        verify(fileValidationRepository, never()).updateStatusById(any(), any(), any(), any(), any());
+        verify(fileValidationRepository, never()).updateStatusAndErrorMessageById(any(), any(), any(), any(), any(), any());
+        verify(fileValidationRepository, never()).updateStatusForRetryById(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void recordWhoseClaimWasLostBeforeItWasValidatedIsAbandoned() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        doReturn(0L).when(fileValidationRepository).extendClaimById(eq(file.getId()), eq(OWNER), any());
+
+        pipeline.submit(file).join();
+
+        verifyNoInteractions(csvProcessor, s3UploadClient);
+        verify(fileValidationRepository, never()).updateStatusById(any(), any(), any(), any(), any());
+        verify(fileValidationRepository, never()).updateStatusForRetryById(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void fingerprintsAreNotKeptWhenTheClaimWasLostBeforeCompletion() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var resubmission = new ResubmissionCheck(ResubmissionCheck.Key.RECORD, FingerprintIndex.EMPTY);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(resubmissionIndex.checkFor(any())).thenReturn(resubmission);
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+        doReturn(0L).when(fileValidationRepository).updateStatusById(eq(file.getId()), eq(OWNER), any(), any(), any());
+
+        pipeline.submit(file).join();
+
+        verifySuccessfulProcessing(file, fileApi);
+        verify(resubmissionIndex, never()).record(any(), any());
+    }
+
+    @Test
+    void errorsAreNotReportedWhenTheClaimWasLostBeforeValidationFailed() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(errors);
+        doReturn(0L).when(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(OWNER), any(), any(), any(), any());
+
+        pipeline.submit(file).join();
+
+        verifyNoInteractions(s3UploadClient);
+    }
+
+    @Test
+    void claimsOnRecordsInThePipelineAreRenewedAndRecordsAreNotClaimedTwice() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var downloading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var downloadPool = Executors.newFixedThreadPool(2);
+        pipeline = createPipeline(downloadPool, new SyncTaskExecutor(), new SyncTaskExecutor());
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId())).thenAnswer(invocation -> {
+            downloading.countDown();
+            if (!release.await(5, TimeUnit.SECONDS)) {
+                throw new FileDownloadException("Download was not released");
+            }
+            return Optional.of(fileApi);
+        });
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+
+        try {
+            var first = pipeline.submit(file);
+            assertTrue(downloading.await(5, TimeUnit.SECONDS));
+            pipeline.submit(file).join();
+            var before = LocalDateTime.now();
+            pipeline.renewClaims();
+
+            var claimExpiresAt = ArgumentCaptor.forClass(LocalDateTime.class);
+            verify(fileValidationRepository).extendClaimById(eq(file.getId()), eq(OWNER), claimExpiresAt.capture());
+            assertFalse(claimExpiresAt.getValue().isBefore(before.plus(LEASE)));
+            release.countDown();
+            first.join();
+        } finally {
+            release.countDown();
+            downloadPool.shutdown();
+        }
+
+        verifySuccessfulProcessing(file, fileApi);
+        pipeline.renewClaims();
+        verify(fileValidationRepository, times(2)).extendClaimById(eq(file.getId()), eq(OWNER), any());
+    }
+
+    @Test
+    void testFailedRecordIsRetriedAfterTheBackoffDelay() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        file.setAttempts(2);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenThrow(new FileDownloadException("Error downloading"));
+
+        var before = LocalDateTime.now();
+        pipeline.submit(file).join();
+
+        var nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(fileValidationRepository).updateStatusForRetryById(eq(file.getId()), eq(OWNER), eq(FileStatus.DOWNLOAD_ERROR.getLabel()), any(), nextAttemptAt.capture(), any(), eq("System"));
+        assertFalse(nextAttemptAt.getValue().isBefore(before.plusMinutes(6)));
+        verify(fileValidationRepository, never()).updateStatusAndErrorMessageById(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testFailedRecordIsDeadLetteredOnceItRunsOutOfAttempts() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        file.setAttempts(3);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+        when(s3UploadClient.uploadFileAsync(fileApi.getBody(), file.getFileName(), file.getToLocation(), checksumOf(fileApi.getBody()))).thenReturn(CompletableFuture.failedFuture(new S3UploadException("Connection reset")));
+
+        pipeline.submit(file).join();
+
+        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(OWNER), eq(FileStatus.DEAD_LETTER.getLabel()), any(), any(), eq("System"));
+        verify(fileValidationRepository, never()).updateStatusForRetryById(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testValidationOfOneFileOverlapsTheDownloadOfTheNext() throws InterruptedException {
+        FileValidation file1 = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        FileValidation file2 = createFileValidation("2", "file2", "test2.csv", FILE_LOCATION);
+        var secondDownloadStarted = new CountDownLatch(1);
+        var downloadPool = Executors.newSingleThreadExecutor();
+        var validatePool = Executors.newSingleThreadExecutor();
+        pipeline = createPipeline(downloadPool, validatePool, new SyncTaskExecutor());
+
+        stubClaim(file1);
+        stubClaim(file2);
+        when(fileTransferService.get(file1.getFileId())).thenReturn(Optional.of(fileApi));
+        when(fileTransferService.get(file2.getFileId())).thenAnswer(invocation -> {
+            secondDownloadStarted.countDown();
+            return Optional.of(fileApi);
+        });
+        doAnswer(invocation -> {
+            if (!secondDownloadStarted.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Download of the next file did not overlap validation");
+            }
+            return new ValidationErrors(10, SCHEMA);
+        }).when(csvProcessor).collectErrors(any(byte[].class), any(), any(), any());
+
+        try {
+            var first = pipeline.submit(file1);
+            var second = pipeline.submit(file2);
+            CompletableFuture.allOf(first, second).join();
+        } finally {
+            downloadPool.shutdown();
+            validatePool.shutdown();
+        }
+
+        verifySuccessfulProcessing(file1, fileApi);
+        verifySuccessfulProcessing(file2, fileApi);
+    }
+
+    @Test
+    void fileIsUploadedWhileItIsValidatedAndCompletedOnceValid() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var uploadStarted = new CountDownLatch(1);
+        var uploadPool = Executors.newSingleThreadExecutor();
+        pipeline = createPipeline(new SyncTaskExecutor(), new SyncTaskExecutor(), uploadPool, true, true);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        doAnswer(invocation -> {
+            if (!uploadStarted.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Upload did not overlap validation");
+            }
+            return new ValidationErrors(10, SCHEMA);
+        }).when(csvProcessor).collectErrors(any(byte[].class), any(), any(), any());
+        when(s3UploadClient.uploadFileOnceValidAsync(eq(fileApi.getBody()), eq(file.getFileName()), eq(file.getToLocation()), eq(checksumOf(fileApi.getBody())), any()))
+                .thenAnswer(invocation -> {
+                    uploadStarted.countDown();
+                    return invocation.<CompletableFuture<Boolean>>getArgument(4);
+                });
+
+        try {
+            pipeline.submit(file).join();
+        } finally {
+            uploadPool.shutdown();
+        }
+
+        verify(fileValidationRepository).updateStatusById(eq(file.getId()), eq(OWNER), eq(FileStatus.COMPLETED.getLabel()), any(), eq("System"));
+        verify(s3UploadClient, never()).uploadFileAsync(any(byte[].class), any(), any(), any());
+    }
+
+    @Test
+    void fileUploadedWhileItIsValidatedIsReportedOnceFoundInvalid() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        var uploadPool = Executors.newSingleThreadExecutor();
+        pipeline = createPipeline(new SyncTaskExecutor(), new SyncTaskExecutor(), uploadPool, true, true);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(errors);
+        when(s3UploadClient.uploadFileOnceValidAsync(any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<CompletableFuture<Boolean>>getArgument(4));
+
+        try {
+            pipeline.submit(file).join();
+        } finally {
+            uploadPool.shutdown();
+        }
+
+        verifyErrorProcessing(file, fileApi);
+        verify(s3UploadClient).uploadErrorReportAsync(any(), eq(file.getFileName()), eq(file.getToLocation()));
+        verify(fileValidationRepository, never()).updateStatusById(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void fileThatFailsToUploadWhileItIsValidatedIsRetried() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var uploadPool = Executors.newSingleThreadExecutor();
+        pipeline = createPipeline(new SyncTaskExecutor(), new SyncTaskExecutor(), uploadPool, true, true);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        when(csvProcessor.collectErrors(any(byte[].class), any(), any(), any())).thenReturn(new ValidationErrors(10, SCHEMA));
+        when(s3UploadClient.uploadFileOnceValidAsync(any(), any(), any(), any(), any())).thenReturn(CompletableFuture.failedFuture(new S3UploadException("Connection reset")));
+
+        try {
+            pipeline.submit(file).join();
+        } finally {
+            uploadPool.shutdown();
+        }
+
+        verify(fileValidationRepository).updateStatusForRetryById(eq(file.getId()), eq(OWNER), eq(FileStatus.UPLOAD_ERROR.getLabel()), any(), any(), any(), eq("System"));
+        verify(fileValidationRepository, never()).updateStatusById(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void fileThatFailsToUploadWhileItIsValidatedIsStillReportedIfInvalid() throws InterruptedException {
+        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+        var uploadPool = Executors.newSingleThreadExecutor();
+        pipeline = createPipeline(new SyncTaskExecutor(), new SyncTaskExecutor(), uploadPool, false, true);
+
+        stubClaim(file);
+        when(fileTransferService.get(file.getFileId()))
+                .thenReturn(Optional.of(fileApi));
+        doThrow(new CSVDataValidationException("Data validation exception: bad file")).when(csvProcessor).collectErrors(any(byte[].class), any(), any(), any());
+        when(s3UploadClient.uploadFileOnceValidAsync(any(), any(), any(), any(), any())).thenReturn(CompletableFuture.failedFuture(new S3UploadException("Connection reset")));
+
+        try {
+            pipeline.submit(file).join();
+        } finally {
+            uploadPool.shutdown();
+        }
+
+        verify(s3UploadClient).uploadErrorReportAsync(any(), eq(file.getFileName()), eq(file.getToLocation()));
+        verify(fileValidationRepository, never()).updateStatusForRetryById(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testTrySubmitRefusesRecordsWhenTheDownloadStageIsFull() {
+        pipeline = new ValidationPipeline(fileTransferService, fileValidationRepository, s3UploadClient, csvProcessor, csvDecompressor, validationProfiles, resubmissionIndex, companyRegisterSnapshot, retryBackoffPolicy,
+                new BoundedExecutor(new SyncTaskExecutor(), 0), new BoundedExecutor(new SyncTaskExecutor(), 1), new BoundedExecutor(new SyncTaskExecutor(), 1), OWNER, LEASE, true, false);
+
+        assertFalse(pipeline.trySubmit(createFileValidation("1", "file1", "test.csv", FILE_LOCATION)));
+        verifyNoInteractions(fileValidationRepository, fileTransferService, csvProcessor, s3UploadClient);
+    }
+
+    private ValidationPipeline createPipeline(Executor downloadExecutor, Executor validateExecutor, Executor uploadExecutor) {
+        return createPipeline(downloadExecutor, validateExecutor, uploadExecutor, true);
+    }
+
+    private ValidationPipeline createPipeline(Executor downloadExecutor, Executor validateExecutor, Executor uploadExecutor, boolean copyInvalidFiles) {
+        return createPipeline(downloadExecutor, validateExecutor, uploadExecutor, copyInvalidFiles, false);
+    }
+
+    private ValidationPipeline createPipeline(Executor downloadExecutor, Executor validateExecutor, Executor uploadExecutor, boolean copyInvalidFiles, boolean uploadWhileValidating) {
+        return new ValidationPipeline(fileTransferService, fileValidationRepository, s3UploadClient, csvProcessor, csvDecompressor, validationProfiles, resubmissionIndex, companyRegisterSnapshot, retryBackoffPolicy,
+                new BoundedExecutor(downloadExecutor, 4), new BoundedExecutor(validateExecutor, 1), new BoundedExecutor(uploadExecutor, 1), OWNER, LEASE, copyInvalidFiles, uploadWhileValidating);
+    }
+
+    /**
+     * Stubs the claim on a record as the repository keeps it: a claim can be renewed until the record's status is
+     * updated, which releases it.
+     */
+    private void stubClaim(FileValidation file) {
+        var released = new AtomicBoolean();
+        Answer<Long> release = invocation -> {
+            released.set(true);
+            return 1L;
+        };
+        when(fileValidationRepository.claim(eq(file.getId()), eq(OWNER), eq(CLAIMABLE_STATUSES), any(), eq(LEASE)))
+                .thenAnswer(invocation -> {
+                    released.set(false);
+                    return Optional.of(file);
+                });
+        lenient().when(fileValidationRepository.extendClaimById(eq(file.getId()), eq(OWNER), any())).thenAnswer(invocation -> released.get() ? 0L : 1L);
+        lenient().when(fileValidationRepository.updateChecksumById(eq(file.getId()), eq(OWNER), any())).thenReturn(1L);
+        lenient().when(fileValidationRepository.updateStatusById(eq(file.getId()), eq(OWNER), any(), any(), any())).thenAnswer(release);
+        lenient().when(fileValidationRepository.updateStatusAndErrorMessageById(eq(file.getId()), eq(OWNER), any(), any(), any(), any())).thenAnswer(release);
+        lenient().when(fileValidationRepository.updateStatusForRetryById(eq(file.getId()), eq(OWNER), any(), any(), any(), any(), any())).thenAnswer(release);
+    }
+
+    private FileValidation createFileValidation(String id, String fileId, String fileName, String location) {
+        FileValidation file = new FileValidation();
+        file.setId(id);
+        file.setFileId(fileId);
+        file.setFileName(fileName);
+        file.setToLocation(location);
+        return file;
+    }
+
+
+    private void verifySuccessfulProcessing(FileValidation file, FileApi fileApi) {
+        verify(fileValidationRepository).claim(eq(file.getId()), eq(OWNER), eq(CLAIMABLE_STATUSES), any(), eq(LEASE));
+        verify(fileValidationRepository).updateChecksumById(file.getId(), OWNER, checksumOf(fileApi.getBody()));
+        verify(s3UploadClient).uploadFileAsync(fileApi.getBody(), file.getFileName(), file.getToLocation(), checksumOf(fileApi.getBody()));
+        verify(fileValidationRepository).updateStatusById(eq(file.getId()), eq(OWNER), eq(FileStatus.COMPLETED.getLabel()), any(), eq("System"));
+    }
+
+    private void verifyErrorProcessing(FileValidation file, FileApi fileApi) {
+        verify(fileValidationRepository).claim(eq(file.getId()), eq(OWNER), eq(CLAIMABLE_STATUSES), any(), eq(LEASE));
+        verify(s3UploadClient).uploadFileOnErrorAsync(fileApi.getBody(), file.getFileName(), file.getToLocation(), checksumOf(fileApi.getBody()));
+        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(OWNER), eq(FileStatus.VALIDATION_ERROR.getLabel()), any(), any(), eq("System"));
+    }
+}
\ No newline at end of file
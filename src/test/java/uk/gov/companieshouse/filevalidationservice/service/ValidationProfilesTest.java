@@ -0,0 +1,98 @@
+package uk.gov.companieshouse.filevalidationservice.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.companieshouse.filevalidationservice.validation.ValidationSchema;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("unit-test")
+class ValidationProfilesTest {
+
+    private static final ValidationSchema DEFAULT_SCHEMA = ValidationSchema.defaultSchema();
+
+    @TempDir
+    Path profilesDirectory;
+
+    @Test
+    void everyBodyUsesTheDefaultSchemaWhenNoDirectoryIsConfigured() throws IOException {
+        final var profiles = new ValidationProfiles(DEFAULT_SCHEMA, "");
+        profiles.reload();
+
+        assertSame(DEFAULT_SCHEMA, profiles.schemaFor("supervisor-a"));
+        assertSame(DEFAULT_SCHEMA, profiles.schemaFor(null));
+    }
+
+    @Test
+    void bodyWithAProfileUsesItAndOthersUseTheDefault() throws IOException {
+        writeProfile("supervisor-a", "reference", 1);
+        Files.writeString(profilesDirectory.resolve("notes.txt"), "not a profile");
+
+        final var profiles = new ValidationProfiles(DEFAULT_SCHEMA, profilesDirectory.toString());
+
+        assertEquals("reference", profiles.schemaFor("supervisor-a").header(0));
+        assertSame(DEFAULT_SCHEMA, profiles.schemaFor("supervisor-b"));
+    }
+
+    @Test
+    void reloadPicksUpAddedChangedAndRemovedProfiles() throws IOException {
+        writeProfile("supervisor-a", "reference", 1);
+        final var profiles = new ValidationProfiles(DEFAULT_SCHEMA, profilesDirectory.toString());
+        final var before = profiles.schemaFor("supervisor-a");
+
+        profiles.reload();
+        assertSame(before, profiles.schemaFor("supervisor-a"));
+
+        writeProfile("supervisor-a", "member number", 2);
+        writeProfile("supervisor-b", "licence", 1);
+        profiles.reload();
+        assertEquals("member number", profiles.schemaFor("supervisor-a").header(0));
+        assertEquals("licence", profiles.schemaFor("supervisor-b").header(0));
+
+        Files.delete(profilesDirectory.resolve("supervisor-a.json"));
+        profiles.reload();
+        assertSame(DEFAULT_SCHEMA, profiles.schemaFor("supervisor-a"));
+        assertEquals("licence", profiles.schemaFor("supervisor-b").header(0));
+    }
+
+    @Test
+    void invalidProfileOnReloadKeepsEveryCurrentProfile() throws IOException {
+        writeProfile("supervisor-a", "reference", 1);
+        writeProfile("supervisor-b", "licence", 1);
+        final var profiles = new ValidationProfiles(DEFAULT_SCHEMA, profilesDirectory.toString());
+
+        writeProfile("supervisor-a", "member number", 2);
+        Files.writeString(profilesDirectory.resolve("supervisor-b.json"), "{ \"columns\": [] }");
+        profiles.reload();
+
+        assertEquals("reference", profiles.schemaFor("supervisor-a").header(0));
+        assertEquals("licence", profiles.schemaFor("supervisor-b").header(0));
+    }
+
+    @Test
+    void invalidProfileFailsStartup() throws IOException {
+        Files.writeString(profilesDirectory.resolve("supervisor-a.json"), "{ \"columns\": [ { \"header\": \"a\", \"format\": \"yyyy\" } ] }");
+
+        final var location = profilesDirectory.toString();
+        assertThrows(IllegalArgumentException.class, () -> new ValidationProfiles(DEFAULT_SCHEMA, location));
+    }
+
+    /**
+     * Writes a one column profile, giving each version its own modified time so a change is seen even when it lands
+     * within the same clock tick as the last one.
+     */
+    private void writeProfile(final String fromLocation, final String header, final int version) throws IOException {
+        final var file = profilesDirectory.resolve(fromLocation + ".json");
+        Files.writeString(file, String.format("{ \"columns\": [ { \"header\": \"%s\", \"maxLength\": 10 } ] }", header));
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2025-01-01T00:00:00Z").plusSeconds(version)));
+    }
+}
@@ -3,222 +3,159 @@ package uk.gov.companieshouse.filevalidationservice.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import uk.gov.companieshouse.api.model.filetransfer.FileApi;
-import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
-import uk.gov.companieshouse.filevalidationservice.exception.DownloadAvStatusException;
-import uk.gov.companieshouse.filevalidationservice.exception.FileDownloadException;
-import uk.gov.companieshouse.filevalidationservice.exception.S3UploadException;
 import uk.gov.companieshouse.filevalidationservice.models.FileStatus;
 import uk.gov.companieshouse.filevalidationservice.models.FileValidation;
-import uk.gov.companieshouse.filevalidationservice.parser.CsvProcessor;
+import uk.gov.companieshouse.filevalidationservice.models.FileValidationSubmittedEvent;
 import uk.gov.companieshouse.filevalidationservice.repositories.FileValidationRepository;
-import uk.gov.companieshouse.filevalidationservice.rest.S3UploadClient;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Optional;
-
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class ValidationSchedulerTest {
 
-    @Mock
-    private FileTransferService fileTransferService;
     @Mock
     private FileValidationRepository fileValidationRepository;
     @Mock
-    private S3UploadClient s3UploadClient;
-    @Mock
-    CsvProcessor csvProcessor;
-    @InjectMocks
+    private ValidationPipeline validationPipeline;
+
     private ValidationScheduler scheduler;
 
-    FileApi fileApi;
-    private final static String TEST_FILE_NAME = "test.csv";
-    private final static String FILE_LOCATION = "s3://location";
+    private final static int PAGE_SIZE = 10;
+    private final static List<String> CLAIMABLE_STATUSES = List.of(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel());
 
     @BeforeEach
     void setUp() {
-        var data = "Hello World!".getBytes();
-        fileApi = new FileApi(TEST_FILE_NAME, data, "mimeType", 100, "extension");
+        scheduler = new ValidationScheduler(fileValidationRepository, validationPipeline, Runnable::run, PAGE_SIZE);
     }
+
     @Test
     void testNoPendingFiles() {
-        when(fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel()))
+        when(fileValidationRepository.findClaimablePage(eq(CLAIMABLE_STATUSES), any(), isNull(), eq(PAGE_SIZE)))
                 .thenReturn(Collections.emptyList());
 
         scheduler.processFiles();
 
-        verify(fileValidationRepository).findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel());
-        verifyNoInteractions(fileTransferService, s3UploadClient);
+        verify(fileValidationRepository).findClaimablePage(eq(CLAIMABLE_STATUSES), any(), isNull(), eq(PAGE_SIZE));
+        verifyNoInteractions(validationPipeline);
     }
 
     @Test
-    void testSuccessfulFileProcessing() {
-        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
-
-        when(fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel()))
-                .thenReturn(Collections.singletonList(file));
-        when(fileTransferService.get(file.getFileId()))
-                .thenReturn(Optional.of(fileApi));
-        doNothing().when(csvProcessor).parseRecords(any());
-        doNothing().when(s3UploadClient).uploadFile(fileApi.getBody(), file.getFileName(), file.getToLocation());
+    void testErrorGettingRecords() {
+        doThrow(RuntimeException.class).when(fileValidationRepository).findClaimablePage(any(), any(), any(), anyInt());
 
         scheduler.processFiles();
 
-        verifySuccessfulProcessing(file, fileApi);
+        verifyNoInteractions(validationPipeline);
     }
 
     @Test
-    void testFirstFileErrorDownloadingSecondFileSuccessfulProcessing() {
-        FileValidation file1 = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
-        FileValidation file2 = createFileValidation("2", "file2", "test2.csv", FILE_LOCATION);
-
+    void testBacklogIsReadPageByPageUntilAShortPage() throws InterruptedException {
+        FileValidation file1 = createFileValidation("1");
+        FileValidation file2 = createFileValidation("2");
+        FileValidation file3 = createFileValidation("3");
+        scheduler = new ValidationScheduler(fileValidationRepository, validationPipeline, Runnable::run, 2);
 
-        when(fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(),FileStatus.ERROR.getLabel()))
+        when(fileValidationRepository.findClaimablePage(eq(CLAIMABLE_STATUSES), any(), isNull(), eq(2)))
                 .thenReturn(Arrays.asList(file1, file2));
-        when(fileTransferService.get(file1.getFileId()))
-                .thenThrow(FileDownloadException.class);
-        when(fileTransferService.get(file2.getFileId()))
-                .thenReturn(Optional.of(fileApi));
-        doNothing().when(csvProcessor).parseRecords(any());
-        doNothing().when(s3UploadClient).uploadFile(fileApi.getBody(), file2.getFileName(), file2.getToLocation());
-
-        scheduler.processFiles();
-
-        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file1.getId()), eq(FileStatus.DOWNLOAD_ERROR.getLabel()), any(), any(), eq("System"));
-        verifySuccessfulProcessing(file2, fileApi);
-    }
-
-    @Test
-    void testInvalidFileProcessing() {
-        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
-
-        when(fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel()))
-                .thenReturn(Collections.singletonList(file));
-        when(fileTransferService.get(file.getFileId()))
-                .thenReturn(Optional.of(fileApi));
-        doThrow(CSVDataValidationException.class).when(csvProcessor).parseRecords(any());
-        doNothing().when(s3UploadClient).uploadFileOnError(fileApi.getBody(), file.getFileName(), file.getToLocation());
-
-        scheduler.processFiles();
-
-        verifyErrorProcessing(file, fileApi);
-    }
-
-    @Test
-    void testFileTransferServiceError() {
-        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
-
-        when(fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel()))
-                .thenReturn(Collections.singletonList(file));
-        when(fileTransferService.get(anyString()))
-                .thenThrow(new FileDownloadException("Error downloading"));
+        when(fileValidationRepository.findClaimablePage(eq(CLAIMABLE_STATUSES), any(), eq(file2), eq(2)))
+                .thenReturn(Collections.singletonList(file3));
+        when(validationPipeline.submit(any())).thenReturn(CompletableFuture.completedFuture(null));
 
         scheduler.processFiles();
 
-        verify(fileValidationRepository).updateStatusAndRemoveErrorMessageById(eq(file.getId()), eq(FileStatus.IN_PROGRESS.getLabel()), any(), eq("System"));
-        verifyNoMoreInteractions(s3UploadClient);
-        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(FileStatus.DOWNLOAD_ERROR.getLabel()), any(), any(), eq("System"));
+        verify(fileValidationRepository, times(2)).findClaimablePage(any(), any(), any(), anyInt());
+        verify(validationPipeline).submit(file1);
+        verify(validationPipeline).submit(file2);
+        verify(validationPipeline).submit(file3);
     }
 
     @Test
-    void testFileUploadError() {
-        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
+    void testSchedulerWaitsForSubmittedRecordsToLeaveThePipeline() throws Exception {
+        FileValidation file = createFileValidation("1");
+        var processed = new CompletableFuture<Void>();
 
-        when(fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(),FileStatus.ERROR.getLabel()))
+        when(fileValidationRepository.findClaimablePage(eq(CLAIMABLE_STATUSES), any(), isNull(), eq(PAGE_SIZE)))
                 .thenReturn(Collections.singletonList(file));
-        when(fileTransferService.get(file.getFileId()))
-                .thenReturn(Optional.of(fileApi));
-        doNothing().when(csvProcessor).parseRecords(any());
-        doThrow(S3UploadException.class).when(s3UploadClient).uploadFile(fileApi.getBody(), file.getFileName(), file.getToLocation());
-
-        scheduler.processFiles();
-
-        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(FileStatus.UPLOAD_ERROR.getLabel()), any(), any(), eq("System"));
+        when(validationPipeline.submit(file)).thenReturn(processed);
+
+        var sweep = Executors.newSingleThreadExecutor();
+        try {
+            var finished = sweep.submit(scheduler::processFiles);
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertFalse(finished.isDone());
+            processed.complete(null);
+            finished.get(5, TimeUnit.SECONDS);
+        } finally {
+            sweep.shutdown();
+        }
     }
 
     @Test
-    void testDownloadErrorAvStatus() {
-        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
-
-
-        when(fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(), FileStatus.ERROR.getLabel()))
-                .thenReturn(Collections.singletonList(file));
-        when(fileTransferService.get(file.getFileId()))
-                .thenThrow(DownloadAvStatusException.class);
+    void testBacklogIsReadOffTheSchedulerThread() {
+        var sweeps = new ArrayList<Runnable>();
+        scheduler = new ValidationScheduler(fileValidationRepository, validationPipeline, sweeps::add, PAGE_SIZE);
+        when(fileValidationRepository.findClaimablePage(eq(CLAIMABLE_STATUSES), any(), isNull(), eq(PAGE_SIZE)))
+                .thenReturn(Collections.emptyList());
 
         scheduler.processFiles();
 
-        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(FileStatus.DOWNLOAD_AV_ERROR.getLabel()), any(), any(), eq("System"));
+        verifyNoInteractions(fileValidationRepository);
+        assertEquals(1, sweeps.size());
+        sweeps.get(0).run();
+        verify(fileValidationRepository).findClaimablePage(eq(CLAIMABLE_STATUSES), any(), isNull(), eq(PAGE_SIZE));
     }
 
     @Test
-    void testUnknownError() {
-        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
-
-        when(fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel()))
-                .thenReturn(Collections.singletonList(file));
-        doThrow(RuntimeException.class).when(fileTransferService).get(file.getFileId());
+    void testRunIsSkippedWhileThePreviousOneIsInProgress() {
+        scheduler = new ValidationScheduler(fileValidationRepository, validationPipeline, sweep -> {
+            throw new RejectedExecutionException();
+        }, PAGE_SIZE);
 
         scheduler.processFiles();
 
-        verifyNoInteractions(csvProcessor);
-        verifyNoMoreInteractions(s3UploadClient);
+        verifyNoInteractions(fileValidationRepository, validationPipeline);
     }
 
     @Test
-    void testUnknownUploadError() {
-        FileValidation file = createFileValidation("1", "file1", "test.csv", FILE_LOCATION);
-
-        when(fileValidationRepository.findByStatuses(FileStatus.PENDING.getLabel(), FileStatus.DOWNLOAD_ERROR.getLabel(), FileStatus.UPLOAD_ERROR.getLabel(),FileStatus.ERROR.getLabel()))
-                .thenReturn(Collections.singletonList(file));
-        when(fileTransferService.get(file.getFileId()))
-                .thenReturn(Optional.of(fileApi));
-        doNothing().when(csvProcessor).parseRecords(any());
-        doThrow(RuntimeException.class).when(s3UploadClient).uploadFile(fileApi.getBody(), file.getFileName(), file.getToLocation());
+    void testSubmittedRecordIsHandedToThePipelineStraightAway() {
+        when(validationPipeline.trySubmit(any())).thenReturn(true);
 
-        scheduler.processFiles();
+        scheduler.onFileValidationSubmitted(new FileValidationSubmittedEvent("1"));
 
-        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(FileStatus.ERROR.getLabel()), any(), any(), eq("System"));
+        verify(validationPipeline).trySubmit(argThat(candidate -> "1".equals(candidate.getId())));
+        verifyNoInteractions(fileValidationRepository);
     }
 
     @Test
-    void testErrorGettingRecords() {
-        doThrow(RuntimeException.class).when(fileValidationRepository).findByStatuses(FileStatus.PENDING.getLabel());
+    void testSubmittedRecordIsLeftForTheSchedulerWhenThePipelineIsBusy() throws InterruptedException {
+        when(validationPipeline.trySubmit(any())).thenReturn(false);
 
-        scheduler.processFiles();
+        scheduler.onFileValidationSubmitted(new FileValidationSubmittedEvent("1"));
 
-        verifyNoInteractions(fileTransferService);
-        verifyNoInteractions(csvProcessor);
-        verifyNoMoreInteractions(s3UploadClient);
+        verify(validationPipeline, never()).submit(any());
+        verifyNoInteractions(fileValidationRepository);
     }
 
-    private FileValidation createFileValidation(String id, String fileId, String fileName, String location) {
+    private FileValidation createFileValidation(String id) {
         FileValidation file = new FileValidation();
         file.setId(id);
-        file.setFileId(fileId);
-        file.setFileName(fileName);
-        file.setToLocation(location);
         return file;
     }
-
-
-    private void verifySuccessfulProcessing(FileValidation file, FileApi fileApi) {
-        verify(fileValidationRepository).updateStatusAndRemoveErrorMessageById(eq(file.getId()), eq(FileStatus.IN_PROGRESS.getLabel()), any(), eq("System"));
-        verify(s3UploadClient).uploadFile(fileApi.getBody(), file.getFileName(), file.getToLocation());
-        verify(fileValidationRepository).updateStatusById(eq(file.getId()), eq(FileStatus.COMPLETED.getLabel()), any(), eq("System"));
-    }
-
-    private void verifyErrorProcessing(FileValidation file, FileApi fileApi) {
-        verify(fileValidationRepository).updateStatusAndRemoveErrorMessageById(eq(file.getId()), eq(FileStatus.IN_PROGRESS.getLabel()), any(), eq("System"));
-        verify(s3UploadClient).uploadFileOnError(fileApi.getBody(), file.getFileName(), file.getToLocation());
-        verify(fileValidationRepository).updateStatusAndErrorMessageById(eq(file.getId()), eq(FileStatus.VALIDATION_ERROR.getLabel()), any(), any(), eq("System"));
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package uk.gov.companieshouse.filevalidationservice.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import uk.gov.companieshouse.filevalidationservice.utils.BoundedExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag( "unit-test" )
+class BoundedExecutorTest {
+
+    @Test
+    void trySubmitRefusesTasksOnceTheBoundIsReached() {
+        final List<Runnable> held = new ArrayList<>();
+        final var boundedExecutor = new BoundedExecutor( held::add, 2 );
+
+        assertTrue( boundedExecutor.trySubmit( () -> {} ) );
+        assertTrue( boundedExecutor.trySubmit( () -> {} ) );
+        assertFalse( boundedExecutor.trySubmit( () -> {} ) );
+
+        held.remove( 0 ).run();
+        assertTrue( boundedExecutor.trySubmit( () -> {} ) );
+    }
+
+    @Test
+    void permitIsReturnedWhenTheTaskFails() {
+        final var boundedExecutor = new BoundedExecutor( new SyncTaskExecutor(), 1 );
+
+        assertThrows( IllegalStateException.class, () -> boundedExecutor.submit( () -> {
+            throw new IllegalStateException( "failed" );
+        } ) );
+        assertTrue( boundedExecutor.trySubmit( () -> {} ) );
+    }
+
+    @Test
+    void taskSubmittedWithWhatItStartsHoldsItsPermitUntilThatFinishes() throws InterruptedException {
+        final var boundedExecutor = new BoundedExecutor( new SyncTaskExecutor(), 1 );
+        final var finished = new CompletableFuture<Void>();
+
+        boundedExecutor.submit( () -> {}, finished );
+        assertFalse( boundedExecutor.trySubmit( () -> {} ) );
+
+        finished.completeExceptionally( new IllegalStateException( "failed" ) );
+        assertTrue( boundedExecutor.trySubmit( () -> {} ) );
+    }
+
+    @Test
+    void permitIsReturnedWhenTheExecutorRejectsTheTask() {
+        final Executor rejecting = task -> {
+            throw new RejectedExecutionException( "shut down" );
+        };
+        final var boundedExecutor = new BoundedExecutor( rejecting, 1 );
+
+        final var exception = assertThrows( RejectedExecutionException.class, () -> boundedExecutor.trySubmit( () -> {} ) );
+        assertEquals( "shut down", exception.getMessage() );
+        assertThrows( RejectedExecutionException.class, () -> boundedExecutor.trySubmit( () -> {} ) );
+    }
+}
@@ -0,0 +1,80 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class CompanyRegisterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void registeredNumbersAreFoundWhateverTheirCaseOrPadding() throws IOException {
+        final var register = open("00000001", "00012345", "12345678", "NI000123", "SC012345");
+
+        assertEquals(5, register.size());
+        assertTrue(contains(register, "00012345"));
+        assertTrue(contains(register, "12345"));
+        assertTrue(contains(register, "1"));
+        assertTrue(contains(register, "12345678"));
+        assertTrue(contains(register, "sc012345"));
+        assertTrue(contains(register, "Ni000123"));
+        assertFalse(contains(register, "00012346"));
+        assertFalse(contains(register, "SC12345"));
+        assertFalse(contains(register, "0012345 "));
+        assertFalse(contains(register, "012345678"));
+        assertFalse(contains(register, ""));
+    }
+
+    @Test
+    void numbersAreFoundInALargeRegister() throws IOException {
+        final var random = new Random(17);
+        final var numbers = new TreeSet<String>();
+        while (numbers.size() < 100_000) {
+            numbers.add(String.format("%08d", random.nextInt(100_000_000)));
+        }
+        final var register = open(numbers.toArray(new String[0]));
+
+        for (final var number : numbers) {
+            assertTrue(contains(register, number));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            final var number = String.format("%08d", random.nextInt(100_000_000));
+            assertEquals(numbers.contains(number), contains(register, number));
+        }
+    }
+
+    @Test
+    void snapshotsThatAreNotSortedCompanyNumbersAreRejected() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> open("00000002", "00000001"));
+        assertThrows(IllegalArgumentException.class, () -> open("00000001", "00000001"));
+        assertThrows(IllegalArgumentException.class, () -> open("0000001"));
+        assertThrows(IllegalArgumentException.class, () -> open("000000é"));
+        assertEquals(0, open().size());
+    }
+
+    private CompanyRegister open(final String... numbers) throws IOException {
+        final var snapshot = directory.resolve("register.bin");
+        Files.writeString(snapshot, String.join("", numbers), StandardCharsets.UTF_8);
+        return CompanyRegister.open(snapshot);
+    }
+
+    private static boolean contains(final CompanyRegister register, final String number) {
+        final var bytes = ("," + number + ",").getBytes(StandardCharsets.UTF_8);
+        return register.contains(bytes, 1, bytes.length - 1);
+    }
+}
@@ -0,0 +1,164 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class CountriesTest {
+
+    @Test
+    void everyListedCodeAndNameIsACountry() throws IOException {
+        final var names = names();
+
+        assertEquals(names.size(), Countries.size());
+        for (final var name : names) {
+            assertTrue(isCountry(name), name);
+            assertTrue(isCountry(lowerCaseAscii(name)), name);
+            assertTrue(isCountry("  " + name.replace(" ", "   ") + " "), name);
+        }
+    }
+
+    @Test
+    void codesAndCommonNamesAreCountries() {
+        assertTrue(isCountry("GB"));
+        assertTrue(isCountry("gbr"));
+        assertTrue(isCountry("United Kingdom"));
+        assertTrue(isCountry("UNITED KINGDOM"));
+        assertTrue(isCountry("England"));
+        assertTrue(isCountry("Ireland"));
+        assertTrue(isCountry("Côte d'Ivoire"));
+        assertTrue(isCountry("Cote d'Ivoire"));
+        assertTrue(isCountry("Åland Islands"));
+    }
+
+    @Test
+    void anythingElseIsNotACountry() {
+        assertFalse(isCountry("Unitedkingdom"));
+        assertFalse(isCountry("United Kingdo"));
+        assertFalse(isCountry("United Kingdomm"));
+        assertFalse(isCountry("GBX"));
+        assertFalse(isCountry("XX"));
+        assertFalse(isCountry("London"));
+        assertFalse(isCountry("CÔTE D'IVOIRE"));
+        assertFalse(isCountry("United\tKingdom"));
+        assertFalse(isCountry("United Kingdom 😀"));
+        assertFalse(isCountry("日本"));
+    }
+
+    @Test
+    void emptyCountriesAreValid() {
+        assertTrue(isCountry(""));
+        assertTrue(isCountry("   "));
+        assertTrue(CsvRecordValidator.isKnownCountry(""));
+    }
+
+    @Test
+    void countriesMatchASetOfTheNormalisedNames() throws IOException {
+        final var names = new HashSet<String>();
+        for (final var name : names()) {
+            names.add(upperCaseAscii(name));
+        }
+        final var random = new Random(20250319L);
+        final var alphabet = "ABEGIKNRSTUabgnr é";
+        for (int i = 0; i < 200_000; i++) {
+            final var value = new StringBuilder();
+            final var length = 1 + random.nextInt(4);
+            for (int j = 0; j < length; j++) {
+                value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            final var normalised = value.toString().strip().replaceAll(" +", " ");
+            final var expected = normalised.isEmpty() || names.contains(upperCaseAscii(normalised));
+            assertEquals(expected, isCountry(value.toString()), value.toString());
+        }
+    }
+
+    @Test
+    void ukCrownDependenciesAndTerritoriesWithPostcodesUseUkPostcodes() {
+        assertTrue(usesUkPostcodes("United Kingdom"));
+        assertTrue(usesUkPostcodes("gbr"));
+        assertTrue(usesUkPostcodes("  Scotland "));
+        assertTrue(usesUkPostcodes("Jersey"));
+        assertTrue(usesUkPostcodes("GG"));
+        assertTrue(usesUkPostcodes("Isle of Man"));
+        assertTrue(usesUkPostcodes("Saint Helena, Ascension and Tristan da Cunha"));
+        assertTrue(usesUkPostcodes("FK"));
+        assertTrue(usesUkPostcodes("British Indian Ocean Territory"));
+        assertTrue(usesUkPostcodes(""));
+        assertTrue(usesUkPostcodes(" "));
+        assertFalse(usesUkPostcodes("France"));
+        assertFalse(usesUkPostcodes("IE"));
+        assertFalse(usesUkPostcodes("Gibraltar"));
+        assertFalse(usesUkPostcodes("Londonshire"));
+    }
+
+    @Test
+    void checksOnBytesOnlyLookAtTheSlice() {
+        final var bytes = "XGBRX".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(Countries.isCountry(bytes, 1, 4));
+        assertTrue(Countries.isCountry(bytes, 1, 3));
+        assertFalse(Countries.isCountry(bytes, 0, 4));
+        assertFalse(Countries.isCountry(bytes, 1, 5));
+        assertTrue(CsvRecordValidator.isKnownCountry(bytes, 2, 2));
+    }
+
+    /**
+     * Checks the value both as UTF-8 bytes and as a string, which must agree.
+     */
+    private static boolean isCountry(final String value) {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        final var result = Countries.isCountry(bytes, 0, bytes.length);
+        assertEquals(Countries.isCountry(value), result, value);
+        return result;
+    }
+
+    private static boolean usesUkPostcodes(final String value) {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        final var result = Countries.usesUkPostcodes(bytes, 0, bytes.length);
+        assertEquals(Countries.usesUkPostcodes(value), result, value);
+        assertEquals(CsvRecordValidator.usesUkPostcodes(value), result, value);
+        return result;
+    }
+
+    private static String upperCaseAscii(final String value) {
+        final var upper = new StringBuilder(value.length());
+        for (final var c : value.toCharArray()) {
+            upper.append(c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c);
+        }
+        return upper.toString();
+    }
+
+    private static String lowerCaseAscii(final String value) {
+        final var lower = new StringBuilder(value.length());
+        for (final var c : value.toCharArray()) {
+            lower.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return lower.toString();
+    }
+
+    private static List<String> names() throws IOException {
+        final List<String> names = new ArrayList<>();
+        try (var reader = new BufferedReader(new InputStreamReader(
+                CountriesTest.class.getClassLoader().getResourceAsStream(Countries.LOCATION), StandardCharsets.UTF_8))) {
+            for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    names.addAll(List.of(line.split("\\|")));
+                }
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,170 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.companieshouse.filevalidationservice.exception.CSVDataValidationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares validating records against the {@link ValidationSchema} with the checks in {@link CsvRecordValidator}
+ * against the checks they replaced, which took a string
+ * per field, built a {@link DateTimeFormatter} for every date of birth and threw an exception for every failure.
+ * Each benchmark validates the same batch of records and returns the number that failed.
+ * <p>
+ * Not run as part of the tests. Run {@link #main} from the IDE, or after {@code mvn test-compile} with
+ * {@code mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=<this class>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvRecordValidatorBenchmark {
+
+    private static final int RECORDS = 1024;
+    private static final ValidationSchema SCHEMA = ValidationSchema.defaultSchema();
+    private static final int NUMBER_OF_COLUMNS = SCHEMA.columnCount();
+    private static final int DATE_OF_BIRTH = SCHEMA.columnIndex("date of birth");
+    private static final int POSTCODE = SCHEMA.columnIndex("postcode");
+
+    /**
+     * The percentage of records with a field that fails validation.
+     */
+    @Param({"0", "10", "50"})
+    public int invalidPercent;
+
+    private String[][] fields;
+    private byte[] bytes;
+    private int[] starts;
+    private int[] ends;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CsvRecordValidatorBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        final var random = new Random(20250301L);
+        final var output = new ByteArrayOutputStream();
+        fields = new String[RECORDS][];
+        starts = new int[RECORDS * NUMBER_OF_COLUMNS];
+        ends = new int[RECORDS * NUMBER_OF_COLUMNS];
+        for (int record = 0; record < RECORDS; record++) {
+            fields[record] = record(random, random.nextInt(100) < invalidPercent);
+            for (int column = 0; column < NUMBER_OF_COLUMNS; column++) {
+                final var field = fields[record][column].getBytes(StandardCharsets.UTF_8);
+                starts[record * NUMBER_OF_COLUMNS + column] = output.size();
+                output.writeBytes(field);
+                ends[record * NUMBER_OF_COLUMNS + column] = output.size();
+            }
+        }
+        bytes = output.toByteArray();
+    }
+
+    @Benchmark
+    public int legacyOnStrings() {
+        var failures = 0;
+        for (final String[] record : fields) {
+            try {
+                LegacyCsvRecordValidator.validate(record);
+            } catch (CSVDataValidationException e) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    @Benchmark
+    public int kernelOnStrings() {
+        var failures = 0;
+        for (final String[] record : fields) {
+            for (int column = 0; column < NUMBER_OF_COLUMNS; column++) {
+                if (SCHEMA.checkField(column, record[column]) != ValidationSchema.VALID) {
+                    failures++;
+                    break;
+                }
+            }
+        }
+        return failures;
+    }
+
+    @Benchmark
+    public int kernelOnBytes() {
+        var failures = 0;
+        for (int record = 0; record < RECORDS; record++) {
+            for (int column = 0; column < NUMBER_OF_COLUMNS; column++) {
+                final var field = record * NUMBER_OF_COLUMNS + column;
+                if (SCHEMA.checkField(column, bytes, starts[field], ends[field]) != ValidationSchema.VALID) {
+                    failures++;
+                    break;
+                }
+            }
+        }
+        return failures;
+    }
+
+    private static String[] record(final Random random, final boolean invalid) {
+        final var record = new String[] { "ID" + random.nextInt(1_000_000), "Acme Trading Limited", "01234567",
+                "Acme", "José", "Smith", "", "12", "High Street", "", "London", "SW1A 1AA", "United Kingdom" };
+        if (random.nextBoolean()) {
+            record[DATE_OF_BIRTH] = String.format("%02d%02d%04d", 1 + random.nextInt(28), 1 + random.nextInt(12), 1940 + random.nextInt(70));
+        }
+        if (invalid) {
+            if (random.nextBoolean()) {
+                record[DATE_OF_BIRTH] = "3102" + (1940 + random.nextInt(70)) + "x";
+            } else {
+                record[POSTCODE] = "SW1A 1AA SW1A 1AA SW1A 1AA";
+            }
+        }
+        return record;
+    }
+
+    /**
+     * The checks as they were before they returned result codes.
+     */
+    private static final class LegacyCsvRecordValidator {
+
+        private static final int[] MAX_LENGTHS = { 256, 160, 10, 160, 50, 160, -1, 200, 50, 50, 50, 20, 50 };
+
+        private static void validate(final String[] record) {
+            for (int column = 0; column < NUMBER_OF_COLUMNS; column++) {
+                if (column == DATE_OF_BIRTH) {
+                    validateDateOfBirth(record[column]);
+                } else if (record[column].length() > MAX_LENGTHS[column]) {
+                    throw new CSVDataValidationException(String.format("Column %s is too long", column));
+                }
+            }
+        }
+
+        private static void validateDateOfBirth(final String dateOfBirth) {
+            if (!dateOfBirth.isEmpty()) {
+                try {
+                    var formatter = DateTimeFormatter.ofPattern("ddMMyyyy");
+                    LocalDate.parse(dateOfBirth, formatter);
+                } catch (DateTimeParseException e) {
+                    throw new CSVDataValidationException("Date of birth format is incorrect");
+                }
+            }
+        }
+    }
+}
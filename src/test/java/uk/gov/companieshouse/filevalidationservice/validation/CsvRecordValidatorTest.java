@@ -0,0 +1,101 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class CsvRecordValidatorTest {
+
+    private static final DateTimeFormatter STRICT_DATE = DateTimeFormatter.ofPattern("ddMMuuuu").withResolverStyle(ResolverStyle.STRICT);
+
+    @Test
+    void dateOfBirthMatchesAStrictCalendarParse() {
+        final var random = new Random(20250302L);
+        for (int i = 0; i < 200_000; i++) {
+            final var date = String.format("%02d%02d%04d", random.nextInt(33), random.nextInt(14), random.nextInt(2500));
+            assertEquals(isStrictDate(date), CsvRecordValidator.isValidDateOfBirth(date), date);
+            assertEquals(isStrictDate(date), isValidDateOfBirth(date), date);
+        }
+    }
+
+    @Test
+    void dateOfBirthFollowsTheLeapYearRules() {
+        assertTrue(CsvRecordValidator.isValidDateOfBirth("29022024"));
+        assertTrue(CsvRecordValidator.isValidDateOfBirth("29022000"));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("29021900"));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("29022023"));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("31022024"));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("31042024"));
+        assertTrue(CsvRecordValidator.isValidDateOfBirth("31122024"));
+    }
+
+    @Test
+    void dateOfBirthMustBeEightDigitsOrEmpty() {
+        assertTrue(CsvRecordValidator.isValidDateOfBirth(""));
+        assertTrue(isValidDateOfBirth(""));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("1012024"));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("010120245"));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("01-01-2024"));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("0101 2024"));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("01012o24"));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth("01010000"));
+        assertFalse(isValidDateOfBirth("0101202٤"));
+        assertFalse(isValidDateOfBirth("0101202é"));
+    }
+
+    @Test
+    void lengthIsCountedInUtf16CodeUnits() {
+        assertTrue(isWithinLength(50, "é".repeat(50)));
+        assertFalse(isWithinLength(50, "é".repeat(50) + "a"));
+        assertTrue(isWithinLength(50, "😀".repeat(25)));
+        assertFalse(isWithinLength(50, "😀".repeat(25) + "a"));
+        assertTrue(isWithinLength(0, ""));
+        assertFalse(isWithinLength(0, "a"));
+    }
+
+    @Test
+    void checksOnBytesOnlyLookAtTheSlice() {
+        final var bytes = "xx0101202499".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(CsvRecordValidator.isValidDateOfBirth(bytes, 2, 10));
+        assertTrue(CsvRecordValidator.isValidDateOfBirth(bytes, 2, 2));
+        assertFalse(CsvRecordValidator.isValidDateOfBirth(bytes, 1, 9));
+        assertTrue(CsvRecordValidator.isWithinLength(8, bytes, 2, 10));
+        assertFalse(CsvRecordValidator.isWithinLength(8, bytes, 1, 10));
+    }
+
+    /**
+     * Checks the length of the value as UTF-8 bytes, padded on both sides so the slice does not start at zero.
+     */
+    private static boolean isWithinLength(final int maxLength, final String value) {
+        final var field = value.getBytes(StandardCharsets.UTF_8);
+        final var bytes = new byte[field.length + 4];
+        System.arraycopy(field, 0, bytes, 2, field.length);
+        assertEquals(value.length(), CsvRecordValidator.utf16Length(bytes, 2, 2 + field.length), value);
+        return CsvRecordValidator.isWithinLength(maxLength, bytes, 2, 2 + field.length);
+    }
+
+    private static boolean isValidDateOfBirth(final String value) {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        return CsvRecordValidator.isValidDateOfBirth(bytes, 0, bytes.length);
+    }
+
+    private static boolean isStrictDate(final String date) {
+        try {
+            return LocalDate.parse(date, STRICT_DATE).getYear() >= 1;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
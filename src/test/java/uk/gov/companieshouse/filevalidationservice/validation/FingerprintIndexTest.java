@@ -0,0 +1,68 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class FingerprintIndexTest {
+
+    @Test
+    void indexContainsExactlyTheFingerprintsItWasGiven() {
+        final var random = new Random(16);
+        final var fingerprints = new long[200_000];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = random.nextLong();
+        }
+        final var index = FingerprintIndex.of(fingerprints);
+
+        assertEquals(fingerprints.length, index.size());
+        for (final var fingerprint : fingerprints) {
+            assertTrue(index.contains(fingerprint));
+        }
+        for (int i = 0; i < 200_000; i++) {
+            assertFalse(index.contains(random.nextLong()));
+        }
+        assertFalse(FingerprintIndex.EMPTY.contains(0));
+    }
+
+    @Test
+    void withAddsToANewIndexAndDropsRepeats() {
+        final var index = FingerprintIndex.of(new long[] { 3, 1, 3, Long.MIN_VALUE });
+        final var more = index.with(new long[] { 1, 2, Long.MAX_VALUE });
+
+        assertEquals(3, index.size());
+        assertFalse(index.contains(2));
+        assertEquals(5, more.size());
+        assertTrue(more.contains(Long.MIN_VALUE));
+        assertTrue(more.contains(2));
+        assertTrue(more.contains(Long.MAX_VALUE));
+        assertSame(more, more.with(new long[0]));
+    }
+
+    @Test
+    void resubmissionCheckKeepsTheFingerprintsOfItsPartsInOrder() {
+        final var check = new ResubmissionCheck(ResubmissionCheck.Key.RECORD, FingerprintIndex.of(new long[] { 5 }));
+        final var first = check.forPart();
+        final var second = check.forPart();
+        for (long fingerprint = 0; fingerprint < 2000; fingerprint++) {
+            assertEquals(fingerprint == 5, (fingerprint < 1000 ? first : second).check(fingerprint));
+        }
+        check.addAll(first);
+        check.addAll(second);
+
+        final var expected = new long[2000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i;
+        }
+        assertArrayEquals(expected, check.fingerprints());
+        assertEquals(ResubmissionCheck.Key.RECORD, second.key());
+    }
+}
@@ -0,0 +1,150 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares checking postcodes with the compiled automaton in {@link UkPostcodes} against a regular expression, and
+ * checking countries with the perfect hash table in {@link Countries} against a {@link HashSet} of upper cased names.
+ * Each benchmark checks the same batch of values, about one in ten of them not valid, and returns the number that
+ * failed.
+ * <p>
+ * Not run as part of the tests. Run {@link #main} from the IDE, or after {@code mvn test-compile} with
+ * {@code mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=<this class>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostcodeAndCountryBenchmark {
+
+    private static final int VALUES = 1024;
+    private static final Pattern POSTCODE = Pattern.compile(
+            " *(GIR *0AA|([A-PR-UWYZ][0-9]{1,2}|[A-PR-UWYZ][A-HK-Y][0-9]{1,2}|[A-PR-UWYZ][0-9][A-HJKPSTUW]|[A-PR-UWYZ][A-HK-Y][0-9][ABEHMNPRVWXY]) *[0-9][ABD-HJLNP-UW-Z]{2}) *",
+            Pattern.CASE_INSENSITIVE);
+    private static final String[] POSTCODES = { "SW1A 1AA", "M1 1AE", "b33 8th", "CR2 6XH", "DN55 1PT", "W1A 0AX", "EC1A 1BB", "ST63LJ" };
+    private static final String[] COUNTRIES = { "United Kingdom", "GB", "England", "Ireland", "france", "USA", "Germany", "Cote d'Ivoire" };
+
+    private String[] postcodes;
+    private String[] countries;
+    private Set<String> countryNames;
+    private byte[] bytes;
+    private int[] starts;
+    private int[] ends;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PostcodeAndCountryBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        final var random = new Random(20250320L);
+        final var output = new ByteArrayOutputStream();
+        postcodes = new String[VALUES];
+        countries = new String[VALUES];
+        starts = new int[VALUES * 2];
+        ends = new int[VALUES * 2];
+        for (int i = 0; i < VALUES; i++) {
+            final var invalid = random.nextInt(10) == 0;
+            postcodes[i] = invalid ? "75008" : POSTCODES[random.nextInt(POSTCODES.length)];
+            countries[i] = invalid ? "Londonshire" : COUNTRIES[random.nextInt(COUNTRIES.length)];
+            starts[i * 2] = output.size();
+            output.writeBytes(postcodes[i].getBytes(StandardCharsets.UTF_8));
+            ends[i * 2] = output.size();
+            starts[i * 2 + 1] = output.size();
+            output.writeBytes(countries[i].getBytes(StandardCharsets.UTF_8));
+            ends[i * 2 + 1] = output.size();
+        }
+        bytes = output.toByteArray();
+        countryNames = new HashSet<>();
+        try (var reader = new BufferedReader(new InputStreamReader(
+                PostcodeAndCountryBenchmark.class.getClassLoader().getResourceAsStream(Countries.LOCATION), StandardCharsets.UTF_8))) {
+            for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    for (final var name : line.split("\\|")) {
+                        countryNames.add(name.toUpperCase(Locale.ENGLISH));
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int postcodeRegex() {
+        var failures = 0;
+        for (final var postcode : postcodes) {
+            failures += POSTCODE.matcher(postcode).matches() ? 0 : 1;
+        }
+        return failures;
+    }
+
+    @Benchmark
+    public int postcodeAutomatonOnStrings() {
+        var failures = 0;
+        for (final var postcode : postcodes) {
+            failures += UkPostcodes.isPostcode(postcode) ? 0 : 1;
+        }
+        return failures;
+    }
+
+    @Benchmark
+    public int postcodeAutomatonOnBytes() {
+        var failures = 0;
+        for (int i = 0; i < VALUES; i++) {
+            failures += UkPostcodes.isPostcode(bytes, starts[i * 2], ends[i * 2]) ? 0 : 1;
+        }
+        return failures;
+    }
+
+    @Benchmark
+    public int countryHashSet() {
+        var failures = 0;
+        for (final var country : countries) {
+            failures += countryNames.contains(country.strip().replaceAll(" +", " ").toUpperCase(Locale.ENGLISH)) ? 0 : 1;
+        }
+        return failures;
+    }
+
+    @Benchmark
+    public int countryPerfectHashOnStrings() {
+        var failures = 0;
+        for (final var country : countries) {
+            failures += Countries.isCountry(country) ? 0 : 1;
+        }
+        return failures;
+    }
+
+    @Benchmark
+    public int countryPerfectHashOnBytes() {
+        var failures = 0;
+        for (int i = 0; i < VALUES; i++) {
+            failures += Countries.isCountry(bytes, starts[i * 2 + 1], ends[i * 2 + 1]) ? 0 : 1;
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,136 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class UkPostcodesTest {
+
+    private static final Pattern POSTCODE = Pattern.compile(
+            " *(GIR *0AA|([A-PR-UWYZ][0-9]{1,2}|[A-PR-UWYZ][A-HK-Y][0-9]{1,2}|[A-PR-UWYZ][0-9][A-HJKPSTUW]|[A-PR-UWYZ][A-HK-Y][0-9][ABEHMNPRVWXY]) *[0-9][ABD-HJLNP-UW-Z]{2}) *",
+            Pattern.CASE_INSENSITIVE);
+    private static final String CHARACTERS = "  0123456789ABCEGIJKMNQRSVWXZabgikqrvxz-é";
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final String DIGITS = "0123456789";
+    private static final String[][] OUTWARD_CODES = {
+            { LETTERS, DIGITS },
+            { LETTERS, DIGITS, DIGITS },
+            { LETTERS, LETTERS, DIGITS },
+            { LETTERS, LETTERS, DIGITS, DIGITS },
+            { LETTERS, DIGITS, LETTERS },
+            { LETTERS, LETTERS, DIGITS, LETTERS } };
+
+    @Test
+    void everyOutwardCodeFormIsAPostcode() {
+        assertTrue(isPostcode("M1 1AE"));
+        assertTrue(isPostcode("B33 8TH"));
+        assertTrue(isPostcode("CR2 6XH"));
+        assertTrue(isPostcode("DN55 1PT"));
+        assertTrue(isPostcode("W1A 0AX"));
+        assertTrue(isPostcode("EC1A 1BB"));
+        assertTrue(isPostcode("GIR 0AA"));
+    }
+
+    @Test
+    void overseasTerritoryPostcodesArePostcodes() {
+        assertTrue(isPostcode("ASCN 1ZZ"));
+        assertTrue(isPostcode("STHL 1ZZ"));
+        assertTrue(isPostcode("BIQQ 1ZZ"));
+        assertTrue(isPostcode("fiqq1zz"));
+        assertTrue(isPostcode(" TDCU  1ZZ "));
+        assertFalse(isPostcode("TDCU 1ZY"));
+        assertFalse(isPostcode("STHL 2ZZ"));
+        assertFalse(isPostcode("BIQ 1ZZ"));
+        assertFalse(isPostcode("ASCN 0AA"));
+    }
+
+    @Test
+    void caseAndSpacingAreIgnored() {
+        assertTrue(isPostcode("sw1a1aa"));
+        assertTrue(isPostcode("Sw1A  1aA"));
+        assertTrue(isPostcode("  SW1A 1AA "));
+        assertTrue(isPostcode("gir0aa"));
+        assertFalse(isPostcode("SW1 A1AA"));
+        assertFalse(isPostcode("SW1A 1 AA"));
+        assertFalse(isPostcode("SW1A\t1AA"));
+    }
+
+    @Test
+    void lettersNotUsedInAPositionAreRejected() {
+        assertFalse(isPostcode("QA1 1AA"));
+        assertFalse(isPostcode("AZ1 1AA"));
+        assertFalse(isPostcode("A1L 1AA"));
+        assertFalse(isPostcode("AA1C 1AA"));
+        assertFalse(isPostcode("A1 1AC"));
+        assertFalse(isPostcode("A1 1AV"));
+        assertFalse(isPostcode("A1 AAA"));
+        assertFalse(isPostcode("GIR 0AB"));
+    }
+
+    @Test
+    void overseasAndIncompletePostcodesAreRejected() {
+        assertFalse(isPostcode(""));
+        assertFalse(isPostcode(" "));
+        assertFalse(isPostcode("SW1A"));
+        assertFalse(isPostcode("1AA"));
+        assertFalse(isPostcode("SW1A 1AA1"));
+        assertFalse(isPostcode("90210"));
+        assertFalse(isPostcode("75008 Paris"));
+        assertFalse(isPostcode("K1A 0B1"));
+        assertFalse(isPostcode("SW1A 1ÀA"));
+    }
+
+    @Test
+    void postcodesMatchTheRegularExpression() {
+        final var random = new Random(20250318L);
+        var matched = 0;
+        for (int i = 0; i < 500_000; i++) {
+            final var value = new StringBuilder();
+            for (final var position : OUTWARD_CODES[random.nextInt(OUTWARD_CODES.length)]) {
+                value.append(position.charAt(random.nextInt(position.length())));
+            }
+            value.append(" ".repeat(random.nextInt(3)))
+                    .append(DIGITS.charAt(random.nextInt(DIGITS.length())))
+                    .append(LETTERS.charAt(random.nextInt(LETTERS.length())))
+                    .append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            // Change some characters, mostly to ones a postcode could have somewhere.
+            for (int changes = random.nextInt(3); changes > 0; changes--) {
+                value.setCharAt(random.nextInt(value.length()), CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+            final var expected = POSTCODE.matcher(value).matches();
+            assertEquals(expected, isPostcode(value.toString()), value.toString());
+            matched += expected ? 1 : 0;
+        }
+        assertTrue(matched > 50_000, "too few postcodes generated to be a test");
+    }
+
+    @Test
+    void checksOnBytesOnlyLookAtTheSlice() {
+        final var bytes = "1SW1A1AAA".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(UkPostcodes.isPostcode(bytes, 1, 8));
+        assertFalse(UkPostcodes.isPostcode(bytes, 0, 8));
+        assertFalse(UkPostcodes.isPostcode(bytes, 1, 9));
+        assertTrue(CsvRecordValidator.isValidUkPostcode(bytes, 3, 3));
+        assertTrue(CsvRecordValidator.isValidUkPostcode(""));
+        assertFalse(CsvRecordValidator.isValidUkPostcode(" "));
+    }
+
+    /**
+     * Checks the value both as UTF-8 bytes and as a string, which must agree.
+     */
+    private static boolean isPostcode(final String value) {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        final var result = UkPostcodes.isPostcode(bytes, 0, bytes.length);
+        assertEquals(UkPostcodes.isPostcode(value), result, value);
+        return result;
+    }
+}
@@ -0,0 +1,185 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class ValidationErrorsTest {
+
+    private static final ValidationSchema SCHEMA = ValidationSchema.defaultSchema();
+    private static final int DATE_OF_BIRTH = SCHEMA.columnIndex("date of birth");
+    private static final int POSTCODE = SCHEMA.columnIndex("postcode");
+    private static final int UNIQUE_ID = SCHEMA.columnIndex("unique id");
+
+    @Test
+    void errorsPastTheCapAreCountedButNotKept() {
+        final var errors = new ValidationErrors(2, SCHEMA);
+        for (int row = 2; row < 102; row++) {
+            errors.add(row, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        }
+
+        assertEquals(2, errors.size());
+        assertEquals(100, errors.total());
+        assertEquals(3, errors.row(1));
+        assertEquals("Data validation exception: Postcode is over 20 characters long on line 2, and 99 more errors", errors.summary());
+    }
+
+    @Test
+    void errorThatStopsValidationIsKeptEvenPastTheCap() {
+        final var errors = new ValidationErrors(2, SCHEMA);
+        errors.add(2, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        errors.add(3, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        errors.add(4, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        errors.stop(5, ValidationRule.MALFORMED_RECORD, "End of file reached before quoted field finished");
+
+        assertEquals(2, errors.size());
+        assertEquals(4, errors.total());
+        assertTrue(errors.isStopped());
+        assertEquals(5, errors.row(1));
+        assertEquals(ValidationErrors.NO_COLUMN, errors.column(1));
+        assertEquals("End of file reached before quoted field finished", errors.message(1));
+    }
+
+    @Test
+    void addAllAppendsUntilTheCapAndStopsAfterAnErrorThatStopsValidation() {
+        final var first = new ValidationErrors(3, SCHEMA);
+        first.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        final var second = new ValidationErrors(3, SCHEMA);
+        second.add(7, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        second.add(8, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        second.add(9, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        second.add(10, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        final var third = new ValidationErrors(3, SCHEMA);
+        third.stop(12, ValidationRule.MALFORMED_RECORD, "Invalid character between quoted field and delimiter");
+        final var fourth = new ValidationErrors(3, SCHEMA);
+        fourth.add(20, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+
+        first.addAll(second);
+        first.addAll(third);
+        first.addAll(fourth);
+
+        assertEquals(3, first.size());
+        assertEquals(6, first.total());
+        assertEquals(2, first.row(0));
+        assertEquals(7, first.row(1));
+        assertEquals(12, first.row(2));
+        assertEquals(ValidationRule.MALFORMED_RECORD, first.rule(2));
+        assertTrue(first.isStopped());
+    }
+
+    @Test
+    void reportListsTheKeptErrors() throws IOException {
+        final var errors = new ValidationErrors(1, SCHEMA);
+        errors.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        errors.add(3, ValidationErrors.NO_COLUMN, ValidationRule.COLUMN_COUNT);
+
+        final var report = new ObjectMapper().readTree(errors.toJsonReport("file \"1\".csv"));
+
+        assertEquals("file \"1\".csv", report.path("fileName").asText());
+        assertEquals(2, report.path("totalErrors").asInt());
+        assertEquals(1, report.path("reportedErrors").asInt());
+        assertTrue(report.path("truncated").asBoolean());
+        assertFalse(report.path("stopped").asBoolean());
+        final var error = report.path("errors").get(0);
+        assertEquals(2, error.path("row").asInt());
+        assertEquals("date of birth", error.path("column").asText());
+        assertEquals("DATE_OF_BIRTH_FORMAT", error.path("rule").asText());
+        assertEquals("Date of birth format is incorrect", error.path("message").asText());
+    }
+
+    @Test
+    void duplicateIsReportedWithTheRowItFirstAppearedOn() throws IOException {
+        final var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        errors.addDuplicate(9, UNIQUE_ID, 4);
+
+        assertEquals(0, errors.firstRow(0));
+        assertEquals(4, errors.firstRow(1));
+        assertEquals("unique id appears more than once, first on line 4", errors.message(1));
+        final var report = new ObjectMapper().readTree(errors.toJsonReport("file.csv"));
+        assertTrue(report.path("errors").get(0).path("firstRow").isMissingNode());
+        assertEquals(4, report.path("errors").get(1).path("firstRow").asInt());
+        assertEquals("DUPLICATE_VALUE", report.path("errors").get(1).path("rule").asText());
+    }
+
+    @Test
+    void reportPointsAtTheRowsInTheFile() throws IOException {
+        final var errors = new ValidationErrors(10, SCHEMA);
+        errors.add(2, DATE_OF_BIRTH, ValidationRule.DATE_OF_BIRTH_FORMAT);
+        errors.add(2, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        errors.add(3, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+
+        final var report = new ObjectMapper().readTree(errors.toJsonReport("file.csv", "file-id",
+                Map.of(2, new ValidationErrors.RowLocation(4, "bytes=181-299"), 3, new ValidationErrors.RowLocation(6, null))));
+
+        assertEquals("file-id", report.path("fileId").asText());
+        assertEquals(4, report.path("errors").get(0).path("line").asLong());
+        assertEquals("bytes=181-299", report.path("errors").get(0).path("range").asText());
+        assertEquals("bytes=181-299", report.path("errors").get(1).path("range").asText());
+        assertEquals(6, report.path("errors").get(2).path("line").asLong());
+        assertTrue(report.path("errors").get(2).path("range").isMissingNode());
+        assertTrue(new ObjectMapper().readTree(errors.toJsonReport("file.csv")).path("errors").get(0).path("line").isMissingNode());
+        assertTrue(new ObjectMapper().readTree(errors.toJsonReport("file.csv")).path("fileId").isMissingNode());
+    }
+
+    @Test
+    void reportOnAFileThatCouldNotBeReadHasOneErrorThatStopped() throws IOException {
+        final var report = new ObjectMapper().readTree(ValidationErrors.toJsonReport("file.csv.gz", "file-id", "Not in GZIP format"));
+
+        assertEquals("file.csv.gz", report.path("fileName").asText());
+        assertEquals("file-id", report.path("fileId").asText());
+        assertEquals(1, report.path("totalErrors").asInt());
+        assertTrue(report.path("stopped").asBoolean());
+        final var error = report.path("errors").get(0);
+        assertTrue(error.path("row").isNull());
+        assertEquals("Not in GZIP format", error.path("message").asText());
+    }
+
+    @Test
+    void mergedWithInterleavesByRowUpToTheCapAndKeepsTheStop() {
+        final var errors = new ValidationErrors(4, SCHEMA);
+        errors.add(3, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        errors.add(5, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        errors.add(6, POSTCODE, ValidationRule.POSTCODE_LENGTH);
+        errors.stop(8, ValidationRule.MALFORMED_RECORD, "End of file reached before quoted field finished");
+        final var duplicates = new ValidationErrors(4, SCHEMA);
+        duplicates.addDuplicate(2, UNIQUE_ID, 1);
+        duplicates.addDuplicate(5, UNIQUE_ID, 2);
+        duplicates.addDuplicate(7, UNIQUE_ID, 2);
+
+        final var merged = errors.mergedWith(duplicates);
+
+        assertEquals(4, merged.size());
+        assertEquals(7, merged.total());
+        assertTrue(merged.isStopped());
+        assertEquals(2, merged.row(0));
+        assertEquals(ValidationRule.DUPLICATE_VALUE, merged.rule(0));
+        assertEquals(3, merged.row(1));
+        assertEquals(ValidationRule.POSTCODE_LENGTH, merged.rule(2));
+        assertEquals(5, merged.row(2));
+        assertEquals(8, merged.row(3));
+        assertEquals("End of file reached before quoted field finished", merged.message(3));
+    }
+
+    @Test
+    void noErrors() {
+        final var errors = new ValidationErrors(10, SCHEMA);
+
+        assertTrue(errors.isEmpty());
+        assertEquals("No errors", errors.summary());
+    }
+
+    @Test
+    void atLeastOneErrorMustBeKept() {
+        assertThrows(IllegalArgumentException.class, () -> new ValidationErrors(0, SCHEMA));
+    }
+}
@@ -0,0 +1,174 @@
+package uk.gov.companieshouse.filevalidationservice.validation;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit-test")
+class ValidationSchemaTest {
+
+    private static final ValidationSchema SCHEMA = ValidationSchema.defaultSchema();
+    private static final int DATE_OF_BIRTH = SCHEMA.columnIndex("date of birth");
+    private static final int POSTCODE = SCHEMA.columnIndex("postcode");
+    private static final int COMPANY_NUMBER = SCHEMA.columnIndex("company number");
+    private static final int FIRST_NAME = SCHEMA.columnIndex("first name");
+    private static final int COUNTRY = SCHEMA.columnIndex("country");
+
+    @Test
+    void defaultSchemaHasTheThirteenColumnsInOrder() {
+        assertEquals(13, SCHEMA.columnCount());
+        assertEquals("unique id", SCHEMA.header(0));
+        assertEquals(6, DATE_OF_BIRTH);
+        assertEquals("country", SCHEMA.header(12));
+        assertEquals("Incorrect number of columns, expected 13", SCHEMA.message(ValidationRule.COLUMN_COUNT, ValidationErrors.NO_COLUMN));
+    }
+
+    @Test
+    void checkFieldReturnsTheRuleBroken() {
+        assertEquals(ValidationSchema.VALID, checkField(COMPANY_NUMBER, "0123456789"));
+        assertEquals(ValidationRule.COMPANY_NUMBER_LENGTH.ordinal(), checkField(COMPANY_NUMBER, "01234567890"));
+        assertEquals(ValidationSchema.VALID, checkField(DATE_OF_BIRTH, "01012024"));
+        assertEquals(ValidationSchema.VALID, checkField(DATE_OF_BIRTH, ""));
+        assertEquals(ValidationRule.DATE_OF_BIRTH_FORMAT.ordinal(), checkField(DATE_OF_BIRTH, "2024-01-01"));
+        assertEquals(ValidationRule.POSTCODE_LENGTH.ordinal(), checkField(POSTCODE, "SW1A 1AA SW1A 1AA SW1A"));
+        assertEquals(ValidationRule.FIRST_NAME_LENGTH.ordinal(), checkField(FIRST_NAME, "é".repeat(51)));
+        assertEquals("Postcode is over 20 characters long", SCHEMA.message(ValidationRule.POSTCODE_LENGTH, POSTCODE));
+    }
+
+    @Test
+    void postcodesAndCountriesAreCheckedForLengthThenFormat() {
+        assertEquals(ValidationSchema.VALID, checkField(POSTCODE, "sw1a 1aa"));
+        assertEquals(ValidationSchema.VALID, checkField(POSTCODE, ""));
+        assertEquals(ValidationRule.POSTCODE_FORMAT.ordinal(), checkField(POSTCODE, "75008"));
+        assertEquals(ValidationRule.POSTCODE_LENGTH.ordinal(), checkField(POSTCODE, "Bristol City Centre BS1 4ST"));
+        assertEquals("Postcode is not a valid UK postcode", SCHEMA.message(ValidationRule.POSTCODE_FORMAT, POSTCODE));
+        assertEquals(ValidationSchema.VALID, checkField(COUNTRY, "United Kingdom"));
+        assertEquals(ValidationSchema.VALID, checkField(COUNTRY, "gb"));
+        assertEquals(ValidationRule.COUNTRY_FORMAT.ordinal(), checkField(COUNTRY, "Londonshire"));
+        assertEquals(ValidationRule.COUNTRY_LENGTH.ordinal(), checkField(COUNTRY, "United Kingdom ".repeat(4)));
+        assertEquals("Country is not a recognised country name or code", SCHEMA.message(ValidationRule.COUNTRY_FORMAT, COUNTRY));
+    }
+
+    @Test
+    void postcodesAreOnlyCheckedOnUkAddresses() throws IOException {
+        assertEquals(COUNTRY, SCHEMA.countryColumn());
+        assertEquals(ValidationSchema.VALID, checkField(POSTCODE, "75008", false));
+        assertEquals(ValidationRule.POSTCODE_FORMAT.ordinal(), checkField(POSTCODE, "75008", true));
+        assertEquals(ValidationRule.POSTCODE_LENGTH.ordinal(), checkField(POSTCODE, "Bristol City Centre BS1 4ST", false));
+        assertEquals(ValidationSchema.VALID, checkField(POSTCODE, "TDCU 1ZZ", true));
+        assertEquals(ValidationRule.COUNTRY_FORMAT.ordinal(), checkField(COUNTRY, "Londonshire", false));
+        assertEquals(ValidationErrors.NO_COLUMN, load("{ \"columns\": [ { \"header\": \"postcode\", \"format\": \"ukPostcode\" } ] }").countryColumn());
+        final var bytes = " Guernsey ".getBytes(StandardCharsets.UTF_8);
+        assertTrue(SCHEMA.isUkAddress(bytes, 0, bytes.length));
+        assertTrue(SCHEMA.isUkAddress(" Guernsey "));
+        assertFalse(SCHEMA.isUkAddress("France"));
+    }
+
+    @Test
+    void formatsWithoutARuleAreReportedWithAMessageNamingTheHeader() throws IOException {
+        final var schema = load("""
+                { "columns": [
+                    { "header": "post code", "format": "ukPostcode" },
+                    { "header": "nation", "maxLength": 20, "format": "country" },
+                    { "header": "zip", "maxLength": 8, "rule": "POSTCODE_LENGTH", "format": "ukPostcode", "formatMessage": "zip is not a postcode" } ] }
+                """);
+
+        assertEquals(ValidationRule.FIELD_FORMAT.ordinal(), schema.checkField(0, "90210"));
+        assertEquals("post code is not a valid UK postcode", schema.message(ValidationRule.FIELD_FORMAT, 0));
+        assertEquals(ValidationRule.FIELD_LENGTH.ordinal(), schema.checkField(1, "x".repeat(21)));
+        assertEquals("nation is over 20 characters long", schema.message(ValidationRule.FIELD_LENGTH, 1));
+        assertEquals(ValidationRule.FIELD_FORMAT.ordinal(), schema.checkField(1, "Atlantis"));
+        assertEquals("nation is not a recognised country", schema.message(ValidationRule.FIELD_FORMAT, 1));
+        assertEquals(ValidationRule.POSTCODE_LENGTH.ordinal(), schema.checkField(2, "SW1A  1AA"));
+        assertEquals(ValidationRule.FIELD_FORMAT.ordinal(), schema.checkField(2, "SW1A 1A"));
+        assertEquals("zip is not a postcode", schema.message(ValidationRule.FIELD_FORMAT, 2));
+    }
+
+    @Test
+    void columnsWithoutARuleAreReportedWithAMessageNamingTheHeader() throws IOException {
+        final var schema = load("""
+                { "columns": [
+                    { "header": "reference", "maxLength": 4 },
+                    { "header": "start date", "format": "ddMMyyyy" },
+                    { "header": "notes" },
+                    { "header": "code", "maxLength": 2, "rule": "POSTCODE_LENGTH", "message": "Code is too long" } ] }
+                """);
+
+        assertEquals(4, schema.columnCount());
+        assertEquals(ValidationRule.FIELD_LENGTH.ordinal(), schema.checkField(0, "12345"));
+        assertEquals("reference is over 4 characters long", schema.message(ValidationRule.FIELD_LENGTH, 0));
+        assertEquals(ValidationRule.FIELD_FORMAT.ordinal(), schema.checkField(1, "31022024"));
+        assertEquals("start date format is incorrect", schema.message(ValidationRule.FIELD_FORMAT, 1));
+        assertEquals(ValidationSchema.VALID, schema.checkField(2, "x".repeat(10_000)));
+        assertEquals(ValidationRule.POSTCODE_LENGTH.ordinal(), schema.checkField(3, "ABC"));
+        assertEquals("Code is too long", schema.message(ValidationRule.POSTCODE_LENGTH, 3));
+        assertEquals("Incorrect number of columns, expected 4", schema.message(ValidationRule.COLUMN_COUNT, ValidationErrors.NO_COLUMN));
+    }
+
+    @Test
+    void invalidSchemasAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> load("{ \"columns\": [] }"));
+        assertThrows(IllegalArgumentException.class, () -> load("{ \"columns\": [ { \"maxLength\": 4 } ] }"));
+        assertThrows(IllegalArgumentException.class, () -> load("{ \"columns\": [ { \"header\": \"a\" }, { \"header\": \"a\" } ] }"));
+        assertThrows(IllegalArgumentException.class, () -> load("{ \"columns\": [ { \"header\": \"a\", \"maxLength\": 4, \"format\": \"ddMMyyyy\" } ] }"));
+        assertThrows(IllegalArgumentException.class, () -> load("{ \"columns\": [ { \"header\": \"a\", \"maxLength\": -1 } ] }"));
+        assertThrows(IllegalArgumentException.class, () -> load("{ \"columns\": [ { \"header\": \"a\", \"format\": \"yyyy-MM-dd\" } ] }"));
+        assertThrows(IllegalArgumentException.class, () -> load("{ \"columns\": [ { \"header\": \"a\", \"maxLength\": 4, \"formatRule\": \"POSTCODE_FORMAT\" } ] }"));
+        assertThrows(IOException.class, () -> load("{ \"columns\": [ { \"header\": \"a\", \"maxLenght\": 4 } ] }"));
+        assertThrows(IllegalArgumentException.class, () -> load("{ \"columns\": [ { \"header\": \"a\", \"unique\": true }, { \"header\": \"b\", \"unique\": true } ] }"));
+        assertThrows(IllegalArgumentException.class, () -> load("{ \"columns\": [ { \"header\": \"a\", \"registered\": true }, { \"header\": \"b\", \"registered\": true } ] }"));
+    }
+
+    @Test
+    void uniqueColumnIsReportedWithAMessageNamingTheHeader() throws IOException {
+        final var schema = load("{ \"columns\": [ { \"header\": \"name\" }, { \"header\": \"reference\", \"maxLength\": 4, \"unique\": true } ] }");
+
+        assertEquals(1, schema.uniqueColumn());
+        assertEquals("reference appears more than once", schema.message(ValidationRule.DUPLICATE_VALUE, 1));
+        assertEquals("reference was submitted in an earlier file", schema.message(ValidationRule.RESUBMITTED, 1));
+        assertEquals("Record was submitted in an earlier file", schema.message(ValidationRule.RESUBMITTED, ValidationErrors.NO_COLUMN));
+        assertEquals("reference is over 4 characters long", schema.message(ValidationRule.FIELD_LENGTH, 1));
+        assertEquals(0, SCHEMA.uniqueColumn());
+        assertEquals(ValidationErrors.NO_COLUMN, load("{ \"columns\": [ { \"header\": \"name\" } ] }").uniqueColumn());
+    }
+
+    @Test
+    void registeredColumnIsReportedWithAMessageNamingTheHeader() throws IOException {
+        final var schema = load("{ \"columns\": [ { \"header\": \"name\" }, { \"header\": \"company\", \"maxLength\": 8, \"registered\": true } ] }");
+
+        assertEquals(1, schema.registeredColumn());
+        assertEquals("company is not on the register", schema.message(ValidationRule.NOT_REGISTERED, 1));
+        assertEquals("company is over 8 characters long", schema.message(ValidationRule.FIELD_LENGTH, 1));
+        assertEquals(SCHEMA.columnIndex("company number"), SCHEMA.registeredColumn());
+        assertEquals(ValidationErrors.NO_COLUMN, load("{ \"columns\": [ { \"header\": \"name\" } ] }").registeredColumn());
+    }
+
+    /**
+     * Checks the field both as UTF-8 bytes and as a string, which must agree.
+     */
+    private static int checkField(final int column, final String value) {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        final var result = SCHEMA.checkField(column, bytes, 0, bytes.length);
+        assertEquals(SCHEMA.checkField(column, value), result, value);
+        return result;
+    }
+
+    private static int checkField(final int column, final String value, final boolean ukAddress) {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        final var result = SCHEMA.checkField(column, bytes, 0, bytes.length, ukAddress);
+        assertEquals(SCHEMA.checkField(column, value, ukAddress), result, value);
+        return result;
+    }
+
+    private static ValidationSchema load(final String definition) throws IOException {
+        return ValidationSchema.load(new ByteArrayInputStream(definition.getBytes(StandardCharsets.UTF_8)));
+    }
+}